@@ -1,9 +1,22 @@
 package com.ingloriousmind.android.imtimetracking;
 
 import android.app.Application;
+import android.os.StrictMode;
 
+import com.ingloriousmind.android.imtimetracking.metrics.RollingLog;
+import com.ingloriousmind.android.imtimetracking.metrics.StartupTimeline;
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.service.DbMaintenanceJobService;
+import com.ingloriousmind.android.imtimetracking.service.TrackingService;
 import com.ingloriousmind.android.imtimetracking.util.FileUtil;
 
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import rx.Single;
+import rx.functions.Action1;
+import rx.functions.Actions;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -13,6 +26,16 @@ import timber.log.Timber;
  */
 public class TrackingApplication extends Application {
 
+    /**
+     * max size of the startup log, rolled over to a single backup
+     */
+    private static final long STARTUP_LOG_MAX_BYTES = 64 * 1024;
+
+    /**
+     * phases of launches, the cold one starting right now
+     */
+    private final StartupTimeline startupTimeline = new StartupTimeline(StartupTimeline.SYSTEM_TRACE);
+
     /**
      * dagger tracking component
      */
@@ -23,24 +46,93 @@ public class TrackingApplication extends Application {
      */
     @Override
     public void onCreate() {
+        startupTimeline.begin(StartupTimeline.APP_CREATE);
         super.onCreate();
         if (BuildConfig.DEBUG) {
             Timber.plant(new Timber.DebugTree());
         }
 
+        startupTimeline.begin(StartupTimeline.APP_COMPONENT);
         component = DaggerTrackingComponent.builder().trackingModule(new TrackingModule(this)).build();
+        startupTimeline.end(StartupTimeline.APP_COMPONENT);
 
+        startupTimeline.begin(StartupTimeline.APP_DIR);
         FileUtil.appDir = getExternalFilesDir(null);
         if (FileUtil.appDir != null && FileUtil.appDir.canWrite()) {
             FileUtil.appDir.mkdirs();
         } else {
             FileUtil.appDir = getFilesDir();
         }
+        startupTimeline.end(StartupTimeline.APP_DIR);
         Timber.i("app dir: %s", FileUtil.appDir.getAbsolutePath());
+
+        final RollingLog startupLog = new RollingLog(new File(FileUtil.appDir, "startup.log"), STARTUP_LOG_MAX_BYTES);
+        startupTimeline.setListener(new StartupTimeline.Listener() {
+            @Override
+            public void onLaunchCompleted(final StartupTimeline.Launch launch) {
+                Timber.i("launch completed: %s", launch);
+                launch.record(component.metrics());
+                Single.fromCallable(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        startupLog.append(launch.toString());
+                        return null;
+                    }
+                }).subscribeOn(Schedulers.io()).subscribe(Actions.empty(), new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed logging launch");
+                    }
+                });
+            }
+        });
+
+        // running trackings live in a foreground service, no matter which component started them
+        component.tracker().observeState().subscribe(new Action1<TrackingSnapshot>() {
+            @Override
+            public void call(TrackingSnapshot snapshot) {
+                if (snapshot.isRunning()) {
+                    TrackingService.start(TrackingApplication.this);
+                }
+            }
+        });
+
+        // data migrations left by an upgrade start right away, every other database operation waits for them
+        component.repository().runPendingMigrations().subscribe(Actions.empty(), new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed running pending migrations");
+            }
+        });
+
+        // computes rollups after install or upgrade, and catches up on zone changes missed while not running
+        component.repository().ensureRollupsCurrent().subscribe(Actions.empty(), new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed ensuring rollups");
+            }
+        });
+
+        DbMaintenanceJobService.schedule(this);
+
+        if (BuildConfig.DEBUG) {
+            // app dir resolution above is the only disk access tolerated on the main thread
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        }
+        startupTimeline.end(StartupTimeline.APP_CREATE);
     }
 
     public TrackingComponent getComponent() {
         return component;
     }
 
+    public StartupTimeline getStartupTimeline() {
+        return startupTimeline;
+    }
+
 }
@@ -1,6 +1,13 @@
 package com.ingloriousmind.android.imtimetracking;
 
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.service.TrackingService;
+import com.ingloriousmind.android.imtimetracking.time.Tracker;
+import com.ingloriousmind.android.imtimetracking.ui.activity.HeatmapActivity;
 import com.ingloriousmind.android.imtimetracking.ui.activity.HomeActivity;
+import com.ingloriousmind.android.imtimetracking.ui.activity.MetricsActivity;
+import com.ingloriousmind.android.imtimetracking.ui.activity.ReportsActivity;
 import com.ingloriousmind.android.imtimetracking.ui.dialog.EditTrackingDialog;
 
 import javax.inject.Singleton;
@@ -18,6 +25,20 @@ public interface TrackingComponent {
 
     void inject(HomeActivity homeActivity);
 
+    void inject(ReportsActivity reportsActivity);
+
+    void inject(HeatmapActivity heatmapActivity);
+
+    void inject(MetricsActivity metricsActivity);
+
     void inject(EditTrackingDialog editTrackingDialog);
 
+    void inject(TrackingService trackingService);
+
+    Tracker tracker();
+
+    TrackingRepository repository();
+
+    MetricsRegistry metrics();
+
 }
@@ -4,13 +4,26 @@ import android.content.Context;
 
 import com.ingloriousmind.android.imtimetracking.export.Exporter;
 import com.ingloriousmind.android.imtimetracking.export.PdfExporter;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
 import com.ingloriousmind.android.imtimetracking.persistence.DbHelper;
+import com.ingloriousmind.android.imtimetracking.persistence.TitleIndex;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingStateStore;
+import com.ingloriousmind.android.imtimetracking.report.SparklineCache;
 import com.ingloriousmind.android.imtimetracking.time.Tracker;
+import com.ingloriousmind.android.imtimetracking.ui.widget.TrackingWidgetProvider;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
 /**
  * tracking module
@@ -20,6 +33,11 @@ import dagger.Provides;
 @Module
 public class TrackingModule {
 
+    /**
+     * reader threads, fewer than the connections android pools in wal mode
+     */
+    private static final int DB_READ_THREADS = 2;
+
     private Context context;
 
     public TrackingModule(Context context) {
@@ -31,21 +49,109 @@ public class TrackingModule {
         return context;
     }
 
+    /**
+     * counters and timings of hot paths, kept in memory for the lifetime of the process
+     */
+    @Provides
+    @Singleton
+    MetricsRegistry provideMetricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    @Provides
+    @Singleton
+    DbHelper provideDbHelper(Context context, MetricsRegistry metrics) {
+        return new DbHelper(context, metrics);
+    }
+
+    /**
+     * single threaded scheduler serializing database writes off the main thread
+     */
     @Provides
     @Singleton
-    DbHelper provideDbHelper(Context context) {
-        return new DbHelper(context);
+    @Named("db")
+    Scheduler provideDbScheduler() {
+        return Schedulers.from(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "db-io");
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        }));
     }
 
+    /**
+     * scheduler of list, search and report reads, running alongside writes on wal reader connections
+     */
+    @Provides
     @Singleton
+    @Named("dbRead")
+    Scheduler provideDbReadScheduler() {
+        return Schedulers.from(Executors.newFixedThreadPool(DB_READ_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "db-read-" + count.incrementAndGet());
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        }));
+    }
+
     @Provides
-    public Tracker provideTracker(DbHelper dbHelper) {
-        return new Tracker(dbHelper);
+    @Singleton
+    TrackingRepository provideTrackingRepository(DbHelper dbHelper, @Named("db") Scheduler scheduler,
+                                                 @Named("dbRead") Scheduler readScheduler) {
+        return new TrackingRepository(dbHelper, scheduler, readScheduler);
+    }
+
+    /**
+     * title autocompletion index, kept current by database writes
+     */
+    @Provides
+    @Singleton
+    TitleIndex provideTitleIndex(DbHelper dbHelper, TrackingRepository repository) {
+        TitleIndex titleIndex = new TitleIndex(repository);
+        dbHelper.setWriteListener(titleIndex);
+        return titleIndex;
+    }
+
+    /**
+     * tracking state snapshot, refreshing the home screen widget on writes
+     */
+    @Provides
+    @Singleton
+    TrackingStateStore provideTrackingStateStore(final Context context) {
+        TrackingStateStore stateStore = new TrackingStateStore(context);
+        stateStore.setWriteListener(new TrackingStateStore.WriteListener() {
+            @Override
+            public void onStateWritten() {
+                TrackingWidgetProvider.requestUpdate(context);
+            }
+        });
+        return stateStore;
+    }
+
+    @Singleton
+    @Provides
+    public Tracker provideTracker(TrackingRepository repository, TrackingStateStore stateStore, MetricsRegistry metrics) {
+        return new Tracker(repository, stateStore, metrics, Schedulers.computation());
+    }
+
+    /**
+     * sparklines survive leaving and reopening reports, bounded to a fraction of the heap
+     */
+    @Provides
+    @Singleton
+    SparklineCache provideSparklineCache() {
+        return new SparklineCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
     }
 
     @Provides
-    public Exporter provideExporter(Context context, Tracker tracker) {
-        return new PdfExporter(context, tracker);
+    public Exporter provideExporter(Context context, Tracker tracker, MetricsRegistry metrics) {
+        return new PdfExporter(context, tracker, metrics);
     }
 
 }
@@ -11,10 +11,12 @@ import android.graphics.pdf.PdfDocument;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
-import android.text.TextUtils;
 
 import com.ingloriousmind.android.imtimetracking.R;
-import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.metrics.Counter;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
 import com.ingloriousmind.android.imtimetracking.time.Tracker;
 import com.ingloriousmind.android.imtimetracking.util.FileUtil;
 import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
@@ -24,7 +26,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 import timber.log.Timber;
@@ -33,28 +34,51 @@ public class PdfExporter implements Exporter {
 
     private Context ctx;
     private Tracker tracker;
+    private final Histogram collectTimer;
+    private final Histogram layoutTimer;
+    private final Histogram writeTimer;
+    private final Counter reused;
 
-    public PdfExporter(Context ctx, Tracker tracker) {
+    public PdfExporter(Context ctx, Tracker tracker, MetricsRegistry metrics) {
         this.ctx = ctx;
         this.tracker = tracker;
+        this.collectTimer = metrics.histogram("export.collect");
+        this.layoutTimer = metrics.histogram("export.layout");
+        this.writeTimer = metrics.histogram("export.write");
+        this.reused = metrics.counter("export.reused");
     }
 
     @Override
     public File export() {
 
-        // get trackings
-        List<Tracking> trackings = tracker.getTrackings();
-        if (trackings == null || trackings.isEmpty())
+        // get history - export runs on a worker thread already
+        long start = System.nanoTime();
+        TrackingHistory history = tracker.getHistory().toBlocking().value();
+        if (history == null || history.size() == 0)
             return null;
-        Timber.d("exporting %d trackings to pdf", trackings.size());
+        Timber.d("exporting %d trackings to pdf", history.size());
 
-        // create file
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        // reuse an archived report of identical content, rendered in the same zone and locale
+        Locale locale = Locale.getDefault();
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", locale);
+        String fingerprint = ReportFingerprint.of(history, sdf.getTimeZone(), locale);
         String todayString = sdf.format(new Date(System.currentTimeMillis()));
-        String pdfFileName = "im-timetracking-" + todayString + ".pdf";
+        String pdfFileName = "im-timetracking-" + todayString + "-" + fingerprint + ".pdf";
         File pdfFile = new File(FileUtil.appDir, pdfFileName);
+        File archived = FileUtil.findArchivedPdfFile(fingerprint);
+        collectTimer.recordSince(start);
+        if (archived != null) {
+            Timber.d("reusing archived pdf file %s", archived.getAbsolutePath());
+            reused.inc();
+            // carry today's date in the name, like a newly created report
+            return archived.equals(pdfFile) || !archived.renameTo(pdfFile) ? archived : pdfFile;
+        }
+
+        // create file
+        File tmpFile = new File(FileUtil.appDir, pdfFileName + ".tmp");
 
         // create pdf
+        start = System.nanoTime();
         TextPaint p = new TextPaint();
         p.setTextSize(10);
         p.setColor(Color.BLACK);
@@ -73,16 +97,9 @@ public class PdfExporter implements Exporter {
         int padding = ctx.getResources().getInteger(R.integer.export_pdf_page_padding);
         String unnamed = ctx.getString(R.string.list_item_tracking_unnamed_title);
         StringBuilder sb = new StringBuilder();
-        long totalDuration = 0;
 
         // prepare entries
-        for (Tracking t : trackings) {
-            sb.append(sdf.format(new Date(t.getCreated()))).append(" ");
-            sb.append(TimeUtil.getTimeString(t.getDuration())).append(" | ");
-            sb.append(TextUtils.isEmpty(t.getTitle()) ? unnamed : t.getTitle());
-            sb.append("\n");
-            totalDuration += t.getDuration();
-        }
+        long totalDuration = ReportLines.append(sb, history, sdf, unnamed);
 
         // write entries - TODO care about pagination at some point
         c.save();
@@ -111,19 +128,33 @@ public class PdfExporter implements Exporter {
         appIcon.recycle();
 
         doc.finishPage(page);
+        layoutTimer.recordSince(start);
 
+        start = System.nanoTime();
+        FileOutputStream out = null;
         try {
-            // write to file
-            if (pdfFile.exists()) {
-                pdfFile.delete();
-            }
+            // write to temp file and move into place, so a failed export never leaves a partial report behind
             Timber.v("writing pdf file %s", pdfFile.getAbsolutePath());
-            doc.writeTo(new FileOutputStream(pdfFile));
+            out = new FileOutputStream(tmpFile);
+            doc.writeTo(out);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(pdfFile)) {
+                throw new IOException("unable to rename " + tmpFile + " to " + pdfFile);
+            }
         } catch (IOException e) {
             Timber.e(e, "failed writing pdf file");
+            tmpFile.delete();
             return null;
         } finally {
+            writeTimer.recordSince(start);
             doc.close();
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignore) {
+                }
+            }
         }
 
         return pdfFile;
@@ -0,0 +1,84 @@
+package com.ingloriousmind.android.imtimetracking.export;
+
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * computes a content fingerprint of the rows going into an exported report
+ *
+ * @author lavong.soysavanh
+ */
+public class ReportFingerprint {
+
+    /**
+     * bump whenever the report layout changes, so previously archived reports are not reused
+     */
+    static final int REPORT_FORMAT_VERSION = 2;
+
+    /**
+     * number of digest bytes used for the fingerprint
+     */
+    private static final int FINGERPRINT_BYTES = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * computes the fingerprint for given report rows, as rendered in given zone and locale
+     *
+     * @param history the rows to export
+     * @param zone    the zone dates are rendered in
+     * @param locale  the locale dates and strings are rendered in
+     * @return lowercase hex fingerprint
+     */
+    public static String of(TrackingHistory history, TimeZone zone, Locale locale) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buf = new byte[8];
+        update(digest, buf, REPORT_FORMAT_VERSION);
+        digest.update(zone.getID().getBytes(UTF8));
+        digest.update((byte) 0);
+        digest.update(locale.toString().getBytes(UTF8));
+        digest.update((byte) 0);
+        if (history != null) {
+            for (int row = 0; row < history.size(); row++) {
+                update(digest, buf, history.getCreated(row));
+                update(digest, buf, history.getDuration(row));
+                String title = history.getTitle(row);
+                if (title != null) {
+                    digest.update(title.getBytes(UTF8));
+                }
+                // row separator, so title boundaries can not shift between rows
+                digest.update((byte) 0);
+            }
+        }
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[FINGERPRINT_BYTES * 2];
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    private static void update(MessageDigest digest, byte[] buf, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buf[i] = (byte) value;
+            value >>>= 8;
+        }
+        digest.update(buf, 0, 8);
+    }
+
+}
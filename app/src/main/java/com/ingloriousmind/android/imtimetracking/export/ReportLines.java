@@ -0,0 +1,42 @@
+package com.ingloriousmind.android.imtimetracking.export;
+
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * text lines of an exported report, one per tracking: creation date, duration and title. the most recently created
+ * tracking comes first.
+ *
+ * @author lavong.soysavanh
+ */
+public class ReportLines {
+
+    private ReportLines() {
+    }
+
+    /**
+     * appends a line per tracking of given history
+     *
+     * @param sb      the builder to append to
+     * @param history the trackings
+     * @param dates   format of creation dates
+     * @param unnamed title of trackings without title
+     * @return sum of all durations
+     */
+    public static long append(StringBuilder sb, TrackingHistory history, DateFormat dates, String unnamed) {
+        Date date = new Date();
+        for (int row = history.size() - 1; row >= 0; row--) {
+            String title = history.getTitle(row);
+            date.setTime(history.getCreated(row));
+            sb.append(dates.format(date)).append(" ");
+            sb.append(TimeUtil.getTimeString(history.getDuration(row))).append(" | ");
+            sb.append(title == null || title.isEmpty() ? unnamed : title);
+            sb.append("\n");
+        }
+        return history.sumDurations(0, history.size());
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.ingloriousmind.android.imtimetracking.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * monotonic counter, safe to increment from any thread without locking
+ *
+ * @author lavong.soysavanh
+ */
+public class Counter {
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void inc() {
+        count.incrementAndGet();
+    }
+
+    /**
+     * @param n amount to add
+     */
+    public void add(long n) {
+        count.addAndGet(n);
+    }
+
+    /**
+     * @return current count
+     */
+    public long get() {
+        return count.get();
+    }
+
+}
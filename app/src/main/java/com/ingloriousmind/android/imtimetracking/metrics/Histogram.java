@@ -0,0 +1,101 @@
+package com.ingloriousmind.android.imtimetracking.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * latency histogram in microseconds, safe to record into from any thread without locking.
+ * <p>
+ * values go into power of two buckets: bucket 0 holds 0, bucket i values from 2^(i-1) up to 2^i - 1. recording is a
+ * few atomic increments, regardless of the range of values. percentiles are thus approximate, reported as the upper
+ * bound of the bucket they fall into, capped at the max recorded.
+ *
+ * @author lavong.soysavanh
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+    }
+
+    /**
+     * @param micros the value to record. negative values count as 0.
+     */
+    public void record(long micros) {
+        long v = Math.max(0, micros);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // lost a race against another max, retry
+        }
+    }
+
+    /**
+     * records the time passed since given start
+     *
+     * @param startNanos start as of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return sum of all values recorded, in microseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return max value recorded, in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean value, in microseconds. 0, if nothing was recorded.
+     */
+    public long getMean() {
+        long n = count.get();
+        return n > 0 ? sum.get() / n : 0;
+    }
+
+    /**
+     * @param quantile the quantile, from 0 to 1
+     * @return upper bound of the value at given quantile, in microseconds. 0, if nothing was recorded.
+     */
+    public long getPercentile(double quantile) {
+        long n = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : Math.min(max.get(), (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+
+}
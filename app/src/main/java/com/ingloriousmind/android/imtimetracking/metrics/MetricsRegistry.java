@@ -0,0 +1,120 @@
+package com.ingloriousmind.android.imtimetracking.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * named counters and latency histograms of hot paths, e.g. database queries, list binding and pdf export.
+ * <p>
+ * metrics are created on first lookup and live as long as the registry. lookups are lock-free, recording is too;
+ * callers on hot paths still keep the metrics they record into in fields, sparing the map lookup.
+ *
+ * @author lavong.soysavanh
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param name the counter's name
+     * @return the counter of given name, created if there is none
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param name the histogram's name
+     * @return the histogram of given name, created if there is none
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return all counters, by name
+     */
+    public SortedMap<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     * @return all histograms, by name
+     */
+    public SortedMap<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * writes all metrics as json, durations in microseconds
+     *
+     * @param w the writer
+     * @throws IOException if writing failed
+     */
+    public void writeJson(Writer w) throws IOException {
+        w.write("{\"time\":" + System.currentTimeMillis() + ",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Counter> e : getCounters().entrySet()) {
+            w.write((first ? "\"" : ",\"") + e.getKey() + "\":" + e.getValue().get());
+            first = false;
+        }
+        w.write("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> e : getHistograms().entrySet()) {
+            Histogram h = e.getValue();
+            w.write((first ? "\"" : ",\"") + e.getKey() + "\":{\"count\":" + h.getCount() + ",\"mean\":" + h.getMean()
+                    + ",\"p50\":" + h.getPercentile(0.5) + ",\"p90\":" + h.getPercentile(0.9) + ",\"p99\":" + h.getPercentile(0.99)
+                    + ",\"max\":" + h.getMax() + "}");
+            first = false;
+        }
+        w.write("}}");
+    }
+
+    /**
+     * writes all metrics to a new json file
+     *
+     * @param dir the directory to write to
+     * @return the file written
+     * @throws IOException if writing failed
+     */
+    public File dump(File dir) throws IOException {
+        String now = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        File file = new File(dir, "im-timetracking-metrics-" + now + ".json");
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writeJson(w);
+        } finally {
+            w.close();
+        }
+        return file;
+    }
+
+}
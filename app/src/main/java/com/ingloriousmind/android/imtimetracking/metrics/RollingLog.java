@@ -0,0 +1,59 @@
+package com.ingloriousmind.android.imtimetracking.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * line log file of bounded size. once a line would exceed the size, the file is rolled over to a single backup
+ * named like the file plus ".1", replacing the previous backup.
+ *
+ * @author lavong.soysavanh
+ */
+public class RollingLog {
+
+    private final File file;
+    private final File backup;
+    private final long maxBytes;
+
+    /**
+     * ctor
+     *
+     * @param file     the log file
+     * @param maxBytes max size of the log file
+     */
+    public RollingLog(File file, long maxBytes) {
+        this.file = file;
+        this.backup = new File(file.getPath() + ".1");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * appends a line, rolling the file over first if necessary. not to be called on the main thread.
+     *
+     * @param line the line, without line break
+     * @throws IOException if writing failed
+     */
+    public synchronized void append(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes("UTF-8");
+        if (file.length() > 0 && file.length() + bytes.length > maxBytes) {
+            if (backup.exists() && !backup.delete()) {
+                throw new IOException("failed deleting " + backup);
+            }
+            if (!file.renameTo(backup)) {
+                throw new IOException("failed rolling over " + file);
+            }
+        }
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+}
@@ -0,0 +1,380 @@
+package com.ingloriousmind.android.imtimetracking.metrics;
+
+import android.os.Trace;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * records the phases of a launch, from application creation until the tracking list shows content.
+ * <p>
+ * synchronous phases are wrapped in system trace sections as well, so they show up in systrace. phases spanning
+ * threads, like loading the list, are only recorded here. a launch completes once both the first frame was drawn and
+ * content was shown; the listener then receives it, to be logged. the first launch of a process is cold, measured from
+ * creating the application. later launches are warm, measured from creating the home activity. a process started
+ * for a job, a broadcast or the tracking service has no launch to measure: unless the home activity is created within
+ * {@link #COLD_LAUNCH_TIMEOUT_MS} of creating the application, the cold launch is discarded and the next one is warm.
+ * only the first occurrence of a phase per launch is recorded, e.g. the first resume.
+ *
+ * @author lavong.soysavanh
+ */
+public class StartupTimeline {
+
+    public static final String APP_CREATE = "app.onCreate";
+    public static final String APP_COMPONENT = "app.component";
+    public static final String APP_DIR = "app.appDir";
+    public static final String HOME_CREATE = "home.onCreate";
+    public static final String HOME_RESUME = "home.onResume";
+    public static final String TRACKER_RESUME = "tracker.resume";
+    public static final String LIST_LOAD = "list.load";
+
+    /**
+     * max time from creating the application until the home activity is created, for the launch to count as cold
+     */
+    static final long COLD_LAUNCH_TIMEOUT_MS = 5000;
+
+    /**
+     * tells the time
+     */
+    public interface Clock {
+
+        /**
+         * @return monotonic nanoseconds, to measure with
+         */
+        long nanoTime();
+
+        /**
+         * @return epoch millis, to log with
+         */
+        long currentTimeMillis();
+    }
+
+    /**
+     * the system's clock
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * trace sections, nesting on the calling thread
+     */
+    public interface Sections {
+
+        void begin(String name);
+
+        void end();
+    }
+
+    /**
+     * sections of the system trace
+     */
+    public static final Sections SYSTEM_TRACE = new Sections() {
+        @Override
+        public void begin(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void end() {
+            Trace.endSection();
+        }
+    };
+
+    /**
+     * receives completed launches
+     */
+    public interface Listener {
+
+        /**
+         * @param launch the completed launch
+         */
+        void onLaunchCompleted(Launch launch);
+    }
+
+    /**
+     * a phase of a launch, in nanoseconds since the launch started
+     */
+    public static class Phase {
+
+        private final String name;
+        private final long start;
+        private long end = -1;
+
+        Phase(String name, long start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getDuration() {
+            return end - start;
+        }
+    }
+
+    /**
+     * a completed launch
+     */
+    public static class Launch {
+
+        private final boolean cold;
+        private final long time;
+        private final long firstFrame;
+        private final long content;
+        private final List<Phase> phases;
+
+        Launch(boolean cold, long time, long firstFrame, long content, List<Phase> phases) {
+            this.cold = cold;
+            this.time = time;
+            this.firstFrame = firstFrame;
+            this.content = content;
+            this.phases = phases;
+        }
+
+        public boolean isCold() {
+            return cold;
+        }
+
+        /**
+         * @return nanoseconds from start until the first frame was drawn
+         */
+        public long getFirstFrame() {
+            return firstFrame;
+        }
+
+        /**
+         * @return nanoseconds from start until content was shown
+         */
+        public long getContent() {
+            return content;
+        }
+
+        /**
+         * @return phases completed, in order of start
+         */
+        public List<Phase> getPhases() {
+            return phases;
+        }
+
+        /**
+         * records this launch's timings into histograms named startup.*
+         *
+         * @param metrics the registry to record into
+         */
+        public void record(MetricsRegistry metrics) {
+            String prefix = cold ? "startup.cold." : "startup.warm.";
+            metrics.histogram(prefix + "first_frame").record(firstFrame / 1000);
+            metrics.histogram(prefix + "content").record(content / 1000);
+            for (Phase p : phases) {
+                metrics.histogram(prefix + p.name).record(p.getDuration() / 1000);
+            }
+        }
+
+        /**
+         * @return a single log line: time, kind, milestones and every phase as start+duration, in milliseconds
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT).format(new Date(time)))
+                    .append(cold ? " cold" : " warm")
+                    .append(" first_frame=").append(millis(firstFrame))
+                    .append(" content=").append(millis(content));
+            for (Phase p : phases) {
+                sb.append(' ').append(p.name).append('=').append(millis(p.start)).append('+').append(millis(p.getDuration()));
+            }
+            return sb.toString();
+        }
+
+        private static long millis(long nanos) {
+            return nanos / 1000000;
+        }
+    }
+
+    private final Sections sections;
+    private final Clock clock;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private Listener listener;
+    private boolean cold = true;
+    private boolean open = true;
+    private long origin;
+    private long time;
+    private long firstFrame = -1;
+    private long content = -1;
+
+    /**
+     * starts recording the cold launch
+     *
+     * @param sections trace sections to wrap synchronous phases in
+     */
+    public StartupTimeline(Sections sections) {
+        this(sections, SYSTEM_CLOCK);
+    }
+
+    /**
+     * starts recording the cold launch
+     *
+     * @param sections trace sections to wrap synchronous phases in
+     * @param clock    the clock to measure with
+     */
+    public StartupTimeline(Sections sections, Clock clock) {
+        this.sections = sections;
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+        this.time = clock.currentTimeMillis();
+    }
+
+    /**
+     * @param listener receives completed launches, on the thread completing them
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * starts recording a warm launch, unless a launch is being recorded already. a cold launch still open past
+     * {@link #COLD_LAUNCH_TIMEOUT_MS} is discarded, as the process was started for something else.
+     */
+    public synchronized void launch() {
+        long now = clock.nanoTime();
+        if (open && cold && now - origin > TimeUnit.MILLISECONDS.toNanos(COLD_LAUNCH_TIMEOUT_MS)) {
+            open = false;
+        }
+        if (!open) {
+            open = true;
+            cold = false;
+            origin = now;
+            time = clock.currentTimeMillis();
+            firstFrame = -1;
+            content = -1;
+            phases.clear();
+        }
+    }
+
+    /**
+     * begins a synchronous phase, along with a trace section. to be ended on the same thread.
+     *
+     * @param phase the phase
+     */
+    public void begin(String phase) {
+        sections.begin(phase);
+        beginAsync(phase);
+    }
+
+    /**
+     * ends a synchronous phase, along with its trace section
+     *
+     * @param phase the phase
+     */
+    public void end(String phase) {
+        endAsync(phase);
+        sections.end();
+    }
+
+    /**
+     * begins a phase that may end on another thread
+     *
+     * @param phase the phase
+     */
+    public synchronized void beginAsync(String phase) {
+        if (open && !phases.containsKey(phase)) {
+            phases.put(phase, new Phase(phase, clock.nanoTime() - origin));
+        }
+    }
+
+    /**
+     * ends a phase begun by {@link #beginAsync(String)}
+     *
+     * @param phase the phase
+     */
+    public synchronized void endAsync(String phase) {
+        Phase p = phases.get(phase);
+        if (open && p != null && p.end < 0) {
+            p.end = clock.nanoTime() - origin;
+        }
+    }
+
+    /**
+     * marks the first frame drawn
+     */
+    public void firstFrameDrawn() {
+        Launch launch;
+        synchronized (this) {
+            if (open && firstFrame < 0) {
+                firstFrame = clock.nanoTime() - origin;
+            }
+            launch = completeIfDone();
+        }
+        publish(launch);
+    }
+
+    /**
+     * marks content shown
+     */
+    public void contentShown() {
+        Launch launch;
+        synchronized (this) {
+            if (open && content < 0) {
+                content = clock.nanoTime() - origin;
+            }
+            launch = completeIfDone();
+        }
+        publish(launch);
+    }
+
+    /**
+     * @return the launch completed, if both milestones are reached. null, otherwise.
+     */
+    private Launch completeIfDone() {
+        if (!open || firstFrame < 0 || content < 0) {
+            return null;
+        }
+        open = false;
+        List<Phase> completed = new ArrayList<>(phases.size());
+        for (Phase p : phases.values()) {
+            if (p.end >= 0) {
+                completed.add(p);
+            }
+        }
+        Collections.sort(completed, new Comparator<Phase>() {
+            @Override
+            public int compare(Phase a, Phase b) {
+                return a.start < b.start ? -1 : (a.start == b.start ? 0 : 1);
+            }
+        });
+        return new Launch(cold, time, firstFrame, content, Collections.unmodifiableList(completed));
+    }
+
+    private void publish(Launch launch) {
+        Listener l;
+        synchronized (this) {
+            l = listener;
+        }
+        if (launch != null && l != null) {
+            l.onLaunchCompleted(launch);
+        }
+    }
+
+}
@@ -24,11 +24,22 @@ public class Tracking implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * title
+     * surrogate key, aliasing the rowid. 0, until inserted.
+     */
+    @DatabaseField(generatedId = true)
+    private long id;
+
+    /**
+     * title, resolved from {@link #projectId} on load. instances are shared between trackings of the same project.
      */
-    @DatabaseField(index = true)
     private String title = "unnamed";
 
+    /**
+     * project, i.e. the id of the title in the project table
+     */
+    @DatabaseField(columnName = "project_id")
+    private long projectId;
+
     /**
      * description
      */
@@ -38,13 +49,13 @@ public class Tracking implements Serializable {
     /**
      * created
      */
-    @DatabaseField(id = true)
+    @DatabaseField(index = true)
     private long created;
 
     /**
-     * last started
+     * last started. indexed along with other columns, see {@link com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes}.
      */
-    @DatabaseField(index = true)
+    @DatabaseField
     private long lastTrackingStarted;
 
     /**
@@ -59,6 +70,13 @@ public class Tracking implements Serializable {
     @DatabaseField
     private boolean tracking;
 
+    /**
+     * deletion time. 0, unless deleted. deleted trackings are kept until purged, see
+     * {@link com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository#purgeDeletedTrackings(long)}.
+     */
+    @DatabaseField(canBeNull = false, defaultValue = "0")
+    private long deleted;
+
     /**
      * temp string buffer
      */
@@ -71,6 +89,23 @@ public class Tracking implements Serializable {
         this.created = System.currentTimeMillis();
     }
 
+    /**
+     * copy ctor
+     *
+     * @param other the tracking to copy
+     */
+    public Tracking(Tracking other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.projectId = other.projectId;
+        this.description = other.description;
+        this.created = other.created;
+        this.lastTrackingStarted = other.lastTrackingStarted;
+        this.duration = other.duration;
+        this.tracking = other.tracking;
+        this.deleted = other.deleted;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -78,15 +113,25 @@ public class Tracking implements Serializable {
     public String toString() {
         sb.setLength(0);
         sb.append(TAG);
+        sb.append(" | id=").append(id);
         sb.append(" | title=").append(title);
         sb.append(" | created=").append(created);
         sb.append(" | lastTrackingStarted=").append(lastTrackingStarted);
         sb.append(" | tracking=").append(tracking);
         sb.append(" | duration=").append(duration);
         sb.append(" | desc=").append(description);
+        sb.append(" | deleted=").append(deleted);
         return sb.toString();
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -95,6 +140,14 @@ public class Tracking implements Serializable {
         this.title = title;
     }
 
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(long projectId) {
+        this.projectId = projectId;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -138,4 +191,12 @@ public class Tracking implements Serializable {
     public void setTracking(boolean tracking) {
         this.tracking = tracking;
     }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(long deleted) {
+        this.deleted = deleted;
+    }
 }
@@ -0,0 +1,91 @@
+package com.ingloriousmind.android.imtimetracking.model;
+
+import java.util.List;
+
+/**
+ * immutable list row of a {@link Tracking}, holding only what the tracking list displays. rows are equal if they
+ * refer to the same tracking id.
+ *
+ * @author lavong.soysavanh
+ */
+public final class TrackingRow {
+
+    private final long id;
+    private final String title;
+    private final long duration;
+    private final boolean tracking;
+    private final long lastTrackingStarted;
+
+    public TrackingRow(long id, String title, long duration, boolean tracking, long lastTrackingStarted) {
+        this.id = id;
+        this.title = title;
+        this.duration = duration;
+        this.tracking = tracking;
+        this.lastTrackingStarted = lastTrackingStarted;
+    }
+
+    /**
+     * @param tracking the tracking
+     * @return row of given tracking
+     */
+    public static TrackingRow of(Tracking tracking) {
+        return new TrackingRow(tracking.getId(), tracking.getTitle(), tracking.getDuration(), tracking.isTracking(),
+                tracking.getLastTrackingStarted());
+    }
+
+    /**
+     * @param rows the rows
+     * @return sum of all rows' durations
+     */
+    public static long sumDurations(List<TrackingRow> rows) {
+        long total = 0;
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            total += rows.get(i).duration;
+        }
+        return total;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    public long getLastTrackingStarted() {
+        return lastTrackingStarted;
+    }
+
+    /**
+     * @param now current time in epoch millis
+     * @return the stored duration, plus the time passed since the last start if tracking
+     */
+    public long getElapsed(long now) {
+        return tracking ? duration + Math.max(0, now - lastTrackingStarted) : duration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TrackingRow && ((TrackingRow) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingRow{id=" + id + ", title=" + title + ", duration=" + duration + ", tracking=" + tracking + '}';
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.ingloriousmind.android.imtimetracking.model;
+
+/**
+ * immutable point in time view of a {@link Tracking}
+ *
+ * @author lavong.soysavanh
+ */
+public final class TrackingSnapshot {
+
+    /**
+     * snapshot representing the absence of a tracking
+     */
+    public static final TrackingSnapshot NONE = new TrackingSnapshot(0, null, 0, 0, false, 0);
+
+    private final long created;
+    private final String title;
+    private final long duration;
+    private final long lastTrackingStarted;
+    private final boolean running;
+    private final long elapsed;
+
+    private TrackingSnapshot(long created, String title, long duration, long lastTrackingStarted, boolean running, long elapsed) {
+        this.created = created;
+        this.title = title;
+        this.duration = duration;
+        this.lastTrackingStarted = lastTrackingStarted;
+        this.running = running;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * takes a snapshot of given tracking
+     *
+     * @param tracking the tracking
+     * @param running  true, if the tracking's clock is currently running
+     * @param now      snapshot time in epoch millis
+     * @return the snapshot
+     */
+    public static TrackingSnapshot of(Tracking tracking, boolean running, long now) {
+        if (tracking == null) {
+            return NONE;
+        }
+        long duration = tracking.getDuration();
+        long lastTrackingStarted = tracking.getLastTrackingStarted();
+        return new TrackingSnapshot(tracking.getCreated(), tracking.getTitle(), duration, lastTrackingStarted, running,
+                elapsed(duration, lastTrackingStarted, running, now));
+    }
+
+    /**
+     * @param now snapshot time in epoch millis
+     * @return a snapshot of the same tracking state at given time
+     */
+    public TrackingSnapshot at(long now) {
+        if (!running) {
+            return this;
+        }
+        return new TrackingSnapshot(created, title, duration, lastTrackingStarted, true,
+                elapsed(duration, lastTrackingStarted, true, now));
+    }
+
+    private static long elapsed(long duration, long lastTrackingStarted, boolean running, long now) {
+        return running ? duration + Math.max(0, now - lastTrackingStarted) : duration;
+    }
+
+    /**
+     * @param other     snapshot to compare with
+     * @param unitMillis display unit in millis
+     * @return true, if both snapshots render identically when elapsed time is displayed in given unit
+     */
+    public boolean displaysSameAs(TrackingSnapshot other, long unitMillis) {
+        return other != null
+                && created == other.created
+                && running == other.running
+                && elapsed / unitMillis == other.elapsed / unitMillis
+                && (title == null ? other.title == null : title.equals(other.title));
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return tracked time in millis as of snapshot time
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return epoch millis the clock was (re)started at, or stopped at for stopped trackings
+     */
+    public long getLastTrackingStarted() {
+        return lastTrackingStarted;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingSnapshot | title=" + title + " | created=" + created + " | running=" + running + " | elapsed=" + elapsed;
+    }
+}
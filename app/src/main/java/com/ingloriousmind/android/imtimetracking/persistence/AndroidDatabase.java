@@ -0,0 +1,137 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * {@link Database} on top of an android sqlite database
+ *
+ * @author lavong.soysavanh
+ */
+public class AndroidDatabase implements Database {
+
+    private final SQLiteDatabase db;
+
+    /**
+     * ctor
+     *
+     * @param db the database to delegate to
+     */
+    public AndroidDatabase(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        db.execSQL(sql);
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] args) {
+        db.execSQL(sql, args);
+    }
+
+    @Override
+    public Rows rawQuery(String sql, String[] args) {
+        final Cursor c = db.rawQuery(sql, args);
+        return new Rows() {
+            @Override
+            public boolean moveToFirst() {
+                return c.moveToFirst();
+            }
+
+            @Override
+            public boolean moveToNext() {
+                return c.moveToNext();
+            }
+
+            @Override
+            public long getLong(int column) {
+                return c.getLong(column);
+            }
+
+            @Override
+            public int getInt(int column) {
+                return c.getInt(column);
+            }
+
+            @Override
+            public String getString(int column) {
+                return c.getString(column);
+            }
+
+            @Override
+            public boolean isNull(int column) {
+                return c.isNull(column);
+            }
+
+            @Override
+            public void close() {
+                c.close();
+            }
+        };
+    }
+
+    @Override
+    public Statement compileStatement(String sql) {
+        final SQLiteStatement stmt = db.compileStatement(sql);
+        return new Statement() {
+            @Override
+            public void bindLong(int index, long value) {
+                stmt.bindLong(index, value);
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+                stmt.bindString(index, value);
+            }
+
+            @Override
+            public void bindNull(int index) {
+                stmt.bindNull(index);
+            }
+
+            @Override
+            public void clearBindings() {
+                stmt.clearBindings();
+            }
+
+            @Override
+            public long executeInsert() {
+                return stmt.executeInsert();
+            }
+
+            @Override
+            public int executeUpdateDelete() {
+                return stmt.executeUpdateDelete();
+            }
+
+            @Override
+            public long simpleQueryForLong() {
+                return stmt.simpleQueryForLong();
+            }
+
+            @Override
+            public void close() {
+                stmt.close();
+            }
+        };
+    }
+
+    @Override
+    public void beginTransaction() {
+        db.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        db.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        db.endTransaction();
+    }
+
+}
@@ -0,0 +1,355 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import timber.log.Timber;
+
+/**
+ * streaming backup and restore of projects, trackings not deleted and their sessions, to and from a single gzip
+ * compressed file.
+ * <p>
+ * tables are read by key in chunks of {@link #CHUNK_ROWS} rows. every chunk is encoded with kryo's variable length
+ * encoding, long columns as deltas to the previous row, and written along with its length and crc32. memory use is
+ * bounded by a single chunk, regardless of the number of rows.
+ * <p>
+ * restore checks chunk by chunk and fills staging tables, one transaction per chunk. only once the whole file was
+ * read, a final transaction replaces all trackings by the staged ones and rebuilds derived tables. a corrupt or
+ * incompatible file therefore leaves the database as is.
+ *
+ * @author lavong.soysavanh
+ */
+public class Backup {
+
+    /**
+     * file name extension of backups
+     */
+    public static final String FILE_EXTENSION = ".backup";
+
+    /**
+     * max number of rows per chunk
+     */
+    static final int CHUNK_ROWS = 2000;
+
+    static final int MAGIC = 0x494d5442;
+    static final int FORMAT_VERSION = 1;
+
+    private static final int LONG = 0;
+    private static final int STRING = 1;
+    private static final int MAX_CHUNK_BYTES = 16 * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String STAGING_PREFIX = "restore_";
+
+    /**
+     * a table backed up, keyed by its first column
+     */
+    private static class Table {
+
+        final String name;
+        final String[] columns;
+        final int[] types;
+        final String where;
+        final int since;
+
+        /**
+         * @param since first database version backing up the table. older backups lack it.
+         */
+        Table(String name, String[] columns, int[] types, String where, int since) {
+            this.name = name;
+            this.columns = columns;
+            this.types = types;
+            this.where = where;
+            this.since = since;
+        }
+
+        String columnList() {
+            StringBuilder sb = new StringBuilder();
+            for (String column : columns) {
+                sb.append(sb.length() > 0 ? ", " : "").append(column);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final Table[] TABLES = {
+            new Table(Projects.TABLE, new String[]{"id", "title"}, new int[]{LONG, STRING}, null, 0),
+            new Table("timetracking",
+                    new String[]{"id", "project_id", "description", "created", "lastTrackingStarted", "duration", "tracking"},
+                    new int[]{LONG, LONG, STRING, LONG, LONG, LONG, LONG}, TrackingIndexes.NOT_DELETED, 0),
+            new Table(Sessions.TABLE, new String[]{"id", "tracking_id", "started", "duration"},
+                    new int[]{LONG, LONG, LONG, LONG}, "EXISTS (SELECT 1 FROM timetracking WHERE id = " + Sessions.TABLE
+                    + ".tracking_id AND " + TrackingIndexes.NOT_DELETED + ")", 9)
+    };
+
+    private Backup() {
+    }
+
+    /**
+     * writes a backup to a temporary file first, renamed to given file once complete
+     *
+     * @param db            the database
+     * @param schemaVersion the database version
+     * @param file          the file to write
+     * @return number of rows written
+     * @throws IOException if writing failed
+     */
+    public static long write(Database db, int schemaVersion, File file) throws IOException {
+        long start = System.currentTimeMillis();
+        File tmpFile = new File(file.getPath() + ".tmp");
+        long rows = 0;
+        Output out = new Output(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), STREAM_BUFFER_SIZE),
+                STREAM_BUFFER_SIZE);
+        try {
+            out.writeInt(MAGIC);
+            out.writeVarInt(FORMAT_VERSION, true);
+            out.writeVarInt(schemaVersion, true);
+            out.writeLong(System.currentTimeMillis());
+            Output chunk = new Output(STREAM_BUFFER_SIZE, -1);
+            CRC32 crc = new CRC32();
+            for (Table table : TABLES) {
+                out.writeBoolean(true);
+                out.writeString(table.name);
+                out.writeVarInt(table.columns.length, true);
+                for (int i = 0; i < table.columns.length; i++) {
+                    out.writeString(table.columns[i]);
+                    out.writeByte(table.types[i]);
+                }
+                rows += writeTable(db, table, out, chunk, crc);
+                out.writeVarInt(0, true);
+            }
+            out.writeBoolean(false);
+            out.close();
+        } catch (KryoException | android.database.SQLException e) {
+            try {
+                out.close();
+            } catch (KryoException ignored) {
+                // failed already
+            }
+            tmpFile.delete();
+            throw new IOException("failed writing backup", e);
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("failed renaming " + tmpFile);
+        }
+        Timber.i("backed up %d rows to %s (%d bytes) within %d ms", rows, file, file.length(), System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private static long writeTable(Database db, Table table, Output out, Output chunk, CRC32 crc) {
+        String sql = "SELECT " + table.columnList() + " FROM " + table.name + " WHERE "
+                + (table.where != null ? table.where + " AND " : "") + table.columns[0] + " > ? ORDER BY "
+                + table.columns[0] + " LIMIT " + CHUNK_ROWS;
+        long[] previous = new long[table.columns.length];
+        long lastKey = Long.MIN_VALUE;
+        long total = 0;
+        int rows;
+        do {
+            chunk.clear();
+            Arrays.fill(previous, 0);
+            rows = 0;
+            Database.Rows c = db.rawQuery(sql, new String[]{String.valueOf(lastKey)});
+            try {
+                while (c.moveToNext()) {
+                    for (int i = 0; i < table.types.length; i++) {
+                        if (table.types[i] == LONG) {
+                            long value = c.getLong(i);
+                            chunk.writeVarLong(value - previous[i], false);
+                            previous[i] = value;
+                        } else {
+                            chunk.writeString(c.isNull(i) ? null : c.getString(i));
+                        }
+                    }
+                    lastKey = previous[0];
+                    rows++;
+                }
+            } finally {
+                c.close();
+            }
+            if (rows > 0) {
+                crc.reset();
+                crc.update(chunk.getBuffer(), 0, chunk.position());
+                out.writeVarInt(rows, true);
+                out.writeVarInt(chunk.position(), true);
+                out.writeBytes(chunk.getBuffer(), 0, chunk.position());
+                out.writeInt((int) crc.getValue());
+                total += rows;
+            }
+        } while (rows == CHUNK_ROWS);
+        return total;
+    }
+
+    /**
+     * replaces all projects and trackings by the ones of given backup, rebuilding rollups and the full text index.
+     * trackings deleted but not purged yet are dropped. trackings of backups lacking sessions get guessed ones.
+     *
+     * @param db            the database
+     * @param schemaVersion the database version
+     * @param file          the backup file
+     * @param zone          the zone to compute rollups with
+     * @return number of rows restored
+     * @throws IOException if the file is corrupt, or not compatible with given database version
+     */
+    public static long restore(Database db, int schemaVersion, File file, TimeZone zone) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        dropStagingTables(db);
+        InputStream stream = new FileInputStream(file);
+        Input in;
+        try {
+            in = new Input(new GZIPInputStream(new BufferedInputStream(stream), STREAM_BUFFER_SIZE), STREAM_BUFFER_SIZE);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a backup: " + file);
+            }
+            int formatVersion = in.readVarInt(true);
+            int backupSchemaVersion = in.readVarInt(true);
+            in.readLong();
+            if (formatVersion != FORMAT_VERSION || backupSchemaVersion > schemaVersion) {
+                throw new IOException("unsupported backup format " + formatVersion + " of version " + backupSchemaVersion);
+            }
+            Input chunk = new Input();
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            CRC32 crc = new CRC32();
+            boolean more = in.readBoolean();
+            for (Table table : TABLES) {
+                db.execSQL("CREATE TABLE " + STAGING_PREFIX + table.name + " AS SELECT " + table.columnList()
+                        + " FROM " + table.name + " WHERE 0");
+                if (!more && backupSchemaVersion < table.since) {
+                    continue;
+                }
+                if (!more || !table.name.equals(in.readString()) || in.readVarInt(true) != table.columns.length) {
+                    throw new IOException("unexpected table in backup");
+                }
+                for (int i = 0; i < table.columns.length; i++) {
+                    if (!table.columns[i].equals(in.readString()) || in.readByte() != table.types[i]) {
+                        throw new IOException("unexpected column in backup table " + table.name);
+                    }
+                }
+                Database.Statement insert = db.compileStatement("INSERT INTO " + STAGING_PREFIX + table.name
+                        + " (" + table.columnList() + ") VALUES (" + placeholders(table.columns.length) + ")");
+                try {
+                    int count;
+                    while ((count = in.readVarInt(true)) > 0) {
+                        int length = in.readVarInt(true);
+                        if (length < 0 || length > MAX_CHUNK_BYTES) {
+                            throw new IOException("corrupt chunk length " + length);
+                        }
+                        if (buffer.length < length) {
+                            buffer = new byte[Math.max(length, buffer.length * 2)];
+                        }
+                        in.readBytes(buffer, 0, length);
+                        crc.reset();
+                        crc.update(buffer, 0, length);
+                        if (in.readInt() != (int) crc.getValue()) {
+                            throw new IOException("checksum mismatch in backup table " + table.name);
+                        }
+                        chunk.setBuffer(buffer, 0, length);
+                        insertChunk(db, table, chunk, count, insert);
+                        rows += count;
+                    }
+                } finally {
+                    insert.close();
+                }
+                more = in.readBoolean();
+            }
+            if (more) {
+                throw new IOException("unexpected table in backup");
+            }
+        } catch (KryoException e) {
+            dropStagingTables(db);
+            throw new IOException("corrupt backup: " + file, e);
+        } catch (IOException | RuntimeException e) {
+            dropStagingTables(db);
+            throw e;
+        } finally {
+            in.close();
+        }
+        replaceByStaged(db, zone);
+        Timber.i("restored %d rows from %s within %d ms", rows, file, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private static void insertChunk(Database db, Table table, Input chunk, int count, Database.Statement insert) {
+        long[] previous = new long[table.columns.length];
+        db.beginTransaction();
+        try {
+            for (int row = 0; row < count; row++) {
+                insert.clearBindings();
+                for (int i = 0; i < table.types.length; i++) {
+                    if (table.types[i] == LONG) {
+                        previous[i] += chunk.readVarLong(false);
+                        insert.bindLong(i + 1, previous[i]);
+                    } else {
+                        String value = chunk.readString();
+                        if (value != null) {
+                            insert.bindString(i + 1, value);
+                        } else {
+                            insert.bindNull(i + 1);
+                        }
+                    }
+                }
+                insert.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void replaceByStaged(Database db, TimeZone zone) {
+        db.beginTransaction();
+        try {
+            // fts triggers would index row by row, rebuilding at once is faster
+            FullTextIndex.dropTables(db);
+            for (int i = TABLES.length - 1; i >= 0; i--) {
+                db.execSQL("DELETE FROM " + TABLES[i].name);
+            }
+            for (Table table : TABLES) {
+                db.execSQL("INSERT INTO " + table.name + " (" + table.columnList() + ") SELECT " + table.columnList()
+                        + " FROM " + STAGING_PREFIX + table.name);
+            }
+            dropStagingTables(db);
+            FullTextIndex.createTables(db);
+            FullTextIndex.rebuild(db);
+            Sessions.fillMissing(db);
+            Rollups.rebuild(db, zone);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void dropStagingTables(Database db) {
+        for (Table table : TABLES) {
+            db.execSQL("DROP TABLE IF EXISTS " + STAGING_PREFIX + table.name);
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder("?");
+        for (int i = 1; i < count; i++) {
+            sb.append(", ?");
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import timber.log.Timber;
+
+/**
+ * edits of many trackings at once, as selected in the list: delete, retitle and merge.
+ * <p>
+ * every edit runs in a single transaction. the selected ids are put into a temporary table once, all further
+ * statements join against it, so thousands of trackings take a handful of statements rather than one per tracking.
+ * rollups are adjusted by a {@link Rollups.Delta} within the same transaction. trackings currently running are left
+ * out of every edit, as the tracker owns them until stopped.
+ *
+ * @author lavong.soysavanh
+ */
+public class BulkEdit {
+
+    /**
+     * temporary table of the selected ids, private to the connection
+     */
+    static final String SELECTION = "bulk_selection";
+
+    private static final String SELECTED = "id IN (SELECT id FROM temp." + SELECTION + ") AND " + TrackingIndexes.NOT_DELETED;
+
+    private static final String EDITABLE = SELECTED + " AND tracking = 0";
+
+    private BulkEdit() {
+    }
+
+    /**
+     * marks the selected trackings deleted, except running ones
+     *
+     * @param db      the database
+     * @param zone    the zone rollups are computed with
+     * @param ids     the selected trackings
+     * @param deleted deletion time to mark them with, to restore them by
+     * @return number of trackings marked deleted
+     */
+    public static int delete(Database db, TimeZone zone, long[] ids, long deleted) {
+        long start = System.currentTimeMillis();
+        int removed;
+        db.beginTransaction();
+        try {
+            select(db, ids);
+            Rollups.Delta delta = new Rollups.Delta(zone);
+            delta.add(db, EDITABLE, -1);
+            removed = update(db, "UPDATE timetracking SET deleted = ? WHERE " + EDITABLE, deleted);
+            delta.apply(db);
+            unselect(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Timber.i("marked %d of %d selected trackings deleted within %d ms", removed, ids.length, System.currentTimeMillis() - start);
+        return removed;
+    }
+
+    /**
+     * moves the selected trackings to the project of given title, creating it if there is none
+     *
+     * @param db       the database
+     * @param projects project cache, resolving the title
+     * @param zone     the zone rollups are computed with
+     * @param ids      the selected trackings
+     * @param title    the new title
+     * @return number of trackings retitled
+     */
+    public static int retitle(Database db, Projects projects, TimeZone zone, long[] ids, String title) {
+        long start = System.currentTimeMillis();
+        int retitled;
+        db.beginTransaction();
+        try {
+            select(db, ids);
+            long projectId = projects.idOf(db, title);
+            String where = EDITABLE + " AND project_id != " + projectId;
+            Rollups.Delta delta = new Rollups.Delta(zone);
+            delta.add(db, where, -1);
+            delta.add(db, where, projectId, 1);
+            retitled = update(db, "UPDATE timetracking SET project_id = ? WHERE " + where, projectId);
+            delta.apply(db);
+            unselect(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Timber.i("retitled %d of %d selected trackings within %d ms", retitled, ids.length, System.currentTimeMillis() - start);
+        return retitled;
+    }
+
+    /**
+     * merges the selected trackings into the one started most recently. it keeps its title, and gets the earliest
+     * creation time, the sum of all durations, copies of all sessions and all distinct descriptions, in order of
+     * creation. the others are marked deleted. time thus stays on the days it was tracked on.
+     *
+     * @param db      the database
+     * @param zone    the zone rollups are computed with
+     * @param ids     the selected trackings
+     * @param deleted deletion time to mark the merged trackings with
+     * @return number of trackings merged, including the one merged into. 0, if less than two could be merged.
+     */
+    public static int merge(Database db, TimeZone zone, long[] ids, long deleted) {
+        long start = System.currentTimeMillis();
+        long into = -1;
+        int merged = 0;
+        db.beginTransaction();
+        try {
+            select(db, ids);
+            Rollups.Delta delta = new Rollups.Delta(zone);
+            List<String> descriptions = new ArrayList<>();
+            List<long[]> rows = read(db, EDITABLE, descriptions);
+            if (rows.size() > 1) {
+                delta.add(db, EDITABLE, -1);
+                long[] target = rows.get(0);
+                long duration = 0;
+                Set<String> distinct = new LinkedHashSet<>();
+                for (int i = 0; i < rows.size(); i++) {
+                    long[] row = rows.get(i);
+                    if (row[4] > target[4]) {
+                        target = row;
+                    }
+                    duration += row[2];
+                    String description = descriptions.get(i);
+                    if (description != null && !description.trim().isEmpty()) {
+                        distinct.add(description.trim());
+                    }
+                }
+                into = target[3];
+                long created = rows.get(0)[0];
+                StringBuilder description = new StringBuilder();
+                for (String d : distinct) {
+                    description.append(description.length() > 0 ? "\n" : "").append(d);
+                }
+                Database.Statement stmt = db.compileStatement("UPDATE timetracking SET created = ?, duration = ?, description = ? WHERE id = ?");
+                try {
+                    stmt.bindLong(1, created);
+                    stmt.bindLong(2, duration);
+                    stmt.bindString(3, description.toString());
+                    stmt.bindLong(4, into);
+                    stmt.executeUpdateDelete();
+                } finally {
+                    stmt.close();
+                }
+                Sessions.copy(db, EDITABLE + " AND id != " + into, into);
+                merged = update(db, "UPDATE timetracking SET deleted = ? WHERE " + EDITABLE + " AND id != " + into, deleted) + 1;
+                delta.add(db, "id = " + into, 1);
+                delta.apply(db);
+                unselect(db);
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            db.endTransaction();
+        }
+        Timber.i("merged %d of %d selected trackings into %d within %d ms", merged, ids.length, into, System.currentTimeMillis() - start);
+        return merged;
+    }
+
+    /**
+     * replaces the selection by given ids. the selection is cleared again before committing, a rolled back edit leaves
+     * it to the next one to clear.
+     */
+    private static void select(Database db, long[] ids) {
+        db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + SELECTION + " (id INTEGER PRIMARY KEY)");
+        unselect(db);
+        Database.Statement insert = db.compileStatement("INSERT OR IGNORE INTO temp." + SELECTION + " (id) VALUES (?)");
+        try {
+            for (long id : ids) {
+                insert.bindLong(1, id);
+                insert.executeInsert();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    private static void unselect(Database db) {
+        db.execSQL("DELETE FROM temp." + SELECTION);
+    }
+
+    /**
+     * reads the trackings matching given where term in order of creation
+     *
+     * @param descriptions receives the descriptions, in the same order
+     * @return created, project id, duration, id and last start of every tracking
+     */
+    private static List<long[]> read(Database db, String where, List<String> descriptions) {
+        List<long[]> rows = new ArrayList<>();
+        Database.Rows c = db.rawQuery("SELECT created, project_id, duration, id, lastTrackingStarted, description "
+                + "FROM timetracking WHERE " + where + " ORDER BY created, id", null);
+        try {
+            while (c.moveToNext()) {
+                rows.add(new long[]{c.getLong(0), c.getLong(1), c.getLong(2), c.getLong(3), c.getLong(4)});
+                descriptions.add(c.isNull(5) ? null : c.getString(5));
+            }
+        } finally {
+            c.close();
+        }
+        return rows;
+    }
+
+    private static int update(Database db, String sql, long value) {
+        Database.Statement stmt = db.compileStatement(sql);
+        try {
+            stmt.bindLong(1, value);
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+}
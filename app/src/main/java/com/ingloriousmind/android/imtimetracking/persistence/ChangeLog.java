@@ -0,0 +1,253 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * log of tracking changes not synced yet, see {@link com.ingloriousmind.android.imtimetracking.sync.SyncEngine}.
+ * <p>
+ * triggers on the timetracking table record every insert, update and delete, so all writes - including ormlite's and
+ * bulk updates - are covered. the log is compacted: it holds a single entry per tracking, replaced on every change, so
+ * a tracking changed many times between two syncs is sent once. every entry gets a new version from an auto
+ * increment key, which never decreases, not even when entries are pruned.
+ * <p>
+ * the version acknowledged last is kept as cursor. acknowledging prunes all entries up to it, so the log only grows
+ * by trackings changed since.
+ *
+ * @author lavong.soysavanh
+ */
+public class ChangeLog {
+
+    /**
+     * change log table
+     */
+    public static final String TABLE = "change_log";
+
+    /**
+     * sync state table, holding cursor and device id
+     */
+    static final String TABLE_STATE = "change_log_state";
+
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_DEVICE = "device";
+
+    private static final String LOG = "INSERT OR REPLACE INTO " + TABLE + " (tracking_id) VALUES ";
+
+    /**
+     * a batch of changes, in version order
+     */
+    public static class Batch {
+
+        private final String device;
+        private final long since;
+        private final List<Change> changes;
+
+        public Batch(String device, long since, List<Change> changes) {
+            this.device = device;
+            this.since = since;
+            this.changes = changes;
+        }
+
+        /**
+         * @return id of this installation, identifying the sender
+         */
+        public String getDevice() {
+            return device;
+        }
+
+        /**
+         * @return version acknowledged last. changes are all newer.
+         */
+        public long getSince() {
+            return since;
+        }
+
+        /**
+         * @return version of the latest change. the cursor, if there are none.
+         */
+        public long getUntil() {
+            return changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+    }
+
+    /**
+     * the latest change of a single tracking
+     */
+    public static class Change {
+
+        private final long version;
+        private final long trackingId;
+        private final Tracking tracking;
+
+        public Change(long version, long trackingId, Tracking tracking) {
+            this.version = version;
+            this.trackingId = trackingId;
+            this.tracking = tracking;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getTrackingId() {
+            return trackingId;
+        }
+
+        /**
+         * @return the tracking as currently stored, title resolved. null, if deleted.
+         */
+        public Tracking getTracking() {
+            return tracking;
+        }
+
+        public boolean isDeleted() {
+            return tracking == null;
+        }
+    }
+
+    private ChangeLog() {
+    }
+
+    /**
+     * creates change log and sync state tables, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + " (version INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "tracking_id INTEGER NOT NULL UNIQUE)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_STATE + " (key TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    /**
+     * creates triggers logging tracking changes, if not existing. a tracking soft deleted before was logged as deleted
+     * already, purging it is not logged again.
+     *
+     * @param db the database
+     */
+    public static void createTriggers(Database db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_log_ai AFTER INSERT ON timetracking BEGIN "
+                + LOG + "(new.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_log_au AFTER UPDATE ON timetracking BEGIN "
+                + LOG + "(new.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_log_ad AFTER DELETE ON timetracking WHEN old."
+                + TrackingIndexes.NOT_DELETED + " BEGIN " + LOG + "(old.id); END");
+    }
+
+    /**
+     * drops change log, sync state and triggers
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_log_ai");
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_log_au");
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_log_ad");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STATE);
+    }
+
+    /**
+     * reads the oldest changes not acknowledged yet, along with the current state of their trackings
+     *
+     * @param db    the database
+     * @param limit max number of changes
+     * @return the batch. empty, if all changes were acknowledged.
+     */
+    public static Batch read(Database db, int limit) {
+        long since = readCursor(db);
+        String device = readState(db, KEY_DEVICE);
+        if (device == null) {
+            device = UUID.randomUUID().toString();
+            writeState(db, KEY_DEVICE, device);
+        }
+        List<Change> changes = new ArrayList<>();
+        Database.Rows c = db.rawQuery("SELECT c.version, c.tracking_id, t.id, p.title, t.description, t.created, "
+                + "t.lastTrackingStarted, t.duration, t.tracking FROM " + TABLE + " c "
+                + "LEFT JOIN timetracking t ON t.id = c.tracking_id AND t." + TrackingIndexes.NOT_DELETED + " "
+                + "LEFT JOIN " + Projects.TABLE + " p ON p.id = t.project_id "
+                + "WHERE c.version > ? ORDER BY c.version LIMIT " + limit, new String[]{String.valueOf(since)});
+        try {
+            while (c.moveToNext()) {
+                Tracking tracking = null;
+                if (!c.isNull(2)) {
+                    tracking = new Tracking();
+                    tracking.setId(c.getLong(2));
+                    tracking.setTitle(c.isNull(3) ? "" : c.getString(3));
+                    tracking.setDescription(c.isNull(4) ? null : c.getString(4));
+                    tracking.setCreated(c.getLong(5));
+                    tracking.setLastTrackingStarted(c.getLong(6));
+                    tracking.setDuration(c.getLong(7));
+                    tracking.setTracking(c.getInt(8) != 0);
+                }
+                changes.add(new Change(c.getLong(0), c.getLong(1), tracking));
+            }
+        } finally {
+            c.close();
+        }
+        return new Batch(device, since, changes);
+    }
+
+    /**
+     * advances the cursor and prunes all changes up to it. changes logged after the batch was read are newer and kept,
+     * even if they concern trackings of the batch.
+     *
+     * @param db      the database
+     * @param version the version acknowledged. ignored, unless newer than the cursor.
+     */
+    public static void acknowledge(Database db, long version) {
+        db.beginTransaction();
+        try {
+            if (version > readCursor(db)) {
+                db.execSQL("DELETE FROM " + TABLE + " WHERE version <= ?", new Object[]{version});
+                writeState(db, KEY_CURSOR, String.valueOf(version));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param db the database
+     * @return number of changes not acknowledged yet
+     */
+    public static long countPending(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) FROM " + TABLE);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static long readCursor(Database db) {
+        String cursor = readState(db, KEY_CURSOR);
+        return cursor != null ? Long.parseLong(cursor) : 0;
+    }
+
+    private static String readState(Database db, String key) {
+        Database.Rows c = db.rawQuery("SELECT value FROM " + TABLE_STATE + " WHERE key = ?", new String[]{key});
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void writeState(Database db, String key, String value) {
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_STATE + " (key, value) VALUES (?, ?)", new Object[]{key, value});
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+/**
+ * minimal sqlite database surface used by schema and migration code, modelled after
+ * {@link android.database.sqlite.SQLiteDatabase}. lets that code run on the jvm against a jdbc driver in tests.
+ *
+ * @author lavong.soysavanh
+ * @see AndroidDatabase
+ */
+public interface Database {
+
+    /**
+     * @param sql a single statement, not returning rows
+     */
+    void execSQL(String sql);
+
+    /**
+     * @param sql  a single statement, not returning rows
+     * @param args bind args: {@link Long}, {@link Integer}, {@link String} or null
+     */
+    void execSQL(String sql, Object[] args);
+
+    /**
+     * @param sql  the query
+     * @param args string bind args. may be null.
+     * @return the result rows, to be closed by the caller
+     */
+    Rows rawQuery(String sql, String[] args);
+
+    /**
+     * @param sql a single statement, to be executed repeatedly
+     * @return the compiled statement, to be closed by the caller
+     */
+    Statement compileStatement(String sql);
+
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    void endTransaction();
+
+    /**
+     * forward only result rows. column indexes are zero based.
+     */
+    interface Rows {
+
+        boolean moveToFirst();
+
+        boolean moveToNext();
+
+        long getLong(int column);
+
+        int getInt(int column);
+
+        String getString(int column);
+
+        boolean isNull(int column);
+
+        void close();
+    }
+
+    /**
+     * compiled statement. bind indexes are one based.
+     */
+    interface Statement {
+
+        void bindLong(int index, long value);
+
+        void bindString(int index, String value);
+
+        void bindNull(int index);
+
+        void clearBindings();
+
+        /**
+         * @return rowid of the inserted row. -1, if nothing was inserted.
+         */
+        long executeInsert();
+
+        /**
+         * @return number of rows changed
+         */
+        int executeUpdateDelete();
+
+        /**
+         * @return first column of the first row
+         */
+        long simpleQueryForLong();
+
+        void close();
+    }
+
+}
@@ -3,16 +3,39 @@ package com.ingloriousmind.android.imtimetracking.persistence;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.ingloriousmind.android.imtimetracking.metrics.Counter;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
 import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.ChangeLogMigration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.ListIndexMigration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.Migration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.Migrator;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.ProjectsMigration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.SessionsMigration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.SoftDeleteMigration;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.SurrogateKeyMigration;
+import com.ingloriousmind.android.imtimetracking.report.DayBuckets;
+import com.ingloriousmind.android.imtimetracking.report.Report;
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
 import com.j256.ormlite.android.apptools.OrmLiteSqliteOpenHelper;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 import timber.log.Timber;
 
@@ -31,15 +54,130 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
     /**
      * database version
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 9;
+
+    /**
+     * max number of compiled statements cached per connection. rollup and project statements alone take a dozen.
+     */
+    private static final int SQL_CACHE_SIZE = 50;
+
+    /**
+     * page cache size per connection, in KiB
+     */
+    private static final int PAGE_CACHE_KIB = 2048;
+
+    /**
+     * migrations of all versions
+     */
+    private static final Migrator MIGRATOR = new Migrator(Arrays.<Migration>asList(
+            new ProjectsMigration(),
+            new SurrogateKeyMigration(),
+            new ListIndexMigration(),
+            new SoftDeleteMigration(),
+            new ChangeLogMigration(),
+            new SessionsMigration()));
+
+    /**
+     * zone rollups are currently computed with
+     */
+    private volatile TimeZone rollupZone;
+
+    /**
+     * in-memory version of tracking data, bumped on every write. lets callers cache derived data.
+     */
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    /**
+     * notified after tracking writes committed, on the writing thread
+     */
+    public interface WriteListener {
+
+        /**
+         * @param previous the tracking as stored before. null, if inserted.
+         * @param stored   the tracking stored
+         */
+        void onTrackingStored(Tracking previous, Tracking stored);
+
+        /**
+         * @param removed the tracking as stored before removal
+         */
+        void onTrackingRemoved(Tracking removed);
+
+        void onTrackingsCleared();
+
+        /**
+         * trackings were restored or imported in bulk, e.g. after clearing, from a backup or from a csv file
+         */
+        void onTrackingsRestored();
+
+        /**
+         * trackings were deleted, retitled or merged in bulk, as selected
+         */
+        void onTrackingsChanged();
+    }
+
+    private volatile WriteListener writeListener;
+
+    private final Context ctx;
+
+    /**
+     * cached project titles
+     */
+    private final Projects projects = new Projects();
+
+    private final Histogram queryRowsTimer;
+    private final Histogram querySearchTimer;
+    private final Histogram queryTrackingTimer;
+    private final Histogram queryReportTimer;
+    private final Histogram queryHistoryTimer;
+    private final Histogram writeStoreTimer;
+    private final Histogram writeRemoveTimer;
+    private final Histogram writeBulkTimer;
+    private final Counter writeFailures;
 
     /**
      * ctor
      *
-     * @param ctx a context
+     * @param ctx     a context
+     * @param metrics registry of query and write timings
      */
-    public DbHelper(Context ctx) {
+    public DbHelper(Context ctx, MetricsRegistry metrics) {
         super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        this.ctx = ctx.getApplicationContext();
+        this.queryRowsTimer = metrics.histogram("db.query.rows");
+        this.querySearchTimer = metrics.histogram("db.query.search");
+        this.queryTrackingTimer = metrics.histogram("db.query.tracking");
+        this.queryReportTimer = metrics.histogram("db.query.report");
+        this.queryHistoryTimer = metrics.histogram("db.query.history");
+        this.writeStoreTimer = metrics.histogram("db.write.store");
+        this.writeRemoveTimer = metrics.histogram("db.write.remove");
+        this.writeBulkTimer = metrics.histogram("db.write.bulk");
+        this.writeFailures = metrics.counter("db.write.failed");
+    }
+
+    /**
+     * @param writeListener listener notified after writes. null, to unset.
+     */
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * enables write-ahead logging, so commits append to the log instead of rewriting pages of the main file. writes
+     * are serialized on the database scheduler, while list, search and report reads run on the read scheduler, each on
+     * a reader connection of android's pool, seeing the latest commit without blocking or being blocked by the writer.
+     * in wal mode, synchronous normal keeps the file consistent and spares an fsync per commit; only the latest commits
+     * may roll back on power loss.
+     * new files use incremental auto vacuum, older ones get converted by {@link #runMaintenance()}.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase database) {
+        super.onConfigure(database);
+        database.enableWriteAheadLogging();
+        database.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+        database.execSQL("PRAGMA synchronous = NORMAL");
+        database.execSQL("PRAGMA cache_size = -" + PAGE_CACHE_KIB);
+        database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
     }
 
     /**
@@ -56,17 +194,38 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
     }
 
     /**
-     * {@inheritDoc}
+     * runs schema phases of migrations only. data phases are left pending for {@link #runPendingMigrations}. a failed
+     * upgrade rolls back and leaves the version as is, so it is retried on next open.
      */
     @Override
     public void onUpgrade(SQLiteDatabase database, ConnectionSource connectionSource, int oldVersion, int newVersion) {
         Timber.v("onUpgrade: %s -> %s", oldVersion, newVersion);
         try {
-            // for now, drop and recreate tables
-            dropTables(database, connectionSource);
-            createTables(database, connectionSource);
-        } catch (Exception e) {
+            MIGRATOR.migrateSchema(new AndroidDatabase(database), oldVersion, newVersion);
+        } catch (RuntimeException e) {
             Timber.e(e, "failed upgrading database");
+            throw e;
+        }
+        projects.invalidate();
+    }
+
+    /**
+     * runs data phases of migrations left pending by upgrades, chunk by chunk
+     *
+     * @param listener notified after every chunk. may be null.
+     * @return number of migrations completed
+     * @see Migrator#runPending(Database, int, Migrator.ProgressListener)
+     */
+    public int runPendingMigrations(Migrator.ProgressListener listener) {
+        Database db = database();
+        if (!MIGRATOR.hasPending(db)) {
+            return 0;
+        }
+        try {
+            return MIGRATOR.runPending(db, Migrator.DEFAULT_CHUNK_SIZE, listener);
+        } finally {
+            projects.invalidate();
+            dataVersion.incrementAndGet();
         }
     }
 
@@ -79,7 +238,14 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
      */
     public void dropTables(SQLiteDatabase database, ConnectionSource connectionSource) throws Exception {
         try {
+            Database db = new AndroidDatabase(database);
+            FullTextIndex.dropTables(db);
+            ChangeLog.dropTables(db);
+            Sessions.dropTables(db);
             TableUtils.dropTable(connectionSource, Tracking.class, true);
+            Projects.dropTables(db);
+            Rollups.dropTables(db);
+            Migrator.dropTables(db);
         } catch (SQLException e) {
             Timber.e(e, "unable to drop tables");
             throw new Exception(e);
@@ -96,7 +262,17 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
      */
     public void createTables(SQLiteDatabase database, ConnectionSource connectionSource) throws Exception {
         try {
+            Database db = new AndroidDatabase(database);
             TableUtils.createTable(connectionSource, Tracking.class);
+            TrackingIndexes.createIndexes(db);
+            Projects.createTables(db);
+            Sessions.createTables(db);
+            Sessions.createTriggers(db);
+            Rollups.createTables(db);
+            FullTextIndex.createTables(db);
+            ChangeLog.createTables(db);
+            ChangeLog.createTriggers(db);
+            Migrator.createTables(db);
         } catch (SQLException e) {
             Timber.e(e, "unable to create tables");
             throw new Exception(e);
@@ -113,8 +289,10 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
         List<Tracking> trackings = new ArrayList<Tracking>();
         try {
             QueryBuilder<Tracking, ?> qb = getDao(Tracking.class).queryBuilder();
+            qb.where().raw(TrackingIndexes.NOT_DELETED);
             qb.orderBy("lastTrackingStarted", false);
             trackings = qb.query();
+            projects.resolve(database(), trackings);
         } catch (SQLException e) {
             Timber.e(e, "failed fetching trackings");
         }
@@ -129,8 +307,10 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
     public Tracking fetchMostRecentTracking() {
         try {
             QueryBuilder<Tracking, ?> qb = getDao(Tracking.class).queryBuilder();
+            qb.where().raw(TrackingIndexes.NOT_DELETED);
             qb.orderBy("lastTrackingStarted", false).limit(1L);
             List<Tracking> trackings = qb.query();
+            projects.resolve(database(), trackings);
             if (trackings != null && !trackings.isEmpty())
                 return trackings.get(0);
         } catch (SQLException e) {
@@ -140,36 +320,642 @@ public class DbHelper extends OrmLiteSqliteOpenHelper {
     }
 
     /**
-     * inserts given tracking into database. or updates an existing one.
+     * fetches list rows of all trackings, reading only the columns displayed. served by the list index alone.
+     *
+     * @return list rows, most recent first
+     */
+    public List<TrackingRow> fetchTrackingRows() {
+        long start = System.nanoTime();
+        try {
+            return queryRows("SELECT id, project_id, duration, tracking, lastTrackingStarted FROM timetracking WHERE " + TrackingIndexes.NOT_DELETED
+                    + " ORDER BY lastTrackingStarted DESC", null);
+        } finally {
+            queryRowsTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * @param id the tracking's id
+     * @return the tracking, with all columns. null, if there is none or it is deleted.
+     */
+    public Tracking fetchTracking(long id) {
+        long start = System.nanoTime();
+        try {
+            Dao<Tracking, Long> dao = getDao(Tracking.class);
+            Tracking tracking = dao.queryBuilder().where().idEq(id).and().raw(TrackingIndexes.NOT_DELETED).queryForFirst();
+            if (tracking != null) {
+                projects.resolve(database(), Collections.singleton(tracking));
+            }
+            return tracking;
+        } catch (SQLException e) {
+            Timber.e(e, "failed fetching tracking %d", id);
+        } finally {
+            queryTrackingTimer.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * searches titles and descriptions, matching every word typed as a prefix
+     *
+     * @param query  the text typed
+     * @param limit  max number of trackings to return
+     * @param offset number of matching trackings to skip
+     * @return list rows of matching trackings, most recent first
+     * @see FullTextIndex#toMatchExpression(String)
+     */
+    public List<TrackingRow> searchTrackings(String query, long limit, long offset) {
+        String match = FullTextIndex.toMatchExpression(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        try {
+            return queryRows("SELECT id, project_id, duration, tracking, lastTrackingStarted FROM timetracking WHERE " + TrackingIndexes.NOT_DELETED
+                    + " AND " + FullTextIndex.MATCHING + " "
+                    + "ORDER BY lastTrackingStarted DESC LIMIT " + limit + " OFFSET " + offset, new String[]{match});
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed searching trackings: %s", query);
+        } finally {
+            querySearchTimer.recordSince(start);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * sums up durations of all trackings matching given search query, not just a page of them
      *
-     * @param newTracking the tracking to store
+     * @param query the search query
+     * @return sum of durations. 0, if nothing matches or the query has no words.
+     */
+    public long sumSearchDurations(String query) {
+        String match = FullTextIndex.toMatchExpression(query);
+        if (match == null) {
+            return 0;
+        }
+        try {
+            return FullTextIndex.sumDurations(database(), match);
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed summing up search results: %s", query);
+        }
+        return 0;
+    }
+
+    private List<TrackingRow> queryRows(String sql, String[] args) {
+        Database db = database();
+        Database.Rows c = db.rawQuery(sql, args);
+        try {
+            return TrackingRows.read(db, projects, c);
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * inserts given tracking into database. or updates an existing one. the time added or taken is recorded as
+     * {@link Sessions}, rollups are updated within the same transaction. a copy is stored, as the instance given is shared, e.g. with the tracker on the main thread. only the id generated
+     * on insert is set on it, so later writes of the instance update the row.
+     *
+     * @param tracking the tracking to store
      * @return true, if inserted or updated successfully. false, otherwise.
      */
-    public boolean storeTracking(Tracking newTracking) {
+    public boolean storeTracking(Tracking tracking) {
+        long start = System.nanoTime();
+        Database db = database();
+        Tracking newTracking = new Tracking(tracking);
+        Tracking old = null;
+        boolean stored = false;
+        db.beginTransaction();
         try {
-            Dao.CreateOrUpdateStatus result = getDao(Tracking.class).createOrUpdate(newTracking);
-            return result.isCreated() || result.isUpdated();
+            Dao<Tracking, Long> dao = getDao(Tracking.class);
+            Rollups.Delta delta = new Rollups.Delta(getRollupZone(db));
+            old = newTracking.getId() > 0 ? dao.queryForId(newTracking.getId()) : null;
+            if (old != null) {
+                projects.resolve(db, Collections.singleton(old));
+                // a deleted tracking stays deleted, e.g. when stopped after deletion
+                newTracking.setDeleted(old.getDeleted());
+                delta.add(db, notDeleted(old.getId()), -1);
+            }
+            newTracking.setProjectId(projects.idOf(db, newTracking.getTitle()));
+            Dao.CreateOrUpdateStatus result = dao.createOrUpdate(newTracking);
+            Sessions.record(db, old, newTracking);
+            delta.add(db, notDeleted(newTracking.getId()), 1);
+            delta.apply(db);
+            db.setTransactionSuccessful();
+            dataVersion.incrementAndGet();
+            stored = result.isCreated() || result.isUpdated();
         } catch (SQLException e) {
             Timber.e(e, "failed storing tracking");
+        } finally {
+            db.endTransaction();
+            if (!stored) {
+                // a project inserted within the rolled back transaction is gone
+                projects.invalidate();
+                writeFailures.inc();
+            }
+            writeStoreTimer.recordSince(start);
+        }
+        if (stored && tracking.getId() == 0) {
+            tracking.setId(newTracking.getId());
+        }
+        WriteListener listener = writeListener;
+        if (stored && listener != null && newTracking.getDeleted() == 0) {
+            listener.onTrackingStored(old, newTracking);
         }
-        return false;
+        return stored;
     }
 
     /**
-     * removes tracking from database
+     * marks given tracking deleted, so it is left out of all queries until restored or purged. rollups are updated
+     * within the same transaction.
      *
      * @param tracking the tracking to delete
-     * @return true, if removed successfully. false, otherwise.
+     * @return true, if marked deleted successfully. false, otherwise.
+     * @see #restoreTracking(long)
+     * @see TrackingRepository#purgeDeletedTrackings(long)
      */
     public boolean removeTracking(Tracking tracking) {
+        long start = System.nanoTime();
+        Database db = database();
+        Tracking old = null;
+        boolean removed = false;
+        db.beginTransaction();
         try {
             Dao<Tracking, Long> dao = getDao(Tracking.class);
-            return dao.deleteById(tracking.getCreated()) > 0;
+            old = dao.queryForId(tracking.getId());
+            if (old != null && old.getDeleted() == 0) {
+                projects.resolve(db, Collections.singleton(old));
+                Rollups.add(db, getRollupZone(db), notDeleted(old.getId()), -1);
+                removed = SoftDelete.mark(db, "id = " + old.getId(), System.currentTimeMillis()) > 0;
+                db.setTransactionSuccessful();
+                dataVersion.incrementAndGet();
+            }
         } catch (SQLException e) {
             Timber.e(e, "failed removing tracking: %s", tracking);
+            writeFailures.inc();
+        } finally {
+            db.endTransaction();
+            writeRemoveTimer.recordSince(start);
+        }
+        WriteListener listener = writeListener;
+        if (removed && listener != null) {
+            listener.onTrackingRemoved(old);
+        }
+        return removed;
+    }
+
+    /**
+     * restores a tracking marked deleted, unless purged already. rollups are updated within the same transaction.
+     *
+     * @param id the tracking's id
+     * @return true, if restored successfully. false, otherwise.
+     */
+    public boolean restoreTracking(long id) {
+        Database db = database();
+        Tracking restored = null;
+        db.beginTransaction();
+        try {
+            if (SoftDelete.restore(db, getRollupZone(db), id)) {
+                Dao<Tracking, Long> dao = getDao(Tracking.class);
+                restored = dao.queryForId(id);
+                projects.resolve(db, Collections.singleton(restored));
+                db.setTransactionSuccessful();
+                dataVersion.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            Timber.e(e, "failed restoring tracking %d", id);
+            restored = null;
+        } finally {
+            db.endTransaction();
+        }
+        WriteListener listener = writeListener;
+        if (restored != null && listener != null) {
+            listener.onTrackingStored(null, restored);
+        }
+        return restored != null;
+    }
+
+    /**
+     * sums up the time tracked on the local day of given time, as rolled up. a session crossing midnight counts on
+     * either day with the part tracked on it, like in reports and the heatmap.
+     *
+     * @param time epoch millis
+     * @return sum of durations, excluding running clocks
+     */
+    public long sumDurationsOfDay(long time) {
+        Database db = database();
+        long day = TimeUtil.localEpochDay(time, getRollupZone(db));
+        Database.Rows c = db.rawQuery("SELECT IFNULL(SUM(duration), 0) FROM " + Rollups.TABLE_DAY + " WHERE day = ?",
+                new String[]{String.valueOf(day)});
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * marks all trackings deleted, in a single update regardless of their number, and clears rollups
+     *
+     * @return deletion time the trackings were marked with, to restore them by. 0, if failed.
+     * @see #restoreTrackings(long)
+     */
+    public long removeAllTrackings() {
+        Database db = database();
+        long deleted = System.currentTimeMillis();
+        int removed = -1;
+        db.beginTransaction();
+        try {
+            removed = SoftDelete.mark(db, TrackingIndexes.NOT_DELETED, deleted);
+            Rollups.clear(db);
+            db.setTransactionSuccessful();
+            dataVersion.incrementAndGet();
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed removing trackings");
+            removed = -1;
+        } finally {
+            db.endTransaction();
+        }
+        WriteListener listener = writeListener;
+        if (removed >= 0 && listener != null) {
+            listener.onTrackingsCleared();
+        }
+        Timber.v("marked %d trackings deleted", removed);
+        return removed >= 0 ? deleted : 0;
+    }
+
+    /**
+     * restores all trackings marked deleted by {@link #removeAllTrackings()}, unless purged already, and rebuilds rollups
+     *
+     * @param deleted the deletion time returned on removal
+     * @return number of trackings restored
+     */
+    public int restoreTrackings(long deleted) {
+        if (deleted <= 0) {
+            return 0;
+        }
+        Database db = database();
+        int restored = 0;
+        try {
+            restored = SoftDelete.restoreAll(db, getRollupZone(db), deleted);
+            if (restored > 0) {
+                dataVersion.incrementAndGet();
+            }
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed restoring trackings deleted at %d", deleted);
         }
-        return false;
+        WriteListener listener = writeListener;
+        if (restored > 0 && listener != null) {
+            listener.onTrackingsRestored();
+        }
+        return restored;
+    }
+
+    /**
+     * marks the selected trackings deleted, except running ones, in a single transaction regardless of their number
+     *
+     * @param ids     the selected trackings
+     * @param deleted deletion time to mark them with, to restore them by
+     * @return number of trackings deleted
+     * @see BulkEdit#delete(Database, TimeZone, long[], long)
+     * @see #restoreTrackings(long)
+     */
+    public int removeTrackings(long[] ids, long deleted) {
+        long start = System.nanoTime();
+        Database db = database();
+        int removed = 0;
+        try {
+            removed = BulkEdit.delete(db, getRollupZone(db), ids, deleted);
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed removing %d trackings", ids.length);
+            writeFailures.inc();
+        }
+        writeBulkTimer.recordSince(start);
+        onTrackingsChanged(removed);
+        return removed;
+    }
+
+    /**
+     * moves the selected trackings to the project of given title, in a single transaction regardless of their number
+     *
+     * @param ids   the selected trackings
+     * @param title the new title
+     * @return number of trackings retitled
+     * @see BulkEdit#retitle(Database, Projects, TimeZone, long[], String)
+     */
+    public int retitleTrackings(long[] ids, String title) {
+        long start = System.nanoTime();
+        Database db = database();
+        int retitled = 0;
+        try {
+            retitled = BulkEdit.retitle(db, projects, getRollupZone(db), ids, title);
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed retitling %d trackings", ids.length);
+            writeFailures.inc();
+        } finally {
+            if (retitled == 0) {
+                // a project inserted within the rolled back transaction is gone
+                projects.invalidate();
+            }
+            writeBulkTimer.recordSince(start);
+        }
+        onTrackingsChanged(retitled);
+        return retitled;
+    }
+
+    /**
+     * merges the selected trackings into the one started most recently, in a single transaction
+     *
+     * @param ids the selected trackings
+     * @return number of trackings merged. 0, if less than two could be merged.
+     * @see BulkEdit#merge(Database, TimeZone, long[], long)
+     */
+    public int mergeTrackings(long[] ids) {
+        long start = System.nanoTime();
+        Database db = database();
+        int merged = 0;
+        try {
+            merged = BulkEdit.merge(db, getRollupZone(db), ids, System.currentTimeMillis());
+        } catch (android.database.SQLException e) {
+            Timber.e(e, "failed merging %d trackings", ids.length);
+            writeFailures.inc();
+        }
+        writeBulkTimer.recordSince(start);
+        onTrackingsChanged(merged);
+        return merged;
+    }
+
+    private void onTrackingsChanged(int changed) {
+        if (changed <= 0) {
+            return;
+        }
+        dataVersion.incrementAndGet();
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onTrackingsChanged();
+        }
+    }
+
+    /**
+     * deletes a batch of trackings marked deleted before given time for good
+     *
+     * @param deletedBefore epoch millis. trackings deleted since are kept, e.g. to be restored still.
+     * @return number of trackings purged
+     * @see SoftDelete#purgeBatch(Database, long)
+     */
+    public int purgeDeletedBatch(long deletedBefore) {
+        return SoftDelete.purgeBatch(database(), deletedBefore);
+    }
+
+    /**
+     * deletes projects no tracking refers to anymore
+     *
+     * @return number of projects purged
+     * @see Projects#purgeUnreferenced(Database)
+     */
+    public int purgeUnreferencedProjects() {
+        return projects.purgeUnreferenced(database());
+    }
+
+    /**
+     * @return usage of distinct titles: number of trackings and most recent start per title
+     */
+    public List<TitleIndex.Entry> fetchTitleStats() {
+        List<TitleIndex.Entry> stats = new ArrayList<>();
+        Database db = database();
+        Database.Rows c = db.rawQuery("SELECT project_id, COUNT(*), MAX(lastTrackingStarted) FROM timetracking WHERE "
+                + TrackingIndexes.NOT_DELETED + " GROUP BY project_id", null);
+        try {
+            while (c.moveToNext()) {
+                stats.add(new TitleIndex.Entry(projects.titleOf(db, c.getLong(0)), c.getInt(1), c.getLong(2)));
+            }
+        } finally {
+            c.close();
+        }
+        return stats;
+    }
+
+    /**
+     * rebuilds rollups, if they were never computed or computed in a time zone other than the device's current one
+     *
+     * @return true, if rollups were rebuilt
+     */
+    public boolean ensureRollupsCurrent() {
+        Database db = database();
+        TimeZone current = TimeZone.getDefault();
+        TimeZone stored = Rollups.readZone(db);
+        if (stored != null && stored.getID().equals(current.getID())) {
+            rollupZone = stored;
+            return false;
+        }
+        Timber.i("rollups computed in %s, device is in %s", stored != null ? stored.getID() : null, current.getID());
+        Rollups.rebuild(db, current);
+        rollupZone = current;
+        dataVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * reads a report of given local days from rollups, grouping by project, day and iso week in sql
+     *
+     * @param firstDay first local epoch day, inclusive
+     * @param lastDay  last local epoch day, inclusive
+     * @return the report
+     */
+    public Report fetchReport(long firstDay, long lastDay) {
+        long start = System.nanoTime();
+        Report report = Rollups.report(database(), projects, firstDay, lastDay, dataVersion.get());
+        queryReportTimer.recordSince(start);
+        return report;
+    }
+
+    /**
+     * reads the columns of all trackings straight from a cursor into a columnar history, ordered by the created index,
+     * along with the titles of all projects
+     *
+     * @return the history
+     */
+    public TrackingHistory fetchHistory() {
+        long start = System.nanoTime();
+        Database db = database();
+        Database.Statement count = db.compileStatement("SELECT COUNT(*) FROM timetracking WHERE " + TrackingIndexes.NOT_DELETED);
+        TrackingHistory.Builder builder;
+        try {
+            builder = new TrackingHistory.Builder((int) count.simpleQueryForLong());
+        } finally {
+            count.close();
+        }
+        Database.Rows c = db.rawQuery("SELECT id, title FROM " + Projects.TABLE, null);
+        try {
+            while (c.moveToNext()) {
+                builder.title(c.getLong(0), c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+        c = db.rawQuery("SELECT created, lastTrackingStarted, duration, project_id FROM timetracking WHERE "
+                + TrackingIndexes.NOT_DELETED + " ORDER BY created", null);
+        try {
+            while (c.moveToNext()) {
+                builder.add(c.getLong(0), c.getLong(1), c.getLong(2), c.getLong(3));
+            }
+        } finally {
+            c.close();
+        }
+        queryHistoryTimer.recordSince(start);
+        return builder.build();
+    }
+
+    /**
+     * @return earliest local epoch day with tracked time. -1, if there is none.
+     */
+    public long fetchFirstTrackedDay() {
+        Database.Rows c = database().rawQuery("SELECT MIN(day) FROM " + Rollups.TABLE_DAY, null);
+        try {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * reads per day totals from rollups
+     *
+     * @param firstDay first local epoch day, inclusive
+     * @param lastDay  last local epoch day, inclusive
+     * @return the day buckets
+     */
+    public DayBuckets fetchDayBuckets(long firstDay, long lastDay) {
+        DayBuckets buckets = new DayBuckets(firstDay, lastDay);
+        Database.Rows c = database().rawQuery("SELECT day, SUM(duration) FROM " + Rollups.TABLE_DAY
+                + " WHERE day BETWEEN ? AND ? GROUP BY day", new String[]{String.valueOf(firstDay), String.valueOf(lastDay)});
+        try {
+            while (c.moveToNext()) {
+                buckets.add(c.getLong(0), c.getLong(1));
+            }
+        } finally {
+            c.close();
+        }
+        return buckets;
     }
 
+    /**
+     * writes projects and trackings not deleted to a backup file
+     *
+     * @param file the file to write
+     * @return number of rows written
+     * @throws IOException if writing failed
+     * @see Backup#write(Database, int, File)
+     */
+    public long backup(File file) throws IOException {
+        return Backup.write(database(), DATABASE_VERSION, file);
+    }
+
+    /**
+     * replaces all projects and trackings by the ones of given backup file
+     *
+     * @param file the backup file
+     * @return number of rows restored
+     * @throws IOException if the file is corrupt or incompatible. the database is left as is, then.
+     * @see Backup#restore(Database, int, File, TimeZone)
+     */
+    public long restore(File file) throws IOException {
+        TimeZone zone = TimeZone.getDefault();
+        long rows;
+        try {
+            rows = Backup.restore(database(), DATABASE_VERSION, file, zone);
+        } finally {
+            projects.invalidate();
+        }
+        rollupZone = zone;
+        dataVersion.incrementAndGet();
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onTrackingsRestored();
+        }
+        return rows;
+    }
+
+    /**
+     * imports trackings from csv or json, skipping the ones created at the same time as a tracking stored
+     *
+     * @param in       the document, closed when done
+     * @param length   size of the document in bytes. -1, if unknown.
+     * @param listener notified after every chunk. may be null.
+     * @return final progress
+     * @throws IOException if reading failed or the document is malformed. chunks committed before are kept.
+     * @see TrackingImporter#run(Database, Projects, java.io.InputStream, long, TimeZone, int, TrackingImporter.ProgressListener)
+     */
+    public TrackingImporter.Progress importTrackings(InputStream in, long length, TrackingImporter.ProgressListener listener)
+            throws IOException {
+        Database db = database();
+        TrackingImporter.Progress progress;
+        try {
+            progress = TrackingImporter.run(db, projects, in, length, getRollupZone(db), TrackingImporter.DEFAULT_CHUNK_SIZE, listener);
+        } finally {
+            dataVersion.incrementAndGet();
+            WriteListener writeListener = this.writeListener;
+            if (writeListener != null) {
+                writeListener.onTrackingsRestored();
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * reads the oldest tracking changes not synced yet
+     *
+     * @param limit max number of changes
+     * @return the batch of changes
+     * @see ChangeLog#read(Database, int)
+     */
+    public ChangeLog.Batch readChanges(int limit) {
+        return ChangeLog.read(database(), limit);
+    }
+
+    /**
+     * marks changes synced up to given version
+     *
+     * @param version version of the latest change synced
+     * @see ChangeLog#acknowledge(Database, long)
+     */
+    public void acknowledgeChanges(long version) {
+        ChangeLog.acknowledge(database(), version);
+    }
+
+    /**
+     * analyzes and vacuums the database. blocks all other database access while running.
+     *
+     * @return outcome of maintenance
+     * @see DbMaintenance#run(Database, java.io.File)
+     */
+    public DbMaintenance.Result runMaintenance() {
+        return DbMaintenance.run(database(), ctx.getDatabasePath(DATABASE_NAME));
+    }
+
+    /**
+     * @return in-memory data version, changing with every write
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    private static String notDeleted(long id) {
+        return "id = " + id + " AND " + TrackingIndexes.NOT_DELETED;
+    }
+
+    private Database database() {
+        return new AndroidDatabase(getWritableDatabase());
+    }
+
+    private TimeZone getRollupZone(Database db) {
+        TimeZone zone = rollupZone;
+        if (zone == null) {
+            zone = Rollups.readZone(db);
+            // not rebuilt yet: the pending rebuild recomputes everything with the device zone
+            rollupZone = zone = zone != null ? zone : TimeZone.getDefault();
+        }
+        return zone;
+    }
 
 }
@@ -0,0 +1,170 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import java.io.File;
+
+import timber.log.Timber;
+
+/**
+ * database maintenance: refreshes query planner statistics and returns free pages to the file system.
+ * <p>
+ * databases created before incremental auto vacuum was configured are converted by a single full vacuum. afterwards
+ * free pages are released incrementally. timings of the main list query are probed before and after, so the effect
+ * can be compared across runs. must not run within a transaction.
+ *
+ * @author lavong.soysavanh
+ */
+public class DbMaintenance {
+
+    /**
+     * auto vacuum mode incremental, as reported by {@code PRAGMA auto_vacuum}
+     */
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String PROBE_QUERY = "SELECT id, project_id, lastTrackingStarted, duration FROM timetracking "
+            + "WHERE " + TrackingIndexes.NOT_DELETED + " ORDER BY lastTrackingStarted DESC";
+
+    /**
+     * outcome of a maintenance run
+     */
+    public static class Result {
+
+        long sizeBefore;
+        long sizeAfter;
+        long freePagesBefore;
+        long freePagesAfter;
+        long probeMicrosBefore;
+        long probeMicrosAfter;
+        boolean fullVacuum;
+        long durationMs;
+
+        /**
+         * @return database file size in bytes before maintenance
+         */
+        public long getSizeBefore() {
+            return sizeBefore;
+        }
+
+        /**
+         * @return database file size in bytes after maintenance
+         */
+        public long getSizeAfter() {
+            return sizeAfter;
+        }
+
+        public long getFreePagesBefore() {
+            return freePagesBefore;
+        }
+
+        public long getFreePagesAfter() {
+            return freePagesAfter;
+        }
+
+        /**
+         * @return time reading the list query before maintenance, in microseconds
+         */
+        public long getProbeMicrosBefore() {
+            return probeMicrosBefore;
+        }
+
+        /**
+         * @return time reading the list query after maintenance, in microseconds
+         */
+        public long getProbeMicrosAfter() {
+            return probeMicrosAfter;
+        }
+
+        /**
+         * @return true, if the file was converted to incremental auto vacuum by a full vacuum
+         */
+        public boolean isFullVacuum() {
+            return fullVacuum;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{size=" + sizeBefore + "->" + sizeAfter + ", freePages=" + freePagesBefore + "->" + freePagesAfter
+                    + ", probeMicros=" + probeMicrosBefore + "->" + probeMicrosAfter + ", fullVacuum=" + fullVacuum
+                    + ", durationMs=" + durationMs + '}';
+        }
+    }
+
+    private DbMaintenance() {
+    }
+
+    /**
+     * runs maintenance
+     *
+     * @param db   the database
+     * @param file the database file, for measuring its size
+     * @return the outcome
+     */
+    public static Result run(Database db, File file) {
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        checkpoint(db);
+        result.sizeBefore = file.length();
+        result.freePagesBefore = pragma(db, "freelist_count");
+        result.probeMicrosBefore = probe(db);
+
+        db.execSQL("ANALYZE");
+        if (pragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            // only takes effect on existing files with a full vacuum
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            result.fullVacuum = true;
+        } else if (result.freePagesBefore > 0) {
+            // frees a page per row stepped
+            drain(db.rawQuery("PRAGMA incremental_vacuum", null));
+        }
+
+        checkpoint(db);
+        result.sizeAfter = file.length();
+        result.freePagesAfter = pragma(db, "freelist_count");
+        result.probeMicrosAfter = probe(db);
+        result.durationMs = System.currentTimeMillis() - start;
+        Timber.i("database maintenance: %s", result);
+        return result;
+    }
+
+    /**
+     * @param db   the database
+     * @param name pragma name
+     * @return the pragma's value
+     */
+    static long pragma(Database db, String name) {
+        Database.Statement stmt = db.compileStatement("PRAGMA " + name);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * moves wal content into the main file and truncates the wal, so the main file's size is meaningful
+     */
+    private static void checkpoint(Database db) {
+        drain(db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null));
+    }
+
+    private static long probe(Database db) {
+        long start = System.nanoTime();
+        drain(db.rawQuery(PROBE_QUERY, null));
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    private static void drain(Database.Rows rows) {
+        try {
+            //noinspection StatementWithEmptyBody
+            while (rows.moveToNext()) {
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+}
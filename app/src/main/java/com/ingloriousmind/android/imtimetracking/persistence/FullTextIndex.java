@@ -0,0 +1,119 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+/**
+ * fts4 index over tracking titles and descriptions.
+ * <p>
+ * the index is an external content table on top of a view joining trackings with their project titles, using the
+ * tracking rowid as docid. triggers keep it in sync on insert, on update of indexed columns and on delete, so all
+ * writes - including ormlite's - are covered.
+ *
+ * @author lavong.soysavanh
+ */
+public class FullTextIndex {
+
+    /**
+     * fts table
+     */
+    public static final String TABLE = "timetracking_fts";
+
+    /**
+     * content view
+     */
+    static final String VIEW = "timetracking_search";
+
+    /**
+     * condition on timetracking rows matching an fts expression, bound as the only argument
+     */
+    static final String MATCHING = "id IN (SELECT docid FROM " + TABLE + " WHERE " + TABLE + " MATCH ?)";
+
+    private FullTextIndex() {
+    }
+
+    /**
+     * creates fts table, its content view and sync triggers, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE VIEW IF NOT EXISTS " + VIEW + " AS SELECT t.rowid AS rowid, p.title AS title, t.description AS description "
+                + "FROM timetracking t LEFT JOIN " + Projects.TABLE + " p ON p.id = t.project_id");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE + " USING fts4(content=\"" + VIEW + "\", title, description)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_fts_bu BEFORE UPDATE OF project_id, description ON timetracking BEGIN "
+                + "DELETE FROM " + TABLE + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_fts_bd BEFORE DELETE ON timetracking BEGIN "
+                + "DELETE FROM " + TABLE + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_fts_au AFTER UPDATE OF project_id, description ON timetracking BEGIN "
+                + "INSERT INTO " + TABLE + " (docid, title, description) VALUES "
+                + "(new.rowid, (SELECT title FROM " + Projects.TABLE + " WHERE id = new.project_id), new.description); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_fts_ai AFTER INSERT ON timetracking BEGIN "
+                + "INSERT INTO " + TABLE + " (docid, title, description) VALUES "
+                + "(new.rowid, (SELECT title FROM " + Projects.TABLE + " WHERE id = new.project_id), new.description); END");
+    }
+
+    /**
+     * drops fts table, its content view and sync triggers
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_fts_bu");
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_fts_bd");
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_fts_au");
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_fts_ai");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP VIEW IF EXISTS " + VIEW);
+    }
+
+    /**
+     * repopulates the index from all trackings
+     *
+     * @param db the database
+     */
+    public static void rebuild(Database db) {
+        db.execSQL("INSERT INTO " + TABLE + " (" + TABLE + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * sums up durations of all trackings matching, in sql, so the total does not depend on the pages loaded
+     *
+     * @param db    the database
+     * @param match the match expression
+     * @return sum of durations of matching trackings, not deleted
+     * @see #toMatchExpression(String)
+     */
+    public static long sumDurations(Database db, String match) {
+        Database.Statement stmt = db.compileStatement("SELECT COALESCE(SUM(duration), 0) FROM timetracking WHERE "
+                + TrackingIndexes.NOT_DELETED + " AND " + MATCHING);
+        try {
+            stmt.bindString(1, match);
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * turns free text into an fts match expression: every word becomes a prefix term, all terms must match. fts
+     * operators and quotes in the input are dropped.
+     *
+     * @param query the text typed by the user
+     * @return the match expression. null, if there are no words.
+     */
+    public static String toMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(query.length() + 8);
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty() || "AND".equals(word) || "OR".equals(word) || "NOT".equals(word) || "NEAR".equals(word)) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(word).append('*');
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+}
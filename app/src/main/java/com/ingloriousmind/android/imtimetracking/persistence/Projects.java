@@ -0,0 +1,145 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * dictionary of distinct tracking titles, stored once in the project table and referenced by id from trackings.
+ * <p>
+ * the table is small and cached completely. titles handed out are the cached instances, so trackings of the same
+ * project share a single string on the heap.
+ *
+ * @author lavong.soysavanh
+ */
+public class Projects {
+
+    /**
+     * project table
+     */
+    public static final String TABLE = "project";
+
+    private final Map<Long, String> titles = new HashMap<>();
+    private final Map<String, Long> ids = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * creates project table, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + " (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL UNIQUE)");
+    }
+
+    /**
+     * drops project table
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    /**
+     * looks up the id of given title, inserting a new project if there is none
+     *
+     * @param db    the database
+     * @param title the title. null is stored as empty title.
+     * @return the project id
+     */
+    public synchronized long idOf(Database db, String title) {
+        ensureLoaded(db);
+        String t = title != null ? title : "";
+        Long id = ids.get(t);
+        if (id == null) {
+            Database.Statement stmt = db.compileStatement("INSERT INTO " + TABLE + " (title) VALUES (?)");
+            try {
+                stmt.bindString(1, t);
+                id = stmt.executeInsert();
+            } finally {
+                stmt.close();
+            }
+            put(id, t);
+        }
+        return id;
+    }
+
+    /**
+     * @param db the database
+     * @param id the project id
+     * @return the project's title. null, if unknown.
+     */
+    public synchronized String titleOf(Database db, long id) {
+        ensureLoaded(db);
+        return titles.get(id);
+    }
+
+    /**
+     * sets the titles of given trackings from their project ids
+     *
+     * @param db        the database
+     * @param trackings the trackings to resolve
+     */
+    public synchronized void resolve(Database db, Iterable<Tracking> trackings) {
+        ensureLoaded(db);
+        for (Tracking t : trackings) {
+            String title = titles.get(t.getProjectId());
+            if (title != null) {
+                t.setTitle(title);
+            }
+        }
+    }
+
+    /**
+     * deletes projects no tracking refers to anymore, e.g. left behind by renames. trackings deleted but not purged
+     * yet keep their projects, so they can still be restored.
+     *
+     * @param db the database
+     * @return number of projects deleted
+     */
+    public synchronized int purgeUnreferenced(Database db) {
+        Database.Statement stmt = db.compileStatement("DELETE FROM " + TABLE + " WHERE id NOT IN (SELECT project_id FROM timetracking)");
+        int purged;
+        try {
+            purged = stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+        if (purged > 0) {
+            invalidate();
+        }
+        return purged;
+    }
+
+    /**
+     * drops the cache, e.g. after a rolled back insert
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        titles.clear();
+        ids.clear();
+    }
+
+    private void ensureLoaded(Database db) {
+        if (loaded) {
+            return;
+        }
+        Database.Rows c = db.rawQuery("SELECT id, title FROM " + TABLE, null);
+        try {
+            while (c.moveToNext()) {
+                put(c.getLong(0), c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+        loaded = true;
+    }
+
+    private void put(long id, String title) {
+        titles.put(id, title);
+        ids.put(title, id);
+    }
+
+}
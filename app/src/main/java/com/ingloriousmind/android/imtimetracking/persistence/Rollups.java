@@ -0,0 +1,373 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.report.Report;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import timber.log.Timber;
+
+/**
+ * materialized per day and per iso week rollups of tracked durations, keyed by local date and project.
+ * <p>
+ * the time of a tracking not deleted counts towards the local days (and weeks) it was tracked on, as told by its
+ * {@link Sessions}, split at local midnight. the tracking itself is counted on the day it was created. rollups are
+ * maintained incrementally by {@link DbHelper} on every write, within the write's transaction. dates are resolved with
+ * the time zone stored along with the rollups; when the device zone differs, {@link #rebuild(Database, TimeZone)}
+ * recomputes everything.
+ *
+ * @author lavong.soysavanh
+ */
+public class Rollups {
+
+    /**
+     * per day table, day in local epoch days
+     */
+    public static final String TABLE_DAY = "rollup_day";
+
+    /**
+     * per iso week table, week as {@link TimeUtil#isoWeekKey(long)}
+     */
+    public static final String TABLE_WEEK = "rollup_week";
+
+    /**
+     * rollup bookkeeping table
+     */
+    static final String TABLE_STATE = "rollup_state";
+
+    private static final String KEY_ZONE = "zone";
+
+    private Rollups() {
+    }
+
+    /**
+     * creates rollup tables, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DAY + " (day INTEGER NOT NULL, project_id INTEGER NOT NULL, "
+                + "duration INTEGER NOT NULL, count INTEGER NOT NULL, PRIMARY KEY (day, project_id))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_WEEK + " (week INTEGER NOT NULL, project_id INTEGER NOT NULL, "
+                + "duration INTEGER NOT NULL, count INTEGER NOT NULL, PRIMARY KEY (week, project_id))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_STATE + " (key TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    /**
+     * drops rollup tables
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_DAY);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WEEK);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STATE);
+    }
+
+    /**
+     * @param db the database
+     * @return the time zone rollups were computed with. null, if never computed.
+     */
+    public static TimeZone readZone(Database db) {
+        Database.Rows c = db.rawQuery("SELECT value FROM " + TABLE_STATE + " WHERE key = ?", new String[]{KEY_ZONE});
+        try {
+            return c.moveToFirst() ? TimeZone.getTimeZone(c.getString(0)) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * adds (or subtracts) the contribution of trackings matching given where term. expected to run within the write's
+     * transaction.
+     *
+     * @param db    the database
+     * @param zone  the zone resolving local dates
+     * @param where where term selecting the trackings, e.g. by id and not deleted
+     * @param sign  1 to add, -1 to subtract
+     */
+    public static void add(Database db, TimeZone zone, String where, int sign) {
+        Delta delta = new Delta(zone);
+        delta.add(db, where, sign);
+        delta.apply(db);
+    }
+
+    /**
+     * contributions of many trackings, summed up per day (and week) and project before touching the tables. changing
+     * thousands of trackings in bulk thus takes as many updates as they span distinct days and projects. subtracting
+     * a tracking before a write and adding it back afterwards only touches the days the write changed.
+     */
+    public static class Delta {
+
+        private final TimeZone zone;
+        private final Map<Long, Map<Long, long[]>> days = new HashMap<>();
+        private final Map<Long, Map<Long, long[]>> weeks = new HashMap<>();
+
+        /**
+         * @param zone the zone resolving local dates
+         */
+        public Delta(TimeZone zone) {
+            this.zone = zone;
+        }
+
+        /**
+         * reads trackings matching given where term along with their sessions
+         *
+         * @param db    the database
+         * @param where where term selecting the trackings
+         * @param sign  1 to add, -1 to subtract
+         */
+        public void add(Database db, String where, int sign) {
+            add(db, where, -1, sign);
+        }
+
+        /**
+         * reads trackings matching given where term along with their sessions, as if they were of given project
+         *
+         * @param db        the database
+         * @param where     where term selecting the trackings
+         * @param projectId the project to count them towards. -1, for their own.
+         * @param sign      1 to add, -1 to subtract
+         */
+        public void add(Database db, String where, long projectId, int sign) {
+            Database.Rows c = db.rawQuery("SELECT created, project_id FROM timetracking WHERE " + where, null);
+            try {
+                while (c.moveToNext()) {
+                    addTracking(c.getLong(0), projectId >= 0 ? projectId : c.getLong(1), sign);
+                }
+            } finally {
+                c.close();
+            }
+            c = db.rawQuery("SELECT s.started, s.duration, t.project_id FROM (SELECT id, project_id FROM timetracking WHERE "
+                    + where + ") t JOIN " + Sessions.TABLE + " s ON s.tracking_id = t.id", null);
+            try {
+                while (c.moveToNext()) {
+                    addSession(c.getLong(0), c.getLong(1), projectId >= 0 ? projectId : c.getLong(2), sign);
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        /**
+         * counts a tracking on the day it was created
+         *
+         * @param created   the tracking's creation time
+         * @param projectId the tracking's project
+         * @param sign      1 to add, -1 to subtract
+         */
+        public void addTracking(long created, long projectId, int sign) {
+            long day = TimeUtil.localEpochDay(created, zone);
+            accumulate(days, day, projectId, 0, sign);
+            accumulate(weeks, TimeUtil.isoWeekKey(day), projectId, 0, sign);
+        }
+
+        /**
+         * adds the time of a session to the days it spans, split at local midnight
+         *
+         * @param started   start of the session
+         * @param duration  duration of the session
+         * @param projectId the project of the session's tracking
+         * @param sign      1 to add, -1 to subtract
+         */
+        public void addSession(long started, long duration, long projectId, int sign) {
+            long stopped = started + duration;
+            long from = started;
+            while (from < stopped) {
+                long day = TimeUtil.localEpochDay(from, zone);
+                long to = Math.min(stopped, Math.max(from + 1, TimeUtil.startOfLocalDay(day + 1, zone)));
+                accumulate(days, day, projectId, sign * (to - from), 0);
+                accumulate(weeks, TimeUtil.isoWeekKey(day), projectId, sign * (to - from), 0);
+                from = to;
+            }
+        }
+
+        /**
+         * applies the sums. expected to run within the write's transaction.
+         *
+         * @param db the database
+         */
+        public void apply(Database db) {
+            apply(db, TABLE_DAY, "day", days);
+            apply(db, TABLE_WEEK, "week", weeks);
+        }
+
+        private static void apply(Database db, String table, String keyColumn, Map<Long, Map<Long, long[]>> buckets) {
+            for (Map.Entry<Long, Map<Long, long[]>> bucket : buckets.entrySet()) {
+                for (Map.Entry<Long, long[]> project : bucket.getValue().entrySet()) {
+                    long[] sums = project.getValue();
+                    if (sums[0] != 0 || sums[1] != 0) {
+                        Rollups.add(db, table, keyColumn, bucket.getKey(), project.getKey(), sums[0], (int) sums[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void add(Database db, String table, String keyColumn, long key, long projectId, long duration, int count) {
+        Object[] args = {duration, count, key, projectId};
+        db.execSQL("INSERT OR IGNORE INTO " + table + " (" + keyColumn + ", project_id, duration, count) VALUES (?, ?, 0, 0)",
+                new Object[]{key, projectId});
+        db.execSQL("UPDATE " + table + " SET duration = duration + ?, count = count + ? WHERE " + keyColumn + " = ? AND project_id = ?", args);
+        db.execSQL("DELETE FROM " + table + " WHERE " + keyColumn + " = ? AND project_id = ? AND count <= 0 AND duration <= 0",
+                new Object[]{key, projectId});
+    }
+
+    /**
+     * reads a report of given local days, grouping by project, day and iso week in sql. weeks cut by the range only
+     * sum up their days within it, so weekly totals add up to the report's total.
+     *
+     * @param db       the database
+     * @param projects project titles
+     * @param firstDay first local epoch day, inclusive
+     * @param lastDay  last local epoch day, inclusive
+     * @param version  data version the report is read at
+     * @return the report
+     */
+    public static Report report(Database db, Projects projects, long firstDay, long lastDay, long version) {
+        Report report = new Report(firstDay, lastDay, version);
+        String[] days = {String.valueOf(firstDay), String.valueOf(lastDay)};
+        int length = (int) (lastDay - firstDay + 1);
+
+        Map<Long, long[]> series = new HashMap<>();
+        Database.Rows c = db.rawQuery("SELECT day, project_id, duration FROM " + TABLE_DAY + " WHERE day BETWEEN ? AND ?", days);
+        try {
+            while (c.moveToNext()) {
+                long[] s = series.get(c.getLong(1));
+                if (s == null) {
+                    s = new long[length];
+                    series.put(c.getLong(1), s);
+                }
+                s[(int) (c.getLong(0) - firstDay)] = c.getLong(2);
+            }
+        } finally {
+            c.close();
+        }
+
+        c = db.rawQuery("SELECT project_id, SUM(duration) AS total, SUM(count) FROM " + TABLE_DAY
+                + " WHERE day BETWEEN ? AND ? GROUP BY project_id ORDER BY total DESC", days);
+        try {
+            while (c.moveToNext()) {
+                String title = projects.titleOf(db, c.getLong(0));
+                report.getTitles().add(new Report.TitleTotal(title != null ? title : "", c.getLong(1), c.getInt(2), series.get(c.getLong(0))));
+            }
+        } finally {
+            c.close();
+        }
+
+        c = db.rawQuery("SELECT day, SUM(duration) FROM " + TABLE_DAY
+                + " WHERE day BETWEEN ? AND ? GROUP BY day ORDER BY day DESC", days);
+        try {
+            while (c.moveToNext()) {
+                report.getDays().add(new Report.PeriodTotal(c.getLong(0), c.getLong(1)));
+            }
+        } finally {
+            c.close();
+        }
+
+        // whole weeks from the week rollups, the cut ones at either end from the days read above
+        long firstMonday = firstDay + (7 - isoDayOfWeek(firstDay)) % 7;
+        long lastSunday = lastDay - (isoDayOfWeek(lastDay) + 1) % 7;
+        Map<Long, Long> weeks = new TreeMap<>(Collections.<Long>reverseOrder());
+        for (Report.PeriodTotal day : report.getDays()) {
+            if (day.getKey() < firstMonday || day.getKey() > lastSunday) {
+                long week = TimeUtil.isoWeekKey(day.getKey());
+                Long sum = weeks.get(week);
+                weeks.put(week, (sum != null ? sum : 0) + day.getDuration());
+            }
+        }
+        if (firstMonday < lastSunday) {
+            String[] whole = {String.valueOf(TimeUtil.isoWeekKey(firstMonday)), String.valueOf(TimeUtil.isoWeekKey(lastSunday))};
+            c = db.rawQuery("SELECT week, SUM(duration) FROM " + TABLE_WEEK + " WHERE week BETWEEN ? AND ? GROUP BY week", whole);
+            try {
+                while (c.moveToNext()) {
+                    weeks.put(c.getLong(0), c.getLong(1));
+                }
+            } finally {
+                c.close();
+            }
+        }
+        for (Map.Entry<Long, Long> week : weeks.entrySet()) {
+            report.getWeeks().add(new Report.PeriodTotal(week.getKey(), week.getValue()));
+        }
+        return report;
+    }
+
+    /**
+     * clears all rollups, keeping the zone
+     *
+     * @param db the database
+     */
+    public static void clear(Database db) {
+        db.execSQL("DELETE FROM " + TABLE_DAY);
+        db.execSQL("DELETE FROM " + TABLE_WEEK);
+    }
+
+    /**
+     * recomputes all rollups from trackings and their sessions in a single pass, resolving local dates in given zone
+     *
+     * @param db   the database
+     * @param zone the zone to compute with
+     */
+    public static void rebuild(Database db, TimeZone zone) {
+        long start = System.currentTimeMillis();
+        Delta delta = new Delta(zone);
+        db.beginTransaction();
+        try {
+            delta.add(db, TrackingIndexes.NOT_DELETED, 1);
+            clear(db);
+            insert(db, TABLE_DAY, "day", delta.days);
+            insert(db, TABLE_WEEK, "week", delta.weeks);
+            db.execSQL("INSERT OR REPLACE INTO " + TABLE_STATE + " (key, value) VALUES (?, ?)", new Object[]{KEY_ZONE, zone.getID()});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Timber.i("rebuilt %d day rollups in %s within %d ms", delta.days.size(), zone.getID(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return day of the iso week of given local epoch day, 0 for monday
+     */
+    private static int isoDayOfWeek(long epochDay) {
+        // 1970-01-01 was a thursday
+        return (int) (((epochDay + 3) % 7 + 7) % 7);
+    }
+
+    private static void accumulate(Map<Long, Map<Long, long[]>> buckets, long key, long projectId, long duration, int count) {
+        Map<Long, long[]> projects = buckets.get(key);
+        if (projects == null) {
+            projects = new HashMap<>();
+            buckets.put(key, projects);
+        }
+        long[] sums = projects.get(projectId);
+        if (sums == null) {
+            sums = new long[2];
+            projects.put(projectId, sums);
+        }
+        sums[0] += duration;
+        sums[1] += count;
+    }
+
+    private static void insert(Database db, String table, String keyColumn, Map<Long, Map<Long, long[]>> buckets) {
+        Database.Statement stmt = db.compileStatement("INSERT INTO " + table + " (" + keyColumn + ", project_id, duration, count) VALUES (?, ?, ?, ?)");
+        try {
+            for (Map.Entry<Long, Map<Long, long[]>> bucket : buckets.entrySet()) {
+                for (Map.Entry<Long, long[]> project : bucket.getValue().entrySet()) {
+                    stmt.bindLong(1, bucket.getKey());
+                    stmt.bindLong(2, project.getKey());
+                    stmt.bindLong(3, project.getValue()[0]);
+                    stmt.bindLong(4, project.getValue()[1]);
+                    stmt.executeInsert();
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * tracked intervals of trackings, telling on which days their time was tracked.
+ * <p>
+ * the sessions of a tracking sum up to its stored duration. stopping a tracking closes a session from its last start.
+ * edits of the duration extend the most recent session back in time, or shorten the most recent sessions from their
+ * start. trackings stored without sessions, such as imported ones or ones stored before sessions were recorded, get a
+ * single session ending at their last stop, see {@link #fillMissing(Database)}.
+ *
+ * @author lavong.soysavanh
+ */
+public class Sessions {
+
+    /**
+     * session table
+     */
+    public static final String TABLE = "session";
+
+    /**
+     * inserts a single session per tracking, ending at its last stop but not before its creation plus its duration.
+     * append a where term selecting the trackings.
+     */
+    public static final String INSERT_GUESSED = "INSERT INTO " + TABLE + " (tracking_id, started, duration) "
+            + "SELECT id, MAX(lastTrackingStarted, created + duration) - duration, duration FROM timetracking WHERE duration > 0";
+
+    private Sessions() {
+    }
+
+    /**
+     * creates the session table, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + " (id INTEGER PRIMARY KEY, tracking_id INTEGER NOT NULL, "
+                + "started INTEGER NOT NULL, duration INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS session_tracking_idx ON " + TABLE + " (tracking_id, started)");
+    }
+
+    /**
+     * creates the trigger deleting sessions along with their tracking, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTriggers(Database db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS timetracking_session_ad AFTER DELETE ON timetracking BEGIN "
+                + "DELETE FROM " + TABLE + " WHERE tracking_id = old.id; END");
+    }
+
+    /**
+     * drops the session table and trigger
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TRIGGER IF EXISTS timetracking_session_ad");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    /**
+     * guesses a single session for every tracking with a duration but without sessions
+     *
+     * @param db the database
+     * @return number of sessions inserted
+     */
+    public static int fillMissing(Database db) {
+        Database.Statement stmt = db.compileStatement(INSERT_GUESSED
+                + " AND NOT EXISTS (SELECT 1 FROM " + TABLE + " WHERE tracking_id = timetracking.id)");
+        try {
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * records the time a write adds to or takes from a tracking. expected to run within the write's transaction.
+     *
+     * @param db     the database
+     * @param before the tracking as stored before. null, if inserted.
+     * @param after  the tracking as stored now, including its id
+     */
+    public static void record(Database db, Tracking before, Tracking after) {
+        long added = after.getDuration() - (before != null ? before.getDuration() : 0);
+        if (before != null && before.isTracking() && after.getLastTrackingStarted() > before.getLastTrackingStarted()) {
+            // stopped, or the running segment restarted by an edit
+            long closed = Math.min(after.getLastTrackingStarted() - before.getLastTrackingStarted(), added);
+            if (closed > 0) {
+                insert(db, after.getId(), before.getLastTrackingStarted(), closed);
+                added -= closed;
+            }
+        }
+        if (added > 0) {
+            extend(db, after, added);
+        } else if (added < 0) {
+            shorten(db, after.getId(), -added);
+        }
+    }
+
+    /**
+     * copies the sessions of trackings matching given where term to another tracking, e.g. when merging them
+     *
+     * @param db    the database
+     * @param where where term selecting the trackings to copy from
+     * @param into  the tracking to copy to
+     */
+    public static void copy(Database db, String where, long into) {
+        Database.Statement stmt = db.compileStatement("INSERT INTO " + TABLE + " (tracking_id, started, duration) "
+                + "SELECT ?, started, duration FROM " + TABLE + " WHERE tracking_id IN (SELECT id FROM timetracking WHERE " + where + ")");
+        try {
+            stmt.bindLong(1, into);
+            stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static void insert(Database db, long trackingId, long started, long duration) {
+        db.execSQL("INSERT INTO " + TABLE + " (tracking_id, started, duration) VALUES (?, ?, ?)",
+                new Object[]{trackingId, started, duration});
+    }
+
+    /**
+     * extends the most recent session back in time. a tracking without sessions gets one ending at its last stop.
+     */
+    private static void extend(Database db, Tracking tracking, long duration) {
+        List<long[]> sessions = mostRecentFirst(db, tracking.getId(), 1);
+        if (sessions.isEmpty()) {
+            long stopped = Math.max(tracking.getLastTrackingStarted(), tracking.getCreated() + duration);
+            insert(db, tracking.getId(), stopped - duration, duration);
+        } else {
+            db.execSQL("UPDATE " + TABLE + " SET started = started - ?, duration = duration + ? WHERE id = ?",
+                    new Object[]{duration, duration, sessions.get(0)[0]});
+        }
+    }
+
+    /**
+     * shortens the most recent sessions from their start, deleting the ones used up
+     */
+    private static void shorten(Database db, long trackingId, long duration) {
+        for (long[] session : mostRecentFirst(db, trackingId, -1)) {
+            if (session[1] > duration) {
+                db.execSQL("UPDATE " + TABLE + " SET started = started + ?, duration = duration - ? WHERE id = ?",
+                        new Object[]{duration, duration, session[0]});
+                return;
+            }
+            db.execSQL("DELETE FROM " + TABLE + " WHERE id = ?", new Object[]{session[0]});
+            duration -= session[1];
+        }
+    }
+
+    /**
+     * @return id and duration of the sessions of given tracking, most recent first
+     */
+    private static List<long[]> mostRecentFirst(Database db, long trackingId, int limit) {
+        List<long[]> sessions = new ArrayList<>();
+        Database.Rows c = db.rawQuery("SELECT id, duration FROM " + TABLE + " WHERE tracking_id = ? ORDER BY started DESC, id DESC LIMIT "
+                + limit, new String[]{String.valueOf(trackingId)});
+        try {
+            while (c.moveToNext()) {
+                sessions.add(new long[]{c.getLong(0), c.getLong(1)});
+            }
+        } finally {
+            c.close();
+        }
+        return sessions;
+    }
+
+}
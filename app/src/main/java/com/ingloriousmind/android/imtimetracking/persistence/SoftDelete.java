@@ -0,0 +1,116 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import java.util.TimeZone;
+
+import timber.log.Timber;
+
+/**
+ * marking trackings deleted, restoring and purging them.
+ * <p>
+ * a deleted tracking keeps its row, with the deletion time in the deleted column, and is left out of all queries by
+ * {@link TrackingIndexes#NOT_DELETED}. it can be restored until purged for good. rollups are adjusted within the same
+ * transaction as the mark.
+ *
+ * @author lavong.soysavanh
+ */
+public class SoftDelete {
+
+    /**
+     * max number of deleted trackings purged per transaction
+     */
+    static final int PURGE_BATCH_SIZE = 2000;
+
+    private SoftDelete() {
+    }
+
+    /**
+     * sets the deleted column of matching trackings
+     *
+     * @param db      the database
+     * @param where   condition of the trackings to mark
+     * @param deleted deletion time to mark them with. 0, to restore them.
+     * @return number of trackings marked
+     */
+    static int mark(Database db, String where, long deleted) {
+        Database.Statement stmt = db.compileStatement("UPDATE timetracking SET deleted = ? WHERE " + where);
+        try {
+            stmt.bindLong(1, deleted);
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * restores a tracking marked deleted, unless purged already
+     *
+     * @param db   the database
+     * @param zone the zone rollups are computed with
+     * @param id   the tracking's id
+     * @return true, if restored. false, if there is no such tracking deleted.
+     */
+    public static boolean restore(Database db, TimeZone zone, long id) {
+        boolean restored = false;
+        db.beginTransaction();
+        try {
+            if (mark(db, "id = " + id + " AND " + TrackingIndexes.DELETED, 0) > 0) {
+                Rollups.add(db, zone, "id = " + id + " AND " + TrackingIndexes.NOT_DELETED, 1);
+                restored = true;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return restored;
+    }
+
+    /**
+     * restores all trackings marked deleted at given time, unless purged already, and rebuilds rollups
+     *
+     * @param db      the database
+     * @param zone    the zone rollups are computed with
+     * @param deleted the deletion time they were marked with
+     * @return number of trackings restored
+     */
+    public static int restoreAll(Database db, TimeZone zone, long deleted) {
+        int restored;
+        db.beginTransaction();
+        try {
+            restored = mark(db, "deleted = " + deleted, 0);
+            if (restored > 0) {
+                Rollups.rebuild(db, zone);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return restored;
+    }
+
+    /**
+     * deletes a batch of up to {@link #PURGE_BATCH_SIZE} trackings marked deleted before given time for good, within
+     * a transaction of its own. purging all of them takes batches until one comes out smaller.
+     *
+     * @param db            the database
+     * @param deletedBefore epoch millis. trackings deleted since are kept, e.g. to be restored still.
+     * @return number of trackings purged
+     */
+    public static int purgeBatch(Database db, long deletedBefore) {
+        long start = System.currentTimeMillis();
+        int purged;
+        Database.Statement stmt = db.compileStatement("DELETE FROM timetracking WHERE id IN (SELECT id FROM timetracking "
+                + "WHERE " + TrackingIndexes.DELETED + " AND deleted < ? LIMIT " + PURGE_BATCH_SIZE + ")");
+        db.beginTransaction();
+        try {
+            stmt.bindLong(1, deletedBefore);
+            purged = stmt.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            stmt.close();
+        }
+        Timber.i("purged %d deleted trackings within %d ms", purged, System.currentTimeMillis() - start);
+        return purged;
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.functions.Action1;
+import timber.log.Timber;
+
+/**
+ * in-memory dictionary of distinct tracking titles for autocompletion.
+ * <p>
+ * titles are kept sorted case insensitively, so a prefix maps to a contiguous range. matches are ranked by frecency:
+ * the number of trackings of a title, decaying with the time passed since it was last used. the index is built on
+ * first use by a single grouping query on the database scheduler, and updated incrementally on every write after.
+ *
+ * @author lavong.soysavanh
+ */
+public class TitleIndex implements DbHelper.WriteListener {
+
+    /**
+     * time after which the weight of a title's usage count is halved
+     */
+    static final long HALF_LIFE_MS = 14L * 24 * 60 * 60 * 1000;
+
+    /**
+     * distinct title usage
+     */
+    public static class Entry {
+
+        private String title;
+        private int count;
+        private long lastUsed;
+
+        public Entry(String title, int count, long lastUsed) {
+            this.title = title;
+            this.count = count;
+            this.lastUsed = lastUsed;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        /**
+         * @param now epoch millis
+         * @return usage count, halved for every half-life passed since last used
+         */
+        double score(long now) {
+            return count * Math.pow(0.5, Math.max(0, now - lastUsed) / (double) HALF_LIFE_MS);
+        }
+    }
+
+    private final TrackingRepository repository;
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    private final AtomicBoolean loadRequested = new AtomicBoolean();
+    private boolean loaded;
+
+    /**
+     * ctor
+     *
+     * @param repository the repository to load titles from
+     */
+    public TitleIndex(TrackingRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * loads the index in the background, unless requested before
+     */
+    public void preload() {
+        if (!loadRequested.compareAndSet(false, true)) {
+            return;
+        }
+        repository.fetchTitleStats().subscribe(new Action1<List<Entry>>() {
+            @Override
+            public void call(List<Entry> stats) {
+                load(stats);
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed loading title index");
+                loadRequested.set(false);
+            }
+        });
+    }
+
+    synchronized void load(List<Entry> stats) {
+        entries.clear();
+        for (Entry e : stats) {
+            if (e.title != null && !e.title.isEmpty()) {
+                Entry existing = entries.get(key(e.title));
+                if (existing == null) {
+                    entries.put(key(e.title), e);
+                } else {
+                    merge(existing, e.title, e.count, e.lastUsed);
+                }
+            }
+        }
+        loaded = true;
+        Timber.v("title index loaded: %d titles", entries.size());
+    }
+
+    /**
+     * returns the best ranked titles starting with given prefix, ignoring case. starts loading the index on first use,
+     * returning no suggestions until loaded.
+     *
+     * @param prefix the prefix typed
+     * @param limit  max number of suggestions
+     * @param now    current time, for ranking
+     * @return suggestions, best first
+     */
+    public List<String> suggest(String prefix, int limit, long now) {
+        preload();
+        List<Entry> top = new ArrayList<>(limit + 1);
+        String from = key(prefix != null ? prefix.trim() : "");
+        synchronized (this) {
+            Map<String, Entry> range = from.isEmpty() ? entries : entries.subMap(from, from + Character.MAX_VALUE);
+            for (Entry e : range.values()) {
+                double score = e.score(now);
+                int i = top.size();
+                while (i > 0 && rankedBefore(score, e, top.get(i - 1), now)) {
+                    i--;
+                }
+                if (i < limit) {
+                    top.add(i, e);
+                    if (top.size() > limit) {
+                        top.remove(limit);
+                    }
+                }
+            }
+            List<String> titles = new ArrayList<>(top.size());
+            for (Entry e : top) {
+                titles.add(e.title);
+            }
+            return titles;
+        }
+    }
+
+    private static boolean rankedBefore(double score, Entry e, Entry other, long now) {
+        double otherScore = other.score(now);
+        return score > otherScore || (score == otherScore && e.lastUsed > other.lastUsed);
+    }
+
+    /**
+     * counts a use of given title
+     *
+     * @param title  the title
+     * @param usedAt time of use
+     */
+    synchronized void add(String title, long usedAt) {
+        if (!loaded || title == null || title.isEmpty()) {
+            return;
+        }
+        Entry e = entries.get(key(title));
+        if (e == null) {
+            entries.put(key(title), new Entry(title, 1, usedAt));
+        } else {
+            merge(e, title, 1, usedAt);
+        }
+    }
+
+    /**
+     * discounts a use of given title
+     *
+     * @param title the title
+     */
+    synchronized void remove(String title) {
+        if (!loaded || title == null || title.isEmpty()) {
+            return;
+        }
+        Entry e = entries.get(key(title));
+        if (e != null && --e.count <= 0) {
+            entries.remove(key(title));
+        }
+    }
+
+    private static void merge(Entry e, String title, int count, long lastUsed) {
+        e.count += count;
+        if (lastUsed >= e.lastUsed) {
+            // most recent spelling wins
+            e.title = title;
+            e.lastUsed = lastUsed;
+        }
+    }
+
+    private static String key(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTrackingStored(Tracking previous, Tracking stored) {
+        if (previous != null) {
+            remove(previous.getTitle());
+        }
+        add(stored.getTitle(), stored.getLastTrackingStarted());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTrackingRemoved(Tracking removed) {
+        remove(removed.getTitle());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onTrackingsCleared() {
+        entries.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * reloads the index, queued behind the restoring write on the database scheduler
+     */
+    @Override
+    public void onTrackingsRestored() {
+        synchronized (this) {
+            loaded = false;
+            entries.clear();
+        }
+        loadRequested.set(false);
+        preload();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * reloads the index, just like after restoring
+     */
+    @Override
+    public void onTrackingsChanged() {
+        onTrackingsRestored();
+    }
+
+}
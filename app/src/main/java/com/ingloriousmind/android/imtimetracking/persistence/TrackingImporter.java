@@ -0,0 +1,618 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import timber.log.Timber;
+
+/**
+ * streaming import of trackings from csv or json, e.g. timesheets kept elsewhere.
+ * <p>
+ * csv needs a header row naming the columns, json an array of flat objects. columns or keys are matched to tracking
+ * properties by name, ignoring case: {@code title}, {@code description}, {@code created}, {@code lastTrackingStarted}
+ * and {@code duration}. others are ignored. times are epoch millis or local date times like {@code 2016-09-30 14:05},
+ * durations millis or hours and minutes like {@code 1:30}. the format is told by the first character.
+ * <p>
+ * rows are inserted by a single compiled statement, {@link #DEFAULT_CHUNK_SIZE} rows per transaction. rows created at
+ * the same time as a tracking stored, or an earlier row, are skipped as duplicates. so an interrupted import is simply
+ * repeated, and importing the same file twice does no harm. rollups are rebuilt once all rows are in.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingImporter {
+
+    /**
+     * default number of rows per transaction
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private static final int TITLE = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int CREATED = 2;
+    private static final int LAST_STARTED = 3;
+    private static final int DURATION = 4;
+
+    private static final List<String> FIELDS = Arrays.asList("title", "description", "created", "lasttrackingstarted", "duration");
+
+    private static final String INSERT = "INSERT INTO timetracking (project_id, description, created, lastTrackingStarted, "
+            + "duration, tracking, deleted) SELECT ?, ?, ?, ?, ?, 0, 0 "
+            + "WHERE NOT EXISTS (SELECT 1 FROM timetracking WHERE created = ? AND " + TrackingIndexes.NOT_DELETED + ")";
+
+    /**
+     * notified after every committed chunk, on the importing thread
+     */
+    public interface ProgressListener {
+
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * progress of an import
+     */
+    public static class Progress {
+
+        private long read;
+        private long imported;
+        private long duplicates;
+        private long invalid;
+        private long bytesRead;
+        private final long bytesTotal;
+
+        Progress(long bytesTotal) {
+            this.bytesTotal = bytesTotal;
+        }
+
+        private Progress(Progress progress) {
+            this(progress.bytesTotal);
+            read = progress.read;
+            imported = progress.imported;
+            duplicates = progress.duplicates;
+            invalid = progress.invalid;
+            bytesRead = progress.bytesRead;
+        }
+
+        /**
+         * @return rows read so far
+         */
+        public long getRead() {
+            return read;
+        }
+
+        /**
+         * @return rows inserted so far
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return rows skipped as already stored
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return rows skipped for lack of a valid creation time or duration
+         */
+        public long getInvalid() {
+            return invalid;
+        }
+
+        /**
+         * @return percentage of bytes read, 0 to 100. 0, if the size is unknown.
+         */
+        public int getPercent() {
+            return bytesTotal > 0 ? (int) Math.min(100, bytesRead * 100 / bytesTotal) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Progress{read=" + read + ", imported=" + imported + ", duplicates=" + duplicates + ", invalid=" + invalid
+                    + ", bytesRead=" + bytesRead + ", bytesTotal=" + bytesTotal + '}';
+        }
+    }
+
+    private TrackingImporter() {
+    }
+
+    /**
+     * imports all rows of given stream, closing it
+     *
+     * @param db        the database
+     * @param projects  project cache, resolving titles
+     * @param in        csv or json, utf-8 encoded
+     * @param length    size of the stream in bytes, for progress. -1, if unknown.
+     * @param zone      the zone of local date times
+     * @param chunkSize max number of rows per transaction
+     * @param listener  notified after every chunk. may be null.
+     * @return final progress
+     * @throws IOException if reading failed or the input is malformed. chunks committed before are kept, and rollups
+     *                     rebuilt.
+     */
+    public static Progress run(Database db, Projects projects, InputStream in, long length, TimeZone zone, int chunkSize,
+                               ProgressListener listener) throws IOException {
+        long start = System.currentTimeMillis();
+        Progress progress = new Progress(length);
+        CountingInputStream counter = new CountingInputStream(in);
+        Database.Statement insert = null;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(counter, "UTF-8"), 64 * 1024);
+            RowReader rows = open(reader);
+            insert = db.compileStatement(INSERT);
+            String[] row = new String[FIELDS.size()];
+            boolean more = true;
+            while (more) {
+                db.beginTransaction();
+                boolean committed = false;
+                try {
+                    for (int i = 0; i < chunkSize && (more = rows.next(row)); i++) {
+                        progress.read++;
+                        insertRow(db, projects, insert, row, zone, progress);
+                    }
+                    db.setTransactionSuccessful();
+                    committed = true;
+                } finally {
+                    db.endTransaction();
+                    if (!committed) {
+                        // projects inserted within the rolled back transaction are gone
+                        projects.invalidate();
+                    }
+                }
+                progress.bytesRead = counter.count;
+                if (listener != null) {
+                    listener.onProgress(new Progress(progress));
+                }
+            }
+        } finally {
+            if (insert != null) {
+                insert.close();
+            }
+            counter.close();
+            if (progress.imported > 0) {
+                // chunks committed before a failure are kept, so sessions and rollups need to cover them as well
+                Sessions.fillMissing(db);
+                Rollups.rebuild(db, zone);
+            }
+        }
+        Timber.i("imported %s within %d ms", progress, System.currentTimeMillis() - start);
+        return progress;
+    }
+
+    private static void insertRow(Database db, Projects projects, Database.Statement insert, String[] row, TimeZone zone,
+                                  Progress progress) {
+        long created = parseTime(row[CREATED], zone);
+        long duration = parseDuration(row[DURATION]);
+        if (created < 0 || duration < 0) {
+            progress.invalid++;
+            return;
+        }
+        long lastStarted = parseTime(row[LAST_STARTED], zone);
+        insert.clearBindings();
+        insert.bindLong(1, projects.idOf(db, row[TITLE]));
+        if (row[DESCRIPTION] != null && !row[DESCRIPTION].isEmpty()) {
+            insert.bindString(2, row[DESCRIPTION]);
+        } else {
+            insert.bindNull(2);
+        }
+        insert.bindLong(3, created);
+        insert.bindLong(4, lastStarted >= 0 ? lastStarted : created);
+        insert.bindLong(5, duration);
+        insert.bindLong(6, created);
+        if (insert.executeUpdateDelete() > 0) {
+            progress.imported++;
+        } else {
+            progress.duplicates++;
+        }
+    }
+
+    /**
+     * @return epoch millis of given millis or local date time, like 2016-09-30, 2016-09-30 14:05 or
+     * 2016-09-30T14:05:59. -1, if missing or malformed.
+     */
+    static long parseTime(String value, TimeZone zone) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        if (isDigits(value, 0, value.length())) {
+            return value.length() < 19 ? Long.parseLong(value) : -1;
+        }
+        int length = value.length();
+        if ((length != 10 && length != 16 && length != 19) || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return -1;
+        }
+        long tod = 0;
+        if (length > 10) {
+            char separator = value.charAt(10);
+            if ((separator != ' ' && separator != 'T') || value.charAt(13) != ':' || (length == 19 && value.charAt(16) != ':')) {
+                return -1;
+            }
+            int h = number(value, 11, 13);
+            int m = number(value, 14, 16);
+            int s = length == 19 ? number(value, 17, 19) : 0;
+            if (h < 0 || h > 23 || m < 0 || m > 59 || s < 0 || s > 59) {
+                return -1;
+            }
+            tod = ((h * 60L + m) * 60 + s) * 1000;
+        }
+        int year = number(value, 0, 4);
+        int month = number(value, 5, 7);
+        int day = number(value, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+        long local = TimeUtil.epochDayFromCivil(year, month, day) * TimeUtil.DAY_MILLIS + tod;
+        return local - zone.getOffset(local - zone.getOffset(local));
+    }
+
+    /**
+     * @return millis of given millis or hours and minutes, like 1:30 or 1:30:15. -1, if missing or malformed.
+     */
+    static long parseDuration(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        if (isDigits(value, 0, value.length())) {
+            return value.length() < 19 ? Long.parseLong(value) : -1;
+        }
+        String[] parts = value.split(":", -1);
+        if (parts.length < 2 || parts.length > 3 || parts[0].length() > 6) {
+            return -1;
+        }
+        int h = number(parts[0], 0, parts[0].length());
+        int m = number(parts[1], 0, parts[1].length());
+        int s = parts.length == 3 ? number(parts[2], 0, parts[2].length()) : 0;
+        if (h < 0 || m < 0 || m > 59 || s < 0 || s > 59 || parts[1].length() != 2) {
+            return -1;
+        }
+        return ((h * 60L + m) * 60 + s) * 1000;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String s, int from, int to) {
+        return isDigits(s, from, to) && to - from < 10 ? Integer.parseInt(s.substring(from, to)) : -1;
+    }
+
+    private static RowReader open(BufferedReader reader) throws IOException {
+        int c;
+        do {
+            reader.mark(1);
+            c = reader.read();
+        } while (c == '\uFEFF' || Character.isWhitespace(c));
+        reader.reset();
+        return c == '[' ? new JsonRowReader(reader) : new CsvRowReader(reader);
+    }
+
+    /**
+     * reads rows into tracking fields by name
+     */
+    private interface RowReader {
+
+        /**
+         * @param row fields of the next row, null where missing
+         * @return false, if there are no more rows
+         */
+        boolean next(String[] row) throws IOException;
+    }
+
+    /**
+     * rfc 4180 csv: quoted fields may contain delimiters, quotes doubled and line breaks. the delimiter is the first
+     * comma, semicolon or tab of the header row.
+     */
+    private static class CsvRowReader implements RowReader {
+
+        private final Reader reader;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private final int[] columns;
+        private char delimiter = ',';
+        private boolean eof;
+
+        CsvRowReader(Reader reader) throws IOException {
+            this.reader = reader;
+            int c;
+            do {
+                c = reader.read();
+            } while (c == '\uFEFF' || c == '\r' || c == '\n');
+            if (c == -1) {
+                columns = new int[0];
+                return;
+            }
+            StringBuilder header = new StringBuilder();
+            while (c != -1 && c != '\n') {
+                header.append((char) c);
+                c = reader.read();
+            }
+            for (int i = 0; i < header.length(); i++) {
+                char h = header.charAt(i);
+                if (h == ',' || h == ';' || h == '\t') {
+                    delimiter = h;
+                    break;
+                }
+            }
+            String[] names = header.toString().trim().split(String.valueOf(delimiter), -1);
+            columns = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                columns[i] = FIELDS.indexOf(unquote(names[i].trim()).toLowerCase(Locale.US));
+            }
+            if (!contains(columns, CREATED) || !contains(columns, DURATION)) {
+                throw new IOException("csv header lacks created or duration: " + header);
+            }
+        }
+
+        @Override
+        public boolean next(String[] row) throws IOException {
+            while (!eof) {
+                readRecord();
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    // blank line
+                    continue;
+                }
+                Arrays.fill(row, null);
+                for (int i = 0; i < columns.length && i < fields.size(); i++) {
+                    if (columns[i] >= 0) {
+                        row[columns[i]] = fields.get(i).trim();
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private void readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                int c = reader.read();
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("unterminated quote in csv");
+                    } else if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    eof = c == -1;
+                    int end = field.length();
+                    if (end > 0 && field.charAt(end - 1) == '\r') {
+                        field.setLength(end - 1);
+                    }
+                    fields.add(field.toString());
+                    return;
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        private static String unquote(String s) {
+            return s.length() >= 2 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"' ? s.substring(1, s.length() - 1) : s;
+        }
+
+        private static boolean contains(int[] columns, int field) {
+            for (int column : columns) {
+                if (column == field) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * json array of flat objects. values are strings, numbers, booleans or null, read as text.
+     */
+    private static class JsonRowReader implements RowReader {
+
+        private final Reader reader;
+        private final StringBuilder sb = new StringBuilder();
+        private boolean first = true;
+
+        JsonRowReader(Reader reader) throws IOException {
+            this.reader = reader;
+            expect('[');
+        }
+
+        @Override
+        public boolean next(String[] row) throws IOException {
+            int c = skipWhitespace();
+            if (c == ']') {
+                return false;
+            }
+            if (!first) {
+                if (c != ',') {
+                    throw new IOException("expected , or ] in json, found " + describe(c));
+                }
+                c = skipWhitespace();
+            }
+            first = false;
+            if (c != '{') {
+                throw new IOException("expected object in json, found " + describe(c));
+            }
+            Arrays.fill(row, null);
+            c = skipWhitespace();
+            if (c == '}') {
+                return true;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw new IOException("expected key in json, found " + describe(c));
+                }
+                int index = FIELDS.indexOf(readString().toLowerCase(Locale.US));
+                expect(':');
+                String value = readValue();
+                if (index >= 0) {
+                    row[index] = value;
+                }
+                c = skipWhitespace();
+                if (c == '}') {
+                    return true;
+                }
+                if (c != ',') {
+                    throw new IOException("expected , or } in json, found " + describe(c));
+                }
+                c = skipWhitespace();
+            }
+        }
+
+        private String readValue() throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[' || c == -1) {
+                throw new IOException("unsupported json value, found " + describe(c));
+            }
+            sb.setLength(0);
+            while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                sb.append((char) c);
+                reader.mark(1);
+                c = reader.read();
+            }
+            reader.reset();
+            String literal = sb.toString();
+            return "null".equals(literal) ? null : literal;
+        }
+
+        private String readString() throws IOException {
+            sb.setLength(0);
+            while (true) {
+                int c = reader.read();
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c == '\\') {
+                    c = reader.read();
+                    switch (c) {
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) {
+                                hex[i] = (char) reader.read();
+                            }
+                            try {
+                                sb.append((char) Integer.parseInt(new String(hex), 16));
+                            } catch (NumberFormatException e) {
+                                throw new IOException("malformed unicode escape in json", e);
+                            }
+                            break;
+                        case -1:
+                            throw new IOException("unterminated string in json");
+                        default:
+                            sb.append((char) c);
+                    }
+                } else if (c == -1) {
+                    throw new IOException("unterminated string in json");
+                } else {
+                    sb.append((char) c);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            int c = skipWhitespace();
+            if (c != expected) {
+                throw new IOException("expected " + expected + " in json, found " + describe(c));
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = reader.read();
+            } while (c == '\uFEFF' || (c != -1 && Character.isWhitespace(c)));
+            return c;
+        }
+
+        private static String describe(int c) {
+            return c == -1 ? "end of input" : String.valueOf((char) c);
+        }
+    }
+
+    /**
+     * counts bytes read, for progress
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+/**
+ * composite indexes of the timetracking table, on top of the rowid key and the created index declared on the model.
+ * <ul>
+ * <li>by last start: covers list rows in list order</li>
+ * <li>by project: serves lookups by project, and covers per project usage stats</li>
+ * <li>by deletion time: finds deleted trackings to purge</li>
+ * </ul>
+ * the first two are partial indexes of trackings not deleted. queries only use them when filtering by the literal
+ * {@link #NOT_DELETED} term, not by a bound parameter. they carry the deletion time as last column nonetheless, as
+ * sqlite only considers an index covering when it holds all columns a query refers to.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingIndexes {
+
+    /**
+     * where term selecting trackings not deleted
+     */
+    public static final String NOT_DELETED = "deleted = 0";
+
+    /**
+     * where term selecting deleted trackings
+     */
+    public static final String DELETED = "deleted != 0";
+
+    private TrackingIndexes() {
+    }
+
+    /**
+     * creates indexes, if not existing
+     *
+     * @param db the database
+     */
+    public static void createIndexes(Database db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_list_idx ON timetracking "
+                + "(lastTrackingStarted, duration, project_id, tracking, deleted) WHERE " + NOT_DELETED);
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_project_idx ON timetracking (project_id, lastTrackingStarted, deleted) "
+                + "WHERE " + NOT_DELETED);
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_deleted_idx ON timetracking (deleted) WHERE " + DELETED);
+    }
+
+    /**
+     * drops indexes
+     *
+     * @param db the database
+     */
+    public static void dropIndexes(Database db) {
+        db.execSQL("DROP INDEX IF EXISTS timetracking_list_idx");
+        db.execSQL("DROP INDEX IF EXISTS timetracking_project_idx");
+        db.execSQL("DROP INDEX IF EXISTS timetracking_deleted_idx");
+    }
+
+}
@@ -0,0 +1,615 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.Migrator;
+import com.ingloriousmind.android.imtimetracking.report.DayBuckets;
+import com.ingloriousmind.android.imtimetracking.report.Report;
+import com.ingloriousmind.android.imtimetracking.report.ReportRange;
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
+
+/**
+ * asynchronous repository in front of {@link DbHelper}.
+ * <p>
+ * every operation is deferred until subscription. writes, and reads the tracker relies on, are executed on the given
+ * database scheduler. it is expected to be single threaded, so they are applied in subscription order. list, search,
+ * report and heatmap reads are executed on the read scheduler instead, served by wal reader connections alongside
+ * writes. they do not rely on queue order: every write subscribed is counted, and a read waits until all writes
+ * subscribed before it are done, so a reload subscribed after a write always observes that write.
+ * <p>
+ * data migrations left pending by an upgrade run ahead of the first operation, so no operation observes half migrated
+ * data. if they fail, the operation fails with a {@link Migrator.MigrationException}, and the next operation tries
+ * again.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingRepository {
+
+    private final DbHelper dbHelper;
+    private final Scheduler scheduler;
+    private final Scheduler readScheduler;
+    private final BehaviorSubject<Migrator.Progress> migrationProgress = BehaviorSubject.create();
+    private final PublishSubject<TrackingImporter.Progress> importProgress = PublishSubject.create();
+    private volatile boolean migrated;
+
+    /**
+     * guards the write counts, notified whenever a write is done
+     */
+    private final Object writes = new Object();
+    private long writesSubscribed;
+    private long writesDone;
+
+    /**
+     * ctor, running reads on the database scheduler as well
+     *
+     * @param dbHelper  the db helper to delegate to
+     * @param scheduler the scheduler running all database operations
+     */
+    public TrackingRepository(DbHelper dbHelper, Scheduler scheduler) {
+        this(dbHelper, scheduler, scheduler);
+    }
+
+    /**
+     * ctor
+     *
+     * @param dbHelper      the db helper to delegate to
+     * @param scheduler     the single threaded scheduler running writes
+     * @param readScheduler the scheduler running list, search and report reads, possibly on several threads
+     */
+    public TrackingRepository(DbHelper dbHelper, Scheduler scheduler, Scheduler readScheduler) {
+        this.dbHelper = dbHelper;
+        this.scheduler = scheduler;
+        this.readScheduler = readScheduler;
+    }
+
+    /**
+     * @return all trackings, most recent first
+     * @see DbHelper#fetchTrackings()
+     */
+    public Single<List<Tracking>> fetchTrackings() {
+        return defer(new Callable<List<Tracking>>() {
+            @Override
+            public List<Tracking> call() throws Exception {
+                return dbHelper.fetchTrackings();
+            }
+        });
+    }
+
+    /**
+     * @return the most recent tracking. emits null, if there is none.
+     * @see DbHelper#fetchMostRecentTracking()
+     */
+    public Single<Tracking> fetchMostRecentTracking() {
+        return defer(new Callable<Tracking>() {
+            @Override
+            public Tracking call() throws Exception {
+                return dbHelper.fetchMostRecentTracking();
+            }
+        });
+    }
+
+    /**
+     * @return list rows of all trackings, most recent first
+     * @see DbHelper#fetchTrackingRows()
+     */
+    public Single<List<TrackingRow>> fetchTrackingRows() {
+        return read(new Callable<List<TrackingRow>>() {
+            @Override
+            public List<TrackingRow> call() throws Exception {
+                return dbHelper.fetchTrackingRows();
+            }
+        });
+    }
+
+    /**
+     * @param id the tracking's id
+     * @return the tracking, with all columns. emits null, if there is none.
+     * @see DbHelper#fetchTracking(long)
+     */
+    public Single<Tracking> fetchTracking(final long id) {
+        return defer(new Callable<Tracking>() {
+            @Override
+            public Tracking call() throws Exception {
+                return dbHelper.fetchTracking(id);
+            }
+        });
+    }
+
+    /**
+     * @param query  the text typed
+     * @param limit  max number of trackings to return
+     * @param offset number of matching trackings to skip
+     * @return a page of list rows of matching trackings, most recent first
+     * @see DbHelper#searchTrackings(String, long, long)
+     */
+    public Single<List<TrackingRow>> searchTrackings(final String query, final long limit, final long offset) {
+        return read(new Callable<List<TrackingRow>>() {
+            @Override
+            public List<TrackingRow> call() throws Exception {
+                return dbHelper.searchTrackings(query, limit, offset);
+            }
+        });
+    }
+
+    /**
+     * @param query the search query
+     * @return sum of durations of all trackings matching
+     * @see DbHelper#sumSearchDurations(String)
+     */
+    public Single<Long> sumSearchDurations(final String query) {
+        return read(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return dbHelper.sumSearchDurations(query);
+            }
+        });
+    }
+
+    /**
+     * @param tracking the tracking to store
+     * @return true, if inserted or updated successfully. false, otherwise.
+     * @see DbHelper#storeTracking(Tracking)
+     */
+    public Single<Boolean> storeTracking(final Tracking tracking) {
+        return defer(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return dbHelper.storeTracking(tracking);
+            }
+        });
+    }
+
+    /**
+     * @param tracking the tracking to remove
+     * @return true, if removed successfully. false, otherwise.
+     * @see DbHelper#removeTracking(Tracking)
+     */
+    public Single<Boolean> removeTracking(final Tracking tracking) {
+        return defer(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return dbHelper.removeTracking(tracking);
+            }
+        });
+    }
+
+    /**
+     * @param time epoch millis
+     * @return sum of durations tracked on the local day of given time
+     * @see DbHelper#sumDurationsOfDay(long)
+     */
+    public Single<Long> sumDurationsOfDay(final long time) {
+        return defer(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return dbHelper.sumDurationsOfDay(time);
+            }
+        });
+    }
+
+    /**
+     * @return deletion time the trackings were marked with, to restore them by
+     * @see DbHelper#removeAllTrackings()
+     */
+    public Single<Long> removeAllTrackings() {
+        return defer(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return dbHelper.removeAllTrackings();
+            }
+        });
+    }
+
+    /**
+     * @param file the file to write
+     * @return number of rows written
+     * @see DbHelper#backup(File)
+     */
+    public Single<Long> backup(final File file) {
+        return defer(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return dbHelper.backup(file);
+            }
+        });
+    }
+
+    /**
+     * @param file the backup file
+     * @return number of rows restored
+     * @see DbHelper#restore(File)
+     */
+    public Single<Long> restore(final File file) {
+        return defer(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return dbHelper.restore(file);
+            }
+        });
+    }
+
+    /**
+     * @param id id of the tracking to restore
+     * @return true, if restored successfully. false, otherwise.
+     * @see DbHelper#restoreTracking(long)
+     */
+    public Single<Boolean> restoreTracking(final long id) {
+        return defer(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return dbHelper.restoreTracking(id);
+            }
+        });
+    }
+
+    /**
+     * @param deleted the deletion time returned by {@link #removeAllTrackings()}
+     * @return number of trackings restored
+     * @see DbHelper#restoreTrackings(long)
+     */
+    public Single<Integer> restoreTrackings(final long deleted) {
+        return defer(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return dbHelper.restoreTrackings(deleted);
+            }
+        });
+    }
+
+    /**
+     * @param ids     the selected trackings
+     * @param deleted deletion time to mark them with, to restore them by
+     * @return number of trackings deleted
+     * @see DbHelper#removeTrackings(long[], long)
+     */
+    public Single<Integer> removeTrackings(final long[] ids, final long deleted) {
+        return defer(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return dbHelper.removeTrackings(ids, deleted);
+            }
+        });
+    }
+
+    /**
+     * @param ids   the selected trackings
+     * @param title the new title
+     * @return number of trackings retitled
+     * @see DbHelper#retitleTrackings(long[], String)
+     */
+    public Single<Integer> retitleTrackings(final long[] ids, final String title) {
+        return defer(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return dbHelper.retitleTrackings(ids, title);
+            }
+        });
+    }
+
+    /**
+     * @param ids the selected trackings
+     * @return number of trackings merged
+     * @see DbHelper#mergeTrackings(long[])
+     */
+    public Single<Integer> mergeTrackings(final long[] ids) {
+        return defer(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return dbHelper.mergeTrackings(ids);
+            }
+        });
+    }
+
+    /**
+     * deletes trackings marked deleted before given time for good, then projects no longer referenced. every batch is
+     * an operation of its own, so operations subscribed meanwhile run in between batches.
+     *
+     * @param deletedBefore epoch millis
+     * @return number of trackings purged
+     * @see DbHelper#purgeDeletedBatch(long)
+     * @see DbHelper#purgeUnreferencedProjects()
+     */
+    public Single<Integer> purgeDeletedTrackings(long deletedBefore) {
+        return purgeDeletedTrackings(deletedBefore, 0);
+    }
+
+    private Single<Integer> purgeDeletedTrackings(final long deletedBefore, final int purgedBefore) {
+        return defer(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return dbHelper.purgeDeletedBatch(deletedBefore);
+            }
+        }).flatMap(new Func1<Integer, Single<Integer>>() {
+            @Override
+            public Single<Integer> call(Integer batch) {
+                final int purged = purgedBefore + batch;
+                if (batch == SoftDelete.PURGE_BATCH_SIZE) {
+                    return purgeDeletedTrackings(deletedBefore, purged);
+                }
+                return defer(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        dbHelper.purgeUnreferencedProjects();
+                        return purged;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * runs data migrations left pending by a database upgrade, unless done already. every other operation waits for
+     * them as well, this just starts them early.
+     *
+     * @return number of migrations completed. 0, if done before.
+     * @see DbHelper#runPendingMigrations(Migrator.ProgressListener)
+     * @see #observeMigrationProgress()
+     */
+    public Single<Integer> runPendingMigrations() {
+        return Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return ensureMigrated();
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return progress of data migrations, emitted on the thread running them. replays the latest progress.
+     */
+    public Observable<Migrator.Progress> observeMigrationProgress() {
+        return migrationProgress.asObservable();
+    }
+
+    /**
+     * @return true, if rollups were rebuilt
+     * @see DbHelper#ensureRollupsCurrent()
+     */
+    public Single<Boolean> ensureRollupsCurrent() {
+        return defer(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return dbHelper.ensureRollupsCurrent();
+            }
+        });
+    }
+
+    /**
+     * @return outcome of maintenance
+     * @see DbHelper#runMaintenance()
+     */
+    public Single<DbMaintenance.Result> runMaintenance() {
+        return defer(new Callable<DbMaintenance.Result>() {
+            @Override
+            public DbMaintenance.Result call() throws Exception {
+                return dbHelper.runMaintenance();
+            }
+        });
+    }
+
+    /**
+     * @param in     the document to import, closed when done
+     * @param length size of the document in bytes. -1, if unknown.
+     * @return final progress
+     * @see DbHelper#importTrackings(InputStream, long, TrackingImporter.ProgressListener)
+     * @see #observeImportProgress()
+     */
+    public Single<TrackingImporter.Progress> importTrackings(final InputStream in, final long length) {
+        return defer(new Callable<TrackingImporter.Progress>() {
+            @Override
+            public TrackingImporter.Progress call() throws Exception {
+                return dbHelper.importTrackings(in, length, new TrackingImporter.ProgressListener() {
+                    @Override
+                    public void onProgress(TrackingImporter.Progress progress) {
+                        importProgress.onNext(progress);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return progress of imports, emitted on the database scheduler after every chunk
+     */
+    public Observable<TrackingImporter.Progress> observeImportProgress() {
+        return importProgress.asObservable();
+    }
+
+    /**
+     * @param limit max number of changes
+     * @return the oldest changes not synced yet
+     * @see DbHelper#readChanges(int)
+     */
+    public Single<ChangeLog.Batch> readChanges(final int limit) {
+        return defer(new Callable<ChangeLog.Batch>() {
+            @Override
+            public ChangeLog.Batch call() throws Exception {
+                return dbHelper.readChanges(limit);
+            }
+        });
+    }
+
+    /**
+     * @param version version of the latest change synced
+     * @return the version acknowledged
+     * @see DbHelper#acknowledgeChanges(long)
+     */
+    public Single<Long> acknowledgeChanges(final long version) {
+        return defer(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                dbHelper.acknowledgeChanges(version);
+                return version;
+            }
+        });
+    }
+
+    /**
+     * @param range the range of local days ending today
+     * @return report of given range
+     * @see DbHelper#fetchReport(long, long)
+     */
+    public Single<Report> fetchReport(final ReportRange range) {
+        return read(new Callable<Report>() {
+            @Override
+            public Report call() throws Exception {
+                long today = TimeUtil.localEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+                return dbHelper.fetchReport(range.firstDay(today), today);
+            }
+        });
+    }
+
+    /**
+     * @return per day totals of whole years, from the year of the first tracked day through the current year
+     * @see DbHelper#fetchDayBuckets(long, long)
+     */
+    public Single<DayBuckets> fetchYearlyDayBuckets() {
+        return read(new Callable<DayBuckets>() {
+            @Override
+            public DayBuckets call() throws Exception {
+                long today = TimeUtil.localEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+                long first = dbHelper.fetchFirstTrackedDay();
+                int firstYear = TimeUtil.civilFromEpochDay(first >= 0 ? Math.min(first, today) : today)[0];
+                int lastYear = TimeUtil.civilFromEpochDay(today)[0];
+                return dbHelper.fetchDayBuckets(TimeUtil.epochDayFromCivil(firstYear, 1, 1), TimeUtil.epochDayFromCivil(lastYear, 12, 31));
+            }
+        });
+    }
+
+    /**
+     * @return columnar snapshot of all trackings
+     * @see DbHelper#fetchHistory()
+     */
+    public Single<TrackingHistory> fetchHistory() {
+        return read(new Callable<TrackingHistory>() {
+            @Override
+            public TrackingHistory call() throws Exception {
+                return dbHelper.fetchHistory();
+            }
+        });
+    }
+
+    /**
+     * @return usage of distinct titles
+     * @see DbHelper#fetchTitleStats()
+     */
+    public Single<List<TitleIndex.Entry>> fetchTitleStats() {
+        return defer(new Callable<List<TitleIndex.Entry>>() {
+            @Override
+            public List<TitleIndex.Entry> call() throws Exception {
+                return dbHelper.fetchTitleStats();
+            }
+        });
+    }
+
+    /**
+     * runs pending data migrations, unless done already. reads call it from the read scheduler as well, so it is
+     * synchronized.
+     *
+     * @return number of migrations completed
+     * @throws Migrator.MigrationException if migrating failed
+     */
+    private synchronized int ensureMigrated() {
+        if (migrated) {
+            return 0;
+        }
+        int completed;
+        try {
+            completed = dbHelper.runPendingMigrations(new Migrator.ProgressListener() {
+                @Override
+                public void onProgress(Migrator.Progress progress) {
+                    migrationProgress.onNext(progress);
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new Migrator.MigrationException(e);
+        }
+        migrated = true;
+        return completed;
+    }
+
+    /**
+     * defers a write, or a read relying on queue order, to the database scheduler. the write counts as done once it
+     * ran, or once unsubscribed before.
+     */
+    private <T> Single<T> defer(final Callable<T> callable) {
+        return Single.defer(new Callable<Single<T>>() {
+            @Override
+            public Single<T> call() throws Exception {
+                synchronized (writes) {
+                    writesSubscribed++;
+                }
+                final AtomicBoolean done = new AtomicBoolean();
+                return Single.fromCallable(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            ensureMigrated();
+                            return callable.call();
+                        } finally {
+                            writeDone(done);
+                        }
+                    }
+                }).subscribeOn(scheduler).doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        writeDone(done);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * defers a read to the read scheduler. it runs once all writes subscribed before it are done.
+     */
+    private <T> Single<T> read(final Callable<T> callable) {
+        return Single.defer(new Callable<Single<T>>() {
+            @Override
+            public Single<T> call() throws Exception {
+                final long awaited;
+                synchronized (writes) {
+                    awaited = writesSubscribed;
+                }
+                return Single.fromCallable(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        synchronized (writes) {
+                            while (writesDone < awaited) {
+                                writes.wait();
+                            }
+                        }
+                        ensureMigrated();
+                        return callable.call();
+                    }
+                }).subscribeOn(readScheduler);
+            }
+        });
+    }
+
+    private void writeDone(AtomicBoolean done) {
+        if (done.compareAndSet(false, true)) {
+            synchronized (writes) {
+                writesDone++;
+                writes.notifyAll();
+            }
+        }
+    }
+
+}
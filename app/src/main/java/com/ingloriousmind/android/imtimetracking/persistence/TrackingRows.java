@@ -0,0 +1,35 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * maps query results to list rows
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingRows {
+
+    private TrackingRows() {
+    }
+
+    /**
+     * reads all rows of given query result, resolving titles from the project cache
+     *
+     * @param db       the database
+     * @param projects project cache
+     * @param c        result of id, project id, duration, tracking and last start. not closed.
+     * @return the rows read
+     */
+    public static List<TrackingRow> read(Database db, Projects projects, Database.Rows c) {
+        List<TrackingRow> rows = new ArrayList<>();
+        while (c.moveToNext()) {
+            String title = projects.titleOf(db, c.getLong(1));
+            rows.add(new TrackingRow(c.getLong(0), title != null ? title : "", c.getLong(2), c.getInt(3) != 0, c.getLong(4)));
+        }
+        return rows;
+    }
+
+}
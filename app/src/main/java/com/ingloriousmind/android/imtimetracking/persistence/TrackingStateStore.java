@@ -0,0 +1,142 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.WorkerThread;
+
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+/**
+ * small precomputed snapshot of the tracking state, written on transitions.
+ * <p>
+ * lets cheap readers such as the home screen widget render without touching the database.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingStateStore {
+
+    private static final String PREFS_NAME = "tracking_state";
+    private static final String KEY_RUNNING = "running";
+    private static final String KEY_TITLE = "title";
+    private static final String KEY_ELAPSED = "elapsed";
+    private static final String KEY_SNAPSHOT_TIME = "snapshot_time";
+    private static final String KEY_TODAY_TOTAL = "today_total";
+    private static final String KEY_TODAY = "today";
+
+    /**
+     * notified after the state was written, on the writing thread
+     */
+    public interface WriteListener {
+
+        void onStateWritten();
+    }
+
+    /**
+     * stored state
+     */
+    public static final class State {
+
+        private final boolean running;
+        private final String title;
+        private final long elapsed;
+        private final long snapshotTime;
+        private final long todayTotal;
+        private final long today;
+
+        State(boolean running, String title, long elapsed, long snapshotTime, long todayTotal, long today) {
+            this.running = running;
+            this.title = title;
+            this.elapsed = elapsed;
+            this.snapshotTime = snapshotTime;
+            this.todayTotal = todayTotal;
+            this.today = today;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @param now epoch millis
+         * @return elapsed time of the current tracking at given time
+         */
+        public long getElapsed(long now) {
+            return running ? elapsed + Math.max(0, now - snapshotTime) : elapsed;
+        }
+
+        /**
+         * @param now epoch millis
+         * @return time tracked on the day of given time, excluding the running clock
+         */
+        public long getTodayTotal(long now) {
+            return today == TimeUtil.startOfDay(now) ? todayTotal : 0;
+        }
+    }
+
+    private final Context ctx;
+    private volatile WriteListener writeListener;
+
+    /**
+     * ctor
+     *
+     * @param ctx a context
+     */
+    public TrackingStateStore(Context ctx) {
+        this.ctx = ctx.getApplicationContext();
+    }
+
+    /**
+     * @param writeListener listener notified after writes, e.g. to refresh readers. null, to unset.
+     */
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * stores given tracking state and notifies the write listener
+     *
+     * @param snapshot   current tracking state
+     * @param todayTotal time tracked today, excluding the running clock
+     */
+    @WorkerThread
+    public void write(TrackingSnapshot snapshot, long todayTotal) {
+        long now = System.currentTimeMillis();
+        prefs().edit()
+                .putBoolean(KEY_RUNNING, snapshot.isRunning())
+                .putString(KEY_TITLE, snapshot.getTitle())
+                .putLong(KEY_ELAPSED, snapshot.at(now).getElapsed())
+                .putLong(KEY_SNAPSHOT_TIME, now)
+                .putLong(KEY_TODAY_TOTAL, todayTotal)
+                .putLong(KEY_TODAY, TimeUtil.startOfDay(now))
+                .commit();
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onStateWritten();
+        }
+    }
+
+    /**
+     * @return the stored state
+     */
+    @WorkerThread
+    public State read() {
+        SharedPreferences prefs = prefs();
+        return new State(
+                prefs.getBoolean(KEY_RUNNING, false),
+                prefs.getString(KEY_TITLE, null),
+                prefs.getLong(KEY_ELAPSED, 0),
+                prefs.getLong(KEY_SNAPSHOT_TIME, 0),
+                prefs.getLong(KEY_TODAY_TOTAL, 0),
+                prefs.getLong(KEY_TODAY, 0));
+    }
+
+    private SharedPreferences prefs() {
+        return ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.ChangeLog;
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes;
+
+/**
+ * version 8: adds the change log for sync, seeded with all trackings not deleted, so the first sync sends everything.
+ * <p>
+ * trackings are logged in id order, the highest id logged marks where to resume. triggers are created once seeded,
+ * after pending data phases of earlier versions, so they end up on a rebuilt table.
+ *
+ * @author lavong.soysavanh
+ */
+public class ChangeLogMigration extends Migration {
+
+    private static final String NOT_LOGGED = "FROM timetracking WHERE " + TrackingIndexes.NOT_DELETED
+            + " AND id > (SELECT IFNULL(MAX(tracking_id), 0) FROM " + ChangeLog.TABLE + ")";
+
+    public ChangeLogMigration() {
+        super(8);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        ChangeLog.createTables(db);
+    }
+
+    @Override
+    public boolean hasDataMigration() {
+        return true;
+    }
+
+    @Override
+    public long countRemaining(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) " + NOT_LOGGED);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public int migrateChunk(Database db, int chunkSize) {
+        Database.Statement stmt = db.compileStatement("INSERT INTO " + ChangeLog.TABLE + " (tracking_id) "
+                + "SELECT id " + NOT_LOGGED + " ORDER BY id LIMIT " + chunkSize);
+        try {
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public void onDataMigrated(Database db) {
+        ChangeLog.createTriggers(db);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+
+/**
+ * version 6: widens the index by last start to cover all columns of list rows. indexes are created as defined by this
+ * version, later versions redefine them.
+ *
+ * @author lavong.soysavanh
+ */
+public class ListIndexMigration extends Migration {
+
+    public ListIndexMigration() {
+        super(6);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        db.execSQL("DROP INDEX IF EXISTS timetracking_started_idx");
+        createIndexes(db);
+    }
+
+    static void createIndexes(Database db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_list_idx ON timetracking "
+                + "(lastTrackingStarted, duration, project_id, tracking)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_project_idx ON timetracking (project_id, lastTrackingStarted)");
+    }
+
+}
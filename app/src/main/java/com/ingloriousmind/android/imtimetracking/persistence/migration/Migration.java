@@ -0,0 +1,78 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+
+/**
+ * a single versioned schema migration, split into two phases:
+ * <ul>
+ * <li>{@link #migrateSchema(Database)}: fast ddl only, run within {@code onUpgrade}'s transaction</li>
+ * <li>{@link #migrateChunk(Database, int)}: data migration, run in chunks of rows off the upgrade path. every chunk
+ * commits in its own transaction along with the migration's progress, so an interrupted migration resumes with the
+ * next chunk. chunks must therefore select rows not migrated yet from the data itself.</li>
+ * </ul>
+ *
+ * @author lavong.soysavanh
+ * @see Migrator
+ */
+public abstract class Migration {
+
+    private final int version;
+
+    /**
+     * ctor
+     *
+     * @param version the database version this migration upgrades to
+     */
+    protected Migration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * @return the database version this migration upgrades to
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * applies schema changes. must not touch more than a bounded number of rows.
+     *
+     * @param db the database
+     */
+    public abstract void migrateSchema(Database db);
+
+    /**
+     * @return true, if there is a data phase to run after schema changes
+     */
+    public boolean hasDataMigration() {
+        return false;
+    }
+
+    /**
+     * @param db the database
+     * @return number of rows left to migrate, as estimate for progress reporting
+     */
+    public long countRemaining(Database db) {
+        return 0;
+    }
+
+    /**
+     * migrates the next chunk of rows not migrated yet
+     *
+     * @param db        the database
+     * @param chunkSize max number of rows to migrate
+     * @return number of rows migrated. less than chunk size, once done.
+     */
+    public int migrateChunk(Database db, int chunkSize) {
+        return 0;
+    }
+
+    /**
+     * called within the transaction of the last chunk, e.g. to build indexes over migrated data
+     *
+     * @param db the database
+     */
+    public void onDataMigrated(Database db) {
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * runs {@link Migration}s: schema phases synchronously on upgrade, data phases chunk by chunk afterwards.
+ * <p>
+ * data phases pending are recorded in the migration state table, within the upgrade's transaction. each chunk commits
+ * together with its progress, so migrations interrupted by process death continue where they stopped on next
+ * {@link #runPending(Database, int, ProgressListener)}.
+ *
+ * @author lavong.soysavanh
+ */
+public class Migrator {
+
+    /**
+     * migration state table
+     */
+    static final String TABLE = "migration_state";
+
+    /**
+     * default number of rows per data migration transaction
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 2000;
+
+    /**
+     * notified after every committed chunk, on the migrating thread
+     */
+    public interface ProgressListener {
+
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * pending data migrations failed. data is left as committed by the last chunk, to be migrated further on retry.
+     */
+    public static class MigrationException extends RuntimeException {
+
+        public MigrationException(Throwable cause) {
+            super("failed running pending data migrations", cause);
+        }
+    }
+
+    /**
+     * progress of a data migration
+     */
+    public static class Progress {
+
+        private final int version;
+        private final long migrated;
+        private final long total;
+
+        public Progress(int version, long migrated, long total) {
+            this.version = version;
+            this.migrated = migrated;
+            this.total = total;
+        }
+
+        /**
+         * @return the version migrating to
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return rows migrated so far
+         */
+        public long getMigrated() {
+            return migrated;
+        }
+
+        /**
+         * @return estimated total number of rows
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return percentage of rows migrated, 0 to 100
+         */
+        public int getPercent() {
+            return total > 0 ? (int) Math.min(100, migrated * 100 / total) : 100;
+        }
+
+        @Override
+        public String toString() {
+            return "Progress{version=" + version + ", migrated=" + migrated + ", total=" + total + '}';
+        }
+    }
+
+    private final List<Migration> migrations;
+
+    /**
+     * ctor
+     *
+     * @param migrations all migrations, in any order
+     */
+    public Migrator(List<Migration> migrations) {
+        this.migrations = migrations;
+    }
+
+    /**
+     * creates migration state table, if not existing
+     *
+     * @param db the database
+     */
+    public static void createTables(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + " (version INTEGER PRIMARY KEY, migrated INTEGER NOT NULL, "
+                + "done INTEGER NOT NULL)");
+    }
+
+    /**
+     * drops migration state table
+     *
+     * @param db the database
+     */
+    public static void dropTables(Database db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    /**
+     * runs schema phases of migrations in (old version, new version] in ascending order and records their data
+     * phases as pending. expected to run within the upgrade's transaction.
+     *
+     * @param db         the database
+     * @param oldVersion version upgrading from
+     * @param newVersion version upgrading to
+     */
+    public void migrateSchema(Database db, int oldVersion, int newVersion) {
+        createTables(db);
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Migration migration = find(version);
+            if (migration == null) {
+                continue;
+            }
+            Timber.i("migrating schema to version %d", version);
+            migration.migrateSchema(db);
+            if (migration.hasDataMigration()) {
+                db.execSQL("INSERT OR REPLACE INTO " + TABLE + " (version, migrated, done) VALUES (?, 0, 0)", new Object[]{version});
+            }
+        }
+    }
+
+    /**
+     * @param db the database
+     * @return true, if there are data phases pending
+     */
+    public boolean hasPending(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) FROM " + TABLE + " WHERE done = 0");
+        try {
+            return stmt.simpleQueryForLong() > 0;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * runs all pending data phases in ascending version order, one chunk per transaction
+     *
+     * @param db        the database
+     * @param chunkSize max number of rows per transaction
+     * @param listener  notified after every chunk. may be null.
+     * @return number of data migrations completed
+     */
+    public int runPending(Database db, int chunkSize, ProgressListener listener) {
+        List<long[]> pending = new ArrayList<>();
+        Database.Rows c = db.rawQuery("SELECT version, migrated FROM " + TABLE + " WHERE done = 0 ORDER BY version", null);
+        try {
+            while (c.moveToNext()) {
+                pending.add(new long[]{c.getLong(0), c.getLong(1)});
+            }
+        } finally {
+            c.close();
+        }
+
+        int completed = 0;
+        for (long[] state : pending) {
+            int version = (int) state[0];
+            Migration migration = find(version);
+            if (migration == null) {
+                throw new IllegalStateException("no migration to version " + version);
+            }
+            long migrated = state[1];
+            long total = migrated + migration.countRemaining(db);
+            long start = System.currentTimeMillis();
+            Timber.i("migrating data to version %d: %d of %d rows migrated", version, migrated, total);
+            boolean done = false;
+            while (!done) {
+                db.beginTransaction();
+                try {
+                    int rows = migration.migrateChunk(db, chunkSize);
+                    migrated += rows;
+                    done = rows < chunkSize;
+                    if (done) {
+                        migration.onDataMigrated(db);
+                    }
+                    db.execSQL("UPDATE " + TABLE + " SET migrated = ?, done = ? WHERE version = ?",
+                            new Object[]{migrated, done ? 1 : 0, version});
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (listener != null) {
+                    listener.onProgress(new Progress(version, migrated, Math.max(total, migrated)));
+                }
+            }
+            Timber.i("migrated %d rows to version %d within %d ms", migrated, version, System.currentTimeMillis() - start);
+            completed++;
+        }
+        return completed;
+    }
+
+    private Migration find(int version) {
+        for (Migration migration : migrations) {
+            if (migration.getVersion() == version) {
+                return migration;
+            }
+        }
+        return null;
+    }
+
+}
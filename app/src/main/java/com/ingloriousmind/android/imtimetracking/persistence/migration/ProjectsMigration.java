@@ -0,0 +1,101 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+import com.ingloriousmind.android.imtimetracking.persistence.FullTextIndex;
+import com.ingloriousmind.android.imtimetracking.persistence.Projects;
+import com.ingloriousmind.android.imtimetracking.persistence.Rollups;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * version 4: moves tracking titles into the project table, referencing them by project_id.
+ * <p>
+ * derived tables of versions 2 and 3 were keyed by title and are dropped. rollups get repopulated on the next rollup
+ * check, the fts index once all titles are migrated. the legacy title column is cleared row by row, as sqlite cannot
+ * drop columns in place; rows still holding a title are the ones left to migrate.
+ *
+ * @author lavong.soysavanh
+ */
+public class ProjectsMigration extends Migration {
+
+    public ProjectsMigration() {
+        super(4);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        FullTextIndex.dropTables(db);
+        Rollups.dropTables(db);
+        Rollups.createTables(db);
+        Projects.createTables(db);
+        db.execSQL("ALTER TABLE timetracking ADD COLUMN project_id BIGINT");
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_project_id_idx ON timetracking (project_id)");
+        db.execSQL("DROP INDEX IF EXISTS timetracking_title_idx");
+    }
+
+    @Override
+    public boolean hasDataMigration() {
+        return true;
+    }
+
+    @Override
+    public long countRemaining(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL");
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public int migrateChunk(Database db, int chunkSize) {
+        // read the chunk up front: updating project_id while scanning its index is undefined
+        long[] rowids = new long[chunkSize];
+        String[] titles = new String[chunkSize];
+        int rows = 0;
+        Database.Rows c = db.rawQuery("SELECT rowid, title FROM timetracking WHERE project_id IS NULL LIMIT " + chunkSize, null);
+        try {
+            while (c.moveToNext()) {
+                rowids[rows] = c.getLong(0);
+                titles[rows] = c.isNull(1) ? "" : c.getString(1);
+                rows++;
+            }
+        } finally {
+            c.close();
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        Database.Statement insertProject = db.compileStatement("INSERT OR IGNORE INTO " + Projects.TABLE + " (title) VALUES (?)");
+        Database.Statement selectProject = db.compileStatement("SELECT id FROM " + Projects.TABLE + " WHERE title = ?");
+        Database.Statement update = db.compileStatement("UPDATE timetracking SET project_id = ?, title = NULL WHERE rowid = ?");
+        try {
+            for (int i = 0; i < rows; i++) {
+                Long id = ids.get(titles[i]);
+                if (id == null) {
+                    insertProject.bindString(1, titles[i]);
+                    insertProject.executeInsert();
+                    selectProject.bindString(1, titles[i]);
+                    id = selectProject.simpleQueryForLong();
+                    ids.put(titles[i], id);
+                }
+                update.bindLong(1, id);
+                update.bindLong(2, rowids[i]);
+                update.executeUpdateDelete();
+            }
+        } finally {
+            insertProject.close();
+            selectProject.close();
+            update.close();
+        }
+        return rows;
+    }
+
+    @Override
+    public void onDataMigrated(Database db) {
+        FullTextIndex.createTables(db);
+        FullTextIndex.rebuild(db);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+import com.ingloriousmind.android.imtimetracking.persistence.Rollups;
+import com.ingloriousmind.android.imtimetracking.persistence.Sessions;
+
+/**
+ * version 9: adds sessions, attributing tracked time to the days it was tracked on rather than the day a tracking was
+ * created. existing trackings, deleted ones included, get a single session ending at their last stop.
+ * <p>
+ * trackings are split in id order, the highest id split marks where to resume. the trigger is created once done,
+ * after pending data phases of earlier versions, so it ends up on a rebuilt table. rollups are reset, to be rebuilt
+ * from sessions on the next rollup check.
+ *
+ * @author lavong.soysavanh
+ */
+public class SessionsMigration extends Migration {
+
+    private static final String NOT_SPLIT = " AND id > (SELECT IFNULL(MAX(tracking_id), 0) FROM " + Sessions.TABLE + ")";
+
+    public SessionsMigration() {
+        super(9);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        Sessions.createTables(db);
+    }
+
+    @Override
+    public boolean hasDataMigration() {
+        return true;
+    }
+
+    @Override
+    public long countRemaining(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) FROM timetracking WHERE duration > 0" + NOT_SPLIT);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public int migrateChunk(Database db, int chunkSize) {
+        Database.Statement stmt = db.compileStatement(Sessions.INSERT_GUESSED + NOT_SPLIT + " ORDER BY id LIMIT " + chunkSize);
+        try {
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public void onDataMigrated(Database db) {
+        Sessions.createTriggers(db);
+        Rollups.dropTables(db);
+        Rollups.createTables(db);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes;
+
+/**
+ * version 7: adds the deletion time, marking trackings deleted until purged, and redefines indexes as partial indexes
+ * of trackings not deleted.
+ * <p>
+ * the column is added to the copy of a table rebuild of version 5 as well, in case that is still pending. indexes are
+ * redefined in the data phase, which runs after pending data phases of earlier versions, so they end up on the
+ * rebuilt table.
+ *
+ * @author lavong.soysavanh
+ */
+public class SoftDeleteMigration extends Migration {
+
+    private static final String ADD_COLUMN = " ADD COLUMN deleted BIGINT NOT NULL DEFAULT 0";
+
+    public SoftDeleteMigration() {
+        super(7);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        db.execSQL("ALTER TABLE timetracking" + ADD_COLUMN);
+        if (tableExists(db, SurrogateKeyMigration.TABLE_NEW)) {
+            db.execSQL("ALTER TABLE " + SurrogateKeyMigration.TABLE_NEW + ADD_COLUMN);
+        }
+    }
+
+    @Override
+    public boolean hasDataMigration() {
+        return true;
+    }
+
+    @Override
+    public void onDataMigrated(Database db) {
+        TrackingIndexes.dropIndexes(db);
+        TrackingIndexes.createIndexes(db);
+    }
+
+    private static boolean tableExists(Database db, String table) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?");
+        try {
+            stmt.bindString(1, table);
+            return stmt.simpleQueryForLong() > 0;
+        } finally {
+            stmt.close();
+        }
+    }
+
+}
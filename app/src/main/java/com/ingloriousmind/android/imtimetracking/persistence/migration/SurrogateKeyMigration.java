@@ -0,0 +1,71 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+import com.ingloriousmind.android.imtimetracking.persistence.FullTextIndex;
+
+/**
+ * version 5: rebuilds the timetracking table keyed by an auto increment id aliasing the rowid, instead of created.
+ * the legacy title column is left behind.
+ * <p>
+ * rows are copied in rowid order, keeping their rowid as id, so fts docids stay valid and the highest id copied marks
+ * where to resume. once copied, the new table replaces the old one and gets its indexes.
+ *
+ * @author lavong.soysavanh
+ */
+public class SurrogateKeyMigration extends Migration {
+
+    static final String TABLE_NEW = "timetracking_new";
+
+    private static final String COLUMNS = "project_id, description, created, lastTrackingStarted, duration, tracking";
+
+    private static final String NOT_COPIED = "FROM timetracking WHERE rowid > (SELECT IFNULL(MAX(id), 0) FROM " + TABLE_NEW + ")";
+
+    public SurrogateKeyMigration() {
+        super(5);
+    }
+
+    @Override
+    public void migrateSchema(Database db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NEW + " (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, "
+                + "description VARCHAR, created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT)");
+    }
+
+    @Override
+    public boolean hasDataMigration() {
+        return true;
+    }
+
+    @Override
+    public long countRemaining(Database db) {
+        Database.Statement stmt = db.compileStatement("SELECT COUNT(*) " + NOT_COPIED);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public int migrateChunk(Database db, int chunkSize) {
+        Database.Statement stmt = db.compileStatement("INSERT INTO " + TABLE_NEW + " (id, " + COLUMNS + ") "
+                + "SELECT rowid, " + COLUMNS + " " + NOT_COPIED + " ORDER BY rowid LIMIT " + chunkSize);
+        try {
+            return stmt.executeUpdateDelete();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public void onDataMigrated(Database db) {
+        // fts triggers and view refer to the old table
+        FullTextIndex.dropTables(db);
+        db.execSQL("DROP TABLE timetracking");
+        db.execSQL("ALTER TABLE " + TABLE_NEW + " RENAME TO timetracking");
+        db.execSQL("CREATE INDEX IF NOT EXISTS timetracking_created_idx ON timetracking (created)");
+        ListIndexMigration.createIndexes(db);
+        FullTextIndex.createTables(db);
+        FullTextIndex.rebuild(db);
+    }
+
+}
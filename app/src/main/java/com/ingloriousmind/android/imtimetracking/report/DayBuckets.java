@@ -0,0 +1,81 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+/**
+ * compact per day durations, a primitive array indexed by local epoch day relative to the first day
+ *
+ * @author lavong.soysavanh
+ */
+public class DayBuckets {
+
+    private final long firstDay;
+    private final long[] durations;
+    private long max;
+
+    /**
+     * ctor
+     *
+     * @param firstDay first local epoch day covered
+     * @param lastDay  last local epoch day covered, inclusive
+     */
+    public DayBuckets(long firstDay, long lastDay) {
+        this.firstDay = firstDay;
+        this.durations = new long[(int) Math.max(0, lastDay - firstDay + 1)];
+    }
+
+    /**
+     * adds to the duration of given day. days out of range are ignored.
+     *
+     * @param day      local epoch day
+     * @param duration the duration to add
+     */
+    public void add(long day, long duration) {
+        long i = day - firstDay;
+        if (i >= 0 && i < durations.length) {
+            long sum = durations[(int) i] += duration;
+            max = Math.max(max, sum);
+        }
+    }
+
+    /**
+     * @param day local epoch day
+     * @return duration of given day. 0, if out of range.
+     */
+    public long get(long day) {
+        long i = day - firstDay;
+        return i >= 0 && i < durations.length ? durations[(int) i] : 0;
+    }
+
+    /**
+     * @return longest duration of any day
+     */
+    public long getMax() {
+        return max;
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * @return last local epoch day covered, inclusive
+     */
+    public long getLastDay() {
+        return firstDay + durations.length - 1;
+    }
+
+    /**
+     * @param fromDay first local epoch day, inclusive
+     * @param toDay   last local epoch day, inclusive
+     * @return sum of durations of given days
+     */
+    public long sum(long fromDay, long toDay) {
+        int from = (int) Math.max(0, fromDay - firstDay);
+        int to = (int) Math.min(durations.length - 1, toDay - firstDay);
+        long sum = 0;
+        for (int i = from; i <= to; i++) {
+            sum += durations[i];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * aggregated durations of a range of local days, as read from rollups
+ *
+ * @author lavong.soysavanh
+ */
+public class Report {
+
+    /**
+     * total of a title, along with its per day series for sparklines
+     */
+    public static class TitleTotal {
+
+        private final String title;
+        private final long duration;
+        private final int count;
+        private final long[] series;
+
+        public TitleTotal(String title, long duration, int count, long[] series) {
+            this.title = title;
+            this.duration = duration;
+            this.count = count;
+            this.series = series;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return durations per day of the report's range, oldest first
+         */
+        public long[] getSeries() {
+            return series;
+        }
+    }
+
+    /**
+     * total of a day or iso week
+     */
+    public static class PeriodTotal {
+
+        private final long key;
+        private final long duration;
+
+        public PeriodTotal(long key, long duration) {
+            this.key = key;
+            this.duration = duration;
+        }
+
+        /**
+         * @return local epoch day, or iso week key
+         */
+        public long getKey() {
+            return key;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    private final long firstDay;
+    private final long lastDay;
+    private final long version;
+    private final List<TitleTotal> titles = new ArrayList<>();
+    private final List<PeriodTotal> days = new ArrayList<>();
+    private final List<PeriodTotal> weeks = new ArrayList<>();
+
+    /**
+     * ctor
+     *
+     * @param firstDay first local epoch day covered
+     * @param lastDay  last local epoch day covered
+     * @param version  data version the report was read at
+     */
+    public Report(long firstDay, long lastDay, long version) {
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+        this.version = version;
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    public long getLastDay() {
+        return lastDay;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return totals per title, longest first
+     */
+    public List<TitleTotal> getTitles() {
+        return titles;
+    }
+
+    /**
+     * @return totals per day with tracked time, most recent first
+     */
+    public List<PeriodTotal> getDays() {
+        return days;
+    }
+
+    /**
+     * @return totals per iso week touching the range, most recent first
+     */
+    public List<PeriodTotal> getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * @return sum of all title totals
+     */
+    public long getTotal() {
+        long total = 0;
+        for (TitleTotal t : titles) {
+            total += t.duration;
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+/**
+ * report ranges, in local days ending today
+ *
+ * @author lavong.soysavanh
+ */
+public enum ReportRange {
+
+    LAST_7_DAYS(7),
+    LAST_30_DAYS(30),
+    LAST_90_DAYS(90),
+    LAST_365_DAYS(365);
+
+    private final int days;
+
+    ReportRange(int days) {
+        this.days = days;
+    }
+
+    /**
+     * @return number of days covered, including today
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @param today local epoch day of today
+     * @return first local epoch day covered
+     */
+    public long firstDay(long today) {
+        return today - days + 1;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * memory bounded cache of rendered sparklines, per report range and data version
+ *
+ * @author lavong.soysavanh
+ */
+public class SparklineCache {
+
+    private final LruCache<String, Map<String, Bitmap>> cache;
+
+    /**
+     * ctor
+     *
+     * @param maxBytes upper bound of cached bitmap bytes
+     */
+    public SparklineCache(int maxBytes) {
+        cache = new LruCache<String, Map<String, Bitmap>>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Map<String, Bitmap> sparklines) {
+                int bytes = 0;
+                for (Bitmap b : sparklines.values()) {
+                    bytes += b.getByteCount();
+                }
+                return Math.max(1, bytes);
+            }
+        };
+    }
+
+    /**
+     * @param range  the report's range
+     * @param report the report
+     * @return sparklines per title, null if not cached
+     */
+    public Map<String, Bitmap> get(ReportRange range, Report report) {
+        return cache.get(key(range, report));
+    }
+
+    /**
+     * @param range      the report's range
+     * @param report     the report
+     * @param sparklines sparklines per title
+     */
+    public void put(ReportRange range, Report report, Map<String, Bitmap> sparklines) {
+        cache.put(key(range, report), sparklines);
+    }
+
+    private static String key(ReportRange range, Report report) {
+        return range.name() + ':' + report.getLastDay() + ':' + report.getVersion();
+    }
+
+}
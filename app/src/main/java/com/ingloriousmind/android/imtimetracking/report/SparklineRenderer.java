@@ -0,0 +1,73 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.annotation.WorkerThread;
+
+/**
+ * renders per day series into small line chart bitmaps.
+ * <p>
+ * paint and path are reused between renders, so an instance must not be shared between threads.
+ *
+ * @author lavong.soysavanh
+ */
+public class SparklineRenderer {
+
+    private final int width;
+    private final int height;
+    private final float stroke;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+
+    /**
+     * ctor
+     *
+     * @param width  bitmap width in pixels
+     * @param height bitmap height in pixels
+     * @param stroke line width in pixels
+     * @param color  line color
+     */
+    public SparklineRenderer(int width, int height, float stroke, int color) {
+        this.width = width;
+        this.height = height;
+        this.stroke = stroke;
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(stroke);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setColor(color);
+    }
+
+    /**
+     * @param series values to plot, oldest first. may be null.
+     * @return the rendered bitmap
+     */
+    @WorkerThread
+    public Bitmap render(long[] series) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        if (series == null || series.length == 0) {
+            return bitmap;
+        }
+        long max = 1;
+        for (long v : series) {
+            max = Math.max(max, v);
+        }
+        float inset = stroke / 2;
+        float h = height - stroke;
+        float step = series.length > 1 ? (width - stroke) / (series.length - 1) : 0;
+        path.reset();
+        for (int i = 0; i < series.length; i++) {
+            float x = inset + i * step;
+            float y = inset + h - h * series[i] / max;
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+        new Canvas(bitmap).drawPath(path, paint);
+        return bitmap;
+    }
+
+}
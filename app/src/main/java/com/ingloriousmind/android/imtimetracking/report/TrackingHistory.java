@@ -0,0 +1,260 @@
+package com.ingloriousmind.android.imtimetracking.report;
+
+import java.util.Arrays;
+
+/**
+ * read-only columnar snapshot of the tracking history, sorted by creation time.
+ * <p>
+ * every column is a primitive array indexed by row: 28 bytes per tracking, without per row objects, boxing or title
+ * strings. titles are kept once per project, indexed by project id. ranges of creation time resolve by binary search,
+ * aggregates are plain counted loops over the arrays.
+ *
+ * @author lavong.soysavanh
+ */
+public final class TrackingHistory {
+
+    /**
+     * per row size of all columns in bytes
+     */
+    public static final int BYTES_PER_ROW = 3 * 8 + 4;
+
+    private final int size;
+    private final long[] created;
+    private final long[] lastTrackingStarted;
+    private final long[] durations;
+    private final int[] projectIds;
+    private final int maxProjectId;
+    private final String[] titles;
+
+    private TrackingHistory(Builder builder) {
+        this.size = builder.size;
+        this.created = builder.created;
+        this.lastTrackingStarted = builder.lastTrackingStarted;
+        this.durations = builder.durations;
+        this.projectIds = builder.projectIds;
+        this.maxProjectId = builder.maxProjectId;
+        this.titles = builder.titles;
+    }
+
+    /**
+     * fills columns row by row, expecting rows in ascending order of creation time
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] created;
+        private long[] lastTrackingStarted;
+        private long[] durations;
+        private int[] projectIds;
+        private int maxProjectId;
+        private String[] titles = new String[0];
+
+        /**
+         * ctor
+         *
+         * @param expectedSize number of rows expected, sizing the columns up front
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            created = new long[capacity];
+            lastTrackingStarted = new long[capacity];
+            durations = new long[capacity];
+            projectIds = new int[capacity];
+        }
+
+        /**
+         * appends a row
+         *
+         * @param created             creation time, not less than the previous row's
+         * @param lastTrackingStarted last start, epoch millis
+         * @param duration            tracked duration
+         * @param projectId           project id
+         * @return this builder
+         */
+        public Builder add(long created, long lastTrackingStarted, long duration, long projectId) {
+            if (size > 0 && created < this.created[size - 1]) {
+                throw new IllegalArgumentException("rows out of order: " + created + " after " + this.created[size - 1]);
+            }
+            if (lastTrackingStarted < 0) {
+                throw new IllegalArgumentException("last start out of range: " + lastTrackingStarted);
+            }
+            if (projectId < 0 || projectId > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("project id out of range: " + projectId);
+            }
+            if (size == this.created.length) {
+                grow();
+            }
+            this.created[size] = created;
+            this.lastTrackingStarted[size] = lastTrackingStarted;
+            this.durations[size] = duration;
+            this.projectIds[size] = (int) projectId;
+            maxProjectId = Math.max(maxProjectId, (int) projectId);
+            size++;
+            return this;
+        }
+
+        /**
+         * sets the title of a project
+         *
+         * @param projectId project id
+         * @param title     the title
+         * @return this builder
+         */
+        public Builder title(long projectId, String title) {
+            if (projectId < 0 || projectId > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("project id out of range: " + projectId);
+            }
+            if (projectId >= titles.length) {
+                titles = Arrays.copyOf(titles, (int) Math.max(projectId + 1, titles.length * 2L));
+            }
+            titles[(int) projectId] = title;
+            return this;
+        }
+
+        private void grow() {
+            int capacity = size + (size >> 1);
+            created = Arrays.copyOf(created, capacity);
+            lastTrackingStarted = Arrays.copyOf(lastTrackingStarted, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            projectIds = Arrays.copyOf(projectIds, capacity);
+        }
+
+        /**
+         * @return the history. the builder must not be used afterwards.
+         */
+        public TrackingHistory build() {
+            return new TrackingHistory(this);
+        }
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getCreated(int row) {
+        return created[checkRow(row)];
+    }
+
+    public long getLastTrackingStarted(int row) {
+        return lastTrackingStarted[checkRow(row)];
+    }
+
+    public long getDuration(int row) {
+        return durations[checkRow(row)];
+    }
+
+    public long getProjectId(int row) {
+        return projectIds[checkRow(row)];
+    }
+
+    /**
+     * @param row the row
+     * @return title of the row's project. null, if not set.
+     */
+    public String getTitle(int row) {
+        int projectId = projectIds[checkRow(row)];
+        return projectId < titles.length ? titles[projectId] : null;
+    }
+
+    /**
+     * @param time creation time
+     * @return index of the first row created at or after given time. {@link #size()}, if there is none.
+     */
+    public int lowerBound(long time) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (created[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param from first row, inclusive
+     * @param to   last row, exclusive
+     * @return sum of durations of given rows
+     */
+    public long sumDurations(int from, int to) {
+        checkRange(from, to);
+        long[] d = durations;
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += d[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param fromCreated creation time, inclusive
+     * @param toCreated   creation time, exclusive
+     * @return sum of durations of trackings created within given times
+     */
+    public long sumDurationsCreated(long fromCreated, long toCreated) {
+        int from = lowerBound(fromCreated);
+        return sumDurations(from, Math.max(from, lowerBound(toCreated)));
+    }
+
+    /**
+     * scans all rows, as last start times are not sorted
+     *
+     * @param since epoch millis
+     * @return sum of durations of trackings last started or stopped since given time
+     */
+    public long sumDurationsStartedSince(long since) {
+        long[] s = lastTrackingStarted;
+        long[] d = durations;
+        long sum = 0;
+        // start times are non-negative, so the difference below cannot overflow
+        since = Math.max(0, since);
+        for (int i = 0; i < size; i++) {
+            // mask instead of branch: all ones if started since, zero otherwise
+            sum += d[i] & ((since - s[i] - 1) >> 63);
+        }
+        return sum;
+    }
+
+    /**
+     * @param from first row, inclusive
+     * @param to   last row, exclusive
+     * @return sums of durations of given rows, indexed by project id
+     */
+    public long[] sumDurationsByProject(int from, int to) {
+        checkRange(from, to);
+        long[] sums = new long[maxProjectId + 1];
+        int[] p = projectIds;
+        long[] d = durations;
+        for (int i = from; i < to; i++) {
+            sums[p[i]] += d[i];
+        }
+        return sums;
+    }
+
+    /**
+     * @return heap used by columns in bytes, including unused capacity
+     */
+    public long getColumnBytes() {
+        return (long) created.length * BYTES_PER_ROW;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("rows " + from + " to " + to + " of " + size);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.ingloriousmind.android.imtimetracking.service;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.persistence.DbMaintenance;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Single;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import timber.log.Timber;
+
+/**
+ * purges deleted trackings and runs {@link DbMaintenance} about once a day, while the device is idle and charging. the
+ * outcome of the last run is kept in shared preferences.
+ *
+ * @author lavong.soysavanh
+ */
+public class DbMaintenanceJobService extends JobService {
+
+    private static final int JOB_ID = 1;
+    private static final long INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * time deleted trackings are kept at least, so they can still be restored while undo is offered
+     */
+    private static final long PURGE_GRACE_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String PREFS_NAME = "db_maintenance";
+    private static final String KEY_LAST_RUN = "last_run";
+    private static final String KEY_SIZE_BEFORE = "size_before";
+    private static final String KEY_SIZE_AFTER = "size_after";
+    private static final String KEY_PROBE_MICROS_BEFORE = "probe_micros_before";
+    private static final String KEY_PROBE_MICROS_AFTER = "probe_micros_after";
+    private static final String KEY_DURATION_MS = "duration_ms";
+    private static final String KEY_PURGED = "purged";
+
+    private Subscription subscription;
+
+    /**
+     * schedules the maintenance job, unless scheduled already
+     *
+     * @param ctx a context
+     */
+    public static void schedule(Context ctx) {
+        JobScheduler scheduler = (JobScheduler) ctx.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(ctx, DbMaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(INTERVAL_MS)
+                .build());
+        Timber.v("scheduled database maintenance");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final TrackingRepository repository = ((TrackingApplication) getApplication()).getComponent().repository();
+        subscription = repository.purgeDeletedTrackings(System.currentTimeMillis() - PURGE_GRACE_MS)
+                .flatMap(new Func1<Integer, Single<DbMaintenance.Result>>() {
+                    @Override
+                    public Single<DbMaintenance.Result> call(Integer purged) {
+                        // vacuum right after, reclaiming pages freed by purging
+                        getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().putInt(KEY_PURGED, purged).apply();
+                        return repository.runMaintenance();
+                    }
+                })
+                .subscribe(new Action1<DbMaintenance.Result>() {
+                    @Override
+                    public void call(DbMaintenance.Result result) {
+                        record(result);
+                        jobFinished(params, false);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed database maintenance");
+                        jobFinished(params, false);
+                    }
+                });
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // a run started on the db scheduler completes anyway, there is nothing to retry
+        subscription.unsubscribe();
+        return false;
+    }
+
+    private void record(DbMaintenance.Result result) {
+        getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(KEY_LAST_RUN, System.currentTimeMillis())
+                .putLong(KEY_SIZE_BEFORE, result.getSizeBefore())
+                .putLong(KEY_SIZE_AFTER, result.getSizeAfter())
+                .putLong(KEY_PROBE_MICROS_BEFORE, result.getProbeMicrosBefore())
+                .putLong(KEY_PROBE_MICROS_AFTER, result.getProbeMicrosAfter())
+                .putLong(KEY_DURATION_MS, result.getDurationMs())
+                .apply();
+    }
+
+}
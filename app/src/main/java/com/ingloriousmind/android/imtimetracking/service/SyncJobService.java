@@ -0,0 +1,186 @@
+package com.ingloriousmind.android.imtimetracking.service;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Patterns;
+import android.webkit.URLUtil;
+
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.persistence.ChangeLog;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.sync.SyncEngine;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import rx.Single;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * syncs tracking changes to the endpoint configured, about once an hour and right after configuring it, whenever there
+ * is network, across reboots. sync is opt-in: without endpoint, no job is scheduled. the outcome of the last run is
+ * kept in shared preferences.
+ *
+ * @author lavong.soysavanh
+ */
+public class SyncJobService extends JobService {
+
+    private static final int JOB_ID = 2;
+    private static final int JOB_ID_NOW = 3;
+    private static final long INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String PREFS_NAME = "sync";
+    private static final String KEY_ENDPOINT = "endpoint";
+    private static final String KEY_LAST_RUN = "last_run";
+    private static final String KEY_CHANGES = "changes";
+    private static final String KEY_BYTES = "bytes";
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_ERROR = "error";
+
+    private Subscription subscription;
+
+    /**
+     * reads the endpoint configured. reads from disk, unless read before.
+     *
+     * @param ctx a context
+     * @return the endpoint url. null, if sync is off.
+     */
+    public static String getEndpoint(Context ctx) {
+        return prefs(ctx).getString(KEY_ENDPOINT, null);
+    }
+
+    /**
+     * @param endpoint an endpoint entered
+     * @return true, if it is an http or https url. false, otherwise.
+     */
+    public static boolean isValidEndpoint(String endpoint) {
+        return (URLUtil.isHttpUrl(endpoint) || URLUtil.isHttpsUrl(endpoint)) && Patterns.WEB_URL.matcher(endpoint).matches();
+    }
+
+    /**
+     * configures the endpoint and schedules syncing, starting right away. or turns sync off.
+     *
+     * @param ctx      a context
+     * @param endpoint the endpoint url, checked by {@link #isValidEndpoint(String)}. null or empty, to turn sync off.
+     */
+    public static void setEndpoint(Context ctx, String endpoint) {
+        JobScheduler scheduler = (JobScheduler) ctx.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            prefs(ctx).edit().remove(KEY_ENDPOINT).apply();
+            scheduler.cancel(JOB_ID);
+            scheduler.cancel(JOB_ID_NOW);
+            Timber.v("sync turned off");
+            return;
+        }
+        prefs(ctx).edit().putString(KEY_ENDPOINT, endpoint.trim()).apply();
+        ComponentName service = new ComponentName(ctx, SyncJobService.class);
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, service)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPeriodic(INTERVAL_MS)
+                .setPersisted(true)
+                .build());
+        scheduler.schedule(new JobInfo.Builder(JOB_ID_NOW, service)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .build());
+        Timber.v("scheduled sync to %s", endpoint);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final TrackingRepository repository = ((TrackingApplication) getApplication()).getComponent().repository();
+        subscription = Single.fromCallable(new Callable<SyncEngine.Result>() {
+            @Override
+            public SyncEngine.Result call() throws Exception {
+                String endpoint = getEndpoint(SyncJobService.this);
+                if (endpoint == null) {
+                    return null;
+                }
+                if (!isValidEndpoint(endpoint)) {
+                    throw new MalformedURLException("not an http(s) url: " + endpoint);
+                }
+                return new SyncEngine(new RepositoryStore(repository), new URL(endpoint), SyncEngine.DEFAULT_BATCH_SIZE).sync();
+            }
+        }).subscribeOn(Schedulers.io()).subscribe(new Action1<SyncEngine.Result>() {
+            @Override
+            public void call(SyncEngine.Result result) {
+                if (result != null) {
+                    record(result);
+                }
+                jobFinished(params, false);
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed syncing");
+                prefs(SyncJobService.this).edit()
+                        .putLong(KEY_LAST_RUN, System.currentTimeMillis())
+                        .putString(KEY_ERROR, String.valueOf(throwable.getMessage()))
+                        .apply();
+                // let the scheduler back off and retry, unless the endpoint is malformed or refuses the batch as such
+                boolean permanent = throwable instanceof SyncEngine.RejectedException || throwable instanceof MalformedURLException;
+                jobFinished(params, !permanent);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // batches accepted are acknowledged already, the rest is sent on the next run
+        subscription.unsubscribe();
+        return true;
+    }
+
+    private void record(SyncEngine.Result result) {
+        prefs(this).edit()
+                .putLong(KEY_LAST_RUN, System.currentTimeMillis())
+                .putInt(KEY_CHANGES, result.getChanges())
+                .putLong(KEY_BYTES, result.getBytes())
+                .putLong(KEY_CURSOR, result.getCursor())
+                .remove(KEY_ERROR)
+                .apply();
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * syncs changes through the repository, so reads and writes queue up with all other database access
+     */
+    private static class RepositoryStore implements SyncEngine.Store {
+
+        private final TrackingRepository repository;
+
+        RepositoryStore(TrackingRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public ChangeLog.Batch readChanges(int limit) {
+            return repository.readChanges(limit).toBlocking().value();
+        }
+
+        @Override
+        public void acknowledgeChanges(long version) {
+            repository.acknowledgeChanges(version).toBlocking().value();
+        }
+    }
+
+}
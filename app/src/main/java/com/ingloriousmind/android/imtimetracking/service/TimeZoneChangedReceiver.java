@@ -0,0 +1,45 @@
+package com.ingloriousmind.android.imtimetracking.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+
+import rx.functions.Action1;
+import timber.log.Timber;
+
+/**
+ * rebuilds reporting rollups in the background when the device's time zone changes
+ *
+ * @author lavong.soysavanh
+ */
+public class TimeZoneChangedReceiver extends BroadcastReceiver {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReceive(Context ctx, final Intent intent) {
+        if (!Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+            return;
+        }
+        final PendingResult pendingResult = goAsync();
+        ((TrackingApplication) ctx.getApplicationContext()).getComponent().repository()
+                .ensureRollupsCurrent()
+                .subscribe(new Action1<Boolean>() {
+                    @Override
+                    public void call(Boolean rebuilt) {
+                        Timber.i("time zone changed to %s, rollups rebuilt: %s", intent.getStringExtra("time-zone"), rebuilt);
+                        pendingResult.finish();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed rebuilding rollups");
+                        pendingResult.finish();
+                    }
+                });
+    }
+
+}
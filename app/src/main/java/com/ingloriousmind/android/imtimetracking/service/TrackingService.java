@@ -0,0 +1,153 @@
+package com.ingloriousmind.android.imtimetracking.service;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+import android.text.TextUtils;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.time.Tracker;
+import com.ingloriousmind.android.imtimetracking.ui.activity.HomeActivity;
+
+import javax.inject.Inject;
+
+import rx.Subscription;
+import rx.functions.Action1;
+import timber.log.Timber;
+
+/**
+ * foreground service keeping a running tracking alive while the app is in background.
+ * <p>
+ * the ongoing notification uses the system rendered chronometer anchored to the tracking's start, so the app itself
+ * does no periodic work while tracking in background. the notification is only updated on transitions.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingService extends Service {
+
+    /**
+     * intent action stopping the running tracking
+     */
+    static final String ACTION_STOP = "com.ingloriousmind.android.imtimetracking.action.STOP_TRACKING";
+
+    private static final int NOTIFICATION_ID = 1;
+
+    @Inject
+    Tracker tracker;
+
+    private Subscription stateSubscription;
+    private Subscription resumeSubscription;
+
+    /**
+     * starts the service, if not running yet
+     *
+     * @param ctx a context
+     */
+    public static void start(Context ctx) {
+        ctx.startService(new Intent(ctx, TrackingService.class));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ((TrackingApplication) getApplication()).getComponent().inject(this);
+
+        stateSubscription = tracker.observeState().subscribe(new Action1<TrackingSnapshot>() {
+            @Override
+            public void call(TrackingSnapshot snapshot) {
+                if (snapshot.isRunning()) {
+                    startForeground(NOTIFICATION_ID, buildNotification(snapshot));
+                } else if (snapshot != TrackingSnapshot.NONE) {
+                    Timber.v("tracking stopped, stopping service");
+                    stopForeground(true);
+                    stopSelf();
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null) {
+            // restarted after process death - resume from database, or give up
+            resumeSubscription = tracker.resumeIfNecessary().subscribe(new Action1<Tracking>() {
+                @Override
+                public void call(Tracking tracking) {
+                    if (tracking == null) {
+                        stopSelf();
+                    }
+                }
+            }, new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    Timber.e(throwable, "failed resuming tracking");
+                    stopSelf();
+                }
+            });
+        } else if (ACTION_STOP.equals(intent.getAction())) {
+            tracker.stop();
+        } else if (!tracker.isRunning()) {
+            stopSelf();
+        }
+        return START_STICKY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDestroy() {
+        stateSubscription.unsubscribe();
+        if (resumeSubscription != null) {
+            resumeSubscription.unsubscribe();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification(TrackingSnapshot snapshot) {
+        Intent homeIntent = new Intent(this, HomeActivity.class);
+        homeIntent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, homeIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        Intent stopIntent = new Intent(this, TrackingService.class).setAction(ACTION_STOP);
+        PendingIntent stopPendingIntent = PendingIntent.getService(this, 0, stopIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        String title = TextUtils.isEmpty(snapshot.getTitle()) ? getString(R.string.list_item_tracking_unnamed_title) : snapshot.getTitle();
+        return new Notification.Builder(this)
+                .setSmallIcon(R.drawable.ic_av_pause)
+                .setColor(getResources().getColor(R.color.im_green))
+                .setContentTitle(title)
+                .setContentText(getString(R.string.notification_tracking_text))
+                .setContentIntent(contentIntent)
+                .addAction(R.drawable.ic_av_pause, getString(R.string.notification_tracking_action_stop), stopPendingIntent)
+                .setWhen(System.currentTimeMillis() - snapshot.at(System.currentTimeMillis()).getElapsed())
+                .setShowWhen(true)
+                .setUsesChronometer(true)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setCategory(Notification.CATEGORY_PROGRESS)
+                .setVisibility(Notification.VISIBILITY_PUBLIC)
+                .build();
+    }
+
+}
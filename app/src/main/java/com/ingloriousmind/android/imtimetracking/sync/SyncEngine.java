@@ -0,0 +1,339 @@
+package com.ingloriousmind.android.imtimetracking.sync;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.persistence.ChangeLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import timber.log.Timber;
+
+/**
+ * pushes tracking changes to an http endpoint, in batches of gzip compressed json.
+ * <p>
+ * every batch is posted along with the cursor it starts after and the version it ends with. once the endpoint
+ * accepted it, the cursor advances to that version and the batch's changes are pruned from the {@link ChangeLog}. the
+ * idempotency key is a digest of the payload, so a batch retried after its response got lost carries the same key and
+ * may be dropped by the endpoint as duplicate.
+ * <p>
+ * syncing blocks on network and database, and must run off the main thread.
+ *
+ * @author lavong.soysavanh
+ */
+public class SyncEngine {
+
+    /**
+     * default max number of changes per request
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int TIMEOUT_MS = 30 * 1000;
+    private static final long DEFAULT_BACKOFF_MS = 2000;
+
+    /**
+     * held while syncing, so syncs started at once, e.g. the periodic one and the one right after configuring, run one
+     * after the other. otherwise, both would read and post the same batch.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * changes to sync, e.g. backed by the repository
+     */
+    public interface Store {
+
+        /**
+         * @param limit max number of changes
+         * @return the oldest changes not acknowledged yet
+         */
+        ChangeLog.Batch readChanges(int limit);
+
+        /**
+         * @param version version of the latest change synced
+         */
+        void acknowledgeChanges(long version);
+    }
+
+    /**
+     * outcome of a sync
+     */
+    public static class Result {
+
+        private int batches;
+        private int changes;
+        private long bytes;
+        private long cursor;
+
+        /**
+         * @return number of requests accepted
+         */
+        public int getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return number of changes synced
+         */
+        public int getChanges() {
+            return changes;
+        }
+
+        /**
+         * @return compressed bytes sent, retries included
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return version synced up to
+         */
+        public long getCursor() {
+            return cursor;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{batches=" + batches + ", changes=" + changes + ", bytes=" + bytes + ", cursor=" + cursor + '}';
+        }
+    }
+
+    /**
+     * a request the endpoint rejected for good. retrying it unchanged is pointless.
+     */
+    public static class RejectedException extends IOException {
+
+        private final int status;
+
+        RejectedException(int status) {
+            super("rejected with http status " + status);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    private final Store store;
+    private final URL endpoint;
+    private final int batchSize;
+    private final long backoffMs;
+
+    /**
+     * ctor
+     *
+     * @param store     the changes to sync
+     * @param endpoint  the url to post to
+     * @param batchSize max number of changes per request
+     */
+    public SyncEngine(Store store, URL endpoint, int batchSize) {
+        this(store, endpoint, batchSize, DEFAULT_BACKOFF_MS);
+    }
+
+    SyncEngine(Store store, URL endpoint, int batchSize, long backoffMs) {
+        this.store = store;
+        this.endpoint = endpoint;
+        this.batchSize = batchSize;
+        this.backoffMs = backoffMs;
+    }
+
+    /**
+     * syncs all changes, batch by batch. a failed batch is retried a few times, backing off in between. batches
+     * accepted before a failure stay synced. waits for a sync running already to finish first.
+     *
+     * @return outcome of the sync
+     * @throws IOException if a batch failed for good
+     */
+    public Result sync() throws IOException {
+        synchronized (LOCK) {
+            long start = System.currentTimeMillis();
+            Result result = new Result();
+            ChangeLog.Batch batch;
+            do {
+                batch = store.readChanges(batchSize);
+                result.cursor = batch.getSince();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                byte[] body = encode(batch);
+                result.bytes += post(body, digest(batch, body));
+                store.acknowledgeChanges(batch.getUntil());
+                result.batches++;
+                result.changes += batch.getChanges().size();
+                result.cursor = batch.getUntil();
+            } while (batch.getChanges().size() == batchSize);
+            Timber.i("synced %s within %d ms", result, System.currentTimeMillis() - start);
+            return result;
+        }
+    }
+
+    private long post(byte[] body, String key) throws IOException {
+        long sent = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sent += body.length;
+                send(body, key);
+                return sent;
+            } catch (RejectedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Timber.w(e, "sync attempt %d failed, retrying", attempt);
+                try {
+                    Thread.sleep(backoffMs << (attempt - 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", ie);
+                }
+            }
+        }
+    }
+
+    private void send(byte[] body, String key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty(HEADER_IDEMPOTENCY_KEY, key);
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (status >= 500 || status == 408 || status == 429) {
+                throw new IOException("failed with http status " + status);
+            }
+            if (status >= 300) {
+                throw new RejectedException(status);
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * reads the response, if any, so the connection is kept alive for the next batch
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the batch as gzip compressed json
+     */
+    static byte[] encode(ChangeLog.Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer w = new OutputStreamWriter(new GZIPOutputStream(bytes), "UTF-8");
+        try {
+            w.write("{\"device\":");
+            writeString(w, batch.getDevice());
+            w.write(",\"since\":" + batch.getSince() + ",\"until\":" + batch.getUntil() + ",\"changes\":[");
+            boolean first = true;
+            for (ChangeLog.Change change : batch.getChanges()) {
+                w.write(first ? "{" : ",{");
+                first = false;
+                w.write("\"version\":" + change.getVersion() + ",\"id\":" + change.getTrackingId()
+                        + ",\"deleted\":" + change.isDeleted());
+                Tracking t = change.getTracking();
+                if (t != null) {
+                    w.write(",\"title\":");
+                    writeString(w, t.getTitle());
+                    w.write(",\"description\":");
+                    writeString(w, t.getDescription());
+                    w.write(",\"created\":" + t.getCreated() + ",\"lastTrackingStarted\":" + t.getLastTrackingStarted()
+                            + ",\"duration\":" + t.getDuration() + ",\"tracking\":" + t.isTracking());
+                }
+                w.write('}');
+            }
+            w.write("]}");
+        } finally {
+            w.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(Writer w, String s) throws IOException {
+        if (s == null) {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    w.write("\\\"");
+                    break;
+                case '\\':
+                    w.write("\\\\");
+                    break;
+                case '\n':
+                    w.write("\\n");
+                    break;
+                case '\r':
+                    w.write("\\r");
+                    break;
+                case '\t':
+                    w.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        w.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        w.write(c);
+                    }
+            }
+        }
+        w.write('"');
+    }
+
+    /**
+     * @return idempotency key of given payload, distinct per device and content
+     */
+    static String digest(ChangeLog.Batch batch, byte[] body) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(body);
+            StringBuilder sb = new StringBuilder(batch.getDevice()).append('-').append(batch.getUntil()).append('-');
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
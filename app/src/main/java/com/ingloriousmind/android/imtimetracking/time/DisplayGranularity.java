@@ -0,0 +1,29 @@
+package com.ingloriousmind.android.imtimetracking.time;
+
+/**
+ * smallest time unit a tracking clock is displayed in. tickers emit at most once per unit.
+ *
+ * @author lavong.soysavanh
+ */
+public enum DisplayGranularity {
+
+    /**
+     * hours, minutes and seconds
+     */
+    SECONDS(1000),
+
+    /**
+     * hours and minutes
+     */
+    MINUTES(60 * 1000);
+
+    final long millis;
+
+    DisplayGranularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+}
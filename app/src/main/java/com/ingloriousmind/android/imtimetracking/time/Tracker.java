@@ -1,130 +1,417 @@
 package com.ingloriousmind.android.imtimetracking.time;
 
+import com.ingloriousmind.android.imtimetracking.metrics.Counter;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
 import com.ingloriousmind.android.imtimetracking.model.Tracking;
-import com.ingloriousmind.android.imtimetracking.persistence.DbHelper;
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingStateStore;
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
 
+import java.io.File;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
-import rx.Subscription;
+import rx.Scheduler;
+import rx.Single;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.functions.Action0;
 import rx.functions.Action1;
-import rx.schedulers.Schedulers;
-import rx.subjects.PublishSubject;
+import rx.functions.Actions;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.subjects.BehaviorSubject;
 import timber.log.Timber;
 
 /**
- * time tracker
+ * time tracker.
+ * <p>
+ * a running tracking is described by its accumulated {@link Tracking#getDuration()} plus the wall clock time passed
+ * since {@link Tracking#getLastTrackingStarted()}. the tracker therefore only mutates and persists trackings on
+ * transitions; displays derive elapsed time from {@link #observe()}.
  *
  * @author lavong.soysavanh
  */
 public class Tracker {
 
-    private DbHelper dbHelper;
-    PublishSubject<Tracking> trackingObservable = PublishSubject.create();
-    Subscription timerSubscription;
+    /**
+     * logs errors of fire-and-forget database writes
+     */
+    private static final Action1<Throwable> LOG_ERROR = new Action1<Throwable>() {
+        @Override
+        public void call(Throwable throwable) {
+            Timber.e(throwable, "tracker database operation failed");
+        }
+    };
+
+    /**
+     * delay past a unit boundary, so ticks scheduled slightly early do not render the previous unit
+     */
+    private static final long TICK_SLACK_MS = 5;
+
+    private TrackingRepository repository;
+    private TrackingStateStore stateStore;
+    private final Scheduler scheduler;
+    final BehaviorSubject<TrackingSnapshot> state = BehaviorSubject.create(TrackingSnapshot.NONE);
+    private final Map<DisplayGranularity, Observable<TrackingSnapshot>> tickers = new EnumMap<>(DisplayGranularity.class);
     Tracking currentTracking;
-    private boolean stopOnUnsubscribe;
+    boolean running;
 
-    public Tracker(DbHelper dbHelper) {
-        this.dbHelper = dbHelper;
+    private final Counter starts;
+    private final Counter pauses;
+    private final Counter stops;
+    private final Histogram persistTimer;
+
+    /**
+     * ctor
+     *
+     * @param repository the repository persisting trackings
+     * @param stateStore store of the state shown outside the app
+     * @param metrics    registry of transition counts and persisting latency
+     * @param scheduler  scheduler running tickers, and telling the time
+     */
+    public Tracker(TrackingRepository repository, TrackingStateStore stateStore, MetricsRegistry metrics, Scheduler scheduler) {
+        this.repository = repository;
+        this.stateStore = stateStore;
+        this.scheduler = scheduler;
+        this.starts = metrics.counter("tracker.start");
+        this.pauses = metrics.counter("tracker.pause");
+        this.stops = metrics.counter("tracker.stop");
+        this.persistTimer = metrics.histogram("tracker.persist");
     }
 
-    public Tracking resumeIfNecessary() {
-        Tracking mostRecentTracking = getMostRecentTracking();
-        if (mostRecentTracking != null && mostRecentTracking.isTracking()) {
-            return start(mostRecentTracking);
+    /**
+     * looks up the most recent tracking off the main thread and resumes it, if it was left running.
+     *
+     * @return the running or resumed tracking, delivered on the main thread. null, if there was nothing to resume.
+     */
+    public Single<Tracking> resumeIfNecessary() {
+        if (running) {
+            return Single.just(currentTracking);
         }
-        return null;
+        return repository.fetchMostRecentTracking()
+                .observeOn(AndroidSchedulers.mainThread())
+                .map(new Func1<Tracking, Tracking>() {
+                    @Override
+                    public Tracking call(Tracking mostRecentTracking) {
+                        Timber.v("read most recent tracking: %s", mostRecentTracking);
+                        if (mostRecentTracking != null && mostRecentTracking.isTracking()) {
+                            return start(mostRecentTracking);
+                        }
+                        return null;
+                    }
+                });
     }
 
+    /**
+     * starts the clock of given tracking. a tracking persisted as running keeps counting from its last start.
+     *
+     * @param tracking the tracking to start
+     * @return the started tracking. null, if no tracking given or the clock is running already.
+     */
     public Tracking start(Tracking tracking) {
-        if (tracking == null || timerSubscription != null) {
+        if (tracking == null || running) {
             return null;
         }
         currentTracking = tracking;
-        timerSubscription = Observable.interval(1, TimeUnit.SECONDS)
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .doOnSubscribe(new Action0() {
+        running = true;
+        if (!tracking.isTracking()) {
+            tracking.setTracking(true);
+            tracking.setLastTrackingStarted(scheduler.now());
+            persist(tracking);
+        }
+        starts.inc();
+        publishState();
+        Timber.v("started: %s", currentTracking);
+        return currentTracking;
+    }
+
+    /**
+     * releases the clock of the current tracking, leaving it persisted as running
+     *
+     * @return the current tracking
+     */
+    public Tracking pause() {
+        if (running) {
+            running = false;
+            persist(currentTracking);
+            pauses.inc();
+            publishState();
+            Timber.v("paused: %s", currentTracking);
+        }
+        return currentTracking;
+    }
+
+    /**
+     * stops the clock of the current tracking and adds the time passed since its last start
+     *
+     * @return the current tracking
+     */
+    public Tracking stop() {
+        if (running) {
+            long now = scheduler.now();
+            running = false;
+            currentTracking.setDuration(currentTracking.getDuration() + Math.max(0, now - currentTracking.getLastTrackingStarted()));
+            currentTracking.setTracking(false);
+            currentTracking.setLastTrackingStarted(now);
+            persist(currentTracking);
+            stops.inc();
+            publishState();
+            Timber.v("stopped: %s", currentTracking);
+        }
+        return currentTracking;
+    }
+
+    /**
+     * renames the current tracking
+     *
+     * @param title the new title
+     */
+    public void updateTitle(String title) {
+        if (currentTracking != null) {
+            currentTracking.setTitle(title);
+            persist(currentTracking);
+            publishState();
+        }
+    }
+
+    /**
+     * sets title and duration of given tracking and persists it. a tracking persisted as running restarts its running
+     * segment, so the duration given is the one elapsed as of now. if it is the current tracking, it replaces the
+     * tracker's copy, so the next transition does not write the previous duration back.
+     *
+     * @param tracking the tracking edited
+     * @param title    the new title
+     * @param duration the new duration, elapsed as of now
+     */
+    public void editTracking(Tracking tracking, String title, long duration) {
+        tracking.setTitle(title);
+        tracking.setDuration(duration);
+        if (tracking.isTracking()) {
+            tracking.setLastTrackingStarted(scheduler.now());
+        }
+        persist(tracking);
+        if (currentTracking != null && currentTracking.getId() == tracking.getId()) {
+            currentTracking = tracking;
+            publishState();
+        }
+    }
+
+    /**
+     * @param tracking a tracking
+     * @return its stored duration, plus the time passed since its last start if persisted as running
+     */
+    public long elapsed(Tracking tracking) {
+        return TrackingSnapshot.of(tracking, tracking.isTracking(), scheduler.now()).getElapsed();
+    }
+
+    /**
+     * persists a transition in the background, timing it from now on, queueing on the db scheduler included
+     */
+    private void persist(Tracking tracking) {
+        final long start = System.nanoTime();
+        persistTracking(tracking)
+                .map(new Func1<Boolean, Boolean>() {
                     @Override
-                    public void call() {
-                        long now = System.currentTimeMillis();
-                        if (currentTracking.isTracking()) {
-                            currentTracking.setDuration(now - currentTracking.getLastTrackingStarted() + currentTracking.getDuration());
-                        }
-                        currentTracking.setLastTrackingStarted(now);
-                        trackingObservable.onNext(currentTracking);
-                        Timber.v("started: %s", currentTracking);
+                    public Boolean call(Boolean stored) {
+                        persistTimer.recordSince(start);
+                        return stored;
                     }
                 })
-                .doOnUnsubscribe(new Action0() {
+                .subscribe(Actions.empty(), LOG_ERROR);
+    }
+
+    private void publishState() {
+        final TrackingSnapshot snapshot = TrackingSnapshot.of(currentTracking, running, scheduler.now());
+        state.onNext(snapshot);
+
+        // refresh state store - queued behind the transition's write on the db scheduler
+        repository.sumDurationsOfDay(scheduler.now())
+                .map(new Func1<Long, Void>() {
                     @Override
-                    public void call() {
-                        currentTracking.setTracking(!stopOnUnsubscribe);
-                        if (stopOnUnsubscribe) {
-                            currentTracking.setLastTrackingStarted(System.currentTimeMillis());
-                        }
-                        persistTracking(currentTracking);
-                        timerSubscription = null;
-                        Timber.v("stopped: %s", currentTracking);
+                    public Void call(Long todayTotal) {
+                        stateStore.write(snapshot, todayTotal);
+                        return null;
                     }
                 })
-                .subscribe(new Action1<Long>() {
+                .subscribe(Actions.empty(), LOG_ERROR);
+    }
+
+    /**
+     * recomputes the state store snapshot, e.g. once the day changed and today's total is stale. resumes a tracking
+     * left running first, so the snapshot does not lose it after the process was restarted.
+     */
+    public void refreshState() {
+        if (running) {
+            publishState();
+            return;
+        }
+        resumeIfNecessary().subscribe(new Action1<Tracking>() {
+            @Override
+            public void call(Tracking resumed) {
+                // resuming published the state already
+                if (resumed == null) {
+                    publishState();
+                }
+            }
+        }, LOG_ERROR);
+    }
+
+    /**
+     * replaces all trackings by the ones of given backup file. a running tracking is stopped first, its time persisted
+     * ahead of the restore. once restored, the tracker lets go of its current tracking, which may be gone or replaced,
+     * and resumes the one left running in the backup, if any.
+     *
+     * @param file the backup file
+     * @return number of rows restored, delivered on the main thread
+     */
+    public Single<Long> restoreBackup(File file) {
+        stop();
+        return repository.restore(file)
+                .observeOn(AndroidSchedulers.mainThread())
+                .map(new Func1<Long, Long>() {
                     @Override
-                    public void call(Long count) {
-                        currentTracking.addDuration(1000);
-                        trackingObservable.onNext(currentTracking);
+                    public Long call(Long rows) {
+                        running = false;
+                        currentTracking = null;
+                        refreshState();
+                        return rows;
                     }
                 });
-
-        return currentTracking;
     }
 
-    public Tracking pause() {
-        stopOnUnsubscribe = false;
-        unsubscribe(timerSubscription);
-        return currentTracking;
+    /**
+     * @return snapshots of the current tracking, emitted on transitions only. replays the latest snapshot.
+     */
+    public Observable<TrackingSnapshot> observeState() {
+        return state.asObservable();
     }
 
-    public Tracking stop() {
-        stopOnUnsubscribe = true;
-        unsubscribe(timerSubscription);
-        return currentTracking;
+    /**
+     * @return current tracking ticking once per second
+     * @see #observe(DisplayGranularity)
+     */
+    public Observable<TrackingSnapshot> observe() {
+        return observe(DisplayGranularity.SECONDS);
     }
 
-    private void unsubscribe(Subscription subscription) {
-        if (subscription != null && !subscription.isUnsubscribed()) {
-            subscription.unsubscribe();
+    /**
+     * returns a shared ticker of current tracking snapshots, delivered on the main thread.
+     * <p>
+     * ticks are aligned to unit boundaries of the elapsed time and only emitted when the displayed text changes. the
+     * underlying timer only runs while there are subscribers, and stops while no tracking is running.
+     *
+     * @param granularity the display unit
+     * @return the ticker
+     */
+    public synchronized Observable<TrackingSnapshot> observe(final DisplayGranularity granularity) {
+        Observable<TrackingSnapshot> ticker = tickers.get(granularity);
+        if (ticker == null) {
+            ticker = state
+                    .switchMap(new Func1<TrackingSnapshot, Observable<TrackingSnapshot>>() {
+                        @Override
+                        public Observable<TrackingSnapshot> call(TrackingSnapshot snapshot) {
+                            return snapshot.isRunning() ? tick(snapshot, granularity.millis, scheduler) : Observable.just(snapshot);
+                        }
+                    })
+                    .distinctUntilChanged(new Func2<TrackingSnapshot, TrackingSnapshot, Boolean>() {
+                        @Override
+                        public Boolean call(TrackingSnapshot previous, TrackingSnapshot current) {
+                            return previous.displaysSameAs(current, granularity.millis);
+                        }
+                    })
+                    .onBackpressureLatest()
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .share();
+            tickers.put(granularity, ticker);
         }
+        return ticker;
     }
 
-    public Observable<Tracking> observe() {
-        return trackingObservable;
+    private static Observable<TrackingSnapshot> tick(final TrackingSnapshot snapshot, long unitMillis, final Scheduler scheduler) {
+        long now = scheduler.now();
+        TrackingSnapshot current = snapshot.at(now);
+        long initialDelay = unitMillis - current.getElapsed() % unitMillis + TICK_SLACK_MS;
+        return Observable.interval(initialDelay, unitMillis, TimeUnit.MILLISECONDS, scheduler)
+                .onBackpressureDrop()
+                .map(new Func1<Long, TrackingSnapshot>() {
+                    @Override
+                    public TrackingSnapshot call(Long tick) {
+                        return snapshot.at(scheduler.now());
+                    }
+                })
+                .startWith(current);
     }
 
     public Tracking getCurrentTracking() {
         return currentTracking;
     }
 
-    private Tracking getMostRecentTracking() {
-        Tracking mostRecentTracking = dbHelper.fetchMostRecentTracking();
-        Timber.v("read most recent tracking: %s", mostRecentTracking);
-        return mostRecentTracking;
+    /**
+     * @return true, if the current tracking's clock is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    public Single<List<Tracking>> getTrackings() {
+        return repository.fetchTrackings();
+    }
+
+    public Single<TrackingHistory> getHistory() {
+        return repository.fetchHistory();
+    }
+
+    public Single<List<TrackingRow>> getTrackingRows() {
+        return repository.fetchTrackingRows();
+    }
+
+    public Single<Tracking> getTracking(long id) {
+        return repository.fetchTracking(id);
+    }
+
+    public Single<List<TrackingRow>> searchTrackings(String query, long limit, long offset) {
+        return repository.searchTrackings(query, limit, offset);
+    }
+
+    public Single<Long> sumSearchDurations(String query) {
+        return repository.sumSearchDurations(query);
+    }
+
+    public Single<Boolean> persistTracking(Tracking tracking) {
+        return repository.storeTracking(tracking);
+    }
+
+    public Single<Boolean> removeTracking(Tracking tracking) {
+        return repository.removeTracking(tracking);
+    }
+
+    public Single<Boolean> restoreTracking(long id) {
+        return repository.restoreTracking(id);
+    }
+
+    public Single<Long> removeAllTrackings() {
+        return repository.removeAllTrackings();
+    }
+
+    public Single<Integer> restoreTrackings(long deleted) {
+        return repository.restoreTrackings(deleted);
     }
 
-    public List<Tracking> getTrackings() {
-        return dbHelper.fetchTrackings();
+    public Single<Integer> removeTrackings(long[] ids, long deleted) {
+        return repository.removeTrackings(ids, deleted);
     }
 
-    public void persistTracking(Tracking tracking) {
-        dbHelper.storeTracking(tracking);
+    public Single<Integer> retitleTrackings(long[] ids, String title) {
+        return repository.retitleTrackings(ids, title);
     }
 
-    public void removeTracking(Tracking tracking) {
-        dbHelper.removeTracking(tracking);
+    public Single<Integer> mergeTrackings(long[] ids) {
+        return repository.mergeTrackings(ids);
     }
 
 }
@@ -0,0 +1,85 @@
+package com.ingloriousmind.android.imtimetracking.ui.activity;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.report.DayBuckets;
+import com.ingloriousmind.android.imtimetracking.ui.adapter.HeatmapAdapter;
+
+import javax.inject.Inject;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import timber.log.Timber;
+
+/**
+ * heatmap activity, showing tracked time per day as a calendar heatmap per year
+ *
+ * @author lavong.soysavanh
+ */
+public class HeatmapActivity extends AppCompatActivity {
+
+    @Bind(R.id.activity_heatmap_recycler)
+    RecyclerView recycler;
+
+    @Inject
+    TrackingRepository repository;
+
+    private HeatmapAdapter adapter;
+    private Subscription bucketsSubscription;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_heatmap);
+        ButterKnife.bind(this);
+        ((TrackingApplication) getApplication()).getComponent().inject(this);
+
+        recycler.setLayoutManager(new LinearLayoutManager(this));
+        recycler.setHasFixedSize(true);
+        adapter = new HeatmapAdapter(this);
+        recycler.setAdapter(adapter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        bucketsSubscription = repository.fetchYearlyDayBuckets()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<DayBuckets>() {
+                    @Override
+                    public void call(DayBuckets buckets) {
+                        adapter.setBuckets(buckets);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed loading day buckets");
+                    }
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        bucketsSubscription.unsubscribe();
+    }
+
+}
@@ -5,14 +5,20 @@ import android.animation.AnimatorListenerAdapter;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.provider.OpenableColumns;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.view.ActionMode;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.text.TextUtils;
 import android.view.KeyEvent;
 import android.view.Menu;
@@ -20,33 +26,59 @@ import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewAnimationUtils;
+import android.view.ViewTreeObserver;
 import android.view.inputmethod.EditorInfo;
-import android.widget.EditText;
+import android.widget.AdapterView;
+import android.widget.AutoCompleteTextView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import com.ingloriousmind.android.imtimetracking.BuildConfig;
 import com.ingloriousmind.android.imtimetracking.R;
 import com.ingloriousmind.android.imtimetracking.TrackingApplication;
 import com.ingloriousmind.android.imtimetracking.export.Exporter;
+import com.ingloriousmind.android.imtimetracking.metrics.Counter;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
+import com.ingloriousmind.android.imtimetracking.metrics.StartupTimeline;
 import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.persistence.TitleIndex;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingImporter;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.persistence.migration.Migrator;
+import com.ingloriousmind.android.imtimetracking.service.SyncJobService;
 import com.ingloriousmind.android.imtimetracking.time.Tracker;
+import com.ingloriousmind.android.imtimetracking.ui.adapter.TitleSuggestionAdapter;
 import com.ingloriousmind.android.imtimetracking.ui.adapter.TrackingAdapter;
 import com.ingloriousmind.android.imtimetracking.ui.dialog.DialogFactory;
 import com.ingloriousmind.android.imtimetracking.ui.dialog.EditTrackingDialog;
+import com.ingloriousmind.android.imtimetracking.util.FileUtil;
 import com.ingloriousmind.android.imtimetracking.util.ImeUtil;
 import com.ingloriousmind.android.imtimetracking.util.RedirectFacade;
 import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
+import rx.Observable;
+import rx.Single;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Action1;
+import rx.functions.Actions;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 import timber.log.Timber;
 
 /**
@@ -63,7 +95,7 @@ public class HomeActivity extends AppCompatActivity {
     @Bind(R.id.activity_home_overlay)
     RelativeLayout overlay;
     @Bind(R.id.activity_home_overlay_title)
-    EditText overlayTitle;
+    AutoCompleteTextView overlayTitle;
     @Bind(R.id.activity_home_overlay_time)
     TextView overlayTime;
     @Bind(R.id.activity_home_total)
@@ -73,6 +105,7 @@ public class HomeActivity extends AppCompatActivity {
 
     private ProgressDialog progressDialog;
     private TrackingAdapter adapter;
+    private ActionMode selectionMode;
 
     @Inject
     Tracker tracker;
@@ -80,7 +113,78 @@ public class HomeActivity extends AppCompatActivity {
     @Inject
     Exporter exporter;
 
+    @Inject
+    TitleIndex titleIndex;
+
+    @Inject
+    TrackingRepository repository;
+
+    @Inject
+    MetricsRegistry metrics;
+
+    /**
+     * debounce window coalescing bursts of reload requests
+     */
+    private static final long RELOAD_DEBOUNCE_MS = 100;
+
+    /**
+     * max number of projects offered to move selected trackings to
+     */
+    private static final int MAX_PROJECTS_OFFERED = 50;
+
+    /**
+     * number of search results loaded per page
+     */
+    private static final int SEARCH_PAGE_SIZE = 50;
+
+    /**
+     * remaining items below the last visible one, triggering loading of the next search page
+     */
+    private static final int SEARCH_PREFETCH_DISTANCE = 10;
+
+    /**
+     * request code of picking a document to import
+     */
+    private static final int REQUEST_IMPORT = 1;
+
+    /**
+     * mime types of documents to import
+     */
+    private static final String[] IMPORT_MIME_TYPES = {"text/csv", "text/comma-separated-values", "application/json", "text/plain"};
+
     private Subscription trackerSubscription;
+    private Subscription resumeSubscription;
+    private Subscription migrationSubscription;
+    private Subscription startSubscription;
+
+    /**
+     * reload requests carrying the search query, consumed by the lifecycle bound loading pipeline
+     */
+    private final PublishSubject<String> reloadRequests = PublishSubject.create();
+    private Subscription reloadSubscription;
+    private Counter reloadsRequested;
+    private StartupTimeline startupTimeline;
+    private boolean postScrollTopPending;
+
+    /**
+     * search query. empty, when listing all trackings.
+     */
+    private String searchQuery = "";
+    private boolean searchExhausted = true;
+    private Subscription searchPageSubscription;
+
+    /**
+     * backup, restore and import started here, cached. they keep running while paused, their outcome is delivered
+     * once resumed. null, unless in progress or not delivered yet.
+     */
+    private Single<File> pendingBackup;
+    private Single<File> pendingRestore;
+    private Single<TrackingImporter.Progress> pendingImport;
+    private Subscription backupSubscription;
+    private Subscription restoreSubscription;
+    private Subscription importSubscription;
+    private Subscription importProgressSubscription;
+    private long importRead;
 
     /**
      * action button click listener
@@ -106,79 +210,175 @@ public class HomeActivity extends AppCompatActivity {
     private class TrackingListItemListener implements TrackingAdapter.TrackingItemActionListener {
 
         @Override
-        public void onEdit(int pos, Tracking t) {
+        public void onEdit(int pos, TrackingRow t) {
             editTracking(t);
         }
 
         @Override
-        public void onResume(int pos, Tracking t) {
+        public void onResume(int pos, TrackingRow t) {
             Timber.d("resume: %s", t);
-            startTracking(t);
-            adapter.notifyItemChanged(pos);
+            resumeTracking(t);
+        }
+
+        @Override
+        public void onSelectionChanged(int count) {
+            if (count == 0) {
+                if (selectionMode != null) {
+                    selectionMode.finish();
+                }
+                return;
+            }
+            if (selectionMode == null) {
+                selectionMode = startSupportActionMode(new SelectionModeCallback());
+            }
+            selectionMode.setTitle(getString(R.string.home_activity_selection_title, count));
         }
     }
 
     /**
-     * async task fetching all trackings and feeding list adapter
+     * action mode of trackings selected in the list, offering bulk edits
      */
-    private class LoadTrackingsTask extends AsyncTask<Void, Void, Void> {
-
-        private long total;
-        private List<Tracking> trackings;
-        private boolean postScrollTop;
+    private class SelectionModeCallback implements ActionMode.Callback {
 
-        public LoadTrackingsTask(boolean postScrollTop) {
-            this.postScrollTop = postScrollTop;
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.home_selection, menu);
+            return true;
         }
 
         @Override
-        protected Void doInBackground(Void... params) {
-            trackings = tracker.getTrackings();
-
-            for (Tracking t : trackings)
-                total += t.getDuration();
-
-            return null;
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
         }
 
         @Override
-        protected void onPreExecute() {
-            progressDialog.show();
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            final long[] ids = adapter.getSelectedIds();
+            switch (item.getItemId()) {
+                case R.id.action_selection_delete:
+                    deleteTrackings(ids);
+                    return true;
+                case R.id.action_selection_rename:
+                    DialogFactory.newTextInputDialog(HomeActivity.this, R.string.dialog_title_rename, null, R.string.dialog_tracking_edit_title_hint,
+                            R.string.dialog_btn_save, new DialogFactory.OnTextEnteredListener() {
+                                @Override
+                                public void onTextEntered(String text) {
+                                    retitleTrackings(ids, text);
+                                }
+                            }, R.string.dialog_btn_cancel).show();
+                    return true;
+                case R.id.action_selection_move:
+                    List<String> titles = titleIndex.suggest(null, MAX_PROJECTS_OFFERED, System.currentTimeMillis());
+                    if (titles.isEmpty()) {
+                        Snackbar.make(recycler, R.string.snackbar_msg_no_projects, Snackbar.LENGTH_LONG).show();
+                        return true;
+                    }
+                    DialogFactory.newPickerDialog(HomeActivity.this, R.string.dialog_title_move, titles.toArray(new String[titles.size()]),
+                            new DialogFactory.OnTextEnteredListener() {
+                                @Override
+                                public void onTextEntered(String text) {
+                                    retitleTrackings(ids, text);
+                                }
+                            }, R.string.dialog_btn_cancel).show();
+                    return true;
+                case R.id.action_selection_merge:
+                    DialogFactory.newTwoButtonDialog(HomeActivity.this, R.string.dialog_title_merge, getString(R.string.dialog_msg_merge, ids.length),
+                            R.string.dialog_btn_merge, new DialogInterface.OnClickListener() {
+                                @Override
+                                public void onClick(DialogInterface dialog, int which) {
+                                    mergeTrackings(ids);
+                                }
+                            }, R.string.dialog_btn_cancel, null).show();
+                    return true;
+                case R.id.action_selection_all:
+                    adapter.selectAll();
+                    return true;
+            }
+            return false;
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
-            adapter.setTrackings(trackings);
-            footerTotal.setText(TimeUtil.getTimeString(total));
-            progressDialog.dismiss();
-            if (postScrollTop) {
-                recycler.smoothScrollToPosition(0);
-            }
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
         }
     }
 
     /**
-     * async task deleting all tasks
+     * result of a tracking list reload. a failed reload carries its error instead of trackings.
      */
-    private class DeleteTrackingsTask extends AsyncTask<Void, Void, Void> {
+    private static class LoadResult {
 
-        @Override
-        protected Void doInBackground(Void... params) {
-            for (Tracking t : tracker.getTrackings())
-                tracker.removeTracking(t);
-            return null;
+        private final String query;
+        private final List<TrackingRow> trackings;
+        private final long total;
+        private final Throwable error;
+
+        LoadResult(String query, List<TrackingRow> trackings, long total) {
+            this.query = query;
+            this.trackings = trackings;
+            this.total = total;
+            this.error = null;
         }
 
-        @Override
-        protected void onPreExecute() {
-            progressDialog.show();
+        LoadResult(String query, Throwable error) {
+            this.query = query;
+            this.trackings = null;
+            this.total = 0;
+            this.error = error;
+        }
+    }
+
+    /**
+     * maps reload requests to the latest query result. static, so in-flight queries never hold on to the activity.
+     */
+    private static class LoadTrackings implements Func1<String, Observable<LoadResult>> {
+
+        private final Tracker tracker;
+        private final Histogram loadTimer;
+
+        LoadTrackings(Tracker tracker, Histogram loadTimer) {
+            this.tracker = tracker;
+            this.loadTimer = loadTimer;
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
-            adapter.setTrackings(null);
-            footerTotal.setText(TimeUtil.getTimeString(0));
-            progressDialog.dismiss();
+        public Observable<LoadResult> call(final String query) {
+            final long start = System.nanoTime();
+            Single<LoadResult> load;
+            if (query.isEmpty()) {
+                load = tracker.getTrackingRows().map(new Func1<List<TrackingRow>, LoadResult>() {
+                    @Override
+                    public LoadResult call(List<TrackingRow> trackings) {
+                        return new LoadResult(query, trackings, TrackingRow.sumDurations(trackings));
+                    }
+                });
+            } else {
+                // search results are paged, their total is summed up over all matches
+                load = Single.zip(tracker.searchTrackings(query, SEARCH_PAGE_SIZE, 0), tracker.sumSearchDurations(query),
+                        new Func2<List<TrackingRow>, Long, LoadResult>() {
+                            @Override
+                            public LoadResult call(List<TrackingRow> trackings, Long total) {
+                                return new LoadResult(query, trackings, total);
+                            }
+                        });
+            }
+            return load
+                    .map(new Func1<LoadResult, LoadResult>() {
+                        @Override
+                        public LoadResult call(LoadResult result) {
+                            loadTimer.recordSince(start);
+                            return result;
+                        }
+                    })
+                    .onErrorReturn(new Func1<Throwable, LoadResult>() {
+                        @Override
+                        public LoadResult call(Throwable throwable) {
+                            // an error past switchMap would end the reload stream for good
+                            return new LoadResult(query, throwable);
+                        }
+                    })
+                    .toObservable();
         }
     }
 
@@ -231,6 +431,11 @@ public class HomeActivity extends AppCompatActivity {
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        startupTimeline = ((TrackingApplication) getApplication()).getStartupTimeline();
+        if (savedInstanceState == null) {
+            startupTimeline.launch();
+        }
+        startupTimeline.begin(StartupTimeline.HOME_CREATE);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_home);
         ButterKnife.bind(this);
@@ -242,8 +447,18 @@ public class HomeActivity extends AppCompatActivity {
         recycler.setLayoutManager(layoutManager);
         recycler.setHasFixedSize(true);
         recycler.setItemAnimator(new DefaultItemAnimator());
-        adapter = new TrackingAdapter(this, null, new TrackingListItemListener());
+        adapter = new TrackingAdapter(this, null, new TrackingListItemListener(), metrics);
+        reloadsRequested = metrics.counter("list.reload.requested");
         recycler.setAdapter(adapter);
+        recycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && lm.findLastVisibleItemPosition() >= adapter.getItemCount() - SEARCH_PREFETCH_DISTANCE) {
+                    loadNextSearchPage();
+                }
+            }
+        });
 
         // progress dialog
         progressDialog = new ProgressDialog(this);
@@ -257,6 +472,15 @@ public class HomeActivity extends AppCompatActivity {
                 return true;
             }
         });
+        overlayTitle.setAdapter(new TitleSuggestionAdapter(this, titleIndex));
+        overlayTitle.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                updateTrackingTitle(overlayTitle.getText());
+                overlayTitle.clearFocus();
+                ImeUtil.hideIme(overlayTitle);
+            }
+        });
         overlayTitle.setOnEditorActionListener(new TextView.OnEditorActionListener() {
             @Override
             public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
@@ -273,16 +497,29 @@ public class HomeActivity extends AppCompatActivity {
         ActionButtonClickListener actionBtnListener = new ActionButtonClickListener();
         actionButtonAdd.setOnClickListener(actionBtnListener);
         actionButtonPause.setOnClickListener(actionBtnListener);
+
+        // the first frame is drawn by the traversal the pre-draw belongs to, the runnable posted runs right after
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                decor.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        startupTimeline.firstFrameDrawn();
+                    }
+                });
+                return true;
+            }
+        });
+        startupTimeline.end(StartupTimeline.HOME_CREATE);
     }
 
     private void updateTrackingTitle(CharSequence title) {
         if (!TextUtils.isEmpty(title)) {
             Timber.d("updateTrackingTitle: %s", title);
-            Tracking tracking = tracker.getCurrentTracking();
-            if (tracking != null) {
-                tracking.setTitle(title.toString());
-                tracker.persistTracking(tracking);
-            }
+            tracker.updateTitle(title.toString());
         }
     }
 
@@ -291,27 +528,88 @@ public class HomeActivity extends AppCompatActivity {
      */
     @Override
     public void onResume() {
+        startupTimeline.begin(StartupTimeline.HOME_RESUME);
         super.onResume();
 
         trackerSubscription = tracker.observe()
-                .subscribeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Action1<Tracking>() {
+                .subscribe(new Action1<TrackingSnapshot>() {
                     @Override
-                    public void call(Tracking tracking) {
-                        final String elapsedTime = TimeUtil.getTimeString(tracking.getDuration());
-                        Timber.v("observe tracking: %s (%d ms)", elapsedTime, tracking.getDuration());
-                        overlayTime.setText(elapsedTime);
+                    public void call(TrackingSnapshot snapshot) {
+                        overlayTime.setText(TimeUtil.getTimeString(snapshot.getElapsed()));
+                        if (!snapshot.isRunning() && overlay.getVisibility() == View.VISIBLE) {
+                            // stopped here or from the notification
+                            onTrackingStopped();
+                        }
                     }
                 });
 
         // check if there is a tracking to resume
-        Tracking trackingResumed = tracker.resumeIfNecessary();
-        if (trackingResumed != null) {
-            onTrackingStarted(trackingResumed);
-        }
+        startupTimeline.beginAsync(StartupTimeline.TRACKER_RESUME);
+        resumeSubscription = tracker.resumeIfNecessary()
+                .subscribe(new Action1<Tracking>() {
+                    @Override
+                    public void call(Tracking trackingResumed) {
+                        startupTimeline.endAsync(StartupTimeline.TRACKER_RESUME);
+                        if (trackingResumed != null) {
+                            onTrackingStarted(trackingResumed);
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        startupTimeline.endAsync(StartupTimeline.TRACKER_RESUME);
+                        Timber.e(throwable, "failed resuming tracking");
+                    }
+                });
 
-        // load items
+        // loading is queued behind data migrations after an upgrade, tell what takes so long
+        migrationSubscription = repository.observeMigrationProgress()
+                .onBackpressureLatest()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Migrator.Progress>() {
+                    @Override
+                    public void call(Migrator.Progress progress) {
+                        progressDialog.setMessage(progress.getPercent() < 100
+                                ? getString(R.string.home_activity_migration_progress_msg, progress.getPercent())
+                                : getString(R.string.home_activity_progress_indicator_msg));
+                    }
+                });
+
+        // load items - only the latest result of a burst of requests is delivered
+        reloadSubscription = reloadRequests
+                .debounce(RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS)
+                .switchMap(new LoadTrackings(tracker, metrics.histogram("list.load")))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<LoadResult>() {
+                    @Override
+                    public void call(LoadResult result) {
+                        if (result.error != null) {
+                            onTrackingsLoadFailed(result);
+                        } else {
+                            onTrackingsLoaded(result);
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "reload stream failed");
+                        progressDialog.dismiss();
+                    }
+                });
+        startupTimeline.beginAsync(StartupTimeline.LIST_LOAD);
         reloadTrackingList(false);
+
+        // deliver what finished while paused, keep showing what is still in progress
+        if (pendingBackup != null) {
+            subscribeBackup();
+        }
+        if (pendingRestore != null) {
+            subscribeRestore();
+        }
+        if (pendingImport != null) {
+            subscribeImport();
+        }
+        startupTimeline.end(StartupTimeline.HOME_RESUME);
     }
 
     /**
@@ -321,28 +619,524 @@ public class HomeActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
 
-        // pause tracking
-        tracker.pause();
-
+        // a running tracking keeps running in the tracking service
         trackerSubscription.unsubscribe();
+        resumeSubscription.unsubscribe();
+        migrationSubscription.unsubscribe();
+        if (startSubscription != null) {
+            startSubscription.unsubscribe();
+        }
+
+        // cancel in-flight loading
+        reloadSubscription.unsubscribe();
+        if (searchPageSubscription != null) {
+            searchPageSubscription.unsubscribe();
+        }
+
+        // backup, restore and import keep running, their outcome is delivered once resumed
+        if (backupSubscription != null) {
+            backupSubscription.unsubscribe();
+        }
+        if (restoreSubscription != null) {
+            restoreSubscription.unsubscribe();
+        }
+        if (importSubscription != null) {
+            importSubscription.unsubscribe();
+            importProgressSubscription.unsubscribe();
+        }
+        progressDialog.dismiss();
     }
 
     /**
-     * triggers async tracking list reloading
+     * requests async tracking list reloading. requests in quick succession are coalesced into a single query.
      *
      * @param postScrollTop true, to have have the recycler scrolls to top of the list after reloading. false, otherwise.
      */
     private void reloadTrackingList(boolean postScrollTop) {
-        new LoadTrackingsTask(postScrollTop).execute();
+        postScrollTopPending |= postScrollTop;
+        reloadsRequested.inc();
+        if (searchQuery.isEmpty() && !progressDialog.isShowing()) {
+            progressDialog.show();
+        }
+        reloadRequests.onNext(searchQuery);
+    }
+
+    /**
+     * searches trackings while typing. results replace the list, further pages are loaded while scrolling.
+     *
+     * @param query the search query. empty, to list all trackings again.
+     */
+    private void search(String query) {
+        String q = query != null ? query.trim() : "";
+        if (!q.equals(searchQuery)) {
+            searchQuery = q;
+            reloadTrackingList(true);
+        }
+    }
+
+    /**
+     * appends the next page of search results, unless all results are loaded already or a page is in flight
+     */
+    private void loadNextSearchPage() {
+        if (searchExhausted || (searchPageSubscription != null && !searchPageSubscription.isUnsubscribed())) {
+            return;
+        }
+        final String query = searchQuery;
+        searchPageSubscription = tracker.searchTrackings(query, SEARCH_PAGE_SIZE, adapter.getItemCount())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<List<TrackingRow>>() {
+                    @Override
+                    public void call(List<TrackingRow> trackings) {
+                        if (query.equals(searchQuery)) {
+                            searchExhausted = trackings.size() < SEARCH_PAGE_SIZE;
+                            adapter.appendTrackings(trackings);
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed loading search results");
+                    }
+                });
+    }
+
+    /**
+     * feeds list adapter with loaded trackings
+     *
+     * @param result the loaded trackings
+     */
+    private void onTrackingsLoaded(LoadResult result) {
+        if (searchPageSubscription != null) {
+            searchPageSubscription.unsubscribe();
+        }
+        searchExhausted = result.query.isEmpty() || result.trackings.size() < SEARCH_PAGE_SIZE;
+        adapter.setTrackings(result.trackings);
+        footerTotal.setText(TimeUtil.getTimeString(result.total));
+        progressDialog.dismiss();
+        startupTimeline.endAsync(StartupTimeline.LIST_LOAD);
+        startupTimeline.contentShown();
+        if (postScrollTopPending) {
+            postScrollTopPending = false;
+            recycler.smoothScrollToPosition(0);
+        }
+    }
+
+    /**
+     * keeps the list as is after a failed reload. the next reload request queries again, after retrying failed data
+     * migrations.
+     *
+     * @param result the failed reload
+     */
+    private void onTrackingsLoadFailed(LoadResult result) {
+        Timber.e(result.error, "failed loading trackings: '%s'", result.query);
+        progressDialog.dismiss();
+        Snackbar.make(recycler, result.error instanceof Migrator.MigrationException
+                ? R.string.snackbar_msg_migration_failed : R.string.snackbar_msg_load_failed, Snackbar.LENGTH_LONG).show();
+    }
+
+    /**
+     * deletes all trackings, offering undo. the reload requested right after waits for the delete to be done.
+     */
+    private void deleteAllTrackings() {
+        adapter.setTrackings(null);
+        footerTotal.setText(TimeUtil.getTimeString(0));
+        tracker.removeAllTrackings()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(final Long deleted) {
+                        if (deleted > 0) {
+                            offerUndo(getString(R.string.snackbar_msg_deleted_all), tracker.restoreTrackings(deleted));
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed deleting trackings");
+                    }
+                });
+        reloadTrackingList(false);
+    }
+
+    /**
+     * deletes the selected trackings in a single transaction, offering undo. a running tracking is left alone.
+     *
+     * @param ids the selected trackings
+     */
+    private void deleteTrackings(long[] ids) {
+        finishSelection();
+        final long deleted = System.currentTimeMillis();
+        tracker.removeTrackings(ids, deleted)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Integer>() {
+                    @Override
+                    public void call(Integer removed) {
+                        if (removed > 0) {
+                            offerUndo(getString(R.string.snackbar_msg_deleted_selected, removed), tracker.restoreTrackings(deleted));
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed deleting selected trackings");
+                    }
+                });
+        reloadTrackingList(false);
     }
 
     /**
-     * displays edit tracking dialog
+     * moves the selected trackings to the project of given title in a single transaction
      *
-     * @param t tracking to edit
+     * @param ids   the selected trackings
+     * @param title the new title
      */
-    private void editTracking(final Tracking t) {
-        EditTrackingDialog d = new EditTrackingDialog(HomeActivity.this, t);
+    private void retitleTrackings(long[] ids, String title) {
+        if (title.isEmpty()) {
+            return;
+        }
+        finishSelection();
+        tracker.retitleTrackings(ids, title)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Integer>() {
+                    @Override
+                    public void call(Integer retitled) {
+                        Snackbar.make(recycler, getString(R.string.snackbar_msg_retitled, retitled), Snackbar.LENGTH_LONG).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed retitling selected trackings");
+                    }
+                });
+        reloadTrackingList(false);
+    }
+
+    /**
+     * merges the selected trackings in a single transaction
+     *
+     * @param ids the selected trackings
+     */
+    private void mergeTrackings(long[] ids) {
+        finishSelection();
+        tracker.mergeTrackings(ids)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Integer>() {
+                    @Override
+                    public void call(Integer merged) {
+                        Snackbar.make(recycler, getString(R.string.snackbar_msg_merged, merged), Snackbar.LENGTH_LONG).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed merging selected trackings");
+                    }
+                });
+        reloadTrackingList(false);
+    }
+
+    private void finishSelection() {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+    }
+
+    /**
+     * writes all trackings to a new backup file
+     */
+    private void backup() {
+        final File file = FileUtil.newBackupFile();
+        pendingBackup = repository.backup(file)
+                .map(new Func1<Long, File>() {
+                    @Override
+                    public File call(Long rows) {
+                        return file;
+                    }
+                })
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed backing up trackings");
+                    }
+                })
+                .toObservable().cache().toSingle();
+        subscribeBackup();
+    }
+
+    /**
+     * shows the outcome of the pending backup once done
+     */
+    private void subscribeBackup() {
+        backupSubscription = pendingBackup
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<File>() {
+                    @Override
+                    public void call(File file) {
+                        pendingBackup = null;
+                        Snackbar.make(recycler, getString(R.string.snackbar_msg_backup_done, file.getAbsolutePath()), Snackbar.LENGTH_LONG).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        pendingBackup = null;
+                        Snackbar.make(recycler, R.string.snackbar_msg_backup_failed, Snackbar.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+    /**
+     * asks for confirmation to restore the latest backup file, looked up off the main thread
+     */
+    private void confirmRestore() {
+        Single.fromCallable(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return FileUtil.findLatestBackupFile();
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<File>() {
+                    @Override
+                    public void call(final File backupFile) {
+                        if (backupFile == null) {
+                            Snackbar.make(recycler, getString(R.string.snackbar_msg_no_backup, FileUtil.appDir.getAbsolutePath()), Snackbar.LENGTH_LONG).show();
+                            return;
+                        }
+                        DialogFactory.newTwoButtonDialog(HomeActivity.this, R.string.dialog_title_restore, getString(R.string.dialog_msg_restore, backupFile.getName()), R.string.dialog_btn_restore, new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                restore(backupFile);
+                            }
+                        }, R.string.dialog_btn_cancel, null).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed looking up the latest backup file");
+                    }
+                });
+    }
+
+    /**
+     * replaces all trackings by the ones of given backup file, stopping a running tracking first. the reload requested
+     * right after waits for the restore to be done.
+     *
+     * @param file the backup file
+     * @see Tracker#restoreBackup(File)
+     */
+    private void restore(final File file) {
+        pendingRestore = tracker.restoreBackup(file)
+                .map(new Func1<Long, File>() {
+                    @Override
+                    public File call(Long rows) {
+                        return file;
+                    }
+                })
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed restoring %s", file);
+                    }
+                })
+                .toObservable().cache().toSingle();
+        subscribeRestore();
+        reloadTrackingList(false);
+    }
+
+    /**
+     * shows the outcome of the pending restore once done
+     */
+    private void subscribeRestore() {
+        restoreSubscription = pendingRestore
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<File>() {
+                    @Override
+                    public void call(File file) {
+                        pendingRestore = null;
+                        Snackbar.make(recycler, getString(R.string.snackbar_msg_restore_done, file.getName()), Snackbar.LENGTH_LONG).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        pendingRestore = null;
+                        Snackbar.make(recycler, R.string.snackbar_msg_restore_failed, Snackbar.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMPORT && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            importTrackings(data.getData());
+        }
+    }
+
+    /**
+     * imports trackings from given csv or json document, showing progress. the document is opened off the main thread.
+     *
+     * @param uri the document
+     */
+    private void importTrackings(final Uri uri) {
+        importRead = 0;
+        pendingImport = Single.just(uri)
+                .observeOn(Schedulers.io())
+                .flatMap(new Func1<Uri, Single<TrackingImporter.Progress>>() {
+                    @Override
+                    public Single<TrackingImporter.Progress> call(Uri uri) {
+                        try {
+                            return repository.importTrackings(getContentResolver().openInputStream(uri), querySize(uri));
+                        } catch (FileNotFoundException e) {
+                            return Single.error(e);
+                        }
+                    }
+                })
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed importing %s", uri);
+                    }
+                })
+                .toObservable().cache().toSingle();
+        subscribeImport();
+    }
+
+    /**
+     * shows progress of the pending import, then its outcome once done
+     */
+    private void subscribeImport() {
+        // started from onActivityResult, right before onResume subscribes again
+        if (importSubscription != null) {
+            importSubscription.unsubscribe();
+            importProgressSubscription.unsubscribe();
+        }
+        progressDialog.setMessage(getString(R.string.home_activity_import_progress_msg, importRead));
+        progressDialog.show();
+        importProgressSubscription = repository.observeImportProgress()
+                .onBackpressureLatest()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<TrackingImporter.Progress>() {
+                    @Override
+                    public void call(TrackingImporter.Progress progress) {
+                        importRead = progress.getRead();
+                        progressDialog.setMessage(getString(R.string.home_activity_import_progress_msg, importRead));
+                    }
+                });
+        importSubscription = pendingImport
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<TrackingImporter.Progress>() {
+                    @Override
+                    public void call(TrackingImporter.Progress progress) {
+                        pendingImport = null;
+                        importProgressSubscription.unsubscribe();
+                        progressDialog.dismiss();
+                        Snackbar.make(recycler, getString(R.string.snackbar_msg_import_done, progress.getImported(),
+                                progress.getDuplicates() + progress.getInvalid()), Snackbar.LENGTH_LONG).show();
+                        reloadTrackingList(true);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        pendingImport = null;
+                        importProgressSubscription.unsubscribe();
+                        progressDialog.dismiss();
+                        Snackbar.make(recycler, R.string.snackbar_msg_import_failed, Snackbar.LENGTH_LONG).show();
+                        reloadTrackingList(false);
+                    }
+                });
+    }
+
+    /**
+     * @param uri a document
+     * @return size of the document in bytes. -1, if unknown.
+     */
+    private long querySize(Uri uri) {
+        Cursor c = getContentResolver().query(uri, new String[]{OpenableColumns.SIZE}, null, null, null);
+        if (c == null) {
+            return -1;
+        }
+        try {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * asks for the sync endpoint, pre-filled with the current one read off the main thread. an empty endpoint turns
+     * sync off.
+     */
+    private void configureSync() {
+        Single.fromCallable(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return SyncJobService.getEndpoint(HomeActivity.this);
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<String>() {
+                    @Override
+                    public void call(String endpoint) {
+                        DialogFactory.newUriInputDialog(HomeActivity.this, R.string.dialog_title_sync, endpoint, R.string.dialog_hint_sync,
+                                R.string.dialog_btn_save, new DialogFactory.OnTextEnteredListener() {
+                                    @Override
+                                    public void onTextEntered(String text) {
+                                        if (!text.isEmpty() && !SyncJobService.isValidEndpoint(text)) {
+                                            Snackbar.make(recycler, R.string.snackbar_msg_sync_invalid, Snackbar.LENGTH_LONG).show();
+                                            return;
+                                        }
+                                        SyncJobService.setEndpoint(HomeActivity.this, text);
+                                        Snackbar.make(recycler, text.isEmpty() ? R.string.snackbar_msg_sync_off : R.string.snackbar_msg_sync_on,
+                                                Snackbar.LENGTH_LONG).show();
+                                    }
+                                }, R.string.dialog_btn_cancel).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed reading sync endpoint");
+                    }
+                });
+    }
+
+    /**
+     * shows a snackbar offering to undo a deletion
+     *
+     * @param msg     the message shown
+     * @param restore restores what was deleted, subscribed on undo
+     */
+    private void offerUndo(CharSequence msg, final Single<?> restore) {
+        Snackbar.make(recycler, msg, Snackbar.LENGTH_LONG)
+                .setAction(R.string.snackbar_action_undo, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        restore.subscribe(Actions.empty(), new Action1<Throwable>() {
+                            @Override
+                            public void call(Throwable throwable) {
+                                Timber.e(throwable, "failed restoring trackings");
+                            }
+                        });
+                        reloadTrackingList(false);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * displays edit tracking dialog, loading the full tracking
+     *
+     * @param t row of the tracking to edit
+     */
+    private void editTracking(TrackingRow t) {
+        EditTrackingDialog d = new EditTrackingDialog(HomeActivity.this, t.getId());
+        d.setOnTrackingDeletedListener(new EditTrackingDialog.OnTrackingDeletedListener() {
+            @Override
+            public void onTrackingDeleted(Tracking deleted) {
+                offerUndo(getString(R.string.snackbar_msg_deleted, deleted.getTitle()), tracker.restoreTracking(deleted.getId()));
+            }
+        });
         d.setOnDismissListener(new DialogInterface.OnDismissListener() {
             @Override
             public void onDismiss(DialogInterface dialog) {
@@ -358,6 +1152,36 @@ public class HomeActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.home, menu);
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.action_search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                ImeUtil.hideIme(recycler);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                search(query);
+                return true;
+            }
+        });
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                search(null);
+                return true;
+            }
+        });
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -370,17 +1194,39 @@ public class HomeActivity extends AppCompatActivity {
             case R.id.action_about:
                 RedirectFacade.goAbout(this);
                 break;
+            case R.id.action_metrics:
+                RedirectFacade.goMetrics(this);
+                break;
             case R.id.action_export_pdf:
                 new ExportAndSharePdfTask().execute();
                 break;
             case R.id.action_pdf_archive:
                 RedirectFacade.goPdfArchive(this);
                 break;
+            case R.id.action_reports:
+                RedirectFacade.goReports(this);
+                break;
+            case R.id.action_backup:
+                backup();
+                break;
+            case R.id.action_restore:
+                confirmRestore();
+                break;
+            case R.id.action_import:
+                Intent pick = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                pick.addCategory(Intent.CATEGORY_OPENABLE);
+                pick.setType("*/*");
+                pick.putExtra(Intent.EXTRA_MIME_TYPES, IMPORT_MIME_TYPES);
+                startActivityForResult(pick, REQUEST_IMPORT);
+                break;
+            case R.id.action_sync:
+                configureSync();
+                break;
             case R.id.action_clear:
                 DialogFactory.newTwoButtonDialog(HomeActivity.this, R.string.dialog_title_delete_all, getString(R.string.dialog_msg_delete_all), R.string.dialog_btn_delete, new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
-                        new DeleteTrackingsTask().execute();
+                        deleteAllTrackings();
                     }
                 }, R.string.dialog_btn_cancel, null).show();
                 break;
@@ -405,32 +1251,66 @@ public class HomeActivity extends AppCompatActivity {
         onTrackingStarted(trackingStarted);
     }
 
+    /**
+     * loads the full tracking of given list row and resumes it
+     *
+     * @param t row of the tracking to resume
+     */
+    private void resumeTracking(TrackingRow t) {
+        if (startSubscription != null) {
+            startSubscription.unsubscribe();
+        }
+        startSubscription = tracker.getTracking(t.getId())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Tracking>() {
+                    @Override
+                    public void call(Tracking tracking) {
+                        if (tracking != null && !tracker.isRunning()) {
+                            startTracking(tracking);
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed loading tracking to resume");
+                    }
+                });
+    }
+
     private void onTrackingStarted(Tracking trackingStarted) {
-        adapter.addTracking(trackingStarted);
+        TrackingRow row = TrackingRow.of(trackingStarted);
+        int pos = adapter.indexOf(row);
+        if (pos >= 0) {
+            adapter.updateTracking(pos, row);
+        } else {
+            adapter.addTracking(row);
+        }
         overlayTitle.setText(TextUtils.isEmpty(trackingStarted.getTitle())
                 ? getString(R.string.activity_home_overlay_unnamed_tracking_title)
-                : trackingStarted.getTitle()
+                : trackingStarted.getTitle(), false
         );
         revealOverlay();
     }
 
     /**
-     * stops time tracking and hides overlay
+     * stops time tracking. ui is updated by the tracker observer.
      */
     public void stopTracking() {
-        Tracking t = tracker.stop();
+        tracker.stop();
+    }
+
+    /**
+     * hides overlay and reloads list after the current tracking stopped
+     */
+    private void onTrackingStopped() {
+        Tracking t = tracker.getCurrentTracking();
 
         hideOverlay();
-        int pos = adapter.indexOf(t);
+        int pos = adapter.indexOf(TrackingRow.of(t));
         if (pos > 0) {
             adapter.notifyItemMoved(pos, 0);
         }
-        recycler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                reloadTrackingList(true);
-            }
-        }, 300);
+        reloadTrackingList(true);
     }
 
     /**
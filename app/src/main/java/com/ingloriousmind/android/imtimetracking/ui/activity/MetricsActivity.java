@@ -0,0 +1,141 @@
+package com.ingloriousmind.android.imtimetracking.ui.activity;
+
+import android.os.Bundle;
+import android.support.design.widget.Snackbar;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.metrics.Counter;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
+import com.ingloriousmind.android.imtimetracking.util.FileUtil;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+import rx.Single;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * debug screen listing all counters and latency histograms recorded since the app started, offering to dump them as
+ * json into the app dir.
+ *
+ * @author lavong.soysavanh
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    @Bind(R.id.activity_metrics_text)
+    TextView text;
+
+    @Inject
+    MetricsRegistry metrics;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        ButterKnife.bind(this);
+        ((TrackingApplication) getApplication()).getComponent().inject(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        render();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_metrics_refresh:
+                render();
+                return true;
+            case R.id.action_metrics_dump:
+                dump();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void render() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Counter> e : metrics.getCounters().entrySet()) {
+            sb.append(String.format(Locale.ROOT, "%-24s %d%n", e.getKey(), e.getValue().get()));
+        }
+        if (sb.length() > 0) {
+            sb.append('\n');
+        }
+        for (Map.Entry<String, Histogram> e : metrics.getHistograms().entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(String.format(Locale.ROOT, "%s  n=%d%n  mean %s  p50 %s  p90 %s%n  p99 %s  max %s%n", e.getKey(),
+                    h.getCount(), format(h.getMean()), format(h.getPercentile(0.5)), format(h.getPercentile(0.9)),
+                    format(h.getPercentile(0.99)), format(h.getMax())));
+        }
+        if (sb.length() == 0) {
+            text.setText(R.string.activity_metrics_empty);
+        } else {
+            text.setText(sb);
+        }
+    }
+
+    private static String format(long micros) {
+        return micros < 1000 ? micros + "µs" : String.format(Locale.ROOT, "%.1fms", micros / 1000d);
+    }
+
+    /**
+     * writes all metrics to a json file in the app dir
+     */
+    private void dump() {
+        Single.fromCallable(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return metrics.dump(FileUtil.appDir);
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<File>() {
+                    @Override
+                    public void call(File file) {
+                        Snackbar.make(text, getString(R.string.snackbar_msg_metrics_dumped, file.getAbsolutePath()), Snackbar.LENGTH_LONG).show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed writing metrics");
+                        Snackbar.make(text, R.string.snackbar_msg_metrics_dump_failed, Snackbar.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.ingloriousmind.android.imtimetracking.ui.activity;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository;
+import com.ingloriousmind.android.imtimetracking.report.Report;
+import com.ingloriousmind.android.imtimetracking.report.ReportRange;
+import com.ingloriousmind.android.imtimetracking.report.SparklineCache;
+import com.ingloriousmind.android.imtimetracking.report.SparklineRenderer;
+import com.ingloriousmind.android.imtimetracking.ui.adapter.ReportAdapter;
+import com.ingloriousmind.android.imtimetracking.util.RedirectFacade;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * reports activity, showing time per title, per week and per day of a chosen range.
+ * <p>
+ * numbers are read from rollups and shown as soon as the query returns. sparklines follow, rendered on a computation
+ * thread and cached per range.
+ *
+ * @author lavong.soysavanh
+ */
+public class ReportsActivity extends AppCompatActivity {
+
+    private static final String STATE_RANGE = "range";
+
+    @Bind(R.id.activity_reports_total)
+    TextView total;
+    @Bind(R.id.activity_reports_recycler)
+    RecyclerView recycler;
+    @Bind(R.id.activity_reports_empty)
+    TextView empty;
+
+    @Inject
+    TrackingRepository repository;
+
+    @Inject
+    SparklineCache sparklineCache;
+
+    private ReportAdapter adapter;
+    private ReportRange range = ReportRange.LAST_30_DAYS;
+    private Subscription reportSubscription;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reports);
+        ButterKnife.bind(this);
+        ((TrackingApplication) getApplication()).getComponent().inject(this);
+
+        if (savedInstanceState != null) {
+            range = ReportRange.valueOf(savedInstanceState.getString(STATE_RANGE, range.name()));
+        }
+
+        recycler.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new ReportAdapter(this);
+        recycler.setAdapter(adapter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadReport();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (reportSubscription != null) {
+            reportSubscription.unsubscribe();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_RANGE, range.name());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reports, menu);
+        menu.findItem(menuItemOf(range)).setChecked(true);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        ReportRange selected = null;
+        switch (item.getItemId()) {
+            case R.id.action_heatmap:
+                RedirectFacade.goHeatmap(this);
+                return true;
+            case R.id.action_range_7:
+                selected = ReportRange.LAST_7_DAYS;
+                break;
+            case R.id.action_range_30:
+                selected = ReportRange.LAST_30_DAYS;
+                break;
+            case R.id.action_range_90:
+                selected = ReportRange.LAST_90_DAYS;
+                break;
+            case R.id.action_range_365:
+                selected = ReportRange.LAST_365_DAYS;
+                break;
+        }
+        if (selected != null) {
+            item.setChecked(true);
+            if (selected != range) {
+                range = selected;
+                loadReport();
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private static int menuItemOf(ReportRange range) {
+        switch (range) {
+            case LAST_7_DAYS:
+                return R.id.action_range_7;
+            case LAST_90_DAYS:
+                return R.id.action_range_90;
+            case LAST_365_DAYS:
+                return R.id.action_range_365;
+            default:
+                return R.id.action_range_30;
+        }
+    }
+
+    /**
+     * loads the report of the current range, then its sparklines
+     */
+    private void loadReport() {
+        if (reportSubscription != null) {
+            reportSubscription.unsubscribe();
+        }
+        final ReportRange r = range;
+        final Resources res = getResources();
+        final int width = res.getDimensionPixelSize(R.dimen.report_sparkline_width);
+        final int height = res.getDimensionPixelSize(R.dimen.report_sparkline_height);
+        final float stroke = res.getDimension(R.dimen.report_sparkline_stroke);
+        final int color = ContextCompat.getColor(this, R.color.im_green);
+        reportSubscription = repository.fetchReport(r)
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnSuccess(new Action1<Report>() {
+                    @Override
+                    public void call(Report report) {
+                        showReport(report);
+                    }
+                })
+                .observeOn(Schedulers.computation())
+                .map(new Func1<Report, Map<String, Bitmap>>() {
+                    @Override
+                    public Map<String, Bitmap> call(Report report) {
+                        Map<String, Bitmap> sparklines = sparklineCache.get(r, report);
+                        if (sparklines == null) {
+                            SparklineRenderer renderer = new SparklineRenderer(width, height, stroke, color);
+                            sparklines = new HashMap<>();
+                            for (Report.TitleTotal t : report.getTitles()) {
+                                sparklines.put(t.getTitle(), renderer.render(t.getSeries()));
+                            }
+                            sparklineCache.put(r, report, sparklines);
+                        }
+                        return sparklines;
+                    }
+                })
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Map<String, Bitmap>>() {
+                    @Override
+                    public void call(Map<String, Bitmap> sparklines) {
+                        adapter.setSparklines(sparklines);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed loading report");
+                    }
+                });
+    }
+
+    private void showReport(Report report) {
+        adapter.setReport(report);
+        total.setText(TimeUtil.getTimeString(report.getTotal()));
+        boolean adapterEmpty = adapter.getItemCount() == 0;
+        empty.setVisibility(adapterEmpty ? View.VISIBLE : View.GONE);
+        recycler.setVisibility(adapterEmpty ? View.GONE : View.VISIBLE);
+    }
+
+}
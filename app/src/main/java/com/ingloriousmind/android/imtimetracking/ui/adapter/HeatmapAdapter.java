@@ -0,0 +1,106 @@
+package com.ingloriousmind.android.imtimetracking.ui.adapter;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.report.DayBuckets;
+import com.ingloriousmind.android.imtimetracking.ui.view.HeatmapView;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+
+/**
+ * heatmap recycler adapter, one item per year, most recent first
+ *
+ * @author lavong.soysavanh
+ */
+public class HeatmapAdapter extends RecyclerView.Adapter<HeatmapAdapter.ViewHolder> {
+
+    /**
+     * layout inflater
+     */
+    private final LayoutInflater inflater;
+
+    /**
+     * adapter model
+     */
+    private DayBuckets buckets;
+    private int lastYear;
+    private long[] yearTotals = new long[0];
+
+    /**
+     * view holder class
+     */
+    public final static class ViewHolder extends RecyclerView.ViewHolder {
+        @Bind(R.id.list_item_heatmap_year)
+        TextView year;
+        @Bind(R.id.list_item_heatmap_total)
+        TextView total;
+        @Bind(R.id.list_item_heatmap_view)
+        HeatmapView heatmap;
+
+        public ViewHolder(View itemView) {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+        }
+    }
+
+    /**
+     * ctor
+     *
+     * @param ctx a context
+     */
+    public HeatmapAdapter(Context ctx) {
+        inflater = LayoutInflater.from(ctx);
+    }
+
+    /**
+     * updates adapter model
+     *
+     * @param buckets per day totals of whole years
+     */
+    public void setBuckets(DayBuckets buckets) {
+        this.buckets = buckets;
+        int firstYear = TimeUtil.civilFromEpochDay(buckets.getFirstDay())[0];
+        lastYear = TimeUtil.civilFromEpochDay(buckets.getLastDay())[0];
+        yearTotals = new long[lastYear - firstYear + 1];
+        for (int i = 0; i < yearTotals.length; i++) {
+            int year = lastYear - i;
+            yearTotals[i] = buckets.sum(TimeUtil.epochDayFromCivil(year, 1, 1), TimeUtil.epochDayFromCivil(year, 12, 31));
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(R.layout.list_item_heatmap, parent, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        int year = lastYear - position;
+        holder.year.setText(String.valueOf(year));
+        holder.total.setText(TimeUtil.getTimeString(yearTotals[position]));
+        holder.heatmap.setYear(buckets, year);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemCount() {
+        return yearTotals.length;
+    }
+}
@@ -0,0 +1,214 @@
+package com.ingloriousmind.android.imtimetracking.ui.adapter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.report.Report;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+
+/**
+ * report recycler adapter, listing totals per title, per day and per week in sections
+ *
+ * @author lavong.soysavanh
+ */
+public class ReportAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_TITLE = 1;
+    private static final int TYPE_DAY = 2;
+    private static final int TYPE_WEEK = 3;
+
+    /**
+     * layout inflater
+     */
+    private final LayoutInflater inflater;
+
+    private final Context ctx;
+
+    /**
+     * adapter model, flattened sections
+     */
+    private final List<Object> items = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+
+    /**
+     * sparklines per title
+     */
+    private Map<String, Bitmap> sparklines = Collections.emptyMap();
+
+    /**
+     * header view holder
+     */
+    final static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        @Bind(R.id.list_item_report_header)
+        TextView header;
+
+        HeaderViewHolder(View itemView) {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+        }
+    }
+
+    /**
+     * title view holder
+     */
+    final static class TitleViewHolder extends RecyclerView.ViewHolder {
+        @Bind(R.id.list_item_report_title_title)
+        TextView title;
+        @Bind(R.id.list_item_report_title_total)
+        TextView total;
+        @Bind(R.id.list_item_report_title_count)
+        TextView count;
+        @Bind(R.id.list_item_report_title_sparkline)
+        ImageView sparkline;
+
+        TitleViewHolder(View itemView) {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+        }
+    }
+
+    /**
+     * day and week view holder
+     */
+    final static class PeriodViewHolder extends RecyclerView.ViewHolder {
+        @Bind(R.id.list_item_report_period_label)
+        TextView label;
+        @Bind(R.id.list_item_report_period_total)
+        TextView total;
+
+        PeriodViewHolder(View itemView) {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+        }
+    }
+
+    /**
+     * ctor
+     *
+     * @param ctx a context
+     */
+    public ReportAdapter(Context ctx) {
+        this.ctx = ctx;
+        inflater = LayoutInflater.from(ctx);
+    }
+
+    /**
+     * updates adapter model. sparklines are kept until replaced.
+     *
+     * @param report the report to show
+     */
+    public void setReport(Report report) {
+        items.clear();
+        types.clear();
+        if (report != null && !report.getTitles().isEmpty()) {
+            add(TYPE_HEADER, R.string.activity_reports_header_titles);
+            for (Report.TitleTotal t : report.getTitles()) {
+                add(TYPE_TITLE, t);
+            }
+            add(TYPE_HEADER, R.string.activity_reports_header_weeks);
+            for (Report.PeriodTotal p : report.getWeeks()) {
+                add(TYPE_WEEK, p);
+            }
+            add(TYPE_HEADER, R.string.activity_reports_header_days);
+            for (Report.PeriodTotal p : report.getDays()) {
+                add(TYPE_DAY, p);
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @param sparklines sparklines per title
+     */
+    public void setSparklines(Map<String, Bitmap> sparklines) {
+        this.sparklines = sparklines != null ? sparklines : Collections.<String, Bitmap>emptyMap();
+        notifyDataSetChanged();
+    }
+
+    private void add(int type, Object item) {
+        types.add(type);
+        items.add(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return types.get(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        switch (viewType) {
+            case TYPE_HEADER:
+                return new HeaderViewHolder(inflater.inflate(R.layout.list_item_report_header, parent, false));
+            case TYPE_TITLE:
+                return new TitleViewHolder(inflater.inflate(R.layout.list_item_report_title, parent, false));
+            default:
+                return new PeriodViewHolder(inflater.inflate(R.layout.list_item_report_period, parent, false));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        Object item = items.get(position);
+        switch (types.get(position)) {
+            case TYPE_HEADER:
+                ((HeaderViewHolder) holder).header.setText((Integer) item);
+                break;
+            case TYPE_TITLE:
+                TitleViewHolder th = (TitleViewHolder) holder;
+                Report.TitleTotal t = (Report.TitleTotal) item;
+                th.title.setText(t.getTitle());
+                th.total.setText(TimeUtil.getTimeString(t.getDuration()));
+                th.count.setText(ctx.getString(R.string.list_item_report_title_count, t.getCount()));
+                th.sparkline.setImageBitmap(sparklines.get(t.getTitle()));
+                break;
+            case TYPE_WEEK:
+                PeriodViewHolder wh = (PeriodViewHolder) holder;
+                Report.PeriodTotal w = (Report.PeriodTotal) item;
+                wh.label.setText(ctx.getString(R.string.list_item_report_week, (int) (w.getKey() / 100), (int) (w.getKey() % 100)));
+                wh.total.setText(TimeUtil.getTimeString(w.getDuration()));
+                break;
+            case TYPE_DAY:
+                PeriodViewHolder dh = (PeriodViewHolder) holder;
+                Report.PeriodTotal d = (Report.PeriodTotal) item;
+                int[] ymd = TimeUtil.civilFromEpochDay(d.getKey());
+                dh.label.setText(String.format(Locale.US, "%04d-%02d-%02d", ymd[0], ymd[1], ymd[2]));
+                dh.total.setText(TimeUtil.getTimeString(d.getDuration()));
+                break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+}
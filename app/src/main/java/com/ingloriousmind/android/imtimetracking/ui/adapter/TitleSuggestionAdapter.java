@@ -0,0 +1,121 @@
+package com.ingloriousmind.android.imtimetracking.ui.adapter;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import com.ingloriousmind.android.imtimetracking.persistence.TitleIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * autocompletion adapter suggesting titles from the {@link TitleIndex}
+ *
+ * @author lavong.soysavanh
+ */
+public class TitleSuggestionAdapter extends BaseAdapter implements Filterable {
+
+    /**
+     * max number of suggestions shown
+     */
+    private static final int MAX_SUGGESTIONS = 8;
+
+    /**
+     * layout inflater
+     */
+    private final LayoutInflater inflater;
+
+    private final TitleIndex titleIndex;
+
+    /**
+     * adapter model
+     */
+    private List<String> titles = new ArrayList<>();
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            if (constraint != null) {
+                List<String> suggestions = titleIndex.suggest(constraint.toString(), MAX_SUGGESTIONS, System.currentTimeMillis());
+                results.values = suggestions;
+                results.count = suggestions.size();
+            }
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            titles = results.values != null ? (List<String>) results.values : new ArrayList<String>();
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+    };
+
+    /**
+     * ctor
+     *
+     * @param ctx        a context
+     * @param titleIndex the index to query
+     */
+    public TitleSuggestionAdapter(Context ctx, TitleIndex titleIndex) {
+        this.inflater = LayoutInflater.from(ctx);
+        this.titleIndex = titleIndex;
+        titleIndex.preload();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCount() {
+        return titles.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getItem(int position) {
+        return titles.get(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null
+                ? convertView
+                : inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+        view.setText(titles.get(position));
+        return view;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.ingloriousmind.android.imtimetracking.ui.adapter;
 
 import android.content.Context;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -9,11 +11,15 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.ingloriousmind.android.imtimetracking.R;
-import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.metrics.Histogram;
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry;
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
 import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
@@ -38,7 +44,20 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
     /**
      * adapter model
      */
-    private List<Tracking> trackings = new ArrayList<>();
+    private List<TrackingRow> trackings = new ArrayList<>();
+
+    /**
+     * ids of the trackings selected. selecting starts with a long click, and ends once nothing is selected.
+     */
+    private final Set<Long> selection = new HashSet<>();
+
+    private final int backgroundColor;
+    private final int selectedColor;
+
+    /**
+     * time spent binding rows
+     */
+    private final Histogram bindTimer;
 
     /**
      * view holder class
@@ -60,17 +79,19 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
     /**
      * list item click listener
      */
-    private class TrackingItemClickListener implements View.OnClickListener {
+    private class TrackingItemClickListener implements View.OnClickListener, View.OnLongClickListener {
 
-        private Tracking t;
+        private TrackingRow t;
 
-        public TrackingItemClickListener(Tracking t) {
+        public TrackingItemClickListener(TrackingRow t) {
             this.t = t;
         }
 
         @Override
         public void onClick(View v) {
-            if (listener != null) {
+            if (!selection.isEmpty()) {
+                toggleSelection(t);
+            } else if (listener != null) {
                 int pos = indexOf(t);
                 switch (v.getId()) {
                     case R.id.list_item_tracking_btn_resume_pause:
@@ -82,15 +103,26 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
                 }
             }
         }
+
+        @Override
+        public boolean onLongClick(View v) {
+            toggleSelection(t);
+            return true;
+        }
     }
 
     /**
      * list item callback interface
      */
     public interface TrackingItemActionListener {
-        void onEdit(int pos, Tracking t);
+        void onEdit(int pos, TrackingRow t);
 
-        void onResume(int pos, Tracking t);
+        void onResume(int pos, TrackingRow t);
+
+        /**
+         * @param count number of trackings selected. 0, once selecting ended.
+         */
+        void onSelectionChanged(int count);
     }
 
     /**
@@ -99,9 +131,13 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
      * @param ctx       a context
      * @param trackings initial set of trackings to display
      * @param listener  item click callback
+     * @param metrics   registry of bind timings
      */
-    public TrackingAdapter(Context ctx, List<Tracking> trackings, TrackingItemActionListener listener) {
+    public TrackingAdapter(Context ctx, List<TrackingRow> trackings, TrackingItemActionListener listener, MetricsRegistry metrics) {
         this.inflater = LayoutInflater.from(ctx);
+        this.backgroundColor = ContextCompat.getColor(ctx, R.color.list_item_tracking_background);
+        this.selectedColor = ContextCompat.getColor(ctx, R.color.list_item_tracking_selected);
+        this.bindTimer = metrics.histogram("list.bind");
         setTrackings(trackings);
         this.listener = listener;
     }
@@ -111,14 +147,28 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
      *
      * @param trackings the trackings to display
      */
-    public void setTrackings(List<Tracking> trackings) {
+    public void setTrackings(List<TrackingRow> trackings) {
         this.trackings.clear();
         if (trackings != null && !trackings.isEmpty()) {
             this.trackings.addAll(trackings);
         }
+        retainSelection();
         notifyDataSetChanged();
     }
 
+    /**
+     * appends trackings to the list displayed
+     *
+     * @param trackings the trackings to append
+     */
+    public void appendTrackings(List<TrackingRow> trackings) {
+        if (trackings != null && !trackings.isEmpty()) {
+            int start = this.trackings.size();
+            this.trackings.addAll(trackings);
+            notifyItemRangeInserted(start, trackings.size());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -132,10 +182,11 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
      */
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        final Tracking t = trackings.get(position);
+        long start = System.nanoTime();
+        final TrackingRow t = trackings.get(position);
 
         // clock
-        holder.clock.setText(TimeUtil.getTimeString(t.getDuration()));
+        holder.clock.setText(TimeUtil.getTimeString(t.getElapsed(System.currentTimeMillis())));
 
         // title
         holder.title.setText(t.getTitle());
@@ -145,6 +196,11 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
         holder.resumeOrPause.setOnClickListener(clickListener);
         holder.resumeOrPause.setImageResource(t.isTracking() ? R.drawable.btn_pause : R.drawable.btn_play);
         holder.itemView.setOnClickListener(clickListener);
+        holder.itemView.setOnLongClickListener(clickListener);
+
+        // selection
+        ((CardView) holder.itemView).setCardBackgroundColor(selection.contains(t.getId()) ? selectedColor : backgroundColor);
+        bindTimer.recordSince(start);
     }
 
     /**
@@ -162,17 +218,20 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
      */
     public void removeTracking(int position) {
         if (position >= 0 && position < trackings.size()) {
-            trackings.remove(position);
+            TrackingRow removed = trackings.remove(position);
             notifyItemRemoved(position);
+            if (selection.remove(removed.getId()) && listener != null) {
+                listener.onSelectionChanged(selection.size());
+            }
         }
     }
 
     /**
-     * adds tracking
+     * adds tracking, unless listed already
      *
-     * @param t tracking to add
+     * @param t row of the tracking to add
      */
-    public void addTracking(Tracking t) {
+    public void addTracking(TrackingRow t) {
         if (t != null && !trackings.contains(t)) {
             trackings.add(0, t);
             notifyItemInserted(0);
@@ -180,13 +239,101 @@ public class TrackingAdapter extends RecyclerView.Adapter<TrackingAdapter.ViewHo
     }
 
     /**
-     * returns the item position for given {@link com.ingloriousmind.android.imtimetracking.model.Tracking}
+     * replaces the row at given position
+     *
+     * @param position the row's position
+     * @param t        the new row
+     */
+    public void updateTracking(int position, TrackingRow t) {
+        if (position >= 0 && position < trackings.size()) {
+            trackings.set(position, t);
+            notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * returns the item position for given {@link TrackingRow}
      *
-     * @param t tracking to look up index for
+     * @param t row of the tracking to look up index for
      * @return index of given tracking. -1 for not in list.
      */
-    public int indexOf(Tracking t) {
+    public int indexOf(TrackingRow t) {
         return trackings.indexOf(t);
     }
 
+    /**
+     * @return true, while trackings are selected
+     */
+    public boolean isSelecting() {
+        return !selection.isEmpty();
+    }
+
+    /**
+     * @return ids of the trackings selected
+     */
+    public long[] getSelectedIds() {
+        long[] ids = new long[selection.size()];
+        int i = 0;
+        for (Long id : selection) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * selects all trackings listed
+     */
+    public void selectAll() {
+        for (TrackingRow t : trackings) {
+            selection.add(t.getId());
+        }
+        onSelectionChanged();
+    }
+
+    /**
+     * ends selecting
+     */
+    public void clearSelection() {
+        if (!selection.isEmpty()) {
+            selection.clear();
+            onSelectionChanged();
+        }
+    }
+
+    private void toggleSelection(TrackingRow t) {
+        if (!selection.remove(t.getId())) {
+            selection.add(t.getId());
+        }
+        int pos = indexOf(t);
+        if (pos >= 0) {
+            notifyItemChanged(pos);
+        }
+        if (listener != null) {
+            listener.onSelectionChanged(selection.size());
+        }
+    }
+
+    /**
+     * drops trackings no longer listed from the selection
+     */
+    private void retainSelection() {
+        if (selection.isEmpty()) {
+            return;
+        }
+        Set<Long> listed = new HashSet<>();
+        for (TrackingRow t : trackings) {
+            listed.add(t.getId());
+        }
+        if (selection.retainAll(listed) && listener != null) {
+            listener.onSelectionChanged(selection.size());
+        }
+    }
+
+    private void onSelectionChanged() {
+        notifyDataSetChanged();
+        if (listener != null) {
+            listener.onSelectionChanged(selection.size());
+        }
+    }
+
 }
@@ -5,6 +5,8 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.support.annotation.StringRes;
+import android.text.InputType;
+import android.widget.EditText;
 
 /**
  * dialog factory
@@ -47,4 +49,98 @@ public class DialogFactory {
         return builder.create();
     }
 
+    /**
+     * listener of text entered into an input dialog
+     */
+    public interface OnTextEnteredListener {
+
+        /**
+         * @param text the text entered. empty, if none.
+         */
+        void onTextEntered(String text);
+    }
+
+    /**
+     * instantiates a two-button dialog with a single line uri text field
+     *
+     * @param ctx                    a context
+     * @param titleResId             dialog title resource id
+     * @param text                   initial text. may be null.
+     * @param hintResId              text field hint resource id
+     * @param okButtonLabelResId     positive button label resource id
+     * @param listener               notified of the text entered on positive button click
+     * @param cancelButtonLabelResId negative button label resource id
+     * @return the alert dialog
+     */
+    public static Dialog newUriInputDialog(Context ctx, @StringRes int titleResId, String text, @StringRes int hintResId,
+                                           @StringRes int okButtonLabelResId, OnTextEnteredListener listener,
+                                           @StringRes int cancelButtonLabelResId) {
+        return newInputDialog(ctx, titleResId, text, hintResId, InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI,
+                okButtonLabelResId, listener, cancelButtonLabelResId);
+    }
+
+    /**
+     * instantiates a two-button dialog with a single line text field
+     *
+     * @param ctx                    a context
+     * @param titleResId             dialog title resource id
+     * @param text                   initial text. may be null.
+     * @param hintResId              text field hint resource id
+     * @param okButtonLabelResId     positive button label resource id
+     * @param listener               notified of the text entered on positive button click
+     * @param cancelButtonLabelResId negative button label resource id
+     * @return the alert dialog
+     */
+    public static Dialog newTextInputDialog(Context ctx, @StringRes int titleResId, String text, @StringRes int hintResId,
+                                            @StringRes int okButtonLabelResId, OnTextEnteredListener listener,
+                                            @StringRes int cancelButtonLabelResId) {
+        return newInputDialog(ctx, titleResId, text, hintResId, InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES,
+                okButtonLabelResId, listener, cancelButtonLabelResId);
+    }
+
+    private static Dialog newInputDialog(Context ctx, @StringRes int titleResId, String text, @StringRes int hintResId, int inputType,
+                                         @StringRes int okButtonLabelResId, final OnTextEnteredListener listener,
+                                         @StringRes int cancelButtonLabelResId) {
+        final EditText input = new EditText(ctx);
+        input.setSingleLine(true);
+        input.setInputType(inputType);
+        input.setHint(hintResId);
+        input.setText(text);
+        AlertDialog.Builder builder = new AlertDialog.Builder(ctx);
+        builder.setTitle(titleResId);
+        builder.setView(input);
+        builder.setPositiveButton(okButtonLabelResId, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                listener.onTextEntered(input.getText().toString().trim());
+            }
+        });
+        builder.setNegativeButton(cancelButtonLabelResId, new DismissListener());
+        return builder.create();
+    }
+
+    /**
+     * instantiates a dialog listing texts to pick one from
+     *
+     * @param ctx                    a context
+     * @param titleResId             dialog title resource id
+     * @param items                  the texts listed
+     * @param listener               notified of the text picked
+     * @param cancelButtonLabelResId negative button label resource id
+     * @return the alert dialog
+     */
+    public static Dialog newPickerDialog(Context ctx, @StringRes int titleResId, final String[] items,
+                                         final OnTextEnteredListener listener, @StringRes int cancelButtonLabelResId) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(ctx);
+        builder.setTitle(titleResId);
+        builder.setItems(items, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                listener.onTextEntered(items[which]);
+            }
+        });
+        builder.setNegativeButton(cancelButtonLabelResId, new DismissListener());
+        return builder.create();
+    }
+
 }
@@ -6,19 +6,25 @@ import android.content.DialogInterface;
 import android.os.Bundle;
 import android.view.View;
 import android.view.Window;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
-import android.widget.EditText;
 import android.widget.TimePicker;
 
 import com.ingloriousmind.android.imtimetracking.R;
 import com.ingloriousmind.android.imtimetracking.TrackingApplication;
 import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.persistence.TitleIndex;
 import com.ingloriousmind.android.imtimetracking.time.Tracker;
+import com.ingloriousmind.android.imtimetracking.ui.adapter.TitleSuggestionAdapter;
 
 import javax.inject.Inject;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.functions.Actions;
 import timber.log.Timber;
 
 /**
@@ -29,7 +35,7 @@ import timber.log.Timber;
 public class EditTrackingDialog extends Dialog implements View.OnClickListener {
 
     @Bind(R.id.dialog_tracking_edit_title)
-    EditText title;
+    AutoCompleteTextView title;
     @Bind(R.id.dialog_tracking_edit_time_picker)
     TimePicker timePicker;
     @Bind(R.id.dialog_tracking_edit_btn_save)
@@ -39,23 +45,57 @@ public class EditTrackingDialog extends Dialog implements View.OnClickListener {
     @Bind(R.id.dialog_tracking_edit_btn_cancel)
     Button cancel;
 
+    /**
+     * logs failed writes, the list reload after dismissal reflects the actual database state
+     */
+    private static final Action1<Throwable> LOG_ERROR = new Action1<Throwable>() {
+        @Override
+        public void call(Throwable throwable) {
+            Timber.e(throwable, "failed updating tracking");
+        }
+    };
+
+    /**
+     * notified when the tracking edited got deleted, e.g. to offer undo
+     */
+    public interface OnTrackingDeletedListener {
+
+        /**
+         * @param deleted the tracking deleted
+         */
+        void onTrackingDeleted(Tracking deleted);
+    }
+
+    private final long trackingId;
     private Tracking trackingToEdit;
+    private Subscription loadSubscription;
+    private OnTrackingDeletedListener onTrackingDeletedListener;
 
     @Inject
     Tracker tracker;
 
+    @Inject
+    TitleIndex titleIndex;
+
     /**
      * ctor
      *
-     * @param ctx            a context
-     * @param trackingToEdit the tracking to edit
+     * @param ctx        a context
+     * @param trackingId id of the tracking to edit, loaded when shown
      */
-    public EditTrackingDialog(Context ctx, Tracking trackingToEdit) {
+    public EditTrackingDialog(Context ctx, long trackingId) {
         super(ctx, R.style.AppTheme);
-        this.trackingToEdit = trackingToEdit;
+        this.trackingId = trackingId;
         ((TrackingApplication) ctx.getApplicationContext()).getComponent().inject(this);
     }
 
+    /**
+     * @param listener listener notified on deletion. null, to unset.
+     */
+    public void setOnTrackingDeletedListener(OnTrackingDeletedListener listener) {
+        this.onTrackingDeletedListener = listener;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -71,11 +111,25 @@ public class EditTrackingDialog extends Dialog implements View.OnClickListener {
         save.setOnClickListener(this);
         delete.setOnClickListener(this);
         cancel.setOnClickListener(this);
+        save.setEnabled(false);
+        delete.setEnabled(false);
+        title.setAdapter(new TitleSuggestionAdapter(getContext(), titleIndex));
+    }
 
-        title.setText(trackingToEdit.getTitle());
-        int minutes = (int) trackingToEdit.getDuration() / 60 / 1000;
+    private void onTrackingLoaded(Tracking tracking) {
+        if (tracking == null) {
+            Timber.w("tracking %d not found", trackingId);
+            dismiss();
+            return;
+        }
+        trackingToEdit = tracking;
+        title.setText(trackingToEdit.getTitle(), false);
+        title.selectAll();
+        int minutes = (int) (tracker.elapsed(trackingToEdit) / 60 / 1000);
         timePicker.setCurrentHour(minutes / 60);
         timePicker.setCurrentMinute(minutes % 60);
+        save.setEnabled(true);
+        delete.setEnabled(true);
     }
 
     /**
@@ -85,11 +139,9 @@ public class EditTrackingDialog extends Dialog implements View.OnClickListener {
     public void onClick(View v) {
         switch (v.getId()) {
             case R.id.dialog_tracking_edit_btn_save:
-                trackingToEdit.setTitle(title.getText().toString());
                 Integer h = timePicker.getCurrentHour();
                 Integer m = timePicker.getCurrentMinute();
-                trackingToEdit.setDuration((h * 60 + m) * 60 * 1000);
-                tracker.persistTracking(trackingToEdit);
+                tracker.editTracking(trackingToEdit, title.getText().toString(), (h * 60 + m) * 60 * 1000L);
                 dismiss();
                 break;
             case R.id.dialog_tracking_edit_btn_delete:
@@ -98,7 +150,10 @@ public class EditTrackingDialog extends Dialog implements View.OnClickListener {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
                         Timber.d("delete: %s", trackingToEdit.toString());
-                        tracker.removeTracking(trackingToEdit);
+                        tracker.removeTracking(trackingToEdit).subscribe(Actions.empty(), LOG_ERROR);
+                        if (onTrackingDeletedListener != null) {
+                            onTrackingDeletedListener.onTrackingDeleted(trackingToEdit);
+                        }
                         dismiss();
                     }
                 }, R.string.dialog_btn_cancel, null).show();
@@ -116,11 +171,33 @@ public class EditTrackingDialog extends Dialog implements View.OnClickListener {
     protected void onStart() {
         super.onStart();
 
-        if (trackingToEdit == null) {
-            Timber.w("tracking expected");
-            dismiss();
+        if (trackingToEdit != null) {
+            return;
         }
+        loadSubscription = tracker.getTracking(trackingId)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Tracking>() {
+                    @Override
+                    public void call(Tracking tracking) {
+                        onTrackingLoaded(tracking);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Timber.e(throwable, "failed loading tracking %d", trackingId);
+                        dismiss();
+                    }
+                });
+    }
 
-        title.selectAll();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (loadSubscription != null) {
+            loadSubscription.unsubscribe();
+        }
     }
 }
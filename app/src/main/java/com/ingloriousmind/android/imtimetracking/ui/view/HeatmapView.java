@@ -0,0 +1,142 @@
+package com.ingloriousmind.android.imtimetracking.ui.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.report.DayBuckets;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.text.DateFormatSymbols;
+
+/**
+ * calendar heatmap of a single year, one column per week and one row per weekday, monday on top.
+ * <p>
+ * cells are drawn straight from {@link DayBuckets} with preallocated paints and rect, so drawing does not allocate.
+ *
+ * @author lavong.soysavanh
+ */
+public class HeatmapView extends View {
+
+    /**
+     * max number of week columns a year can span
+     */
+    private static final int COLUMNS = 54;
+
+    private static final int ROWS = 7;
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cell = new RectF();
+    private final int[] levelColors = new int[5];
+    private final String[] monthLabels;
+    private final float gap;
+    private final float radius;
+
+    private DayBuckets buckets;
+    private int year;
+    private long firstDay;
+    private long lastDay;
+    private int firstDayOfWeek;
+    private float cellSize;
+
+    public HeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public HeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        gap = 2 * density;
+        radius = density;
+        int green = ContextCompat.getColor(context, R.color.im_green);
+        levelColors[0] = ContextCompat.getColor(context, R.color.half_transparent_gray);
+        for (int i = 1; i < levelColors.length; i++) {
+            levelColors[i] = Color.argb(0x40 * i - 1, Color.red(green), Color.green(green), Color.blue(green));
+        }
+        labelPaint.setColor(Color.GRAY);
+        labelPaint.setTextSize(10 * getResources().getDisplayMetrics().scaledDensity);
+        String[] months = new DateFormatSymbols().getShortMonths();
+        monthLabels = new String[12];
+        System.arraycopy(months, 0, monthLabels, 0, 12);
+    }
+
+    /**
+     * @param buckets per day totals, scaled by their max
+     * @param year    the year to show
+     */
+    public void setYear(DayBuckets buckets, int year) {
+        this.buckets = buckets;
+        this.year = year;
+        firstDay = TimeUtil.epochDayFromCivil(year, 1, 1);
+        lastDay = TimeUtil.epochDayFromCivil(year, 12, 31);
+        firstDayOfWeek = dayOfWeek(firstDay);
+        invalidate();
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        cellSize = (width - getPaddingLeft() - getPaddingRight()) / (float) COLUMNS;
+        int height = (int) Math.ceil(labelHeight() + ROWS * cellSize) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (buckets == null) {
+            return;
+        }
+        float left = getPaddingLeft();
+        float top = getPaddingTop() + labelHeight();
+        long max = buckets.getMax();
+
+        for (int month = 1; month <= 12; month++) {
+            int column = column(TimeUtil.epochDayFromCivil(year, month, 1));
+            canvas.drawText(monthLabels[month - 1], left + column * cellSize, top - gap - labelPaint.descent(), labelPaint);
+        }
+
+        for (long day = firstDay; day <= lastDay; day++) {
+            long duration = buckets.get(day);
+            int level = duration <= 0 || max <= 0 ? 0 : (int) Math.min(4, 1 + 4 * (duration - 1) / max);
+            cellPaint.setColor(levelColors[level]);
+            float x = left + column(day) * cellSize;
+            float y = top + dayOfWeek(day) * cellSize;
+            cell.set(x, y, x + cellSize - gap, y + cellSize - gap);
+            canvas.drawRoundRect(cell, radius, radius, cellPaint);
+        }
+    }
+
+    private int column(long day) {
+        return (int) ((day - firstDay + firstDayOfWeek) / 7);
+    }
+
+    private float labelHeight() {
+        return labelPaint.descent() - labelPaint.ascent() + gap;
+    }
+
+    /**
+     * @param epochDay days since 1970-01-01
+     * @return day of week, 0 for monday through 6 for sunday
+     */
+    private static int dayOfWeek(long epochDay) {
+        return (int) (((epochDay + 3) % 7 + 7) % 7);
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.ingloriousmind.android.imtimetracking.ui.widget;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import com.ingloriousmind.android.imtimetracking.R;
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingStateStore;
+import com.ingloriousmind.android.imtimetracking.ui.activity.HomeActivity;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import java.util.concurrent.Callable;
+
+import rx.Single;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * home screen widget showing the running tracking, today's total and a start/stop toggle.
+ * <p>
+ * renders from the {@link TrackingStateStore} snapshot only and never opens the database. the running clock is a
+ * {@link android.widget.Chronometer} ticking in the launcher process, so there are no periodic updates. once the date
+ * or the clock changes, the tracker recomputes the snapshot, so today's total does not go stale after midnight. the
+ * toggle button is handled by the non-exported {@link WidgetToggleReceiver}.
+ *
+ * @author lavong.soysavanh
+ */
+public class TrackingWidgetProvider extends AppWidgetProvider {
+
+    /**
+     * asks all widget instances to re-render from the state store
+     *
+     * @param ctx a context
+     */
+    public static void requestUpdate(Context ctx) {
+        int[] ids = widgetIds(ctx);
+        if (ids.length > 0) {
+            Intent intent = new Intent(ctx, TrackingWidgetProvider.class);
+            intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, ids);
+            ctx.sendBroadcast(intent);
+        }
+    }
+
+    private static int[] widgetIds(Context ctx) {
+        int[] ids = AppWidgetManager.getInstance(ctx).getAppWidgetIds(new ComponentName(ctx, TrackingWidgetProvider.class));
+        return ids != null ? ids : new int[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReceive(Context ctx, Intent intent) {
+        String action = intent.getAction();
+        if (Intent.ACTION_DATE_CHANGED.equals(action) || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            if (widgetIds(ctx).length > 0) {
+                ((TrackingApplication) ctx.getApplicationContext()).getComponent().tracker().refreshState();
+            }
+        } else {
+            super.onReceive(ctx, intent);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onUpdate(final Context ctx, final AppWidgetManager appWidgetManager, final int[] appWidgetIds) {
+        final Context appCtx = ctx.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
+        Single.fromCallable(new Callable<TrackingStateStore.State>() {
+            @Override
+            public TrackingStateStore.State call() throws Exception {
+                return new TrackingStateStore(appCtx).read();
+            }
+        }).subscribeOn(Schedulers.io()).subscribe(new Action1<TrackingStateStore.State>() {
+            @Override
+            public void call(TrackingStateStore.State state) {
+                RemoteViews views = render(appCtx, state);
+                for (int id : appWidgetIds) {
+                    appWidgetManager.updateAppWidget(id, views);
+                }
+                pendingResult.finish();
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed updating widget");
+                pendingResult.finish();
+            }
+        });
+    }
+
+    private static RemoteViews render(Context ctx, TrackingStateStore.State state) {
+        long now = System.currentTimeMillis();
+        RemoteViews views = new RemoteViews(ctx.getPackageName(), R.layout.widget_tracking);
+
+        if (state.isRunning()) {
+            String title = TextUtils.isEmpty(state.getTitle()) ? ctx.getString(R.string.list_item_tracking_unnamed_title) : state.getTitle();
+            views.setTextViewText(R.id.widget_tracking_title, title);
+            views.setChronometer(R.id.widget_tracking_clock, SystemClock.elapsedRealtime() - state.getElapsed(now), null, true);
+            views.setViewVisibility(R.id.widget_tracking_clock, View.VISIBLE);
+            views.setImageViewResource(R.id.widget_tracking_btn_toggle, R.drawable.btn_pause);
+        } else {
+            views.setTextViewText(R.id.widget_tracking_title, ctx.getString(R.string.widget_tracking_idle));
+            views.setChronometer(R.id.widget_tracking_clock, SystemClock.elapsedRealtime(), null, false);
+            views.setViewVisibility(R.id.widget_tracking_clock, View.GONE);
+            views.setImageViewResource(R.id.widget_tracking_btn_toggle, R.drawable.btn_play);
+        }
+        views.setTextViewText(R.id.widget_tracking_today,
+                ctx.getString(R.string.widget_tracking_today, TimeUtil.getTimeString(state.getTodayTotal(now))));
+
+        Intent toggleIntent = new Intent(ctx, WidgetToggleReceiver.class).setAction(WidgetToggleReceiver.ACTION_TOGGLE);
+        views.setOnClickPendingIntent(R.id.widget_tracking_btn_toggle,
+                PendingIntent.getBroadcast(ctx, 0, toggleIntent, PendingIntent.FLAG_UPDATE_CURRENT));
+        Intent homeIntent = new Intent(ctx, HomeActivity.class);
+        views.setOnClickPendingIntent(R.id.widget_tracking_root,
+                PendingIntent.getActivity(ctx, 0, homeIntent, PendingIntent.FLAG_UPDATE_CURRENT));
+        return views;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.ingloriousmind.android.imtimetracking.ui.widget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.ingloriousmind.android.imtimetracking.TrackingApplication;
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.time.Tracker;
+
+import rx.functions.Action1;
+import timber.log.Timber;
+
+/**
+ * stops the running tracking, or starts a new one, when the widget's toggle button is tapped.
+ * <p>
+ * not exported, so only the widget's pending intent can reach it. the widget provider itself is exported to receive
+ * widget updates and date changes, and must not act on anything else.
+ *
+ * @author lavong.soysavanh
+ */
+public class WidgetToggleReceiver extends BroadcastReceiver {
+
+    /**
+     * intent action toggling the current tracking
+     */
+    static final String ACTION_TOGGLE = "com.ingloriousmind.android.imtimetracking.action.TOGGLE_TRACKING";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReceive(Context ctx, Intent intent) {
+        if (!ACTION_TOGGLE.equals(intent.getAction())) {
+            return;
+        }
+        final Tracker tracker = ((TrackingApplication) ctx.getApplicationContext()).getComponent().tracker();
+        final PendingResult pendingResult = goAsync();
+        tracker.resumeIfNecessary().subscribe(new Action1<Tracking>() {
+            @Override
+            public void call(Tracking running) {
+                if (running != null) {
+                    tracker.stop();
+                } else {
+                    tracker.start(new Tracking());
+                }
+                pendingResult.finish();
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Timber.e(throwable, "failed toggling tracking");
+                pendingResult.finish();
+            }
+        });
+    }
+
+}
@@ -1,10 +1,15 @@
 package com.ingloriousmind.android.imtimetracking.util;
 
+import com.ingloriousmind.android.imtimetracking.persistence.Backup;
+
 import java.io.File;
 import java.io.FileFilter;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * file util
@@ -34,4 +39,50 @@ public class FileUtil {
         }
         return pdfFiles;
     }
+
+    /**
+     * looks up an archived pdf file by the fingerprint encoded in its name
+     *
+     * @param fingerprint the report fingerprint
+     * @return the archived pdf file, or null if there is none
+     */
+    public static File findArchivedPdfFile(String fingerprint) {
+        final String suffix = "-" + fingerprint + ".pdf";
+        File[] files = appDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().endsWith(suffix) && pathname.length() > 0;
+            }
+        });
+        return files != null && files.length > 0 ? files[0] : null;
+    }
+
+    /**
+     * @return a new backup file, named by the current time
+     */
+    public static File newBackupFile() {
+        String now = new SimpleDateFormat("yyyy-MM-dd-HHmmss", Locale.US).format(new Date());
+        return new File(appDir, "im-timetracking-" + now + Backup.FILE_EXTENSION);
+    }
+
+    /**
+     * @return the most recently modified backup file, or null if there is none
+     */
+    public static File findLatestBackupFile() {
+        File[] files = appDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().endsWith(Backup.FILE_EXTENSION) && pathname.length() > 0;
+            }
+        });
+        File latest = null;
+        if (files != null) {
+            for (File f : files) {
+                if (latest == null || f.lastModified() > latest.lastModified()) {
+                    latest = f;
+                }
+            }
+        }
+        return latest;
+    }
 }
@@ -4,8 +4,11 @@ import android.content.Context;
 import android.content.Intent;
 
 import com.ingloriousmind.android.imtimetracking.ui.activity.AboutActivity;
+import com.ingloriousmind.android.imtimetracking.ui.activity.HeatmapActivity;
 import com.ingloriousmind.android.imtimetracking.ui.activity.HomeActivity;
+import com.ingloriousmind.android.imtimetracking.ui.activity.MetricsActivity;
 import com.ingloriousmind.android.imtimetracking.ui.activity.PdfArchiveActivity;
+import com.ingloriousmind.android.imtimetracking.ui.activity.ReportsActivity;
 
 /**
  * redirect facade
@@ -44,4 +47,34 @@ public class RedirectFacade {
         ctx.startActivity(intent);
     }
 
+    /**
+     * redirects to {@link com.ingloriousmind.android.imtimetracking.ui.activity.ReportsActivity}
+     *
+     * @param ctx a context
+     */
+    public static void goReports(Context ctx) {
+        Intent intent = new Intent(ctx, ReportsActivity.class);
+        ctx.startActivity(intent);
+    }
+
+    /**
+     * redirects to {@link com.ingloriousmind.android.imtimetracking.ui.activity.HeatmapActivity}
+     *
+     * @param ctx a context
+     */
+    public static void goHeatmap(Context ctx) {
+        Intent intent = new Intent(ctx, HeatmapActivity.class);
+        ctx.startActivity(intent);
+    }
+
+    /**
+     * redirects to {@link com.ingloriousmind.android.imtimetracking.ui.activity.MetricsActivity}
+     *
+     * @param ctx a context
+     */
+    public static void goMetrics(Context ctx) {
+        Intent intent = new Intent(ctx, MetricsActivity.class);
+        ctx.startActivity(intent);
+    }
+
 }
@@ -1,5 +1,8 @@
 package com.ingloriousmind.android.imtimetracking.util;
 
+import java.util.Calendar;
+import java.util.TimeZone;
+
 /**
  * time util
  *
@@ -15,7 +18,7 @@ public class TimeUtil {
      */
     public static String getTimeString(final long duration) {
         StringBuilder sb = new StringBuilder(11);
-        int minutesTotal = (int) duration / 60 / 1000;
+        int minutesTotal = (int) (duration / 60 / 1000);
         int h = minutesTotal / 60;
         sb.append(h).append("h ");
         int m = minutesTotal % 60;
@@ -29,4 +32,90 @@ public class TimeUtil {
         return sb.toString();
     }
 
+    /**
+     * millis per day
+     */
+    public static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * @param millis epoch millis
+     * @param zone   time zone defining the local date
+     * @return number of days from 1970-01-01 to the local date of given time
+     */
+    public static long localEpochDay(long millis, TimeZone zone) {
+        long local = millis + zone.getOffset(millis);
+        long day = local / DAY_MILLIS;
+        return local < 0 && local % DAY_MILLIS != 0 ? day - 1 : day;
+    }
+
+    /**
+     * @param epochDay days since 1970-01-01
+     * @param zone     time zone defining the local date
+     * @return epoch millis of the start of given local day
+     */
+    public static long startOfLocalDay(long epochDay, TimeZone zone) {
+        long local = epochDay * DAY_MILLIS;
+        return local - zone.getOffset(local - zone.getOffset(local));
+    }
+
+    /**
+     * @param epochDay days since 1970-01-01
+     * @return iso week key, week based year * 100 + iso week, e.g. 202101 for 2021-01-04
+     */
+    public static int isoWeekKey(long epochDay) {
+        // 1970-01-01 was a thursday, iso weeks start on monday
+        long dayOfWeek = ((epochDay + 3) % 7 + 7) % 7;
+        long thursday = epochDay - dayOfWeek + 3;
+        int[] ymd = civilFromEpochDay(thursday);
+        long jan1 = epochDayFromCivil(ymd[0], 1, 1);
+        int week = (int) ((thursday - jan1) / 7) + 1;
+        return ymd[0] * 100 + week;
+    }
+
+    /**
+     * @param epochDay days since 1970-01-01
+     * @return year, month (1-12) and day of month
+     */
+    public static int[] civilFromEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int d = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int m = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int y = (int) (yoe + era * 400 + (m <= 2 ? 1 : 0));
+        return new int[]{y, m, d};
+    }
+
+    /**
+     * @param year  the year
+     * @param month month of year, 1-12
+     * @param day   day of month
+     * @return days since 1970-01-01
+     */
+    public static long epochDayFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * @param millis epoch millis
+     * @return epoch millis of the start of the local day containing given time
+     */
+    public static long startOfDay(long millis) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(millis);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTimeInMillis();
+    }
+
 }
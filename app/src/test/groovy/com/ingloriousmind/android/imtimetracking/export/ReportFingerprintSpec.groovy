@@ -0,0 +1,69 @@
+package com.ingloriousmind.android.imtimetracking.export
+
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory
+import spock.lang.Specification
+
+class ReportFingerprintSpec extends Specification {
+
+    static final TimeZone UTC = TimeZone.getTimeZone("UTC")
+
+    def "should compute identical fingerprints for identical rows"() {
+        expect:
+        fingerprint([tracking(1L, 1000L, "a"), tracking(2L, 2000L, "b")]) ==
+                fingerprint([tracking(1L, 1000L, "a"), tracking(2L, 2000L, "b")])
+    }
+
+    def "should compute distinct fingerprints for distinct rows"() {
+        expect:
+        fingerprint([tracking(1L, 1000L, "a")]) != fingerprint(rows)
+
+        where:
+        rows << [
+                [tracking(1L, 1001L, "a")],
+                [tracking(2L, 1000L, "a")],
+                [tracking(1L, 1000L, "b")],
+                [tracking(1L, 1000L, "a"), tracking(2L, 1000L, "a")],
+                []
+        ]
+    }
+
+    def "should not shift title boundaries between rows"() {
+        expect:
+        fingerprint([tracking(1L, 0L, "ab"), tracking(1L, 0L, "")]) !=
+                fingerprint([tracking(1L, 0L, "a"), tracking(1L, 0L, "b")])
+    }
+
+    def "should compute distinct fingerprints for distinct zones and locales"() {
+        given:
+        def rows = [tracking(1L, 1000L, "a")]
+
+        expect:
+        ReportFingerprint.of(history(rows), UTC, Locale.US) == ReportFingerprint.of(history(rows), TimeZone.getTimeZone("UTC"), new Locale("en", "US"))
+        ReportFingerprint.of(history(rows), UTC, Locale.US) != ReportFingerprint.of(history(rows), TimeZone.getTimeZone("Europe/Berlin"), Locale.US)
+        ReportFingerprint.of(history(rows), UTC, Locale.US) != ReportFingerprint.of(history(rows), UTC, Locale.GERMANY)
+    }
+
+    def "should produce a fixed length hex string"() {
+        expect:
+        fingerprint(null) ==~ /[0-9a-f]{16}/
+    }
+
+    private static String fingerprint(List<List> rows) {
+        return ReportFingerprint.of(rows != null ? history(rows) : null, UTC, Locale.US)
+    }
+
+    private static List tracking(long created, long duration, String title) {
+        return [created, duration, title]
+    }
+
+    /**
+     * builds a history of given rows, one project per distinct title
+     */
+    private static TrackingHistory history(List<List> rows) {
+        def builder = new TrackingHistory.Builder(rows.size())
+        def titles = rows.collect { it[2] }.unique()
+        titles.eachWithIndex { title, i -> builder.title(i, title) }
+        rows.each { builder.add(it[0], it[0], it[1], titles.indexOf(it[2])) }
+        return builder.build()
+    }
+}
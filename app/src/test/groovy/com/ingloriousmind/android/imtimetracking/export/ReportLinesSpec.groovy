@@ -0,0 +1,34 @@
+package com.ingloriousmind.android.imtimetracking.export
+
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory
+import spock.lang.Specification
+
+import java.text.SimpleDateFormat
+
+class ReportLinesSpec extends Specification {
+
+    def "should append a line per tracking, most recently created first, and sum up durations"() {
+        given:
+        def dates = new SimpleDateFormat("yyyy-MM-dd", Locale.US)
+        dates.setTimeZone(TimeZone.getTimeZone("UTC"))
+        def sb = new StringBuilder("header\n")
+
+        when:
+        def history = new TrackingHistory.Builder(3)
+                .title(1, "project")
+                .title(2, "")
+                .add(0L, 0L, 3723000L, 1)
+                .add(86400000L, 86400000L, 59000L, 2)
+                .add(172800000L, 172800000L, 0L, 3)
+                .build()
+        def total = ReportLines.append(sb, history, dates, "unnamed")
+
+        then:
+        total == 3782000L
+        sb.toString() == "header\n" +
+                "1970-01-03 0h 00m 00s | unnamed\n" +
+                "1970-01-02 0h 00m 59s | unnamed\n" +
+                "1970-01-01 1h 02m 03s | project\n"
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.ingloriousmind.android.imtimetracking.metrics
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MetricsRegistrySpec extends Specification {
+
+    MetricsRegistry metrics = new MetricsRegistry()
+
+    def "should hand out the same metric per name"() {
+        expect:
+        metrics.counter("a").is(metrics.counter("a"))
+        !metrics.counter("a").is(metrics.counter("b"))
+        metrics.histogram("a").is(metrics.histogram("a"))
+        metrics.getCounters().keySet() as List == ["a", "b"]
+        metrics.getHistograms().keySet() as List == ["a"]
+    }
+
+    def "should report percentiles as upper bounds of power of two buckets"() {
+        given:
+        def h = metrics.histogram("h")
+
+        when:
+        (1..90).each { h.record(100) }
+        (1..9).each { h.record(1000) }
+        h.record(5000)
+        h.record(-5)
+
+        then:
+        h.getCount() == 101
+        h.getSum() == 90 * 100 + 9 * 1000 + 5000
+        h.getMax() == 5000
+        h.getMean() == h.getSum().intdiv(101)
+        h.getPercentile(0) == 0
+        h.getPercentile(0.5) == 127
+        h.getPercentile(0.9) == 127
+        h.getPercentile(0.99) == 1023
+        h.getPercentile(1) == 5000
+    }
+
+    def "should report zeros for an empty histogram"() {
+        given:
+        def h = metrics.histogram("empty")
+
+        expect:
+        h.getCount() == 0
+        h.getMean() == 0
+        h.getMax() == 0
+        h.getPercentile(0.99) == 0
+    }
+
+    def "should not lose updates recorded concurrently"() {
+        given:
+        int threads = 8
+        int perThread = 100000
+        def pool = Executors.newFixedThreadPool(threads)
+        def go = new CountDownLatch(1)
+
+        when:
+        threads.times { t ->
+            pool.submit {
+                go.await()
+                def counter = metrics.counter("c")
+                def h = metrics.histogram("h")
+                perThread.times { i ->
+                    counter.inc()
+                    h.record(t * perThread + i)
+                }
+            }
+        }
+        go.countDown()
+        pool.shutdown()
+        pool.awaitTermination(30, TimeUnit.SECONDS)
+
+        then:
+        metrics.counter("c").get() == threads * perThread
+        metrics.histogram("h").getCount() == threads * perThread
+        metrics.histogram("h").getMax() == threads * perThread - 1
+        metrics.histogram("h").getSum() == (long) threads * perThread * (threads * perThread - 1) / 2
+    }
+
+    def "should write all metrics as json"() {
+        given:
+        metrics.counter("db.write.failed").add(2)
+        metrics.histogram("db.query.rows").record(1500)
+        def w = new StringWriter()
+
+        when:
+        metrics.writeJson(w)
+
+        then:
+        w.toString() ==~ /\{"time":\d+,"counters":\{"db.write.failed":2},"histograms":\{"db.query.rows":\{"count":1,"mean":1500,"p50":1500,"p90":1500,"p99":1500,"max":1500}}}/
+    }
+
+    def "should dump metrics into a new file"() {
+        given:
+        def dir = File.createTempDir()
+        metrics.counter("tracker.start").inc()
+
+        when:
+        def file = metrics.dump(dir)
+
+        then:
+        file.parentFile == dir
+        file.name ==~ /im-timetracking-metrics-\d{8}-\d{6}\.json/
+        file.text.contains('"tracker.start":1')
+
+        cleanup:
+        dir.deleteDir()
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.ingloriousmind.android.imtimetracking.metrics
+
+import spock.lang.Specification
+
+class RollingLogSpec extends Specification {
+
+    File dir = File.createTempDir()
+    File file = new File(dir, "startup.log")
+    File backup = new File(dir, "startup.log.1")
+
+    def cleanup() {
+        dir.deleteDir()
+    }
+
+    def "should append lines"() {
+        given:
+        def log = new RollingLog(file, 1024)
+
+        when:
+        log.append("first")
+        log.append("second")
+
+        then:
+        file.text == "first\nsecond\n"
+        !backup.exists()
+    }
+
+    def "should roll over to a single backup once exceeding max size"() {
+        given:
+        def log = new RollingLog(file, 20)
+
+        when:
+        log.append("0123456789")
+        log.append("abcdefghij")
+
+        then:
+        file.text == "abcdefghij\n"
+        backup.text == "0123456789\n"
+
+        when:
+        log.append("ABCDEFGHIJ")
+
+        then:
+        file.text == "ABCDEFGHIJ\n"
+        backup.text == "abcdefghij\n"
+    }
+
+    def "should write a line exceeding max size on its own"() {
+        given:
+        def log = new RollingLog(file, 4)
+
+        when:
+        log.append("too long")
+
+        then:
+        file.text == "too long\n"
+        !backup.exists()
+    }
+
+}
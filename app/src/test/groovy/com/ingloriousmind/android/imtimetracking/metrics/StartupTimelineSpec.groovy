@@ -0,0 +1,171 @@
+package com.ingloriousmind.android.imtimetracking.metrics
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class StartupTimelineSpec extends Specification {
+
+    static final String TIME = /\d{4}-\d\d-\d\d \d\d:\d\d:\d\d/
+
+    List<String> traced = []
+    StartupTimeline.Sections sections = [
+            begin: { String name -> traced << "begin " + name },
+            end  : { -> traced << "end" }
+    ] as StartupTimeline.Sections
+    long nanos = TimeUnit.HOURS.toNanos(1)
+    StartupTimeline.Clock clock = [
+            nanoTime         : { -> nanos },
+            currentTimeMillis: { -> 1475000000000L + TimeUnit.NANOSECONDS.toMillis(nanos) }
+    ] as StartupTimeline.Clock
+    List<StartupTimeline.Launch> launches = []
+    StartupTimeline timeline = new StartupTimeline(sections, clock)
+
+    def setup() {
+        timeline.setListener({ StartupTimeline.Launch launch -> launches << launch } as StartupTimeline.Listener)
+    }
+
+    def "should wrap synchronous phases in trace sections"() {
+        when:
+        timeline.begin(StartupTimeline.APP_CREATE)
+        timeline.begin(StartupTimeline.APP_COMPONENT)
+        timeline.end(StartupTimeline.APP_COMPONENT)
+        timeline.end(StartupTimeline.APP_CREATE)
+        timeline.beginAsync(StartupTimeline.LIST_LOAD)
+        timeline.endAsync(StartupTimeline.LIST_LOAD)
+
+        then:
+        traced == ["begin app.onCreate", "begin app.component", "end", "end"]
+    }
+
+    def "should complete a launch once both the first frame and content are shown"() {
+        given:
+        timeline.begin(StartupTimeline.APP_CREATE)
+        advance(5)
+        timeline.end(StartupTimeline.APP_CREATE)
+        timeline.beginAsync(StartupTimeline.LIST_LOAD)
+        timeline.beginAsync(StartupTimeline.TRACKER_RESUME)
+        advance(3)
+        timeline.endAsync(StartupTimeline.LIST_LOAD)
+        advance(2)
+
+        when:
+        timeline.contentShown()
+
+        then:
+        launches.isEmpty()
+
+        when:
+        advance(2)
+        timeline.firstFrameDrawn()
+        advance(2)
+        timeline.contentShown()
+        timeline.firstFrameDrawn()
+
+        then: "phases never ended are left out"
+        launches.size() == 1
+        launches[0].toString() ==~ TIME + / cold first_frame=12 content=10 app\.onCreate=0\+5 list\.load=5\+3/
+    }
+
+    def "should record the first occurrence of a phase only"() {
+        given:
+        timeline.begin(StartupTimeline.HOME_RESUME)
+        advance(1)
+        timeline.end(StartupTimeline.HOME_RESUME)
+
+        when:
+        timeline.begin(StartupTimeline.HOME_RESUME)
+        advance(5)
+        timeline.end(StartupTimeline.HOME_RESUME)
+        timeline.firstFrameDrawn()
+        timeline.contentShown()
+
+        then:
+        launches[0].toString() ==~ TIME + / cold first_frame=6 content=6 home\.onResume=0\+1/
+    }
+
+    def "should record warm launches after the cold one completed"() {
+        when: "launching while the cold launch is open"
+        advance(100)
+        timeline.launch()
+        timeline.firstFrameDrawn()
+        timeline.contentShown()
+
+        then:
+        launches*.cold == [true]
+        launches[0].toString() ==~ TIME + / cold first_frame=100 content=100/
+
+        when: "ignoring phases after completion"
+        timeline.begin(StartupTimeline.HOME_CREATE)
+        timeline.end(StartupTimeline.HOME_CREATE)
+        advance(1000)
+        timeline.launch()
+        timeline.begin(StartupTimeline.HOME_RESUME)
+        advance(20)
+        timeline.end(StartupTimeline.HOME_RESUME)
+        timeline.contentShown()
+        timeline.firstFrameDrawn()
+
+        then:
+        launches*.cold == [true, false]
+        launches[1].toString() ==~ TIME + / warm first_frame=20 content=20 home\.onResume=0\+20/
+    }
+
+    def "should discard the cold launch of a process not started for an activity"() {
+        given: "a process started for a job, creating the home activity later on"
+        timeline.begin(StartupTimeline.APP_CREATE)
+        advance(50)
+        timeline.end(StartupTimeline.APP_CREATE)
+        advance(StartupTimeline.COLD_LAUNCH_TIMEOUT_MS + 1)
+
+        when:
+        timeline.launch()
+        timeline.begin(StartupTimeline.HOME_CREATE)
+        advance(30)
+        timeline.end(StartupTimeline.HOME_CREATE)
+        timeline.firstFrameDrawn()
+        timeline.contentShown()
+
+        then:
+        launches.size() == 1
+        launches[0].toString() ==~ TIME + / warm first_frame=30 content=30 home\.onCreate=0\+30/
+    }
+
+    def "should keep the cold launch of an activity created soon after the application"() {
+        given:
+        timeline.begin(StartupTimeline.APP_CREATE)
+        advance(50)
+        timeline.end(StartupTimeline.APP_CREATE)
+        advance(StartupTimeline.COLD_LAUNCH_TIMEOUT_MS - 50)
+
+        when:
+        timeline.launch()
+        timeline.firstFrameDrawn()
+        timeline.contentShown()
+
+        then:
+        launches[0].toString() ==~ TIME + / cold first_frame=5000 content=5000 app\.onCreate=0\+50/
+    }
+
+    def "should log a launch as a single line and record it into histograms"() {
+        given:
+        def metrics = new MetricsRegistry()
+        timeline.begin(StartupTimeline.APP_DIR)
+        timeline.end(StartupTimeline.APP_DIR)
+        timeline.firstFrameDrawn()
+        timeline.contentShown()
+
+        when:
+        launches[0].record(metrics)
+
+        then:
+        launches[0].toString() ==~ TIME + / cold first_frame=\d+ content=\d+ app\.appDir=\d+\+\d+/
+        metrics.getHistograms().keySet() as List == ["startup.cold.app.appDir", "startup.cold.content", "startup.cold.first_frame"]
+        metrics.histogram("startup.cold.content").count == 1
+    }
+
+    void advance(long millis) {
+        nanos += TimeUnit.MILLISECONDS.toNanos(millis)
+    }
+
+}
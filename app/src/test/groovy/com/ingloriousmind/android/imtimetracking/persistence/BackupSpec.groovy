@@ -0,0 +1,182 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class BackupSpec extends Specification {
+
+    static final int ROWS = Backup.CHUNK_ROWS * 3 + 1
+    static final int VERSION = 9
+    static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin")
+    static final String SESSIONS = "SELECT COUNT(*) || ':' || SUM(tracking_id) || ':' || SUM(started) || ':' || SUM(duration) FROM session"
+    static final String FINGERPRINT = "SELECT COUNT(*) || ':' || SUM(id) || ':' || SUM(project_id) || ':' || SUM(created) || ':' " +
+            "|| SUM(lastTrackingStarted) || ':' || SUM(duration) || ':' || SUM(tracking) || ':' || SUM(LENGTH(description)) " +
+            "|| ':' || COUNT(description) FROM timetracking"
+
+    /**
+     * database of all rows, seeded once and copied into each feature's database
+     */
+    @Shared
+    File seed = File.createTempFile("trackings", ".db")
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    File file = File.createTempFile("trackings", Backup.FILE_EXTENSION)
+
+    def setupSpec() {
+        def db = new JdbcDatabase()
+        try {
+            insertRows(db)
+            db.backupTo(seed)
+        } finally {
+            db.close()
+        }
+    }
+
+    def cleanupSpec() {
+        seed.delete()
+    }
+
+    def setup() {
+        db.restoreFrom(seed)
+    }
+
+    private static void insertRows(JdbcDatabase db) {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        db.execSQL("CREATE INDEX timetracking_created_idx ON timetracking (created)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Sessions.createTables(db)
+        Sessions.createTriggers(db)
+        Rollups.createTables(db)
+        db.beginTransaction()
+        50.times { db.execSQL("INSERT INTO project (title) VALUES (?)", ["project \u00e4 " + it] as Object[]) }
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "1 + i % 50",
+                description        : "CASE WHEN i % 10 = 0 THEN NULL ELSE 'task ' || i END",
+                created            : "1420070400000 + i * 63000 + i % 7 * 1000",
+                lastTrackingStarted: "1420070400000 + i * 63000 + i % 7 * 1000 + i * 997",
+                duration           : "i * 4999 % 5400000",
+                tracking           : "i = " + (ROWS - 1)])
+        db.setTransactionSuccessful()
+        db.endTransaction()
+        FullTextIndex.createTables(db)
+        FullTextIndex.rebuild(db)
+        Sessions.fillMissing(db)
+        Rollups.rebuild(db, ZONE)
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def "should restore what was backed up, leaving out deleted trackings"() {
+        given:
+        db.execSQL("UPDATE timetracking SET deleted = 1 WHERE id % 1000 = 0")
+        def live = ROWS - ROWS.intdiv(1000)
+        def liveSessions = db.queryLong("SELECT COUNT(*) FROM session s JOIN timetracking t ON t.id = s.tracking_id WHERE t.deleted = 0")
+        def expected = db.queryString(FINGERPRINT + " WHERE deleted = 0")
+        def rollups = db.queryLong("SELECT SUM(duration) FROM timetracking WHERE deleted = 0")
+        def sessions = db.queryString(SESSIONS + " WHERE tracking_id IN (SELECT id FROM timetracking WHERE deleted = 0)")
+
+        when:
+        def written = Backup.write(db, VERSION, file)
+
+        and: "history changes after backup"
+        db.execSQL("DELETE FROM timetracking WHERE id < 1000")
+        db.execSQL("INSERT INTO project (title) VALUES ('later')")
+        db.execSQL("INSERT INTO timetracking (project_id, description, created) VALUES (51, 'later', 1)")
+
+        and:
+        def restored = Backup.restore(db, VERSION, file, ZONE)
+
+        then:
+        written == 50 + live + liveSessions
+        restored == written
+        db.queryString(FINGERPRINT) == expected
+        db.queryLong("SELECT COUNT(*) FROM project") == 50
+        db.queryString("SELECT title FROM project WHERE id = 8") == "project \u00e4 7"
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted != 0") == 0
+        db.queryString(SESSIONS) == sessions
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name LIKE 'restore_%'") == 0
+        !new File(file.path + ".tmp").exists()
+
+        and: "derived tables are rebuilt"
+        db.queryLong("SELECT SUM(duration) FROM rollup_day") == rollups
+        db.queryLong("SELECT docid FROM timetracking_fts WHERE timetracking_fts MATCH '\"task 4241\"'") == 4242
+        db.queryLong("SELECT COUNT(*) FROM timetracking_fts WHERE timetracking_fts MATCH 'later'") == 0
+
+        and: "new trackings continue ids"
+        db.compileStatement("INSERT INTO timetracking (project_id, created) VALUES (1, 1)").executeInsert() > ROWS
+    }
+
+    def "should guess sessions when restoring backups of versions without them"() {
+        given: "a backup of version 8, ending before the session table"
+        def sessions = db.queryString(SESSIONS)
+        Backup.write(db, VERSION, file)
+        byte[] raw = new GZIPInputStream(new FileInputStream(file)).bytes
+        int end = indexOf(raw, ([1] + "sessio".bytes.toList() + [(int) ('n' as char) | 0x80]) as byte[])
+        byte[] old = Arrays.copyOf(raw, end + 1)
+        old[5] = 8
+        old[end] = 0
+        file.withOutputStream { new GZIPOutputStream(it).withStream { it.write(old) } }
+        db.execSQL("DELETE FROM session")
+
+        when:
+        def restored = Backup.restore(db, VERSION, file, ZONE)
+
+        then:
+        restored == 50 + ROWS
+        db.queryString(SESSIONS) == sessions
+        db.queryLong("SELECT SUM(duration) FROM rollup_day") == db.queryLong("SELECT SUM(duration) FROM timetracking")
+    }
+
+    def "should leave the database as is when a chunk is corrupt"() {
+        given:
+        Backup.write(db, VERSION, file)
+        byte[] raw = new GZIPInputStream(new FileInputStream(file)).bytes
+        raw[raw.length / 2 as int] ^= 0x40
+        file.withOutputStream { new GZIPOutputStream(it).withStream { it.write(raw) } }
+        db.execSQL("DELETE FROM timetracking WHERE id <= 1000")
+        def expected = db.queryString(FINGERPRINT)
+
+        when:
+        Backup.restore(db, VERSION, file, ZONE)
+
+        then:
+        thrown(IOException)
+        db.queryString(FINGERPRINT) == expected
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name LIKE 'restore_%'") == 0
+    }
+
+    def "should reject backups of newer versions"() {
+        given:
+        Backup.write(db, VERSION + 1, file)
+
+        when:
+        Backup.restore(db, VERSION, file, ZONE)
+
+        then:
+        thrown(IOException)
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == ROWS
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++
+            }
+            if (j == pattern.length) {
+                return i
+            }
+        }
+        throw new IllegalArgumentException("not found")
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class BulkEditSpec extends Specification {
+
+    static final int ROWS = 20000
+    static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin")
+    static final long DELETED = 1475000000000L
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        db.execSQL("CREATE INDEX timetracking_created_idx ON timetracking (created)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Sessions.createTables(db)
+        Sessions.createTriggers(db)
+        Rollups.createTables(db)
+        FullTextIndex.createTables(db)
+        ChangeLog.createTables(db)
+        ChangeLog.createTriggers(db)
+        (1..20).each { projects.idOf(db, "project " + it) }
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "(i + 1) % 20 + 1",
+                description        : "'task ' || (i + 1)",
+                created            : "1420070400000 + (i + 1) * 3600000",
+                lastTrackingStarted: "1420070400000 + (i + 1) * 3600000",
+                duration           : "(i + 1) % 100 * 60000",
+                tracking           : "0",
+                deleted            : "0"])
+        Sessions.fillMissing(db)
+        Rollups.rebuild(db, ZONE)
+        db.execSQL("DELETE FROM " + ChangeLog.TABLE)
+    }
+
+    def "should delete thousands of selected trackings in a single transaction, leaving running ones alone"() {
+        given:
+        db.execSQL("UPDATE timetracking SET tracking = 1 WHERE id = 4")
+        db.execSQL("DELETE FROM " + ChangeLog.TABLE)
+        long[] ids = (1..ROWS).findAll { it % 2 == 0 } as long[]
+
+        when:
+        def removed = BulkEdit.delete(db, ZONE, ids, DELETED)
+
+        then:
+        removed == ROWS / 2 - 1
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = " + DELETED) == ROWS / 2 - 1
+        db.queryLong("SELECT id FROM timetracking WHERE deleted = 0 AND id % 2 = 0") == 4
+        rollupsConsistent()
+        ChangeLog.countPending(db) == ROWS / 2 - 1
+        db.queryLong("SELECT COUNT(*) FROM temp." + BulkEdit.SELECTION) == 0
+
+        when: "deleting them again"
+        removed = BulkEdit.delete(db, ZONE, ids, DELETED + 1)
+
+        then:
+        removed == 0
+        rollupsConsistent()
+    }
+
+    def "should retitle selected trackings, leaving running ones alone"() {
+        given:
+        db.execSQL("UPDATE timetracking SET tracking = 1 WHERE id = 3")
+        long[] ids = (1..5000) as long[]
+
+        when:
+        def retitled = BulkEdit.retitle(db, projects, ZONE, ids, "renamed")
+
+        then:
+        retitled == 4999
+        db.queryLong("SELECT COUNT(*) FROM timetracking t JOIN project p ON p.id = t.project_id WHERE p.title = 'renamed'") == 4999
+        db.queryString("SELECT p.title FROM timetracking t JOIN project p ON p.id = t.project_id WHERE t.id = 3") == "project 4"
+        db.queryLong("SELECT docid FROM timetracking_fts WHERE timetracking_fts MATCH 'title:renamed 4242'") == 4242
+        rollupsConsistent()
+
+        when: "retitling to the title they have already"
+        retitled = BulkEdit.retitle(db, projects, ZONE, ids, "renamed")
+
+        then:
+        retitled == 0
+    }
+
+    def "should merge selected trackings into the one started last"() {
+        given:
+        db.execSQL("UPDATE timetracking SET description = 'task 10' WHERE id = 11")
+        db.execSQL("UPDATE timetracking SET description = NULL WHERE id = 12")
+        long[] ids = [12, 10, 11, 20]
+
+        when:
+        def merged = BulkEdit.merge(db, ZONE, ids, DELETED)
+
+        then:
+        merged == 4
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = 0 AND id IN (10, 11, 12, 20)") == 1
+        db.queryLong("SELECT created FROM timetracking WHERE id = 20") == 1420070400000L + 10 * 3600000L
+        db.queryLong("SELECT lastTrackingStarted FROM timetracking WHERE id = 20") == 1420070400000L + 20 * 3600000L
+        db.queryLong("SELECT duration FROM timetracking WHERE id = 20") == (10 + 11 + 12 + 20) * 60000L
+        db.queryString("SELECT description FROM timetracking WHERE id = 20") == "task 10\ntask 20"
+        db.queryString("SELECT p.title FROM timetracking t JOIN project p ON p.id = t.project_id WHERE t.id = 20") == "project 1"
+        db.queryLong("SELECT COUNT(*) FROM session WHERE tracking_id = 20") == 4
+        rollupsConsistent()
+    }
+
+    def "should keep merged time on the days it was tracked on"() {
+        given: "trackings of three distinct days"
+        def before = dayTotals()
+
+        when:
+        def merged = BulkEdit.merge(db, ZONE, [10, 30, 60] as long[], DELETED)
+
+        then:
+        merged == 3
+        dayTotals() == before
+        rollupsConsistent()
+    }
+
+    def "should not merge less than two trackings"() {
+        given:
+        db.execSQL("UPDATE timetracking SET tracking = 1 WHERE id = 2")
+        def before = rollups()
+
+        when:
+        def merged = BulkEdit.merge(db, ZONE, [1, 2, 99999] as long[], DELETED)
+
+        then:
+        merged == 0
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted != 0") == 0
+        db.queryLong("SELECT duration FROM timetracking WHERE id = 1") == 60000
+        rollups() == before
+    }
+
+    /**
+     * rollups maintained incrementally equal rollups rebuilt from scratch
+     */
+    boolean rollupsConsistent() {
+        def maintained = rollups()
+        Rollups.rebuild(db, ZONE)
+        maintained == rollups()
+    }
+
+    String dayTotals() {
+        db.queryString("SELECT group_concat(r, ',') FROM (SELECT day || ':' || SUM(duration) AS r FROM rollup_day GROUP BY day ORDER BY day)")
+    }
+
+    String rollups() {
+        db.queryString("SELECT group_concat(r, ',') FROM (SELECT day || ':' || project_id || ':' || duration || ':' || count AS r "
+                + "FROM rollup_day ORDER BY day, project_id)") + "/" +
+                db.queryString("SELECT group_concat(r, ',') FROM (SELECT week || ':' || project_id || ':' || duration || ':' || count AS r "
+                        + "FROM rollup_week ORDER BY week, project_id)")
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class DbMaintenanceSpec extends Specification {
+
+    File file = File.createTempFile("trackings", ".db")
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase("jdbc:sqlite:" + file.absolutePath)
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        TrackingIndexes.createIndexes(db)
+        insert(20000)
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def "should analyze and shrink the file after mass deletes"() {
+        given:
+        db.execSQL("DELETE FROM timetracking WHERE id % 10 != 0")
+
+        when:
+        def result = DbMaintenance.run(db, file)
+
+        then:
+        result.fullVacuum
+        result.freePagesBefore > 0
+        result.freePagesAfter == 0
+        result.sizeAfter < result.sizeBefore / 2
+        result.sizeAfter == file.length()
+        result.probeMicrosBefore > 0
+        result.probeMicrosAfter > 0
+        DbMaintenance.pragma(db, "auto_vacuum") == DbMaintenance.AUTO_VACUUM_INCREMENTAL
+        db.queryLong("SELECT COUNT(*) FROM sqlite_stat1 WHERE tbl = 'timetracking'") > 0
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == 2000
+    }
+
+    def "should vacuum incrementally once converted"() {
+        given:
+        DbMaintenance.run(db, file)
+        insert(20000)
+        db.execSQL("DELETE FROM timetracking WHERE id > 20000")
+
+        when:
+        def result = DbMaintenance.run(db, file)
+
+        then:
+        !result.fullVacuum
+        result.freePagesBefore > 0
+        result.freePagesAfter == 0
+        result.sizeAfter < result.sizeBefore
+    }
+
+    void insert(int rows) {
+        db.beginTransaction()
+        def stmt = db.compileStatement("INSERT INTO timetracking (project_id, description, created, lastTrackingStarted, duration, tracking) "
+                + "VALUES (?, ?, ?, ?, 60000, 0)")
+        rows.times { i ->
+            stmt.bindLong(1, i % 20)
+            stmt.bindString(2, "some lengthy description of what was done " * 3 + i)
+            stmt.bindLong(3, i)
+            stmt.bindLong(4, i)
+            stmt.executeInsert()
+        }
+        stmt.close()
+        db.setTransactionSuccessful()
+        db.endTransaction()
+    }
+
+}
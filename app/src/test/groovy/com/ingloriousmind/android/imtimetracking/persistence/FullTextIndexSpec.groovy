@@ -0,0 +1,50 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FullTextIndexSpec extends Specification {
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+
+    @Unroll
+    def "should turn '#query' into match expression '#expression'"() {
+        expect:
+        FullTextIndex.toMatchExpression(query) == expression
+
+        where:
+        query                        | expression
+        "acme"                       | "acme*"
+        "  call   acme "             | "call* acme*"
+        "\"acme\" OR -x*"            | "acme* x*"
+        "weekly-sync NEAR caf\u00e9" | "weekly* sync* caf\u00e9*"
+        "call AND acme"              | "call* acme*"
+        "and or"                     | "and* or*"
+        "  "                         | null
+        "*:\"()"                     | null
+        null                         | null
+    }
+
+    def "should sum up durations of all matching trackings, not deleted"() {
+        given:
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        Projects.createTables(db)
+        FullTextIndex.createTables(db)
+        def projects = new Projects()
+        def acme = projects.idOf(db, "call acme")
+        def other = projects.idOf(db, "other")
+        db.execSQL("INSERT INTO timetracking (project_id, description, created, lastTrackingStarted, duration, tracking, deleted) "
+                + "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 300) "
+                + "SELECT CASE WHEN i % 3 = 0 THEN " + other + " ELSE " + acme + " END, 'note ' || i, i, i, 1000, 0, "
+                + "CASE WHEN i % 10 = 1 THEN 1 ELSE 0 END FROM n")
+
+        expect: "all 200 acme trackings, except the 20 deleted, however many a page holds"
+        FullTextIndex.sumDurations(db, FullTextIndex.toMatchExpression("acm")) == 180 * 1000
+        FullTextIndex.sumDurations(db, FullTextIndex.toMatchExpression("other note")) == 90 * 1000
+        FullTextIndex.sumDurations(db, FullTextIndex.toMatchExpression("nothing")) == 0
+    }
+
+}
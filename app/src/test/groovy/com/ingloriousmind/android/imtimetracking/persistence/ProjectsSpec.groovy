@@ -0,0 +1,55 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class ProjectsSpec extends Specification {
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        Projects.createTables(db)
+    }
+
+    def "should purge projects no tracking refers to, keeping those of deleted trackings"() {
+        given:
+        def used = projects.idOf(db, "used")
+        def deleted = projects.idOf(db, "deleted")
+        def renamed = projects.idOf(db, "renamed")
+        insert(used, 0)
+        insert(deleted, 1475000000000L)
+        insert(renamed, 0)
+        db.execSQL("UPDATE timetracking SET project_id = " + used + " WHERE project_id = " + renamed)
+
+        when:
+        def purged = projects.purgeUnreferenced(db)
+
+        then:
+        purged == 1
+        db.queryLong("SELECT COUNT(*) FROM project") == 2
+        projects.titleOf(db, used) == "used"
+        projects.titleOf(db, deleted) == "deleted"
+        projects.titleOf(db, renamed) == null
+
+        when: "using the purged title again"
+        def id = projects.idOf(db, "renamed")
+
+        then:
+        id != renamed
+        db.queryString("SELECT title FROM project WHERE id = " + id) == "renamed"
+
+        and: "nothing left to purge"
+        insert(id, 0)
+        projects.purgeUnreferenced(db) == 0
+    }
+
+    private void insert(long projectId, long deleted) {
+        db.execSQL("INSERT INTO timetracking (project_id, created, lastTrackingStarted, duration, tracking, deleted) VALUES (?, 0, 0, 0, 0, ?)",
+                [projectId, deleted] as Object[])
+    }
+
+}
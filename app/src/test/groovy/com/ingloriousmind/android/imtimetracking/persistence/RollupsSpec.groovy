@@ -0,0 +1,142 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class RollupsSpec extends Specification {
+
+    static final TimeZone ZONE = TimeZone.getTimeZone("UTC")
+    static final long DAY = 86400000L
+    static final long HOUR = 3600000L
+    // a monday
+    static final long MONDAY = 17000
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        Projects.createTables(db)
+        Sessions.createTables(db)
+        Rollups.createTables(db)
+    }
+
+    def "should aggregate a report by title, day and week"() {
+        given:
+        insert("a", MONDAY - 3, HOUR)
+        insert("a", MONDAY, 2 * HOUR)
+        insert("a", MONDAY, HOUR / 2 as long)
+        insert("b", MONDAY + 1, HOUR)
+        insert("a", MONDAY - 10, 5 * HOUR)
+        insert("b", MONDAY + 1, 7 * HOUR, 1L)
+        rebuild(ZONE)
+
+        when:
+        def report = Rollups.report(db, projects, MONDAY - 3, MONDAY + 3, 42)
+
+        then:
+        report.version == 42
+        report.total == 9 * HOUR / 2
+        report.titles*.title == ["a", "b"]
+        report.titles*.duration == [7 * HOUR / 2, HOUR]
+        report.titles*.count == [3, 1]
+        report.titles[0].series == [HOUR, 0, 0, 5 * HOUR / 2, 0, 0, 0] as long[]
+        report.titles[1].series == [0, 0, 0, 0, HOUR, 0, 0] as long[]
+
+        and: "days with tracked time, most recent first"
+        report.days*.key == [MONDAY + 1, MONDAY, MONDAY - 3]
+        report.days*.duration == [HOUR, 5 * HOUR / 2, HOUR]
+
+        and: "weeks touching the range, most recent first"
+        report.weeks*.key == [TimeUtil.isoWeekKey(MONDAY), TimeUtil.isoWeekKey(MONDAY - 3)] as List<Long>
+        report.weeks*.duration == [7 * HOUR / 2, HOUR]
+    }
+
+    def "should sum up weeks cut by the range from its days only"() {
+        given:
+        insert("a", MONDAY - 8, 6 * HOUR)
+        insert("a", MONDAY - 7, HOUR)
+        insert("b", MONDAY - 1, 2 * HOUR)
+        insert("a", MONDAY, 3 * HOUR)
+        insert("b", MONDAY + 8, 4 * HOUR)
+        insert("a", MONDAY + 10, 5 * HOUR)
+        rebuild(ZONE)
+
+        when: "from a monday to the tuesday two weeks later"
+        def report = Rollups.report(db, projects, MONDAY - 7, MONDAY + 8, 0)
+
+        then:
+        report.weeks*.key == [TimeUtil.isoWeekKey(MONDAY + 7), TimeUtil.isoWeekKey(MONDAY), TimeUtil.isoWeekKey(MONDAY - 7)] as List<Long>
+        report.weeks*.duration == [4 * HOUR, 3 * HOUR, 3 * HOUR]
+        report.weeks*.duration.sum() == report.total
+    }
+
+    def "should follow incremental updates of the rollups"() {
+        given:
+        insert("a", MONDAY, HOUR)
+        rebuild(ZONE)
+
+        when:
+        Rollups.add(db, ZONE, "id = 1", -1)
+        db.execSQL("UPDATE timetracking SET project_id = ?, duration = ? WHERE id = 1", [projects.idOf(db, "b"), 2 * HOUR] as Object[])
+        db.execSQL("UPDATE session SET started = started - ?, duration = ? WHERE tracking_id = 1", [HOUR, 2 * HOUR] as Object[])
+        Rollups.add(db, ZONE, "id = 1", 1)
+        def report = Rollups.report(db, projects, MONDAY, MONDAY, 0)
+
+        then:
+        report.titles*.title == ["b"]
+        report.titles*.duration == [2 * HOUR]
+        report.days*.duration == [2 * HOUR]
+    }
+
+    def "should split sessions at local midnight"() {
+        given: "a tracking created at 23:00 local time, tracked in two sessions across midnight"
+        def zone = TimeZone.getTimeZone("GMT+02:00")
+        long created = MONDAY * DAY + 21 * HOUR
+        db.execSQL("INSERT INTO timetracking (project_id, created, lastTrackingStarted, duration, tracking) VALUES (?, ?, ?, ?, 0)",
+                [projects.idOf(db, "a"), created, created + 3 * HOUR, 3 * HOUR] as Object[])
+        db.execSQL("INSERT INTO session (tracking_id, started, duration) VALUES (1, ?, ?)", [created, 2 * HOUR] as Object[])
+        db.execSQL("INSERT INTO session (tracking_id, started, duration) VALUES (1, ?, ?)", [created + 2 * HOUR, HOUR] as Object[])
+        rebuild(zone)
+
+        when:
+        def report = Rollups.report(db, projects, MONDAY, MONDAY + 1, 0)
+
+        then: "time goes on the days it was tracked on, the tracking counts on the day it was created"
+        report.total == 3 * HOUR
+        report.days*.key == [MONDAY + 1, MONDAY]
+        report.days*.duration == [2 * HOUR, HOUR]
+        report.titles[0].series == [HOUR, 2 * HOUR] as long[]
+        report.titles[0].count == 1
+    }
+
+    def "should report nothing for a range without trackings"() {
+        given:
+        insert("a", MONDAY - 30, HOUR)
+        rebuild(ZONE)
+
+        when:
+        def report = Rollups.report(db, projects, MONDAY - 6, MONDAY, 0)
+
+        then:
+        report.titles.empty
+        report.days.empty
+        report.weeks.empty
+        report.total == 0
+    }
+
+    private void rebuild(TimeZone zone) {
+        Sessions.fillMissing(db)
+        Rollups.rebuild(db, zone)
+    }
+
+    private void insert(String title, long day, long duration, long deleted = 0) {
+        long created = day * DAY + HOUR
+        db.execSQL("INSERT INTO timetracking (project_id, created, lastTrackingStarted, duration, tracking, deleted) VALUES (?, ?, ?, ?, 0, ?)",
+                [projects.idOf(db, title), created, created, duration, deleted] as Object[])
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+/**
+ * seeds tables of a test database with generated rows
+ */
+class Seeds {
+
+    /**
+     * inserts rows numbered i = 0 until given count, all in a single statement
+     *
+     * @param db      the database
+     * @param table   the table
+     * @param rows    number of rows
+     * @param columns sql expression of i per column, in insertion order
+     */
+    static void insert(Database db, String table, int rows, Map<String, String> columns) {
+        db.execSQL("INSERT INTO " + table + " (" + columns.keySet().join(", ") + ") "
+                + "WITH RECURSIVE n(i) AS (SELECT 0 UNION ALL SELECT i + 1 FROM n WHERE i < " + (rows - 1) + ") "
+                + "SELECT " + columns.values().join(", ") + " FROM n")
+    }
+
+}
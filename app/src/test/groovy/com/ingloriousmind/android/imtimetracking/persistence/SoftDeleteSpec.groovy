@@ -0,0 +1,120 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class SoftDeleteSpec extends Specification {
+
+    static final int ROWS = 5000
+    static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin")
+    static final long DELETED = 1475000000000L
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Sessions.createTables(db)
+        Sessions.createTriggers(db)
+        Rollups.createTables(db)
+        (1..20).each { projects.idOf(db, "project " + it) }
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "(i + 1) % 20 + 1",
+                description        : "'task ' || (i + 1)",
+                created            : "1420070400000 + (i + 1) * 3600000",
+                lastTrackingStarted: "1420070400000 + (i + 1) * 3600000",
+                duration           : "(i + 1) % 100 * 60000",
+                tracking           : "0",
+                deleted            : "0"])
+        Sessions.fillMissing(db)
+        Rollups.rebuild(db, ZONE)
+    }
+
+    def "should restore a deleted tracking along with its rollups"() {
+        given:
+        def before = rollups()
+        BulkEdit.delete(db, ZONE, [42] as long[], DELETED)
+
+        when:
+        def restored = SoftDelete.restore(db, ZONE, 42)
+
+        then:
+        restored
+        db.queryLong("SELECT deleted FROM timetracking WHERE id = 42") == 0
+        rollups() == before
+
+        when: "restoring it again, a live one or one that is gone"
+        def again = SoftDelete.restore(db, ZONE, 42)
+        def live = SoftDelete.restore(db, ZONE, 43)
+        def gone = SoftDelete.restore(db, ZONE, ROWS + 1)
+
+        then:
+        !again
+        !live
+        !gone
+        rollups() == before
+    }
+
+    def "should restore all trackings deleted at a time, leaving others deleted"() {
+        given:
+        def before = rollups()
+        BulkEdit.delete(db, ZONE, (1..ROWS).findAll { it % 2 == 0 } as long[], DELETED)
+        BulkEdit.delete(db, ZONE, [1] as long[], DELETED + 1)
+
+        when:
+        def restored = SoftDelete.restoreAll(db, ZONE, DELETED)
+
+        then:
+        restored == ROWS / 2
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted != 0") == 1
+        db.queryLong("SELECT deleted FROM timetracking WHERE id = 1") == DELETED + 1
+
+        when: "restoring the last one"
+        SoftDelete.restoreAll(db, ZONE, DELETED + 1)
+
+        then:
+        rollups() == before
+        SoftDelete.restoreAll(db, ZONE, DELETED) == 0
+    }
+
+    def "should purge trackings deleted before a point in time in batches"() {
+        given: "project 1 only has trackings deleted long ago"
+        db.execSQL("UPDATE timetracking SET deleted = " + DELETED + " WHERE project_id = 1 OR id <= 2 * " + SoftDelete.PURGE_BATCH_SIZE)
+        db.execSQL("UPDATE timetracking SET deleted = " + (DELETED + 2) + " WHERE id = " + ROWS)
+        def purgeable = db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = " + DELETED)
+
+        when:
+        def batches = []
+        while (batches.empty || batches.last() == SoftDelete.PURGE_BATCH_SIZE) {
+            batches << SoftDelete.purgeBatch(db, DELETED + 1)
+        }
+        def projectsPurged = projects.purgeUnreferenced(db)
+
+        then:
+        purgeable > 2 * SoftDelete.PURGE_BATCH_SIZE
+        batches.size() == purgeable.intdiv(SoftDelete.PURGE_BATCH_SIZE) + 1
+        batches.sum() == purgeable
+        projectsPurged == 1
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == ROWS - purgeable
+        db.queryLong("SELECT COUNT(*) FROM session WHERE tracking_id NOT IN (SELECT id FROM timetracking)") == 0
+        db.queryLong("SELECT deleted FROM timetracking WHERE id = " + ROWS) == DELETED + 2
+        db.queryLong("SELECT COUNT(*) FROM project") == 19
+        projects.titleOf(db, 1) == null
+
+        when: "nothing left to purge"
+        def purged = SoftDelete.purgeBatch(db, DELETED + 1)
+
+        then:
+        purged == 0
+    }
+
+    String rollups() {
+        db.queryString("SELECT group_concat(r, ',') FROM (SELECT day || ':' || project_id || ':' || duration || ':' || count AS r "
+                + "FROM rollup_day ORDER BY day, project_id)")
+    }
+
+}
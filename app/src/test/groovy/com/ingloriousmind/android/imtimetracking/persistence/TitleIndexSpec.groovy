@@ -0,0 +1,104 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking
+import rx.schedulers.Schedulers
+import spock.lang.Specification
+
+class TitleIndexSpec extends Specification {
+
+    static final long NOW = 1000L * TitleIndex.HALF_LIFE_MS
+    static final long DAY = 24L * 60 * 60 * 1000
+
+    DbHelper dbHelper = Mock(DbHelper)
+    TitleIndex index = new TitleIndex(new TrackingRepository(dbHelper, Schedulers.immediate()))
+
+    def "should load lazily from the database once"() {
+        when:
+        def first = index.suggest("a", 5, NOW)
+        def second = index.suggest("a", 5, NOW)
+
+        then:
+        1 * dbHelper.fetchTitleStats() >> [entry("ACME call", 1, NOW)]
+        first == ["ACME call"]
+        second == ["ACME call"]
+    }
+
+    def "should match prefixes ignoring case"() {
+        given:
+        dbHelper.fetchTitleStats() >> [entry("ACME call", 1, NOW), entry("acme review", 1, NOW - DAY), entry("Backlog", 1, NOW)]
+
+        expect:
+        index.suggest("acm", 5, NOW) == ["ACME call", "acme review"]
+        index.suggest("B", 5, NOW) == ["Backlog"]
+        index.suggest("x", 5, NOW) == []
+        index.suggest("", 5, NOW).size() == 3
+    }
+
+    def "should rank by frequency decaying with age"() {
+        given:
+        dbHelper.fetchTitleStats() >> [
+                entry("standup", 20, NOW - 60 * DAY),
+                entry("support", 5, NOW - DAY),
+                entry("sprint planning", 5, NOW - 2 * DAY),
+                entry("sync", 1, NOW)
+        ]
+
+        expect:
+        index.suggest("s", 3, NOW) == ["support", "sprint planning", "standup"]
+    }
+
+    def "should halve the weight of usage every half-life"() {
+        given:
+        def entry = entry("standup", 8, NOW)
+
+        expect:
+        entry.score(NOW) == 8
+        entry.score(NOW + TitleIndex.HALF_LIFE_MS) == 4
+        entry.score(NOW + 2 * TitleIndex.HALF_LIFE_MS) == 2
+        entry.score(NOW + 3 * TitleIndex.HALF_LIFE_MS) == 1
+        entry.score(NOW - DAY) == 8
+    }
+
+    def "should update incrementally on writes"() {
+        given:
+        dbHelper.fetchTitleStats() >> [entry("review", 1, NOW - DAY), entry("design", 3, NOW - DAY)]
+        index.preload()
+
+        when:
+        index.onTrackingStored(null, tracking("deploy", NOW))
+        index.onTrackingStored(tracking("review", NOW - DAY), tracking("retro", NOW))
+        index.onTrackingRemoved(tracking("design", NOW - DAY))
+
+        then:
+        index.suggest("de", 5, NOW) == ["design", "deploy"]
+        index.suggest("re", 5, NOW) == ["retro"]
+
+        when:
+        index.onTrackingsCleared()
+
+        then:
+        index.suggest("", 5, NOW) == []
+    }
+
+    def "should ignore writes before loading"() {
+        when:
+        index.onTrackingStored(null, tracking("deploy", NOW))
+        def suggestions = index.suggest("de", 5, NOW)
+
+        then:
+        1 * dbHelper.fetchTitleStats() >> [entry("design", 1, NOW)]
+        suggestions == ["design"]
+    }
+
+    private static TitleIndex.Entry entry(String title, int count, long lastUsed) {
+        new TitleIndex.Entry(title, count, lastUsed)
+    }
+
+    private static Tracking tracking(String title, long lastTrackingStarted) {
+        def t = new Tracking()
+        t.title = title
+        t.lastTrackingStarted = lastTrackingStarted
+        t
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class TrackingImporterSpec extends Specification {
+
+    static final int ROWS = 500000
+    static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin")
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+    File file = File.createTempFile("trackings", ".csv")
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        db.execSQL("CREATE INDEX timetracking_created_idx ON timetracking (created)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Sessions.createTables(db)
+        Sessions.createTriggers(db)
+        Rollups.createTables(db)
+        FullTextIndex.createTables(db)
+        ChangeLog.createTables(db)
+        ChangeLog.createTriggers(db)
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def "should import large files in chunks, skipping duplicates on reimport"() {
+        given:
+        file.withWriter("UTF-8") { w ->
+            w.write("title,description,created,duration,ignored\n")
+            ROWS.times { i -> w.write("project " + i % 40 + ",\"task " + i + ", part " + i % 3 + "\"," + (1420070400000L + 60000L * i) + "," + i % 5400000 + ",x\n") }
+        }
+        def progress = []
+
+        when:
+        def result = TrackingImporter.run(db, projects, new FileInputStream(file), file.length(), ZONE,
+                TrackingImporter.DEFAULT_CHUNK_SIZE, { progress << it } as TrackingImporter.ProgressListener)
+
+        then:
+        result.read == ROWS
+        result.imported == ROWS
+        result.duplicates == 0
+        result.percent == 100
+        progress.size() == ROWS / TrackingImporter.DEFAULT_CHUNK_SIZE + 1
+        progress*.imported == (1..progress.size()).collect { Math.min(ROWS, it * TrackingImporter.DEFAULT_CHUNK_SIZE) }
+        progress*.percent == progress*.percent.sort(false)
+        progress[-1].percent == 100
+        db.queryLong("SELECT COUNT(*) FROM project") == 40
+        db.queryString("SELECT description FROM timetracking WHERE id = 42") == "task 41, part 2"
+        db.queryLong("SELECT lastTrackingStarted - created FROM timetracking WHERE id = 42") == 0
+
+        and: "derived tables are current"
+        db.queryLong("SELECT SUM(duration) FROM rollup_day") == db.queryLong("SELECT SUM(duration) FROM timetracking")
+        db.queryLong("SELECT docid FROM timetracking_fts WHERE timetracking_fts MATCH '\"task 4241\"'") == 4242
+        ChangeLog.countPending(db) == ROWS
+
+        when: "importing the same file again"
+        result = TrackingImporter.run(db, projects, new FileInputStream(file), file.length(), ZONE, TrackingImporter.DEFAULT_CHUNK_SIZE, null)
+
+        then:
+        result.imported == 0
+        result.duplicates == ROWS
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == ROWS
+    }
+
+    def "should read quoted csv with semicolons, local times and durations in hours"() {
+        given:
+        def csv = "\uFEFF\"Title\";Duration;Created;lastTrackingStarted;Description\r\n" +
+                "\"a \"\"quoted\"\"; title\";1:30;2016-03-27 01:30;2016-03-27T03:15:00;\"two\r\nlines\"\r\n" +
+                "\r\n" +
+                "plain;90000;1459042200000;;\r\n" +
+                "no time;1:00;yesterday;;\r\n" +
+                "same time;0:01;2016-03-27 01:30;;\r\n" +
+                "last;0:45:30;2016-03-27"
+
+        when:
+        def result = run(csv)
+
+        then:
+        result.read == 5
+        result.imported == 3
+        result.invalid == 1
+        result.duplicates == 1
+        rows() == [
+                ["a \"quoted\"; title", "two\r\nlines", 1459038600000L, 1459041300000L, 5400000L],
+                ["plain", null, 1459042200000L, 1459042200000L, 90000L],
+                ["last", null, 1459033200000L, 1459033200000L, 2730000L]
+        ]
+    }
+
+    def "should read a json array of objects"() {
+        given:
+        def json = " [ {\"title\": \"caf\\u00e9 \\\"x\\\"\", \"created\": 1000, \"duration\": 60000, \"tracking\": true, " +
+                "\"extra\": null}, {\"Created\":\"2016-01-01\",\"duration\":\"0:30\",\"description\":null},{} ]"
+
+        when:
+        def result = run(json)
+
+        then:
+        result.read == 3
+        result.imported == 2
+        result.invalid == 1
+        rows() == [
+                ["caf\u00e9 \"x\"", null, 1000L, 1000L, 60000L],
+                ["", null, 1451602800000L, 1451602800000L, 1800000L]
+        ]
+    }
+
+    def "should keep chunks committed before malformed input, along with their rollups"() {
+        given:
+        def json = "[" + (1..10).collect { "{\"created\": $it, \"duration\": 1000}" }.join(",") + ", {\"created\": [1]}]"
+
+        when:
+        TrackingImporter.run(db, projects, new ByteArrayInputStream(json.getBytes("UTF-8")), -1, ZONE, 4, null)
+
+        then:
+        thrown(IOException)
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == 8
+        db.queryLong("SELECT SUM(count) FROM rollup_day") == 8
+        db.queryLong("SELECT SUM(duration) FROM rollup_day") == 8000
+        db.queryLong("SELECT SUM(duration) FROM session") == 8000
+    }
+
+    TrackingImporter.Progress run(String text) {
+        return TrackingImporter.run(db, projects, new ByteArrayInputStream(text.getBytes("UTF-8")), -1, ZONE, 2, null)
+    }
+
+    List rows() {
+        def rows = db.rawQuery("SELECT p.title, t.description, t.created, t.lastTrackingStarted, t.duration FROM timetracking t "
+                + "JOIN project p ON p.id = t.project_id ORDER BY t.id", null)
+        def result = []
+        while (rows.moveToNext()) {
+            result << [rows.getString(0), rows.isNull(1) ? null : rows.getString(1), rows.getLong(2), rows.getLong(3), rows.getLong(4)]
+        }
+        rows.close()
+        return result
+    }
+
+}
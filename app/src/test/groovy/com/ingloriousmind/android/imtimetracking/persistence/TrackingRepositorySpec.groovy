@@ -0,0 +1,171 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow
+import com.ingloriousmind.android.imtimetracking.persistence.migration.Migrator
+import com.ingloriousmind.android.imtimetracking.report.ReportRange
+import rx.observers.TestSubscriber
+import rx.schedulers.Schedulers
+import rx.schedulers.TestScheduler
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TrackingRepositorySpec extends Specification {
+
+    DbHelper dbHelper = Mock(DbHelper)
+    TrackingRepository repository = new TrackingRepository(dbHelper, Schedulers.immediate())
+
+    def "should run pending migrations ahead of the first operation only"() {
+        given:
+        def progress = []
+        repository.observeMigrationProgress().subscribe({ progress << it.percent })
+
+        when:
+        repository.fetchTrackingRows().subscribe()
+
+        then:
+        1 * dbHelper.runPendingMigrations(_) >> { Migrator.ProgressListener listener ->
+            listener.onProgress(new Migrator.Progress(5, 50, 100))
+            listener.onProgress(new Migrator.Progress(5, 100, 100))
+            1
+        }
+
+        then:
+        1 * dbHelper.fetchTrackingRows() >> []
+        progress == [50, 100]
+
+        when:
+        repository.fetchTrackingRows().subscribe()
+        repository.readChanges(10).subscribe()
+
+        then:
+        0 * dbHelper.runPendingMigrations(_)
+        1 * dbHelper.fetchTrackingRows() >> []
+        1 * dbHelper.readChanges(10) >> null
+    }
+
+    def "should fail operations while migrations fail, retrying with the next operation"() {
+        given:
+        def failed = new TestSubscriber<List<TrackingRow>>()
+        def loaded = new TestSubscriber<List<TrackingRow>>()
+
+        when:
+        repository.fetchTrackingRows().subscribe(failed)
+
+        then:
+        1 * dbHelper.runPendingMigrations(_) >> { throw new IllegalStateException("broken") }
+        0 * dbHelper.fetchTrackingRows()
+        failed.onErrorEvents.size() == 1
+        failed.onErrorEvents[0] instanceof Migrator.MigrationException
+        failed.onErrorEvents[0].cause.message == "broken"
+
+        when:
+        repository.fetchTrackingRows().subscribe(loaded)
+
+        then:
+        1 * dbHelper.runPendingMigrations(_) >> 1
+
+        then:
+        1 * dbHelper.fetchTrackingRows() >> []
+        loaded.onNextEvents == [[]]
+    }
+
+    def "should start migrations without running an operation"() {
+        when:
+        def completed = repository.runPendingMigrations().toBlocking().value()
+        def again = repository.runPendingMigrations().toBlocking().value()
+
+        then:
+        1 * dbHelper.runPendingMigrations(_) >> 2
+        completed == 2
+        again == 0
+    }
+
+    def "should run reads alongside writes, after the writes subscribed before them"() {
+        given: "a write blocked on its scheduler"
+        def writeExecutor = Executors.newSingleThreadExecutor()
+        def readExecutor = Executors.newSingleThreadExecutor()
+        def repository = new TrackingRepository(dbHelper, Schedulers.from(writeExecutor), Schedulers.from(readExecutor))
+        def writing = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def events = [].asSynchronized()
+        dbHelper.runPendingMigrations(_) >> 0
+        dbHelper.storeTracking(_) >> { writing.countDown(); release.await(); events << "stored"; true }
+        dbHelper.fetchReport(_, _) >> { events << "report"; null }
+        dbHelper.fetchTrackingRows() >> { events << "rows"; [] }
+
+        when: "reading before and after the write was subscribed"
+        def report = repository.fetchReport(ReportRange.LAST_7_DAYS).toObservable().toBlocking().toFuture()
+        report.get(5, TimeUnit.SECONDS)
+        def stored = repository.storeTracking(new Tracking()).toObservable().toBlocking().toFuture()
+        writing.await(5, TimeUnit.SECONDS)
+        def rows = repository.fetchTrackingRows().toObservable().toBlocking().toFuture()
+        Thread.sleep(100)
+
+        then: "the later read waits for the write"
+        events == ["report"]
+        !rows.done
+
+        when:
+        release.countDown()
+        stored.get(5, TimeUnit.SECONDS)
+        rows.get(5, TimeUnit.SECONDS)
+
+        then:
+        events == ["report", "stored", "rows"]
+
+        cleanup:
+        writeExecutor.shutdown()
+        readExecutor.shutdown()
+    }
+
+    def "should purge every batch as an operation of its own, running others in between"() {
+        given:
+        def scheduler = new TestScheduler()
+        def repository = new TrackingRepository(dbHelper, scheduler)
+        def batches = [SoftDelete.PURGE_BATCH_SIZE, SoftDelete.PURGE_BATCH_SIZE, 3] as LinkedList
+        def events = []
+        def purged = new TestSubscriber<Integer>()
+        dbHelper.runPendingMigrations(_) >> 0
+        dbHelper.purgeDeletedBatch(42L) >> { events << "batch"; batches.poll() }
+        dbHelper.purgeUnreferencedProjects() >> { events << "projects"; 1 }
+        dbHelper.storeTracking(_) >> { events << "stored"; true }
+
+        when:
+        repository.purgeDeletedTrackings(42L).subscribe(purged)
+        repository.storeTracking(new Tracking()).subscribe()
+        scheduler.triggerActions()
+
+        then:
+        events == ["batch", "stored", "batch", "batch", "projects"]
+        purged.onNextEvents == [2 * SoftDelete.PURGE_BATCH_SIZE + 3]
+    }
+
+    def "should not wait for writes unsubscribed before they ran"() {
+        given:
+        def writeExecutor = Executors.newSingleThreadExecutor()
+        def repository = new TrackingRepository(dbHelper, Schedulers.from(writeExecutor), Schedulers.immediate())
+        def release = new CountDownLatch(1)
+        dbHelper.runPendingMigrations(_) >> 0
+        dbHelper.removeTracking(_) >> { release.await(); true }
+        dbHelper.storeTracking(_) >> true
+
+        when: "a write queued behind another is unsubscribed"
+        repository.removeTracking(new Tracking()).subscribe()
+        repository.storeTracking(new Tracking()).subscribe().unsubscribe()
+        release.countDown()
+        def rows = repository.fetchTrackingRows().toBlocking().value()
+
+        then:
+        rows == []
+        1 * dbHelper.fetchTrackingRows() >> []
+        0 * dbHelper.storeTracking(_)
+
+        cleanup:
+        writeExecutor.shutdown()
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.ingloriousmind.android.imtimetracking.persistence
+
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class TrackingRowsSpec extends Specification {
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Projects projects = new Projects()
+
+    def "should map rows, resolving titles of projects"() {
+        given:
+        Projects.createTables(db)
+        def a = projects.idOf(db, "a")
+        def b = projects.idOf(db, "b")
+        def c = db.rawQuery("SELECT 3, ?, 1000, 1, 5000 UNION ALL SELECT 2, ?, 2000, 0, 4000 UNION ALL SELECT 1, 99, 0, 0, 3000",
+                [String.valueOf(a), String.valueOf(b)] as String[])
+
+        when:
+        def rows = TrackingRows.read(db, projects, c)
+
+        then:
+        rows*.id == [3L, 2L, 1L]
+        rows*.title == ["a", "b", ""]
+        rows*.duration == [1000L, 2000L, 0L]
+        rows*.tracking == [true, false, false]
+        rows*.lastTrackingStarted == [5000L, 4000L, 3000L]
+        rows*.getElapsed(8000L) == [4000L, 2000L, 0L]
+        TrackingRow.sumDurations(rows) == 3000L
+
+        cleanup:
+        c.close()
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.ChangeLog
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Projects
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class ChangeLogMigrationSpec extends Specification {
+
+    static final int CHUNK = 2000
+    static final int ROWS = CHUNK * 3 + 1
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+
+    def "should log all trackings not deleted, then every change"() {
+        given: "version 7, with every tenth tracking deleted"
+        def migrator = new Migrator([new ChangeLogMigration()])
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Migrator.createTables(db)
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "1",
+                created            : "i",
+                lastTrackingStarted: "i",
+                duration           : "60000",
+                tracking           : "0",
+                deleted            : "i % 10 = 0"])
+        def live = ROWS - (0..<ROWS).count { it % 10 == 0 }
+        def progress = []
+
+        when:
+        migrator.migrateSchema(db, 7, 8)
+        migrator.runPending(db, CHUNK, { progress << it.migrated } as Migrator.ProgressListener)
+
+        then:
+        !migrator.hasPending(db)
+        progress.unique() == (1..live.intdiv(CHUNK)).collect { it * CHUNK } + [live]
+        ChangeLog.countPending(db) == live
+        db.queryLong("SELECT COUNT(*) FROM change_log c JOIN timetracking t ON t.id = c.tracking_id WHERE t.deleted != 0") == 0
+
+        when: "changing a tracking logged, deleting one and inserting a new one"
+        db.execSQL("UPDATE timetracking SET duration = 0 WHERE id = 2")
+        db.execSQL("UPDATE timetracking SET deleted = 1 WHERE id = 3")
+        db.execSQL("INSERT INTO timetracking (project_id, created, lastTrackingStarted, duration, tracking) VALUES (1, 0, 0, 0, 0)")
+        def batch = ChangeLog.read(db, ROWS)
+
+        then:
+        ChangeLog.countPending(db) == live + 1
+        batch.changes[-3..-1]*.trackingId == [2, 3, ROWS + 1]
+        batch.changes[-2].deleted
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class ListIndexMigrationSpec extends Specification {
+
+    static final int ROWS = Migrator.DEFAULT_CHUNK_SIZE * 3 + 1
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Migrator migrator = new Migrator([new ListIndexMigration()])
+
+    def setup() {
+        // version 5
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT)")
+        db.execSQL("CREATE INDEX timetracking_created_idx ON timetracking (created)")
+        db.execSQL("CREATE INDEX timetracking_started_idx ON timetracking (lastTrackingStarted, duration)")
+        db.execSQL("CREATE INDEX timetracking_project_idx ON timetracking (project_id, lastTrackingStarted)")
+        Migrator.createTables(db)
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "i % 50",
+                description        : "'task ' || i",
+                created            : "i",
+                lastTrackingStarted: "i * 7919 % " + ROWS,
+                duration           : "60000",
+                tracking           : "0"])
+    }
+
+    def "should cover list rows by the index by last start"() {
+        when:
+        migrator.migrateSchema(db, 5, 6)
+
+        then:
+        !migrator.hasPending(db)
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'timetracking_started_idx'") == 0
+        db.queryPlan("SELECT id, project_id, duration, tracking FROM timetracking ORDER BY lastTrackingStarted DESC") ==
+                "SCAN TABLE timetracking USING COVERING INDEX timetracking_list_idx"
+        db.queryPlan("SELECT SUM(duration) FROM timetracking WHERE lastTrackingStarted >= 0").contains("COVERING INDEX timetracking_list_idx")
+
+        and: "rows come in list order"
+        def rows = db.rawQuery("SELECT lastTrackingStarted FROM timetracking ORDER BY lastTrackingStarted DESC LIMIT 3", null)
+        def started = []
+        while (rows.moveToNext()) started << rows.getLong(0)
+        rows.close()
+        started == [ROWS - 1, ROWS - 2, ROWS - 3]
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class ProjectsMigrationSpec extends Specification {
+
+    static final int CHUNK = 1000
+    static final int ROWS = CHUNK * 3 + 1
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Migrator migrator = new Migrator([new ProjectsMigration()])
+
+    def setup() {
+        // version 3: titles inline, title keyed rollups and fts
+        db.execSQL("CREATE TABLE timetracking (title VARCHAR, description VARCHAR, created BIGINT, "
+                + "lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, PRIMARY KEY (created))")
+        db.execSQL("CREATE INDEX timetracking_title_idx ON timetracking (title)")
+        db.execSQL("CREATE INDEX timetracking_lastTrackingStarted_idx ON timetracking (lastTrackingStarted)")
+        db.execSQL("CREATE TABLE rollup_day (day INTEGER NOT NULL, title TEXT NOT NULL, duration INTEGER NOT NULL, "
+                + "count INTEGER NOT NULL, PRIMARY KEY (day, title))")
+        db.execSQL("CREATE VIRTUAL TABLE timetracking_fts USING fts4(content=\"timetracking\", title, description)")
+        Seeds.insert(db, "timetracking", ROWS, [
+                title              : "CASE WHEN i % 1000 = 0 THEN NULL ELSE 'project ' || (i % 50) END",
+                description        : "'task ' || i",
+                created            : "1000000 + i",
+                lastTrackingStarted: "1000000 + i",
+                duration           : "60000",
+                tracking           : "0"])
+        Migrator.createTables(db)
+    }
+
+    def "should upgrade seeded database in chunks"() {
+        given:
+        def progress = []
+
+        when:
+        migrator.migrateSchema(db, 3, 4)
+
+        then:
+        migrator.hasPending(db)
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL") == ROWS
+
+        when:
+        def completed = migrator.runPending(db, CHUNK, { progress << it } as Migrator.ProgressListener)
+
+        then:
+        completed == 1
+        !migrator.hasPending(db)
+        progress*.migrated == (1..ROWS.intdiv(CHUNK)).collect { it * CHUNK } + [ROWS]
+        progress.every { it.total == ROWS && it.version == 4 }
+        progress.last().percent == 100
+
+        and: "titles moved to projects"
+        db.queryLong("SELECT COUNT(*) FROM project") == 51
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL OR title IS NOT NULL") == 0
+        db.queryLong("SELECT COUNT(*) FROM timetracking t JOIN project p ON p.id = t.project_id WHERE p.title = 'project 7'") == count { it % 50 == 7 }
+        db.queryLong("SELECT COUNT(*) FROM timetracking t JOIN project p ON p.id = t.project_id WHERE p.title = ''") == count { it % 1000 == 0 }
+
+        and: "derived tables recreated"
+        db.queryLong("SELECT COUNT(*) FROM rollup_day") == 0
+        db.queryLong("SELECT COUNT(*) FROM timetracking_fts WHERE timetracking_fts MATCH '\"project 7\"'") == count { it % 50 == 7 }
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'timetracking_title_idx'") == 0
+    }
+
+    def "should resume an interrupted upgrade"() {
+        given:
+        migrator.migrateSchema(db, 3, 4)
+        def chunks = 0
+
+        when: "the process dies after two chunks"
+        migrator.runPending(db, CHUNK, {
+            if (++chunks == 2) throw new IllegalStateException("killed")
+        } as Migrator.ProgressListener)
+
+        then:
+        thrown(IllegalStateException)
+        migrator.hasPending(db)
+        db.queryLong("SELECT migrated FROM migration_state WHERE version = 4") == 2 * CHUNK
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL") == ROWS - 2 * CHUNK
+
+        when:
+        def progress = []
+        migrator.runPending(db, CHUNK, { progress << it } as Migrator.ProgressListener)
+
+        then:
+        !migrator.hasPending(db)
+        progress.first().migrated == 3 * CHUNK
+        progress.last().migrated == ROWS
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL") == 0
+        db.queryLong("SELECT COUNT(*) FROM project") == 51
+    }
+
+    def "should roll back a failing chunk"() {
+        given:
+        migrator.migrateSchema(db, 3, 4)
+        db.execSQL("CREATE TRIGGER fail BEFORE UPDATE ON timetracking WHEN new.created = 1000000 + " + (CHUNK + 1) + " "
+                + "BEGIN SELECT RAISE(ABORT, 'disk full'); END")
+
+        when:
+        migrator.runPending(db, CHUNK, null)
+
+        then:
+        thrown(Exception)
+        db.queryLong("SELECT migrated FROM migration_state WHERE version = 4") == CHUNK
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE project_id IS NULL") == ROWS - CHUNK
+    }
+
+    /**
+     * @return number of seeded rows matching given condition of their index
+     */
+    static int count(Closure<Boolean> condition) {
+        return (0..<ROWS).count(condition)
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Projects
+import com.ingloriousmind.android.imtimetracking.persistence.Rollups
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class SessionsMigrationSpec extends Specification {
+
+    static final int CHUNK = 2000
+    static final int ROWS = CHUNK * 3 + 1
+    static final long HOUR = 3600000L
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+
+    def "should guess a session per tracking with a duration, ending at its last stop"() {
+        given: "version 8, with every tenth tracking lacking a duration"
+        def migrator = new Migrator([new SessionsMigration()])
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        Rollups.createTables(db)
+        Migrator.createTables(db)
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "1",
+                created            : "(i + 1) * " + HOUR,
+                lastTrackingStarted: "(i + 1) * " + HOUR + " + 30 * 60000",
+                duration           : "CASE WHEN (i + 1) % 10 = 0 THEN 0 ELSE " + HOUR + " END",
+                tracking           : "0"])
+        db.execSQL("INSERT INTO " + Rollups.TABLE_DAY + " (day, project_id, duration, count) VALUES (1, 1, 1, 1)")
+        def progress = []
+
+        when:
+        migrator.migrateSchema(db, 8, 9)
+        migrator.runPending(db, CHUNK, { progress << it.migrated } as Migrator.ProgressListener)
+
+        then:
+        !migrator.hasPending(db)
+        progress.last() == ROWS - ROWS.intdiv(10)
+        db.queryLong("SELECT COUNT(*) FROM session") == ROWS - ROWS.intdiv(10)
+        db.queryLong("SELECT COUNT(*) FROM session s JOIN timetracking t ON t.id = s.tracking_id "
+                + "WHERE s.started + s.duration != MAX(t.lastTrackingStarted, t.created + t.duration)") == 0
+        db.queryLong("SELECT COUNT(*) FROM " + Rollups.TABLE_DAY) == 0
+
+        when: "deleting a tracking"
+        db.execSQL("DELETE FROM timetracking WHERE id = 1")
+
+        then:
+        db.queryLong("SELECT COUNT(*) FROM session WHERE tracking_id = 1") == 0
+    }
+
+}
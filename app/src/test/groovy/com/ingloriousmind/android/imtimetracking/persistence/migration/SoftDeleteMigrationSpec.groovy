@@ -0,0 +1,103 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.FullTextIndex
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Projects
+import com.ingloriousmind.android.imtimetracking.persistence.Rollups
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import com.ingloriousmind.android.imtimetracking.persistence.SoftDelete
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class SoftDeleteMigrationSpec extends Specification {
+
+    static final int ROWS = Migrator.DEFAULT_CHUNK_SIZE * 3 + 1
+    static final int HALF = ROWS.intdiv(2)
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+
+    def "should mark trackings deleted and serve live ones from partial indexes"() {
+        given: "version 6"
+        def migrator = new Migrator([new SoftDeleteMigration()])
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT)")
+        db.execSQL("CREATE INDEX timetracking_created_idx ON timetracking (created)")
+        ListIndexMigration.createIndexes(db)
+        Projects.createTables(db)
+        Migrator.createTables(db)
+        insertRows()
+
+        when:
+        migrator.migrateSchema(db, 6, 7)
+        migrator.runPending(db, Migrator.DEFAULT_CHUNK_SIZE, null)
+
+        then:
+        !migrator.hasPending(db)
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE " + TrackingIndexes.NOT_DELETED) == ROWS
+        db.queryPlan("SELECT id, project_id, duration, tracking FROM timetracking WHERE deleted = 0 ORDER BY lastTrackingStarted DESC") ==
+                "SCAN TABLE timetracking USING COVERING INDEX timetracking_list_idx"
+        db.queryPlan("SELECT project_id, COUNT(*), MAX(lastTrackingStarted) FROM timetracking WHERE deleted = 0 GROUP BY project_id")
+                .contains("COVERING INDEX timetracking_project_idx")
+
+        when: "clearing all in one update, then deleting one more"
+        db.execSQL("UPDATE timetracking SET deleted = 1000 WHERE deleted = 0 AND id <= " + HALF)
+        db.execSQL("UPDATE timetracking SET deleted = 2000 WHERE id = " + ROWS)
+
+        then:
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = 0") == ROWS - HALF - 1
+        db.queryPlan("SELECT id FROM timetracking WHERE deleted != 0 AND deleted < 1500 LIMIT 100").contains("timetracking_deleted_idx")
+
+        when: "purging trackings deleted before a point in time, in batches"
+        int purged = 0
+        int batch
+        while ((batch = SoftDelete.purgeBatch(db, 1500)) > 0) {
+            purged += batch
+        }
+
+        then:
+        purged == HALF
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == ROWS - HALF
+        db.queryLong("SELECT deleted FROM timetracking WHERE id = " + ROWS) == 2000
+    }
+
+    def "should add the column to a table rebuild still pending"() {
+        given: "version 4"
+        def migrator = new Migrator([new SurrogateKeyMigration(), new ListIndexMigration(), new SoftDeleteMigration()])
+        db.execSQL("CREATE TABLE timetracking (title VARCHAR, description VARCHAR, created BIGINT, "
+                + "lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, project_id BIGINT, PRIMARY KEY (created))")
+        Projects.createTables(db)
+        Rollups.createTables(db)
+        FullTextIndex.createTables(db)
+        Migrator.createTables(db)
+        insertRows()
+
+        when:
+        migrator.migrateSchema(db, 4, 7)
+
+        then: "the old table can be queried until migrated"
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = 0") == ROWS
+
+        when:
+        migrator.runPending(db, Migrator.DEFAULT_CHUNK_SIZE, null)
+
+        then:
+        !migrator.hasPending(db)
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE deleted = 0") == ROWS
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND sql LIKE '%WHERE deleted%'") == 3
+        db.queryPlan("SELECT id, project_id, duration, tracking FROM timetracking WHERE deleted = 0 ORDER BY lastTrackingStarted DESC") ==
+                "SCAN TABLE timetracking USING COVERING INDEX timetracking_list_idx"
+    }
+
+    void insertRows() {
+        Seeds.insert(db, "timetracking", ROWS, [
+                project_id         : "1 + i % 50",
+                description        : "'task ' || i",
+                created            : "i",
+                lastTrackingStarted: "i * 7919 % " + ROWS,
+                duration           : "60000",
+                tracking           : "0"])
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ingloriousmind.android.imtimetracking.persistence.migration
+
+import com.ingloriousmind.android.imtimetracking.persistence.FullTextIndex
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Projects
+import com.ingloriousmind.android.imtimetracking.persistence.Rollups
+import com.ingloriousmind.android.imtimetracking.persistence.Seeds
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class SurrogateKeyMigrationSpec extends Specification {
+
+    static final int CHUNK = 1000
+    static final int ROWS = CHUNK * 3 + 1
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+    Migrator migrator = new Migrator([new SurrogateKeyMigration()])
+
+    def setup() {
+        // version 4: keyed by created, titles moved to projects
+        db.execSQL("CREATE TABLE timetracking (title VARCHAR, description VARCHAR, created BIGINT, "
+                + "lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, project_id BIGINT, PRIMARY KEY (created))")
+        db.execSQL("CREATE INDEX timetracking_lastTrackingStarted_idx ON timetracking (lastTrackingStarted)")
+        db.execSQL("CREATE INDEX timetracking_project_id_idx ON timetracking (project_id)")
+        Projects.createTables(db)
+        Rollups.createTables(db)
+        FullTextIndex.createTables(db)
+        Migrator.createTables(db)
+        db.beginTransaction()
+        50.times { db.execSQL("INSERT INTO project (title) VALUES (?)", ["project " + it] as Object[]) }
+        Seeds.insert(db, "timetracking", ROWS, [
+                description        : "'task ' || i",
+                created            : "1000000 + i",
+                lastTrackingStarted: "2000000 + i",
+                duration           : "60000",
+                tracking           : "i = " + (ROWS - 1),
+                project_id         : "1 + i % 50"])
+        db.setTransactionSuccessful()
+        db.endTransaction()
+    }
+
+    def "should rebuild seeded table keyed by rowid"() {
+        given:
+        def rowids = db.queryLong("SELECT SUM(rowid) FROM timetracking")
+        def chunks = 0
+
+        when: "the process dies after two chunks"
+        migrator.migrateSchema(db, 4, 5)
+        migrator.runPending(db, CHUNK, {
+            if (++chunks == 2) throw new IllegalStateException("killed")
+        } as Migrator.ProgressListener)
+
+        then:
+        thrown(IllegalStateException)
+        db.queryLong("SELECT COUNT(*) FROM timetracking_new") == 2 * CHUNK
+
+        when:
+        def progress = []
+        migrator.runPending(db, CHUNK, { progress << it } as Migrator.ProgressListener)
+
+        then:
+        !migrator.hasPending(db)
+        progress.first().migrated == 3 * CHUNK
+        progress.last().migrated == ROWS
+
+        and: "rows kept their rowid as id"
+        db.queryLong("SELECT COUNT(*) FROM timetracking") == ROWS
+        db.queryLong("SELECT SUM(id) FROM timetracking") == rowids
+        db.queryLong("SELECT created FROM timetracking WHERE id = 42") == 1000041
+        db.queryLong("SELECT tracking FROM timetracking WHERE id = " + ROWS) == 1
+        db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'timetracking_new'") == 0
+
+        and: "legacy title column is gone"
+        def columns = db.rawQuery("PRAGMA table_info(timetracking)", null)
+        def names = []
+        while (columns.moveToNext()) names << columns.getString(1)
+        columns.close()
+        names == ["id", "project_id", "description", "created", "lastTrackingStarted", "duration", "tracking"]
+
+        and: "fts follows rowids"
+        db.queryLong("SELECT docid FROM timetracking_fts WHERE timetracking_fts MATCH '\"task 41\"'") == 42
+        db.queryLong("SELECT COUNT(*) FROM timetracking_fts WHERE timetracking_fts MATCH '\"project 7\"'") == (0..<ROWS).count { it % 50 == 7 }
+    }
+
+    def "should allow trackings created within the same millisecond and continue ids"() {
+        given:
+        migrator.migrateSchema(db, 4, 5)
+        migrator.runPending(db, CHUNK, null)
+
+        when:
+        def insert = db.compileStatement("INSERT INTO timetracking (project_id, description, created) VALUES (1, 'twin', 1000000)")
+        def id = insert.executeInsert()
+        insert.close()
+
+        then:
+        id == ROWS + 1
+        db.queryLong("SELECT COUNT(*) FROM timetracking WHERE created = 1000000") == 2
+        db.queryLong("SELECT COUNT(*) FROM timetracking_fts WHERE timetracking_fts MATCH 'twin'") == 1
+    }
+
+    def "should serve list and sums from indexes"() {
+        given:
+        migrator.migrateSchema(db, 4, 5)
+        migrator.runPending(db, CHUNK, null)
+
+        expect:
+        db.queryPlan("SELECT * FROM timetracking ORDER BY lastTrackingStarted DESC").contains("timetracking_list_idx")
+        db.queryPlan("SELECT SUM(duration) FROM timetracking WHERE lastTrackingStarted >= 0").contains("COVERING INDEX timetracking_list_idx")
+        db.queryPlan("SELECT project_id, COUNT(*), MAX(lastTrackingStarted) FROM timetracking GROUP BY project_id").contains("COVERING INDEX timetracking_project_idx")
+        db.queryPlan("SELECT * FROM timetracking WHERE id = 42").contains("INTEGER PRIMARY KEY")
+    }
+
+}
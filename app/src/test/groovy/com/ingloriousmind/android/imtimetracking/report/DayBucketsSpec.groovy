@@ -0,0 +1,55 @@
+package com.ingloriousmind.android.imtimetracking.report
+
+import spock.lang.Specification
+
+class DayBucketsSpec extends Specification {
+
+    def "should accumulate durations per day"() {
+        given:
+        def buckets = new DayBuckets(100, 109)
+
+        when:
+        buckets.add(100, 10)
+        buckets.add(105, 20)
+        buckets.add(105, 5)
+
+        then:
+        buckets.get(100) == 10
+        buckets.get(105) == 25
+        buckets.get(101) == 0
+        buckets.max == 25
+        buckets.lastDay == 109
+    }
+
+    def "should ignore days out of range"() {
+        given:
+        def buckets = new DayBuckets(100, 109)
+
+        when:
+        buckets.add(99, 10)
+        buckets.add(110, 10)
+
+        then:
+        buckets.get(99) == 0
+        buckets.get(110) == 0
+        buckets.max == 0
+    }
+
+    def "should sum ranges clamped to covered days"() {
+        given:
+        def buckets = new DayBuckets(0, 9)
+        (0..9).each { buckets.add(it, it) }
+
+        expect:
+        buckets.sum(from, to) == sum
+
+        where:
+        from | to  | sum
+        0    | 9   | 45
+        2    | 4   | 9
+        -5   | 1   | 1
+        8    | 100 | 17
+        5    | 4   | 0
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.ingloriousmind.android.imtimetracking.report
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+class TrackingHistorySpec extends Specification {
+
+    static final int ROWS = 1000000
+
+    @Shared
+    TrackingHistory history = build(ROWS)
+
+    static TrackingHistory build(int rows) {
+        // created every minute, some in the same millisecond; started within a day later
+        def builder = new TrackingHistory.Builder(16)
+        for (int i = 0; i < rows; i++) {
+            long created = (i - i % 10 == i ? i : i - 1) * 60000L
+            builder.add(created, created + (i * 7919L) % 86400000L, i % 3600 * 1000L, i % 7)
+        }
+        return builder.build()
+    }
+
+    def "should keep all rows in columns"() {
+        expect:
+        history.size() == ROWS
+        history.getCreated(11) == 10 * 60000L
+        history.getDuration(ROWS - 1) == (ROWS - 1) % 3600 * 1000L
+        history.getProjectId(13) == 6
+        history.columnBytes <= ROWS * 1.5 * TrackingHistory.BYTES_PER_ROW
+    }
+
+    def "should find range bounds by binary search"() {
+        expect:
+        history.lowerBound(Long.MIN_VALUE) == 0
+        history.lowerBound(0) == 0
+        history.lowerBound(1) == 2
+        history.lowerBound(10 * 60000L) == 10
+        history.lowerBound(10 * 60000L + 1) == 12
+        history.lowerBound(Long.MAX_VALUE) == ROWS
+    }
+
+    def "should sum durations like a naive walk"() {
+        given:
+        long from = 12345 * 60000L
+        long to = 543210 * 60000L
+        long since = 500000 * 60000L
+        long created = 0, started = 0
+        long[] byProject = new long[7]
+        for (int i = 0; i < ROWS; i++) {
+            if (history.getCreated(i) >= from && history.getCreated(i) < to) {
+                created += history.getDuration(i)
+                byProject[(int) history.getProjectId(i)] += history.getDuration(i)
+            }
+            if (history.getLastTrackingStarted(i) >= since) {
+                started += history.getDuration(i)
+            }
+        }
+
+        expect:
+        history.sumDurationsCreated(from, to) == created
+        history.sumDurationsCreated(to, from) == 0
+        history.sumDurationsStartedSince(since) == started
+        history.sumDurationsStartedSince(Long.MIN_VALUE) == history.sumDurations(0, ROWS)
+        history.sumDurationsByProject(history.lowerBound(from), history.lowerBound(to)) == byProject
+    }
+
+    def "should resolve titles by project"() {
+        given:
+        def titled = new TrackingHistory.Builder(3)
+                .title(1, "one")
+                .title(40, "forty")
+                .add(0, 0, 0, 40)
+                .add(1, 1, 0, 1)
+                .add(2, 2, 0, 41)
+                .build()
+
+        expect:
+        titled.getTitle(0) == "forty"
+        titled.getTitle(1) == "one"
+        titled.getTitle(2) == null
+    }
+
+    def "should reject rows out of order"() {
+        when:
+        new TrackingHistory.Builder(2).add(2, 0, 0, 1).add(1, 0, 0, 1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should reject rows out of bounds"() {
+        when:
+        history.getDuration(ROWS)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+
+        when:
+        history.sumDurations(2, 1)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.ingloriousmind.android.imtimetracking.sync
+
+import com.ingloriousmind.android.imtimetracking.persistence.ChangeLog
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase
+import com.ingloriousmind.android.imtimetracking.persistence.Projects
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingIndexes
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+import groovy.json.JsonSlurper
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+
+class SyncEngineSpec extends Specification {
+
+    static final int ROWS = 1200
+    static final int BATCH = 500
+
+    @AutoCleanup
+    JdbcDatabase db = new JdbcDatabase()
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+    List<Map> requests = []
+    Deque<Integer> statuses = new ArrayDeque<>()
+
+    SyncEngine.Store store = [
+            readChanges       : { int limit -> ChangeLog.read(db, limit) },
+            acknowledgeChanges: { long version -> ChangeLog.acknowledge(db, version) }
+    ] as SyncEngine.Store
+
+    def setup() {
+        db.execSQL("CREATE TABLE timetracking (id INTEGER PRIMARY KEY AUTOINCREMENT, project_id BIGINT, description VARCHAR, "
+                + "created BIGINT, lastTrackingStarted BIGINT, duration BIGINT, tracking SMALLINT, deleted BIGINT NOT NULL DEFAULT 0)")
+        TrackingIndexes.createIndexes(db)
+        Projects.createTables(db)
+        ChangeLog.createTables(db)
+        ChangeLog.createTriggers(db)
+        db.execSQL("INSERT INTO project (title) VALUES (?)", ["caf\u00e9 \"bar\"\n"] as Object[])
+        db.beginTransaction()
+        def insert = db.compileStatement("INSERT INTO timetracking (project_id, description, created, lastTrackingStarted, "
+                + "duration, tracking) VALUES (1, ?, ?, ?, 60000, 0)")
+        ROWS.times { i ->
+            insert.bindString(1, "task " + i)
+            insert.bindLong(2, 1000L * i)
+            insert.bindLong(3, 1000L * i)
+            insert.executeInsert()
+        }
+        insert.close()
+        db.setTransactionSuccessful()
+        db.endTransaction()
+
+        server.createContext("/trackings", { HttpExchange exchange ->
+            def body = new JsonSlurper().parse(new GZIPInputStream(exchange.requestBody), "UTF-8")
+            requests << [encoding: exchange.requestHeaders.getFirst("Content-Encoding"),
+                         key     : exchange.requestHeaders.getFirst(SyncEngine.HEADER_IDEMPOTENCY_KEY),
+                         body    : body]
+            int status = statuses ? statuses.poll() : 200
+            exchange.sendResponseHeaders(status, -1)
+            exchange.close()
+        } as HttpHandler)
+        server.start()
+    }
+
+    def cleanup() {
+        server.stop(0)
+    }
+
+    def "should push all changes in compressed batches, then only rows changed since"() {
+        when:
+        def result = engine().sync()
+
+        then:
+        result.batches == 3
+        result.changes == ROWS
+        requests*.encoding == ["gzip"] * 3
+        requests*.body*.since == [0, BATCH, 2 * BATCH]
+        requests*.body*.until == [BATCH, 2 * BATCH, ROWS]
+        requests*.key.unique().size() == 3
+        requests[0].body.changes[0] == [version: 1, id: 1, deleted: false, title: "caf\u00e9 \"bar\"\n", description: "task 0",
+                                        created: 0, lastTrackingStarted: 0, duration: 60000, tracking: false]
+        result.bytes < ROWS * 40
+        ChangeLog.countPending(db) == 0
+
+        when: "updating a tracking twice, another one once, deleting one and purging one deleted before"
+        requests.clear()
+        db.execSQL("UPDATE timetracking SET duration = 120000 WHERE id = 7")
+        db.execSQL("UPDATE timetracking SET description = 'done' WHERE id = 7")
+        db.execSQL("UPDATE timetracking SET tracking = 1 WHERE id = 42")
+        db.execSQL("UPDATE timetracking SET deleted = 1 WHERE id IN (100, 200)")
+        engine().sync()
+        db.execSQL("DELETE FROM timetracking WHERE id = 200")
+        result = engine().sync()
+
+        then: "changed rows are sent once, in their latest state, and purging is not sent again"
+        result.batches == 0
+        result.cursor == ROWS + 5
+        requests.size() == 1
+        requests[0].body.since == ROWS
+        requests[0].body.changes*.id == [7, 42, 100, 200]
+        requests[0].body.changes[0].description == "done"
+        requests[0].body.changes[0].duration == 120000
+        requests[0].body.changes[2] == [version: ROWS + 4, id: 100, deleted: true]
+    }
+
+    def "should retry a failed batch under the same idempotency key"() {
+        given:
+        statuses.addAll([503, 500])
+
+        when:
+        def result = engine().sync()
+
+        then:
+        result.batches == 3
+        requests.size() == 5
+        requests[0].key == requests[1].key
+        requests[1].key == requests[2].key
+        requests[0].body == requests[2].body
+        ChangeLog.countPending(db) == 0
+    }
+
+    def "should keep changes of a batch failed for good"() {
+        given:
+        statuses.addAll([200, 503, 503, 503])
+
+        when:
+        engine().sync()
+
+        then:
+        thrown(IOException)
+        requests.size() == 4
+        ChangeLog.countPending(db) == ROWS - BATCH
+
+        when: "the endpoint is back"
+        def result = engine().sync()
+
+        then:
+        result.changes == ROWS - BATCH
+        requests[4].body.since == BATCH
+        requests[4].key == requests[1].key
+    }
+
+    def "should not retry a batch rejected"() {
+        given:
+        statuses.add(400)
+
+        when:
+        engine().sync()
+
+        then:
+        def e = thrown(SyncEngine.RejectedException)
+        e.status == 400
+        requests.size() == 1
+        ChangeLog.countPending(db) == ROWS
+    }
+
+    def "should post every batch once when two syncs start at once"() {
+        given:
+        def results = Collections.synchronizedList([])
+
+        when:
+        def threads = (1..2).collect { Thread.start { results << engine().sync() } }
+        threads*.join()
+
+        then:
+        results.size() == 2
+        results*.changes.sum() == ROWS
+        requests*.body*.since == [0, BATCH, 2 * BATCH]
+        ChangeLog.countPending(db) == 0
+    }
+
+    SyncEngine engine() {
+        return new SyncEngine(store, new URL("http://127.0.0.1:" + server.address.port + "/trackings"), BATCH, 1)
+    }
+
+}
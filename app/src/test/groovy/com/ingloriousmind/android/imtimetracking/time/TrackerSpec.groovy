@@ -1,60 +1,176 @@
 package com.ingloriousmind.android.imtimetracking.time
 
 import com.ingloriousmind.android.imtimetracking.RxSpecification
+import com.ingloriousmind.android.imtimetracking.metrics.MetricsRegistry
 import com.ingloriousmind.android.imtimetracking.model.Tracking
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot
 import com.ingloriousmind.android.imtimetracking.persistence.DbHelper
-import rx.Subscription
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRepository
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingStateStore
 import rx.functions.Action1
-import spock.util.concurrent.BlockingVariable
+import rx.observers.TestSubscriber
+import rx.schedulers.Schedulers
+import rx.schedulers.TestScheduler
 
 import java.util.concurrent.TimeUnit
 
 class TrackerSpec extends RxSpecification {
 
+    static final long NOW = 1475000000000L
+
     DbHelper dbHelper
+    TrackingStateStore stateStore
+    TestScheduler clock
     Tracker tracker
     Tracking tracking
 
     def setup() {
         tracking = Mock(Tracking)
         dbHelper = Mock(DbHelper)
-        tracker = new Tracker(dbHelper)
+        stateStore = Mock(TrackingStateStore)
+        clock = new TestScheduler()
+        clock.advanceTimeTo(NOW, TimeUnit.MILLISECONDS)
+        def repository = new TrackingRepository(dbHelper, Schedulers.immediate())
+        repository.runPendingMigrations().subscribe()
+        tracker = new Tracker(repository, stateStore, new MetricsRegistry(), clock)
     }
 
     def "should resume"() {
         when:
-        tracker.resumeIfNecessary()
+        tracker.resumeIfNecessary().subscribe()
 
         then:
         1 * dbHelper.fetchMostRecentTracking() >> tracking
-        1 * tracking.isTracking() >> true
+        _ * tracking.isTracking() >> true
+        0 * dbHelper.storeTracking(_)
+        tracker.isRunning()
+        tracker.getCurrentTracking() == tracking
+    }
+
+    def "should return running tracking without querying when resuming"() {
+        given:
+        def t = new Tracking()
+        tracker.start(t)
+        def result = null
+
+        when:
+        tracker.resumeIfNecessary().subscribe({ result = it } as Action1)
 
         then:
-        1 * tracking.isTracking() >> true
-        1 * tracking.setDuration(_)
-        1 * tracking.setLastTrackingStarted(_)
+        0 * dbHelper.fetchMostRecentTracking()
+        result == t
     }
 
-    def "should not subscribe when there is no tracking to resume"() {
+    def "should publish state on transitions"() {
+        given:
+        def states = []
+        tracker.observeState().subscribe({ states << it } as Action1)
+
         when:
-        tracker.resumeIfNecessary()
+        tracker.start(new Tracking())
+        tracker.stop()
+
+        then:
+        states*.running == [false, true, false]
+        states[0] == TrackingSnapshot.NONE
+    }
+
+    def "should write state store with today's total on transitions"() {
+        given:
+        def t = new Tracking()
+
+        when:
+        tracker.start(t)
+
+        then:
+        1 * dbHelper.storeTracking(t)
+
+        then:
+        1 * dbHelper.sumDurationsOfDay(_) >> 42L
+        1 * stateStore.write({ it.running && it.created == t.created }, 42L)
+
+        when:
+        tracker.updateTitle("renamed")
+
+        then:
+        1 * dbHelper.storeTracking(t)
+        1 * stateStore.write({ it.running && it.title == "renamed" }, _)
+
+        when:
+        tracker.stop()
+
+        then:
+        1 * dbHelper.storeTracking(t)
+
+        then:
+        1 * dbHelper.sumDurationsOfDay(_) >> 43L
+        1 * stateStore.write({ !it.running }, 43L)
+    }
+
+    def "should recompute today's total of the running tracking once the day changed"() {
+        given:
+        def t = new Tracking()
+        tracker.start(t)
+        clock.advanceTimeBy(1, TimeUnit.DAYS)
+
+        when:
+        tracker.refreshState()
+
+        then:
+        0 * dbHelper.fetchMostRecentTracking()
+        1 * dbHelper.sumDurationsOfDay(NOW + TimeUnit.DAYS.toMillis(1)) >> 0L
+        1 * stateStore.write({ it.running && it.created == t.created }, 0L)
+    }
+
+    def "should resume a tracking left running before recomputing state"() {
+        given:
+        def t = new Tracking(tracking: true, lastTrackingStarted: NOW - 5000)
+
+        when:
+        tracker.refreshState()
+
+        then:
+        1 * dbHelper.fetchMostRecentTracking() >> t
+        1 * dbHelper.sumDurationsOfDay(NOW) >> 7L
+        1 * stateStore.write({ it.running && it.elapsed == 5000 }, 7L)
+        tracker.currentTracking.is(t)
+    }
+
+    def "should recompute idle state when there is nothing to resume"() {
+        when:
+        tracker.refreshState()
+
+        then:
+        1 * dbHelper.fetchMostRecentTracking() >> null
+        1 * dbHelper.sumDurationsOfDay(NOW) >> 7L
+        1 * stateStore.write({ !it.running }, 7L)
+    }
+
+    def "should not start when there is no tracking to resume"() {
+        when:
+        tracker.resumeIfNecessary().subscribe()
 
         then:
         1 * dbHelper.fetchMostRecentTracking() >> tracking
-        0 * _
+        0 * dbHelper._
+        !tracker.isRunning()
 
         where:
         tracking << [Mock(Tracking), null]
     }
 
     def "should start"() {
+        given:
+        def t = new Tracking()
+
         when:
-        tracker.start(tracking)
+        tracker.start(t)
 
         then:
-        1 * tracking.isTracking() >> true
-        1 * tracking.setDuration(_)
-        1 * tracking.setLastTrackingStarted(_)
+        1 * dbHelper.storeTracking(t)
+        t.isTracking()
+        t.lastTrackingStarted > 0
+        tracker.isRunning()
     }
 
     def "should no-op when no tracking given to start"() {
@@ -65,7 +181,7 @@ class TrackerSpec extends RxSpecification {
         0 * _
     }
 
-    def "should not subscribe again when already started"() {
+    def "should not start again when already started"() {
         when:
         tracker.start(tracking)
 
@@ -73,93 +189,237 @@ class TrackerSpec extends RxSpecification {
         _ * _
 
         when:
-        tracker.start(tracking)
+        def result = tracker.start(tracking)
 
         then:
         0 * _
+        result == null
     }
 
     def "should tick every second"() {
         given:
-        def result = new BlockingVariable<Tracking>(1200, TimeUnit.MILLISECONDS)
+        def ticks = new TestSubscriber<TrackingSnapshot>()
+        def t = new Tracking()
+        tracker.observe().subscribe(ticks)
+        tracker.start(t)
 
         when:
-        tracker.start(tracking)
+        clock.advanceTimeBy(3100, TimeUnit.MILLISECONDS)
+
+        then:
+        ticks.onNextEvents*.running == [false, true, true, true, true]
+        ticks.onNextEvents*.elapsed == [0L, 0L, 1000L + Tracker.TICK_SLACK_MS, 2000L + Tracker.TICK_SLACK_MS, 3000L + Tracker.TICK_SLACK_MS]
+        ticks.onNextEvents[-1].created == t.created
+    }
+
+    def "should only emit when the displayed unit changes"() {
+        given:
+        def seconds = []
+        def minutes = []
+        tracker.start(new Tracking())
+
+        when:
+        def s1 = tracker.observe(DisplayGranularity.SECONDS).subscribe({ seconds << it } as Action1)
+        def s2 = tracker.observe(DisplayGranularity.MINUTES).subscribe({ minutes << it } as Action1)
+        clock.advanceTimeBy(2100, TimeUnit.MILLISECONDS)
+        s1.unsubscribe()
+        s2.unsubscribe()
 
-        and:
-        tracker.observe().subscribe(new Action1<Tracking>() {
-            @Override
-            void call(Tracking t) {
-                result.set(t)
-            }
-        })
+        then:
+        seconds.size() == 3
+        minutes.size() == 1
+    }
+
+    def "should share tickers and release them without subscribers"() {
+        when:
+        def s1 = tracker.observe().subscribe()
+        def s2 = tracker.observe().subscribe()
+
+        then:
+        tracker.observe().is(tracker.observe())
+        tracker.state.hasObservers()
+
+        when:
+        s1.unsubscribe()
+        s2.unsubscribe()
 
         then:
-        result.get() == tracking
+        !tracker.state.hasObservers()
     }
 
     def "should pause"() {
         given:
-        def subscription = Mock(Subscription)
-        tracker.timerSubscription = subscription
+        def t = new Tracking()
+        tracker.start(t)
 
         when:
         tracker.pause()
 
         then:
-        1 * subscription.unsubscribe()
+        1 * dbHelper.storeTracking(t)
+        t.isTracking()
+        !tracker.isRunning()
     }
 
     def "should stop"() {
         given:
-        def subscription = Mock(Subscription)
-        tracker.timerSubscription = subscription
+        def t = new Tracking()
+        t.tracking = true
+        t.duration = 1000
+        t.lastTrackingStarted = NOW - 5000
+        tracker.start(t)
 
         when:
         tracker.stop()
 
         then:
-        1 * subscription.unsubscribe()
+        1 * dbHelper.storeTracking(t)
+        !t.isTracking()
+        t.duration == 6000
+        t.lastTrackingStarted == NOW
+        !tracker.isRunning()
     }
 
-    def "should persist tracking on pause/stop"() {
+    def "should restart the running segment of the current tracking when edited, replacing the tracker's copy"() {
+        given:
+        def t = new Tracking(id: 7)
+        tracker.start(t)
+        clock.advanceTimeBy(10, TimeUnit.MINUTES)
+        def edited = new Tracking(id: 7, title: "loaded", tracking: true, lastTrackingStarted: NOW)
+
+        expect:
+        tracker.elapsed(edited) == 10 * 60000
+
         when:
-        def subscription = tracker.observe().subscribe()
-        tracker.start(tracking)
+        tracker.editTracking(edited, "edited", 60 * 60000)
 
         then:
-        1 * tracking.setLastTrackingStarted(_)
+        1 * dbHelper.storeTracking(edited)
+        1 * stateStore.write({ it.running && it.title == "edited" && it.elapsed == 60 * 60000 }, _)
+        edited.lastTrackingStarted == NOW + 10 * 60000
+        tracker.currentTracking.is(edited)
+        tracker.elapsed(edited) == 60 * 60000
 
         when:
-        if (finish) tracker.stop()
-        else tracker.pause()
-        subscription.unsubscribe()
+        clock.advanceTimeBy(1, TimeUnit.MINUTES)
+        tracker.stop()
 
         then:
-        tracking.setTracking(!finish)
-        (finish ? 1 : 0) * tracking.setLastTrackingStarted(_)
-        1 * dbHelper.storeTracking(tracking)
+        1 * dbHelper.storeTracking(edited)
+        edited.duration == 61 * 60000
+        !edited.tracking
+    }
 
-        where:
-        finish << [true, false]
+    def "should persist edits of other trackings as given"() {
+        given:
+        def current = new Tracking(id: 1)
+        tracker.start(current)
+        def other = new Tracking(id: 2, duration: 1000, lastTrackingStarted: NOW - 5000)
+
+        when:
+        tracker.editTracking(other, "other", 42000)
+
+        then:
+        1 * dbHelper.storeTracking({ it.is(other) && it.duration == 42000 && it.title == "other" })
+        0 * stateStore.write(_, _)
+        other.lastTrackingStarted == NOW - 5000
+        tracker.currentTracking.is(current)
     }
 
-    def "should fetch trackings"() {
+    def "should stop the running tracking before restoring a backup, then resume the one left running in it"() {
+        given:
+        def file = new File("backup")
+        def t = new Tracking(id: 7, tracking: true, lastTrackingStarted: NOW - 5000)
+        tracker.start(t)
+        def restored = new Tracking(id: 3, title: "restored", tracking: true, lastTrackingStarted: NOW - 1000)
+
+        when:
+        tracker.restoreBackup(file).subscribe()
+
+        then:
+        1 * dbHelper.storeTracking({ it.is(t) && !it.tracking && it.duration == 5000 }) >> true
+
+        then:
+        1 * dbHelper.restore(file) >> 42L
+
+        then:
+        1 * dbHelper.fetchMostRecentTracking() >> restored
+        tracker.isRunning()
+        tracker.currentTracking.is(restored)
+        1 * stateStore.write({ it.running && it.title == "restored" }, _)
+    }
+
+    def "should let go of the current tracking once a backup without a running one is restored"() {
+        given:
+        def file = new File("backup")
+        tracker.start(new Tracking(id: 7))
+        def states = []
+        tracker.observeState().subscribe({ states << it } as Action1)
+
         when:
+        tracker.restoreBackup(file).subscribe()
+
+        then:
+        1 * dbHelper.restore(file) >> 42L
+        1 * dbHelper.fetchMostRecentTracking() >> new Tracking(id: 3)
+        !tracker.isRunning()
+        tracker.currentTracking == null
+        states.last() == TrackingSnapshot.NONE
+    }
+
+    def "should not persist when stopping without a running tracking"() {
+        when:
+        tracker.stop()
+        tracker.pause()
+
+        then:
+        0 * _
+    }
+
+    def "should not query the database before subscription"() {
+        when:
+        tracker.resumeIfNecessary()
         tracker.getTrackings()
+        tracker.getHistory()
+        tracker.persistTracking(tracking)
+        tracker.removeTracking(tracking)
+
+        then:
+        0 * _
+    }
+
+    def "should fetch trackings"() {
+        when:
+        tracker.getTrackings().subscribe()
 
         then:
         1 * dbHelper.fetchTrackings()
     }
 
+    def "should fetch history"() {
+        when:
+        tracker.getHistory().subscribe()
+
+        then:
+        1 * dbHelper.fetchHistory()
+    }
+
     def "should delete tracking"() {
         when:
-        tracker.removeTracking(tracking)
+        tracker.removeTracking(tracking).subscribe()
 
         then:
         1 * dbHelper.removeTracking(tracking)
     }
 
+    def "should delete all trackings"() {
+        when:
+        tracker.removeAllTrackings().subscribe()
+
+        then:
+        1 * dbHelper.removeAllTrackings()
+    }
+
     def "should return current tracking"() {
         when:
         tracker.start(tracking)
@@ -168,4 +428,4 @@ class TrackerSpec extends RxSpecification {
         tracker.getCurrentTracking() == tracking
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.ingloriousmind.android.imtimetracking.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.text.SimpleDateFormat
+
+class TimeUtilSpec extends Specification {
+
+    @Unroll
+    def "should resolve local epoch day of #time in #zone"() {
+        given:
+        def tz = TimeZone.getTimeZone(zone)
+        def format = new SimpleDateFormat("yyyy-MM-dd HH:mm")
+        format.timeZone = tz
+
+        expect:
+        TimeUtil.localEpochDay(format.parse(time).time, tz) == day
+
+        where:
+        time               | zone                  | day
+        "1970-01-01 00:00" | "UTC"                 | 0
+        "1970-01-01 23:59" | "Europe/Berlin"       | 0
+        "1969-12-31 23:59" | "America/Los_Angeles" | -1
+        "2016-03-27 01:30" | "Europe/Berlin"       | 16887
+        "2016-03-27 23:30" | "Europe/Berlin"       | 16887
+    }
+
+    def "should resolve different days for the same instant in different zones"() {
+        given:
+        def instant = 16887L * TimeUtil.DAY_MILLIS + 2 * 60 * 60 * 1000
+
+        expect:
+        TimeUtil.localEpochDay(instant, TimeZone.getTimeZone("Asia/Tokyo")) == 16887
+        TimeUtil.localEpochDay(instant, TimeZone.getTimeZone("America/New_York")) == 16886
+    }
+
+    @Unroll
+    def "should compute iso week key of #date"() {
+        expect:
+        TimeUtil.isoWeekKey(TimeUtil.epochDayFromCivil(*date.split("-")*.toInteger())) == week
+
+        where:
+        date         | week
+        "2016-01-01" | 201553
+        "2016-01-04" | 201601
+        "2018-12-31" | 201901
+        "2020-12-31" | 202053
+        "2021-01-03" | 202053
+        "2021-01-04" | 202101
+        "1970-01-01" | 197001
+    }
+
+    def "should convert between civil dates and epoch days"() {
+        expect:
+        (-800000..800000).step(997).every {
+            TimeUtil.epochDayFromCivil(*TimeUtil.civilFromEpochDay(it)) == it
+        }
+        TimeUtil.civilFromEpochDay(0) == [1970, 1, 1] as int[]
+        TimeUtil.civilFromEpochDay(11016) == [2000, 2, 29] as int[]
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.persistence.Database;
+
+/**
+ * in-memory query result, standing in for a cursor. long columns come first, string columns follow them.
+ *
+ * @author lavong.soysavanh
+ */
+class ArrayRows implements Database.Rows {
+
+    private static final String[][] NO_STRINGS = new String[0][];
+
+    private final long[][] longs;
+    private final String[][] strings;
+    private int row = -1;
+
+    /**
+     * @param longs long columns, per row
+     */
+    ArrayRows(long[][] longs) {
+        this(longs, NO_STRINGS);
+    }
+
+    /**
+     * @param longs   long columns, per row
+     * @param strings string columns following the long columns, per row. null strings are null values.
+     */
+    ArrayRows(long[][] longs, String[][] strings) {
+        if (strings.length > 0 && strings.length != longs.length) {
+            throw new IllegalArgumentException(longs.length + " rows of longs, but " + strings.length + " of strings");
+        }
+        this.longs = longs;
+        this.strings = strings;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        row = 0;
+        return longs.length > 0;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return ++row < longs.length;
+    }
+
+    @Override
+    public long getLong(int column) {
+        long[] values = longs[row];
+        return column < values.length ? values[column] : Long.parseLong(strings[row][column - values.length]);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public String getString(int column) {
+        long[] values = longs[row];
+        return column < values.length ? Long.toString(values[column]) : strings[row][column - values.length];
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        long[] values = longs[row];
+        return column >= values.length && strings[row][column - values.length] == null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
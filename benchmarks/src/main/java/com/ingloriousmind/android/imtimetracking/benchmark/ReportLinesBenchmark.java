@@ -0,0 +1,69 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.export.ReportFingerprint;
+import com.ingloriousmind.android.imtimetracking.export.ReportLines;
+import com.ingloriousmind.android.imtimetracking.report.TrackingHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the pure java part of exporting: fingerprinting the tracking history to look up an archived report, and formatting a
+ * line per tracking. laying out and writing the pdf needs android and is measured on devices by the metrics
+ * registry.
+ *
+ * @author lavong.soysavanh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportLinesBenchmark {
+
+    @Param({"100", "10000"})
+    int size;
+
+    private TrackingHistory history;
+
+    @Setup
+    public void setUp() {
+        TrackingHistory.Builder builder = new TrackingHistory.Builder(size);
+        for (int p = 1; p < 200; p++) {
+            builder.title(p, "project " + p);
+        }
+        for (int i = 0; i < size; i++) {
+            long created = 1420070400000L + i * 3600000L;
+            builder.add(created, created, i % 100 * 60000L, i % 10 == 0 ? 0 : i % 200);
+        }
+        history = builder.build();
+    }
+
+    @Benchmark
+    public StringBuilder lines() {
+        StringBuilder sb = new StringBuilder();
+        ReportLines.append(sb, history, new SimpleDateFormat("yyyy-MM-dd", Locale.US), "unnamed");
+        return sb;
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return ReportFingerprint.of(history, TimeZone.getTimeZone("UTC"), Locale.US);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * summing durations of large lists of row objects
+ *
+ * @author lavong.soysavanh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SumDurationsBenchmark {
+
+    private static final long START = 1420070400000L;
+    private static final long HOUR = 3600000L;
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    private List<TrackingRow> rows;
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long duration = i % 100 * 60000L;
+            rows.add(new TrackingRow(i + 1, "project " + i % 200, duration, false, START + i * HOUR));
+        }
+    }
+
+    @Benchmark
+    public long rows() {
+        return TrackingRow.sumDurations(rows);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.model.Tracking;
+import com.ingloriousmind.android.imtimetracking.model.TrackingSnapshot;
+import com.ingloriousmind.android.imtimetracking.time.DisplayGranularity;
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the work of a single tick of the tracker's ticker: a snapshot at the tick's time, compared with the previous one
+ * to suppress unchanged display text, and the text formatted. the rx timer driving the ticks, and delivery to the main
+ * thread, are left out, as they need android.
+ *
+ * @author lavong.soysavanh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickBenchmark {
+
+    private static final long UNIT = DisplayGranularity.SECONDS.getMillis();
+
+    private TrackingSnapshot previous;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Tracking tracking = new Tracking();
+        tracking.setTitle("project");
+        tracking.setCreated(1420070400000L);
+        tracking.setLastTrackingStarted(1420070400000L);
+        tracking.setDuration(3723000L);
+        tracking.setTracking(true);
+        now = 1420070400000L;
+        previous = TrackingSnapshot.of(tracking, true, now);
+    }
+
+    @Benchmark
+    public String tick() {
+        now += UNIT;
+        TrackingSnapshot current = previous.at(now);
+        String text = null;
+        if (!current.displaysSameAs(previous, UNIT)) {
+            text = TimeUtil.getTimeString(current.getElapsed());
+        }
+        previous = current;
+        return text;
+    }
+
+}
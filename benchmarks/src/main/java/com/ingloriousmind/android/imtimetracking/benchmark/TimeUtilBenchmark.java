@@ -0,0 +1,42 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.util.TimeUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * formatting durations, as done for every list row bound and every tick of a running tracking
+ *
+ * @author lavong.soysavanh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeUtilBenchmark {
+
+    /**
+     * zero, seconds, an hour, and days worth of hours
+     */
+    @Param({"0", "59000", "3723000", "360000000"})
+    long duration;
+
+    @Benchmark
+    public String getTimeString() {
+        return TimeUtil.getTimeString(duration);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.ingloriousmind.android.imtimetracking.benchmark;
+
+import com.ingloriousmind.android.imtimetracking.model.TrackingRow;
+import com.ingloriousmind.android.imtimetracking.persistence.JdbcDatabase;
+import com.ingloriousmind.android.imtimetracking.persistence.Projects;
+import com.ingloriousmind.android.imtimetracking.persistence.TrackingRows;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mapping query results to list rows, titles resolved from the project cache loaded from an in-memory sqlite database.
+ * the tracking cursor is replaced by an in-memory result, so this measures the mapping only, not sqlite.
+ *
+ * @author lavong.soysavanh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrackingRowsBenchmark {
+
+    private static final int PROJECTS = 200;
+
+    @Param({"100", "10000"})
+    int size;
+
+    private JdbcDatabase db;
+    private Projects projects;
+    private long[][] result;
+
+    @Setup
+    public void setUp() {
+        db = new JdbcDatabase();
+        Projects.createTables(db);
+        projects = new Projects();
+        for (int i = 1; i <= PROJECTS; i++) {
+            projects.idOf(db, "project " + i);
+        }
+        result = new long[size][];
+        for (int i = 0; i < size; i++) {
+            result[i] = new long[]{i + 1, i % PROJECTS + 1, i % 100 * 60000L, i == 0 ? 1 : 0, 1420070400000L + i * 3600000L};
+        }
+    }
+
+    @Benchmark
+    public List<TrackingRow> read() {
+        return TrackingRows.read(db, projects, new ArrayRows(result));
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+}
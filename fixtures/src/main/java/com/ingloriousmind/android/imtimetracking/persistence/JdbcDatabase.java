@@ -0,0 +1,409 @@
+package com.ingloriousmind.android.imtimetracking.persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link Database} on top of sqlite-jdbc, mimicking android's nested transaction semantics. failures are rethrown
+ * unchecked, like android's sqlite exceptions.
+ *
+ * @author lavong.soysavanh
+ */
+public class JdbcDatabase implements Database, Closeable {
+
+    private final Connection connection;
+    private final Deque<Boolean> transactions = new ArrayDeque<>();
+    private boolean failed;
+
+    /**
+     * ctor, opening an in-memory database
+     */
+    public JdbcDatabase() {
+        this("jdbc:sqlite::memory:");
+    }
+
+    /**
+     * @param url jdbc url of the database
+     */
+    public JdbcDatabase(String url) {
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new IllegalStateException(url, e);
+        }
+    }
+
+    /**
+     * @param sql query of a single number
+     * @return the number. 0, if there is no row.
+     */
+    public long queryLong(String sql) {
+        Statement stmt = compileStatement(sql);
+        try {
+            return stmt.simpleQueryForLong();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * @param sql query of a single string
+     * @return the string. null, if there is no row.
+     */
+    public String queryString(String sql) {
+        Rows rows = rawQuery(sql, null);
+        try {
+            return rows.moveToFirst() ? rows.getString(0) : null;
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * @param sql a query
+     * @return details of the query plan, joined by "; "
+     */
+    public String queryPlan(String sql) {
+        Rows rows = rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            StringBuilder details = new StringBuilder();
+            while (rows.moveToNext()) {
+                details.append(details.length() > 0 ? "; " : "").append(rows.getString(3));
+            }
+            return details.toString();
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * copies the whole database into given file
+     *
+     * @param file the file
+     */
+    public void backupTo(File file) {
+        update("backup to " + file.getPath());
+    }
+
+    /**
+     * replaces the whole database by the one in given file
+     *
+     * @param file the file
+     */
+    public void restoreFrom(File file) {
+        update("restore from " + file.getPath());
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        try {
+            java.sql.Statement stmt = connection.createStatement();
+            try {
+                stmt.execute(sql);
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] args) {
+        try {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    stmt.setObject(i + 1, args[i]);
+                }
+                stmt.execute();
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public Rows rawQuery(String sql, String[] args) {
+        try {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            if (!hasColumns(stmt)) {
+                // rows without columns, e.g. one per page freed by incremental_vacuum: run to completion up front, like
+                // filling an android cursor window does. prepared statements only ever step once, plain ones run
+                // through sqlite3_exec.
+                stmt.close();
+                update(sql);
+                return new JdbcRows(null, null);
+            }
+            for (int i = 0; args != null && i < args.length; i++) {
+                stmt.setString(i + 1, args[i]);
+            }
+            return new JdbcRows(stmt, stmt.executeQuery());
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    private static boolean hasColumns(PreparedStatement stmt) {
+        try {
+            return stmt.getMetaData().getColumnCount() > 0;
+        } catch (SQLException ignored) {
+            // the driver rejects asking for the count of zero columns
+            return false;
+        }
+    }
+
+    private void update(String sql) {
+        try {
+            java.sql.Statement stmt = connection.createStatement();
+            try {
+                stmt.executeUpdate(sql);
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public Statement compileStatement(String sql) {
+        try {
+            return new JdbcStatement(connection, connection.prepareStatement(sql));
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        try {
+            if (transactions.isEmpty()) {
+                connection.setAutoCommit(false);
+                failed = false;
+            }
+            transactions.push(false);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        transactions.pop();
+        transactions.push(true);
+    }
+
+    @Override
+    public void endTransaction() {
+        failed |= !transactions.pop();
+        if (!transactions.isEmpty()) {
+            return;
+        }
+        try {
+            if (failed) {
+                connection.rollback();
+            } else {
+                connection.commit();
+            }
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class JdbcRows implements Rows {
+
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+
+        /**
+         * @param stmt the statement queried. null, for rows without columns.
+         * @param rs   its result. null, for rows without columns.
+         */
+        JdbcRows(PreparedStatement stmt, ResultSet rs) {
+            this.stmt = stmt;
+            this.rs = rs;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moveToNext();
+        }
+
+        @Override
+        public boolean moveToNext() {
+            try {
+                return rs != null && rs.next();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public long getLong(int column) {
+            try {
+                return rs.getLong(column + 1);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int getInt(int column) {
+            try {
+                return rs.getInt(column + 1);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String getString(int column) {
+            try {
+                return rs.getString(column + 1);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            try {
+                return rs.getObject(column + 1) == null;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (stmt != null) {
+                    stmt.close();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class JdbcStatement implements Statement {
+
+        private final Connection connection;
+        private final PreparedStatement stmt;
+
+        JdbcStatement(Connection connection, PreparedStatement stmt) {
+            this.connection = connection;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            try {
+                stmt.setLong(index, value);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            try {
+                stmt.setString(index, value);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void bindNull(int index) {
+            try {
+                stmt.setObject(index, null);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void clearBindings() {
+            try {
+                stmt.clearParameters();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public long executeInsert() {
+            try {
+                if (stmt.executeUpdate() == 0) {
+                    return -1;
+                }
+                java.sql.Statement s = connection.createStatement();
+                try {
+                    ResultSet rs = s.executeQuery("SELECT last_insert_rowid()");
+                    return rs.next() ? rs.getLong(1) : -1;
+                } finally {
+                    s.close();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            try {
+                return stmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            try {
+                ResultSet rs = stmt.executeQuery();
+                try {
+                    return rs.next() ? rs.getLong(1) : 0;
+                } finally {
+                    rs.close();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}